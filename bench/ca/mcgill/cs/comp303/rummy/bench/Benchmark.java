@@ -0,0 +1,41 @@
+package ca.mcgill.cs.comp303.rummy.bench;
+
+/**
+ * A micro-benchmark run by BenchmarkRunner. The runner calls setUp() once,
+ * then run() repeatedly with batches of operations. Implementations must
+ * fold the results of their operations into the returned value, so that
+ * the JIT compiler cannot eliminate the work as dead code.
+ */
+public abstract class Benchmark
+{
+	private final String aName;
+
+	/**
+	 * @param pName The name under which the benchmark is reported.
+	 */
+	protected Benchmark(String pName)
+	{
+		aName = pName;
+	}
+
+	/**
+	 * @return The name under which the benchmark is reported.
+	 */
+	public String getName()
+	{
+		return aName;
+	}
+
+	/**
+	 * Prepares the data of the benchmark. Not measured.
+	 */
+	public void setUp()
+	{}
+
+	/**
+	 * Runs pOperations operations.
+	 * @param pOperations The number of operations to run.
+	 * @return A value that depends on the result of every operation.
+	 */
+	public abstract long run(int pOperations);
+}
@@ -0,0 +1,158 @@
+package ca.mcgill.cs.comp303.rummy.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Runs Benchmarks in the style of JMH: a few timed warm-up iterations
+ * let the JIT compiler reach a steady state, then a few timed measurement
+ * iterations are averaged. For each benchmark, reports the throughput
+ * (operations per second, with the standard deviation over iterations),
+ * the average time per operation, and the bytes allocated per operation
+ * by the benchmark thread, when the JVM can measure it.
+ */
+public class BenchmarkRunner
+{
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+	private static final long BATCH_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final List<Benchmark> aBenchmarks = new ArrayList<Benchmark>();
+	private int aWarmupIterations = 3;
+	private int aIterations = 5;
+	private long aIterationNanos = TimeUnit.MILLISECONDS.toNanos(500);
+	private long aSink;
+
+	/**
+	 * @param pBenchmark A benchmark to run.
+	 */
+	public void add(Benchmark pBenchmark)
+	{
+		aBenchmarks.add(pBenchmark);
+	}
+
+	/**
+	 * @param pWarmupIterations The number of warm-up iterations.
+	 * @param pIterations The number of measured iterations.
+	 * @param pIterationMillis The duration of an iteration, in milliseconds.
+	 * @pre pWarmupIterations >= 0 && pIterations > 0 && pIterationMillis > 0
+	 */
+	public void setIterations(int pWarmupIterations, int pIterations, long pIterationMillis)
+	{
+		aWarmupIterations = pWarmupIterations;
+		aIterations = pIterations;
+		aIterationNanos = TimeUnit.MILLISECONDS.toNanos(pIterationMillis);
+	}
+
+	/**
+	 * Runs the benchmarks whose name matches pFilter, and prints their results.
+	 * @param pFilter A regular expression, found anywhere in the names of the benchmarks to run.
+	 */
+	public void run(String pFilter)
+	{
+		Pattern lFilter = Pattern.compile(pFilter);
+		System.out.println(String.format("%-40s %14s %10s %12s %10s", "Benchmark", "ops/s", "error", "ns/op", "B/op"));
+		for( Benchmark lBenchmark : aBenchmarks )
+		{
+			if( lFilter.matcher(lBenchmark.getName()).find() )
+			{
+				System.out.println(measure(lBenchmark));
+			}
+		}
+		if( aSink == 1 )
+		{
+			// Never true in practice: only keeps the results alive
+			System.out.println();
+		}
+	}
+
+	private String measure(Benchmark pBenchmark)
+	{
+		pBenchmark.setUp();
+		int lBatch = calibrate(pBenchmark);
+		for( int i = 0; i < aWarmupIterations; i++ )
+		{
+			iterate(pBenchmark, lBatch);
+		}
+
+		double[] lThroughput = new double[aIterations];
+		long lOperations = 0;
+		long lNanos = 0;
+		long lBytes = 0;
+		for( int i = 0; i < aIterations; i++ )
+		{
+			long lAllocated = allocatedBytes();
+			long lStart = System.nanoTime();
+			long lCount = iterate(pBenchmark, lBatch);
+			long lElapsed = System.nanoTime() - lStart;
+			lBytes += allocatedBytes() - lAllocated;
+			lOperations += lCount;
+			lNanos += lElapsed;
+			lThroughput[i] = (double) lCount * NANOS_PER_SECOND / lElapsed;
+		}
+
+		double lMean = (double) lOperations * NANOS_PER_SECOND / lNanos;
+		double lVariance = 0;
+		for( double lValue : lThroughput )
+		{
+			lVariance += (lValue - lMean) * (lValue - lMean);
+		}
+		double lError = Math.sqrt(lVariance / aIterations);
+		String lAllocation = "n/a";
+		if( allocatedBytes() >= 0 )
+		{
+			lAllocation = String.format("%.1f", (double) lBytes / lOperations);
+		}
+		return String.format("%-40s %14.1f %10.1f %12.2f %10s", pBenchmark.getName(), lMean, lError,
+				(double) lNanos / lOperations, lAllocation);
+	}
+
+	/*
+	 * Finds a batch size that takes about BATCH_NANOS, so that reading
+	 * the clock does not weigh on the measure.
+	 */
+	private int calibrate(Benchmark pBenchmark)
+	{
+		int lBatch = 1;
+		while( lBatch < Integer.MAX_VALUE / 2 )
+		{
+			long lStart = System.nanoTime();
+			aSink += pBenchmark.run(lBatch);
+			if( System.nanoTime() - lStart >= BATCH_NANOS )
+			{
+				break;
+			}
+			lBatch *= 2;
+		}
+		return lBatch;
+	}
+
+	private long iterate(Benchmark pBenchmark, int pBatch)
+	{
+		long lCount = 0;
+		long lEnd = System.nanoTime() + aIterationNanos;
+		do
+		{
+			aSink += pBenchmark.run(pBatch);
+			lCount += pBatch;
+		}
+		while( System.nanoTime() < lEnd );
+		return lCount;
+	}
+
+	/*
+	 * Returns the number of bytes allocated so far by the current thread,
+	 * or -1 if the JVM cannot tell.
+	 */
+	private static long allocatedBytes()
+	{
+		java.lang.management.ThreadMXBean lBean = ManagementFactory.getThreadMXBean();
+		if( lBean instanceof com.sun.management.ThreadMXBean )
+		{
+			return ((com.sun.management.ThreadMXBean) lBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,120 @@
+package ca.mcgill.cs.comp303.rummy.bench;
+
+import ca.mcgill.cs.comp303.rummy.model.BatchDealer;
+import ca.mcgill.cs.comp303.rummy.model.CardMask;
+import ca.mcgill.cs.comp303.rummy.model.FastRandom;
+import ca.mcgill.cs.comp303.rummy.model.MeldCatalog;
+
+/**
+ * Fixed corpora of 10-card hands, as masks (see CardMask), generated
+ * from a seed so that every run of the benchmarks sees the same hands.
+ */
+public enum HandCorpus
+{
+	/**
+	 * Hands made only of melds.
+	 */
+	GIN_HEAVY(3, true, true),
+
+	/**
+	 * Hands with two runs, completed with random cards.
+	 */
+	RUN_HEAVY(2, true, false),
+
+	/**
+	 * Hands with two groups, completed with random cards.
+	 */
+	GROUP_HEAVY(2, false, true),
+
+	/**
+	 * Random hands.
+	 */
+	RANDOM(0, false, false);
+
+	/**
+	 * The number of hands of a corpus.
+	 */
+	public static final int SIZE = 4096;
+
+	private static final long SEED = 303;
+	private static final int HAND_SIZE = BatchDealer.HAND_SIZE;
+	private static final int MIN_MELD = 3;
+
+	private final int aMelds;
+	private final boolean aRuns;
+	private final boolean aGroups;
+	private long[] aHands;
+
+	private HandCorpus(int pMelds, boolean pRuns, boolean pGroups)
+	{
+		aMelds = pMelds;
+		aRuns = pRuns;
+		aGroups = pGroups;
+	}
+
+	/**
+	 * @return The hands of the corpus. The array is shared: do not modify it.
+	 */
+	public synchronized long[] getHands()
+	{
+		if( aHands == null )
+		{
+			aHands = generate(new FastRandom(SEED + ordinal()));
+		}
+		return aHands;
+	}
+
+	private long[] generate(FastRandom pRandom)
+	{
+		long[] lHands = new long[SIZE];
+		if( aMelds == 0 )
+		{
+			new BatchDealer(pRandom).deal(SIZE, 1, lHands, null, null);
+			return lHands;
+		}
+		for( int i = 0; i < SIZE; i++ )
+		{
+			lHands[i] = generateHand(pRandom);
+		}
+		return lHands;
+	}
+
+	private long generateHand(FastRandom pRandom)
+	{
+		long lHand = 0;
+		int lMelds = 0;
+		while( lMelds < aMelds && Long.bitCount(lHand) < HAND_SIZE )
+		{
+			long lMeld = MeldCatalog.get(pRandom.nextInt(MeldCatalog.size()));
+			if( (lHand & lMeld) == 0 && (CardMask.isGroup(lMeld) ? aGroups : aRuns) &&
+					fits(Long.bitCount(lHand | lMeld), aMelds - lMelds - 1) )
+			{
+				lHand |= lMeld;
+				lMelds++;
+			}
+		}
+		while( Long.bitCount(lHand) < HAND_SIZE )
+		{
+			lHand |= 1L << pRandom.nextInt(CardMask.DECK_SIZE);
+		}
+		return lHand;
+	}
+
+	/*
+	 * Returns true if a hand of pSize cards leaves room for pLeft more
+	 * melds of at least 3 cards, or is complete. Gin hands must end with
+	 * their last meld.
+	 */
+	private boolean fits(int pSize, int pLeft)
+	{
+		if( pSize == HAND_SIZE )
+		{
+			return true;
+		}
+		if( this == GIN_HEAVY && pLeft == 0 )
+		{
+			return false;
+		}
+		return pSize + MIN_MELD * pLeft <= HAND_SIZE;
+	}
+}
@@ -0,0 +1,380 @@
+package ca.mcgill.cs.comp303.rummy.bench;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ca.mcgill.cs.comp303.rummy.model.AutoPlayer;
+import ca.mcgill.cs.comp303.rummy.model.BatchDealer;
+import ca.mcgill.cs.comp303.rummy.model.Card;
+import ca.mcgill.cs.comp303.rummy.model.CardMask;
+import ca.mcgill.cs.comp303.rummy.model.Deck;
+import ca.mcgill.cs.comp303.rummy.model.DiscardEvaluation;
+import ca.mcgill.cs.comp303.rummy.model.FastRandom;
+import ca.mcgill.cs.comp303.rummy.model.GameEngine;
+import ca.mcgill.cs.comp303.rummy.model.Hand;
+import ca.mcgill.cs.comp303.rummy.model.ICardSet;
+import ca.mcgill.cs.comp303.rummy.model.MeldCatalog;
+import ca.mcgill.cs.comp303.rummy.model.OptimalMatchStrategy;
+
+/**
+ * Benchmarks of the hot paths of the model: matching, meld creation,
+ * layoffs, shuffling, cards, dealing, and complete hands played by the
+ * engine. Matching benchmarks run over each HandCorpus.
+ *
+ * Usage: ModelBenchmarks [filter [iterationMillis]], where filter is a
+ * regular expression that selects benchmarks by name.
+ */
+public final class ModelBenchmarks
+{
+	private static final int MASK = HandCorpus.SIZE - 1;
+	private static final long SEED = 303;
+
+	private ModelBenchmarks()
+	{}
+
+	/**
+	 * Runs the benchmarks.
+	 * @param pArgs An optional filter on the names of the benchmarks, and an optional iteration time in milliseconds.
+	 */
+	public static void main(String[] pArgs)
+	{
+		BenchmarkRunner lRunner = new BenchmarkRunner();
+		String lFilter = "";
+		if( pArgs.length > 0 )
+		{
+			lFilter = pArgs[0];
+		}
+		if( pArgs.length > 1 )
+		{
+			lRunner.setIterations(3, 5, Long.parseLong(pArgs[1]));
+		}
+
+		for( HandCorpus lCorpus : HandCorpus.values() )
+		{
+			lRunner.add(autoMatch(lCorpus, false));
+			lRunner.add(autoMatch(lCorpus, true));
+			lRunner.add(evaluateDiscards(lCorpus));
+		}
+		lRunner.add(createMeld(HandCorpus.GROUP_HEAVY, true));
+		lRunner.add(createMeld(HandCorpus.RUN_HEAVY, false));
+		lRunner.add(tryComplete());
+		lRunner.add(shuffle(false));
+		lRunner.add(shuffle(true));
+		lRunner.add(cardHashCode());
+		lRunner.add(cardCompareTo());
+		lRunner.add(batchDeal());
+		lRunner.add(playHand());
+		lRunner.run(lFilter);
+	}
+
+	private static Benchmark autoMatch(final HandCorpus pCorpus, final boolean pUncached)
+	{
+		String lName = "Hand.autoMatch";
+		if( pUncached )
+		{
+			lName += ".uncached";
+		}
+		return new Benchmark(lName + "/" + pCorpus)
+		{
+			private final Hand aHand = new Hand();
+			private long[] aHands;
+			private int aNext;
+
+			@Override
+			public void setUp()
+			{
+				aHands = pCorpus.getHands();
+				if( pUncached )
+				{
+					aHand.setMatchStrategy(new OptimalMatchStrategy());
+				}
+			}
+
+			@Override
+			public long run(int pOperations)
+			{
+				long lResult = 0;
+				for( int i = 0; i < pOperations; i++ )
+				{
+					aHand.load(aHands[aNext++ & MASK]);
+					aHand.autoMatch();
+					lResult += aHand.score();
+				}
+				return lResult;
+			}
+		};
+	}
+
+	private static Benchmark evaluateDiscards(final HandCorpus pCorpus)
+	{
+		return new Benchmark("DiscardEvaluation.evaluate/" + pCorpus)
+		{
+			private long[] aHands;
+			private int aNext;
+
+			@Override
+			public void setUp()
+			{
+				// Each hand draws the lowest card it does not have
+				long[] lHands = pCorpus.getHands();
+				aHands = new long[lHands.length];
+				for( int i = 0; i < lHands.length; i++ )
+				{
+					aHands[i] = lHands[i] | Long.lowestOneBit(CardMask.ALL & ~lHands[i]);
+				}
+			}
+
+			@Override
+			public long run(int pOperations)
+			{
+				long lResult = 0;
+				for( int i = 0; i < pOperations; i++ )
+				{
+					lResult += DiscardEvaluation.evaluate(aHands[aNext++ & MASK]).getBest(CardMask.ALL);
+				}
+				return lResult;
+			}
+		};
+	}
+
+	private static Benchmark createMeld(final HandCorpus pCorpus, final boolean pGroup)
+	{
+		String lName = "Hand.createRun";
+		if( pGroup )
+		{
+			lName = "Hand.createGroup";
+		}
+		return new Benchmark(lName + "/" + pCorpus)
+		{
+			private final Hand aHand = new Hand();
+			private long[] aHands;
+			private List<Set<Card>> aMelds;
+			private int aNext;
+
+			@Override
+			public void setUp()
+			{
+				aHands = pCorpus.getHands();
+				aMelds = new ArrayList<Set<Card>>(aHands.length);
+				for( int i = 0; i < aHands.length; i++ )
+				{
+					aMelds.add(new HashSet<Card>(CardMask.asSet(findMeld(aHands[i], pGroup))));
+				}
+			}
+
+			@Override
+			public long run(int pOperations)
+			{
+				long lResult = 0;
+				for( int i = 0; i < pOperations; i++ )
+				{
+					int lHand = aNext++ & MASK;
+					aHand.load(aHands[lHand]);
+					if( pGroup )
+					{
+						lResult += aHand.createGroup(aMelds.get(lHand)).size();
+					}
+					else
+					{
+						lResult += aHand.createRun(aMelds.get(lHand)).size();
+					}
+				}
+				return lResult;
+			}
+		};
+	}
+
+	/*
+	 * Returns a group or a run contained in pHand. Every hand of the
+	 * group-heavy and run-heavy corpora has one.
+	 */
+	private static long findMeld(long pHand, boolean pGroup)
+	{
+		for( int i = 0; i < MeldCatalog.size(); i++ )
+		{
+			long lMeld = MeldCatalog.get(i);
+			if( (lMeld & ~pHand) == 0 && CardMask.isGroup(lMeld) == pGroup )
+			{
+				return lMeld;
+			}
+		}
+		throw new IllegalStateException("No meld in " + CardMask.asSet(pHand));
+	}
+
+	private static Benchmark tryComplete()
+	{
+		return new Benchmark("Hand.tryComplete/" + HandCorpus.RANDOM)
+		{
+			private Hand[] aDefenders;
+			private List<Set<ICardSet>> aKnockerMelds;
+			private int aNext;
+
+			@Override
+			public void setUp()
+			{
+				long[] lKnockers = HandCorpus.GIN_HEAVY.getHands();
+				long[] lDefenders = HandCorpus.RANDOM.getHands();
+				aDefenders = new Hand[lDefenders.length];
+				aKnockerMelds = new ArrayList<Set<ICardSet>>(lKnockers.length);
+				for( int i = 0; i < lDefenders.length; i++ )
+				{
+					Hand lKnocker = new Hand();
+					lKnocker.load(lKnockers[i]);
+					lKnocker.autoMatch();
+					aKnockerMelds.add(new HashSet<ICardSet>(lKnocker.getMatchedCards()));
+					aDefenders[i] = new Hand();
+					aDefenders[i].load(lDefenders[i] & ~lKnockers[i]);
+					aDefenders[i].autoMatch();
+				}
+			}
+
+			@Override
+			public long run(int pOperations)
+			{
+				long lResult = 0;
+				for( int i = 0; i < pOperations; i++ )
+				{
+					int lHand = aNext++ & MASK;
+					lResult += aDefenders[lHand].tryComplete(aKnockerMelds.get(lHand)).size();
+				}
+				return lResult;
+			}
+		};
+	}
+
+	private static Benchmark shuffle(final boolean pDraw)
+	{
+		String lName = "Deck.shuffle";
+		if( pDraw )
+		{
+			lName += "+draw";
+		}
+		return new Benchmark(lName)
+		{
+			private final Deck aDeck = new Deck(new FastRandom(SEED));
+
+			@Override
+			public long run(int pOperations)
+			{
+				long lResult = 0;
+				for( int i = 0; i < pOperations; i++ )
+				{
+					aDeck.shuffle();
+					if( pDraw )
+					{
+						while( aDeck.size() > 0 )
+						{
+							lResult += aDeck.draw().index();
+						}
+					}
+					else
+					{
+						lResult += aDeck.peek().index();
+					}
+				}
+				return lResult;
+			}
+		};
+	}
+
+	private static Card[] shuffledCards()
+	{
+		Deck lDeck = new Deck(new FastRandom(SEED));
+		Card[] lCards = new Card[lDeck.size()];
+		for( int i = 0; i < lCards.length; i++ )
+		{
+			lCards[i] = lDeck.draw();
+		}
+		return lCards;
+	}
+
+	private static Benchmark cardHashCode()
+	{
+		return new Benchmark("Card.hashCode")
+		{
+			private final Card[] aCards = shuffledCards();
+			private int aNext;
+
+			@Override
+			public long run(int pOperations)
+			{
+				long lResult = 0;
+				for( int i = 0; i < pOperations; i++ )
+				{
+					lResult += aCards[aNext++ % aCards.length].hashCode();
+				}
+				return lResult;
+			}
+		};
+	}
+
+	private static Benchmark cardCompareTo()
+	{
+		return new Benchmark("Card.compareTo")
+		{
+			private final Card[] aCards = shuffledCards();
+			private int aNext;
+
+			@Override
+			public long run(int pOperations)
+			{
+				long lResult = 0;
+				for( int i = 0; i < pOperations; i++ )
+				{
+					int lIndex = aNext++ % (aCards.length - 1);
+					lResult += aCards[lIndex].compareTo(aCards[lIndex + 1]);
+				}
+				return lResult;
+			}
+		};
+	}
+
+	private static Benchmark batchDeal()
+	{
+		return new Benchmark("BatchDealer.deal/game")
+		{
+			private static final int HANDS = 2;
+			private static final int CHUNK = 1024;
+			private final BatchDealer aDealer = new BatchDealer(new FastRandom(SEED));
+			private final long[] aHands = new long[CHUNK * HANDS];
+			private final int[] aUpcards = new int[CHUNK];
+			private final int[] aStocks = new int[CHUNK * BatchDealer.stockSize(HANDS)];
+
+			@Override
+			public long run(int pOperations)
+			{
+				long lResult = 0;
+				for( int lDone = 0; lDone < pOperations; lDone += CHUNK )
+				{
+					int lGames = Math.min(CHUNK, pOperations - lDone);
+					aDealer.deal(lGames, HANDS, aHands, aUpcards, aStocks);
+					lResult += aHands[0] + aUpcards[0] + aStocks[0];
+				}
+				return lResult;
+			}
+		};
+	}
+
+	private static Benchmark playHand()
+	{
+		return new Benchmark("GameEngine.playHand")
+		{
+			private final GameEngine aEngine = new GameEngine(new AutoPlayer(), new AutoPlayer(), new FastRandom(SEED));
+			private int aDealer;
+
+			@Override
+			public long run(int pOperations)
+			{
+				long lResult = 0;
+				for( int i = 0; i < pOperations; i++ )
+				{
+					lResult += aEngine.playHand(aDealer).getTurns();
+					aDealer = 1 - aDealer;
+				}
+				return lResult;
+			}
+		};
+	}
+}
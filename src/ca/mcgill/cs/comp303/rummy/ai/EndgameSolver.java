@@ -0,0 +1,554 @@
+package ca.mcgill.cs.comp303.rummy.ai;
+
+import ca.mcgill.cs.comp303.rummy.model.CardMask;
+import ca.mcgill.cs.comp303.rummy.model.DiscardEvaluation;
+import ca.mcgill.cs.comp303.rummy.model.FastRandom;
+import ca.mcgill.cs.comp303.rummy.model.GameEngine;
+
+/**
+ * Solves a fully known GameState: the order of the stock and the hand of
+ * the opponent are given. The value of a position is the number of points
+ * the player to move wins at the end of the hand, negative if it loses, 0
+ * if the hand is drawn, assuming that both players play perfectly.
+ *
+ * The solver runs an alpha-beta search with iterative deepening on the
+ * number of turns. Taking the discard does not use up the stock, so a
+ * hand can last long: a search stops at its horizon, where an unfinished
+ * hand is valued as a draw. A solve ends as soon as a search did not reach
+ * its horizon, since its values are then exact, or when its deadline is
+ * reached. Searched positions are kept in a TranspositionTable, indexed by
+ * Zobrist keys that are updated with each move. The keys cover the order
+ * of the stock, so the table stays valid from one solve to the next, even
+ * across different deals. Not threadsafe.
+ */
+final class EndgameSolver
+{
+	/**
+	 * The default memory budget of the transposition table, in bytes.
+	 */
+	static final long DEFAULT_MEMORY = 4 << 20;
+
+	private static final int NUM_CARDS = CardMask.DECK_SIZE;
+	private static final int INFINITY = Short.MAX_VALUE;
+	private static final int MAX_PLY = 2 * GameState.MAX_TURNS + 1;
+	private static final int CHECK_INTERVAL = 0xFF;
+	private static final long SEED = 0x5EED;
+
+	// Zobrist keys: cards in hands, cards at each position of the pile and
+	// of the stock, the card taken this turn, the player to move and the phase
+	private static final long[][] HAND_KEYS = new long[2][NUM_CARDS];
+	private static final long[][] PILE_KEYS = new long[NUM_CARDS][NUM_CARDS];
+	private static final long[][] STOCK_KEYS = new long[NUM_CARDS][NUM_CARDS];
+	private static final long[] TAKEN_KEYS = new long[NUM_CARDS + 1];
+	private static final long PLAYER_KEY;
+	private static final long DISCARD_KEY;
+
+	static
+	{
+		FastRandom lRandom = new FastRandom(SEED);
+		fill(HAND_KEYS, lRandom);
+		fill(PILE_KEYS, lRandom);
+		fill(STOCK_KEYS, lRandom);
+		for( int i = 0; i < TAKEN_KEYS.length; i++ )
+		{
+			TAKEN_KEYS[i] = lRandom.nextLong();
+		}
+		PLAYER_KEY = lRandom.nextLong();
+		DISCARD_KEY = lRandom.nextLong();
+	}
+
+	private final TranspositionTable aTable;
+
+	// The position being searched
+	private final long[] aHands = new long[2];
+	private final int[] aStock = new int[NUM_CARDS];
+	private int aStockSize;
+	private final int[] aPile = new int[NUM_CARDS];
+	private int aPileSize;
+	private int aPlayer;
+	private int aPhase;
+	private int aTaken;
+	private int aTurns;
+	private long aKey;
+
+	// One buffer of moves and of ordering scores per ply
+	private final int[][] aMoves = new int[MAX_PLY][GameState.MAX_MOVES];
+	private final int[][] aOrder = new int[MAX_PLY][GameState.MAX_MOVES];
+
+	// The root moves and their values, from the last completed search
+	private final int[] aRootMoves = new int[GameState.MAX_MOVES];
+	private final int[] aRootValues = new int[GameState.MAX_MOVES];
+	private final int[] aValues = new int[GameState.MAX_MOVES];
+	private int aRootCount;
+	private int aDepth;
+	private boolean aExact;
+
+	private long aDeadline;
+	private long aNodes;
+	private boolean aAborted;
+	private boolean aHorizon;
+
+	/**
+	 * Creates a solver with a transposition table of DEFAULT_MEMORY bytes.
+	 */
+	EndgameSolver()
+	{
+		this(DEFAULT_MEMORY);
+	}
+
+	/**
+	 * Creates a solver.
+	 * @param pMemory The memory budget of the transposition table, in bytes.
+	 */
+	EndgameSolver(long pMemory)
+	{
+		this(new TranspositionTable(pMemory));
+	}
+
+	/**
+	 * Creates a solver that stores its positions in pTable. Since the keys
+	 * cover the whole position, solvers and deals can share a table, as long
+	 * as its users do not run at the same time.
+	 * @param pTable The transposition table.
+	 */
+	EndgameSolver(TranspositionTable pTable)
+	{
+		aTable = pTable;
+	}
+
+	/**
+	 * Solves a position, deepening the search until its values are exact,
+	 * the search reaches pMaxTurns turns, or the deadline passes.
+	 * @param pState The position, which is not changed.
+	 * @param pMaxTurns The largest number of turns to search.
+	 * @param pDeadline The value of System.nanoTime() at which to give up.
+	 * @return True if at least one search completed, in which case the
+	 * values of its root moves are available.
+	 * @pre !pState.isOver() && pMaxTurns > 0
+	 */
+	boolean solve(GameState pState, int pMaxTurns, long pDeadline)
+	{
+		load(pState);
+		aTable.newGeneration();
+		aDeadline = pDeadline;
+		aAborted = false;
+		aNodes = 0;
+		aRootCount = 0;
+		aDepth = 0;
+		aExact = false;
+		int lMaxDepth = Math.min(pMaxTurns, TranspositionTable.MAX_DEPTH - 1);
+		for( int lDepth = 1; lDepth <= lMaxDepth && !aExact; lDepth++ )
+		{
+			aHorizon = false;
+			int lCount = generate(0, TranspositionTable.move(aTable.probe(aKey)));
+			for( int i = 0; i < lCount && !aAborted; i++ )
+			{
+				aValues[i] = child(aMoves[0][i], lDepth, 0, -INFINITY, INFINITY);
+			}
+			if( aAborted )
+			{
+				break;
+			}
+			System.arraycopy(aMoves[0], 0, aRootMoves, 0, lCount);
+			System.arraycopy(aValues, 0, aRootValues, 0, lCount);
+			aRootCount = lCount;
+			aDepth = lDepth;
+			aExact = !aHorizon;
+			aTable.store(aKey, depthOf(lDepth), TranspositionTable.EXACT, getValue(getBest()), aRootMoves[getBest()]);
+		}
+		return aRootCount > 0;
+	}
+
+	/**
+	 * @return The number of legal moves at the root.
+	 */
+	int getMoveCount()
+	{
+		return aRootCount;
+	}
+
+	/**
+	 * @param pIndex The index of a root move.
+	 * @return The move, as in GameState.
+	 */
+	int getMove(int pIndex)
+	{
+		return aRootMoves[pIndex];
+	}
+
+	/**
+	 * @param pIndex The index of a root move.
+	 * @return The value of the move for the player to move.
+	 */
+	int getValue(int pIndex)
+	{
+		return aRootValues[pIndex];
+	}
+
+	/**
+	 * @return The index of the first root move of highest value.
+	 * @pre getMoveCount() > 0
+	 */
+	int getBest()
+	{
+		int lBest = 0;
+		for( int i = 1; i < aRootCount; i++ )
+		{
+			if( aRootValues[i] > aRootValues[lBest] )
+			{
+				lBest = i;
+			}
+		}
+		return lBest;
+	}
+
+	/**
+	 * @return The number of turns of the last completed search.
+	 */
+	int getDepth()
+	{
+		return aDepth;
+	}
+
+	/**
+	 * @return True if the values of the last completed search are exact.
+	 */
+	boolean isExact()
+	{
+		return aExact;
+	}
+
+	/**
+	 * @return The number of positions visited by the last solve.
+	 */
+	long getNodes()
+	{
+		return aNodes;
+	}
+
+	/**
+	 * Removes every position from the transposition table.
+	 */
+	void clear()
+	{
+		aTable.clear();
+	}
+
+	/*
+	 * Returns the value for the player to move of the position after its
+	 * move pMove, with pDepth turns left to search.
+	 */
+	private int child(int pMove, int pDepth, int pPly, int pAlpha, int pBeta)
+	{
+		if( aPhase == GameState.DRAW )
+		{
+			int lTaken = aTaken;
+			int lCard = draw(pMove);
+			int lValue = search(pDepth - 1, pPly + 1, pAlpha, pBeta);
+			undraw(pMove, lCard, lTaken);
+			return lValue;
+		}
+		int lCard = pMove % GameState.KNOCK;
+		long lHand = aHands[aPlayer] & ~(1L << lCard);
+		if( pMove >= GameState.KNOCK )
+		{
+			return GameState.knockPoints(lHand, aHands[1 - aPlayer]);
+		}
+		int lTaken = aTaken;
+		discard(lCard);
+		int lValue = -search(pDepth, pPly + 1, -pBeta, -pAlpha);
+		undiscard(lCard, lTaken);
+		return lValue;
+	}
+
+	/*
+	 * Returns the value of the current position for the player to move,
+	 * or a bound of it outside of [pAlpha, pBeta].
+	 */
+	private int search(int pDepth, int pPly, int pAlpha, int pBeta)
+	{
+		if( (++aNodes & CHECK_INTERVAL) == 0 && System.nanoTime() > aDeadline )
+		{
+			aAborted = true;
+		}
+		if( aAborted )
+		{
+			return 0;
+		}
+		if( aPhase == GameState.DRAW )
+		{
+			if( aStockSize <= GameEngine.MIN_STOCK || aTurns >= GameState.MAX_TURNS )
+			{
+				return 0;
+			}
+			if( pDepth == 0 )
+			{
+				aHorizon = true;
+				return 0;
+			}
+		}
+
+		int lAlpha = pAlpha;
+		int lBestMove = GameState.NONE;
+		long lEntry = aTable.probe(aKey);
+		if( lEntry != 0 )
+		{
+			lBestMove = TranspositionTable.move(lEntry);
+			if( TranspositionTable.depth(lEntry) >= pDepth )
+			{
+				int lValue = TranspositionTable.value(lEntry);
+				int lBound = TranspositionTable.bound(lEntry);
+				if( lBound == TranspositionTable.EXACT || lBound == TranspositionTable.LOWER && lValue >= pBeta
+						|| lBound == TranspositionTable.UPPER && lValue <= pAlpha )
+				{
+					aHorizon |= TranspositionTable.depth(lEntry) < TranspositionTable.MAX_DEPTH;
+					return lValue;
+				}
+			}
+		}
+
+		// The horizon of the subtree is tracked, so that exact results can be reused at any depth
+		boolean lHorizon = aHorizon;
+		aHorizon = false;
+		int lCount = generate(pPly, lBestMove);
+		int lBest = -INFINITY;
+		for( int i = 0; i < lCount; i++ )
+		{
+			int lMove = aMoves[pPly][i];
+			int lValue = child(lMove, pDepth, pPly, lAlpha, pBeta);
+			if( aAborted )
+			{
+				return 0;
+			}
+			if( lValue > lBest )
+			{
+				lBest = lValue;
+				lBestMove = lMove;
+				if( lValue > lAlpha )
+				{
+					lAlpha = lValue;
+					if( lAlpha >= pBeta )
+					{
+						break;
+					}
+				}
+			}
+		}
+
+		int lBound = TranspositionTable.EXACT;
+		if( lBest <= pAlpha )
+		{
+			lBound = TranspositionTable.UPPER;
+		}
+		else if( lBest >= pBeta )
+		{
+			lBound = TranspositionTable.LOWER;
+		}
+		int lDepth = pDepth;
+		if( !aHorizon )
+		{
+			lDepth = TranspositionTable.MAX_DEPTH;
+		}
+		aTable.store(aKey, lDepth, lBound, lBest, lBestMove);
+		aHorizon |= lHorizon;
+		return lBest;
+	}
+
+	/*
+	 * Writes the legal moves of the current position in aMoves[pPly], the
+	 * most promising first, and returns their number. pFirst, if legal, is
+	 * searched first.
+	 */
+	private int generate(int pPly, int pFirst)
+	{
+		int[] lMoves = aMoves[pPly];
+		int[] lOrder = aOrder[pPly];
+		int lCount = 0;
+		if( aPhase == GameState.DRAW )
+		{
+			lMoves[0] = GameState.STOCK;
+			lMoves[1] = GameState.PILE;
+			lOrder[0] = 0;
+			lOrder[1] = 0;
+			if( GameState.completesMeld(aHands[aPlayer], aPile[aPileSize - 1]) )
+			{
+				lOrder[1] = 1;
+			}
+			lCount = 2;
+		}
+		else
+		{
+			long lHand = aHands[aPlayer];
+			DiscardEvaluation lDiscards = DiscardEvaluation.evaluate(lHand);
+			for( long lCards = lHand; lCards != 0; lCards &= lCards - 1 )
+			{
+				int lCard = CardMask.first(lCards);
+				if( lCard == aTaken )
+				{
+					continue;
+				}
+				// Knocks first, gin before all, then the discards that leave the least deadwood
+				int lDeadwood = lDiscards.getDeadwood(lCard);
+				if( lDiscards.canKnock(lCard) )
+				{
+					lMoves[lCount] = lCard + GameState.KNOCK;
+					lOrder[lCount++] = 2 * NUM_CARDS - lDeadwood;
+				}
+				lMoves[lCount] = lCard;
+				lOrder[lCount++] = -lDeadwood;
+			}
+		}
+		for( int i = 0; i < lCount; i++ )
+		{
+			if( lMoves[i] == pFirst )
+			{
+				lOrder[i] = INFINITY;
+			}
+		}
+		// Insertion sort, by decreasing order
+		for( int i = 1; i < lCount; i++ )
+		{
+			int lMove = lMoves[i];
+			int lKey = lOrder[i];
+			int j = i - 1;
+			while( j >= 0 && lOrder[j] < lKey )
+			{
+				lMoves[j + 1] = lMoves[j];
+				lOrder[j + 1] = lOrder[j];
+				j--;
+			}
+			lMoves[j + 1] = lMove;
+			lOrder[j + 1] = lKey;
+		}
+		return lCount;
+	}
+
+	private int draw(int pMove)
+	{
+		int lCard;
+		aKey ^= TAKEN_KEYS[aTaken + 1];
+		if( pMove == GameState.PILE )
+		{
+			lCard = aPile[--aPileSize];
+			aKey ^= PILE_KEYS[aPileSize][lCard];
+			aTaken = lCard;
+		}
+		else
+		{
+			lCard = aStock[--aStockSize];
+			aKey ^= STOCK_KEYS[aStockSize][lCard];
+			aTaken = GameState.NONE;
+		}
+		aKey ^= TAKEN_KEYS[aTaken + 1] ^ HAND_KEYS[aPlayer][lCard] ^ DISCARD_KEY;
+		aHands[aPlayer] |= 1L << lCard;
+		aPhase = GameState.DISCARD;
+		aTurns++;
+		return lCard;
+	}
+
+	private void undraw(int pMove, int pCard, int pTaken)
+	{
+		aTurns--;
+		aPhase = GameState.DRAW;
+		aHands[aPlayer] &= ~(1L << pCard);
+		aKey ^= TAKEN_KEYS[aTaken + 1] ^ HAND_KEYS[aPlayer][pCard] ^ DISCARD_KEY;
+		if( pMove == GameState.PILE )
+		{
+			aKey ^= PILE_KEYS[aPileSize][pCard];
+			aPile[aPileSize++] = pCard;
+		}
+		else
+		{
+			aKey ^= STOCK_KEYS[aStockSize][pCard];
+			aStock[aStockSize++] = pCard;
+		}
+		aTaken = pTaken;
+		aKey ^= TAKEN_KEYS[aTaken + 1];
+	}
+
+	private void discard(int pCard)
+	{
+		aHands[aPlayer] &= ~(1L << pCard);
+		aKey ^= HAND_KEYS[aPlayer][pCard] ^ PILE_KEYS[aPileSize][pCard] ^ DISCARD_KEY ^ PLAYER_KEY;
+		aKey ^= TAKEN_KEYS[aTaken + 1] ^ TAKEN_KEYS[0];
+		aPile[aPileSize++] = pCard;
+		aTaken = GameState.NONE;
+		aPlayer = 1 - aPlayer;
+		aPhase = GameState.DRAW;
+	}
+
+	private void undiscard(int pCard, int pTaken)
+	{
+		aPhase = GameState.DISCARD;
+		aPlayer = 1 - aPlayer;
+		aTaken = pTaken;
+		aPileSize--;
+		aKey ^= HAND_KEYS[aPlayer][pCard] ^ PILE_KEYS[aPileSize][pCard] ^ DISCARD_KEY ^ PLAYER_KEY;
+		aKey ^= TAKEN_KEYS[aTaken + 1] ^ TAKEN_KEYS[0];
+		aHands[aPlayer] |= 1L << pCard;
+	}
+
+	/*
+	 * Copies the position of pState and computes its key.
+	 */
+	private void load(GameState pState)
+	{
+		aKey = 0;
+		for( int lSeat = 0; lSeat < 2; lSeat++ )
+		{
+			aHands[lSeat] = pState.getHand(lSeat);
+			for( long lCards = aHands[lSeat]; lCards != 0; lCards &= lCards - 1 )
+			{
+				aKey ^= HAND_KEYS[lSeat][CardMask.first(lCards)];
+			}
+		}
+		aStockSize = pState.getStockSize();
+		for( int i = 0; i < aStockSize; i++ )
+		{
+			aStock[i] = pState.getStock(i);
+			aKey ^= STOCK_KEYS[i][aStock[i]];
+		}
+		aPileSize = pState.getPileSize();
+		for( int i = 0; i < aPileSize; i++ )
+		{
+			aPile[i] = pState.getPile(i);
+			aKey ^= PILE_KEYS[i][aPile[i]];
+		}
+		aPlayer = pState.getPlayer();
+		aPhase = pState.getPhase();
+		aTaken = pState.getTaken();
+		aTurns = pState.getTurns();
+		aKey ^= TAKEN_KEYS[aTaken + 1];
+		if( aPlayer == 1 )
+		{
+			aKey ^= PLAYER_KEY;
+		}
+		if( aPhase == GameState.DISCARD )
+		{
+			aKey ^= DISCARD_KEY;
+		}
+	}
+
+	/*
+	 * Returns the depth to store for a root searched pDepth turns deep.
+	 */
+	private int depthOf(int pDepth)
+	{
+		if( aExact )
+		{
+			return TranspositionTable.MAX_DEPTH;
+		}
+		return pDepth;
+	}
+
+	private static void fill(long[][] pKeys, FastRandom pRandom)
+	{
+		for( long[] lRow : pKeys )
+		{
+			for( int i = 0; i < lRow.length; i++ )
+			{
+				lRow[i] = pRandom.nextLong();
+			}
+		}
+	}
+}
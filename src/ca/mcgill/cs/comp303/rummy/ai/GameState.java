@@ -0,0 +1,431 @@
+package ca.mcgill.cs.comp303.rummy.ai;
+
+import java.util.Random;
+
+import ca.mcgill.cs.comp303.rummy.model.Card;
+import ca.mcgill.cs.comp303.rummy.model.CardMask;
+import ca.mcgill.cs.comp303.rummy.model.DiscardEvaluation;
+import ca.mcgill.cs.comp303.rummy.model.GameEngine;
+import ca.mcgill.cs.comp303.rummy.model.IMatchStrategy;
+import ca.mcgill.cs.comp303.rummy.model.LayoffEngine;
+import ca.mcgill.cs.comp303.rummy.model.Matching;
+import ca.mcgill.cs.comp303.rummy.model.MeldCatalog;
+import ca.mcgill.cs.comp303.rummy.model.OptimalMatchStrategy;
+
+/**
+ * A complete, fully known position of a hand, after the upcard has been
+ * offered, with the rules of GameEngine. Hands are masks and the stock
+ * and the discard pile are arrays of card indices, so that a state can be
+ * reset and played out many times per move without allocating cards.
+ * Not threadsafe.
+ *
+ * Moves are ints. In the DRAW phase, the moves are STOCK and PILE. In the
+ * DISCARD phase, the moves are the index of the card to discard, plus
+ * KNOCK if the player knocks right after. The same moves identify the
+ * moves of a player as seen by the opponent.
+ */
+final class GameState
+{
+	static final int DRAW = 0;
+	static final int DISCARD = 1;
+	static final int OVER = 2;
+
+	static final int STOCK = 0;
+	static final int PILE = 1;
+	static final int KNOCK = CardMask.DECK_SIZE;
+
+	/**
+	 * The largest number of legal moves in a position.
+	 */
+	static final int MAX_MOVES = 2 * (GameEngine.HAND_SIZE + 1);
+
+	static final int NONE = -1;
+
+	/**
+	 * The number of turns after which a hand is drawn: players could take
+	 * each other's discards forever.
+	 */
+	static final int MAX_TURNS = 100;
+
+	private static final IMatchStrategy EVALUATOR = new OptimalMatchStrategy();
+	private static final int CONNECTION_WEIGHT = 4;
+	private static final int MAX_POINTS = 50;
+
+	private final long[] aHands = new long[2];
+	private final int[] aStock = new int[CardMask.DECK_SIZE];
+	private int aStockSize;
+	private final int[] aPile = new int[CardMask.DECK_SIZE];
+	private int aPileSize;
+	private int aPlayer;
+	private int aPhase;
+	private int aTaken = NONE;
+	private int aWinner = NONE;
+	private int aPoints;
+	private int aTurns;
+
+	/**
+	 * Sets the position. The hands of the players must include any card
+	 * drawn this turn.
+	 * @param pHand0 The hand of the player in seat 0.
+	 * @param pHand1 The hand of the player in seat 1.
+	 * @param pPile The discard pile, bottom first.
+	 * @param pPileSize The number of cards of pPile to use.
+	 * @param pPlayer The player to move.
+	 * @param pPhase DRAW or DISCARD.
+	 * @param pTaken In the DISCARD phase, the card taken from the pile this turn, which cannot be discarded, or NONE.
+	 */
+	void set(long pHand0, long pHand1, int[] pPile, int pPileSize, int pPlayer, int pPhase, int pTaken)
+	{
+		aHands[0] = pHand0;
+		aHands[1] = pHand1;
+		System.arraycopy(pPile, 0, aPile, 0, pPileSize);
+		aPileSize = pPileSize;
+		aStockSize = 0;
+		aPlayer = pPlayer;
+		aPhase = pPhase;
+		aTaken = pTaken;
+		aWinner = NONE;
+		aPoints = 0;
+		aTurns = 0;
+	}
+
+	/**
+	 * Sets the stock.
+	 * @param pCards The cards of the stock, top last.
+	 * @param pFrom The index of the first card of the stock in pCards.
+	 * @param pSize The number of cards of the stock.
+	 */
+	void setStock(int[] pCards, int pFrom, int pSize)
+	{
+		System.arraycopy(pCards, pFrom, aStock, 0, pSize);
+		aStockSize = pSize;
+		if( aPhase == DRAW )
+		{
+			checkStock();
+		}
+	}
+
+	int getPlayer()
+	{
+		return aPlayer;
+	}
+
+	int getPhase()
+	{
+		return aPhase;
+	}
+
+	boolean isOver()
+	{
+		return aPhase == OVER;
+	}
+
+	/**
+	 * @param pSeat A seat.
+	 * @return The hand of the player in that seat, including any card drawn this turn.
+	 */
+	long getHand(int pSeat)
+	{
+		return aHands[pSeat];
+	}
+
+	int getStockSize()
+	{
+		return aStockSize;
+	}
+
+	/**
+	 * @param pPosition A position in the stock, 0 being the bottom.
+	 * @return The card at pPosition.
+	 */
+	int getStock(int pPosition)
+	{
+		return aStock[pPosition];
+	}
+
+	int getPileSize()
+	{
+		return aPileSize;
+	}
+
+	/**
+	 * @param pPosition A position in the discard pile, 0 being the bottom.
+	 * @return The card at pPosition.
+	 */
+	int getPile(int pPosition)
+	{
+		return aPile[pPosition];
+	}
+
+	/**
+	 * @return In the DISCARD phase, the card taken from the pile this turn, or NONE.
+	 */
+	int getTaken()
+	{
+		return aTaken;
+	}
+
+	/**
+	 * @return The number of turns played since the position was set.
+	 */
+	int getTurns()
+	{
+		return aTurns;
+	}
+
+	/**
+	 * Writes the legal moves of the player to move in pMoves.
+	 * @param pMoves Receives the moves; must have MAX_MOVES elements.
+	 * @return The number of legal moves.
+	 */
+	int legalMoves(int[] pMoves)
+	{
+		if( aPhase == DRAW )
+		{
+			pMoves[0] = STOCK;
+			pMoves[1] = PILE;
+			return 2;
+		}
+		if( aPhase == OVER )
+		{
+			return 0;
+		}
+		long lHand = aHands[aPlayer];
+		DiscardEvaluation lDiscards = DiscardEvaluation.evaluate(lHand);
+		int lCount = 0;
+		for( long lCards = lHand; lCards != 0; lCards &= lCards - 1 )
+		{
+			int lCard = CardMask.first(lCards);
+			if( lCard == aTaken )
+			{
+				continue;
+			}
+			pMoves[lCount++] = lCard;
+			if( lDiscards.canKnock(lCard) )
+			{
+				pMoves[lCount++] = lCard + KNOCK;
+			}
+		}
+		return lCount;
+	}
+
+	/**
+	 * Plays a legal move.
+	 * @param pMove The move.
+	 */
+	void play(int pMove)
+	{
+		if( aPhase == DRAW )
+		{
+			int lCard;
+			if( pMove == PILE )
+			{
+				lCard = aPile[--aPileSize];
+				aTaken = lCard;
+			}
+			else
+			{
+				lCard = aStock[--aStockSize];
+				aTaken = NONE;
+			}
+			aHands[aPlayer] |= 1L << lCard;
+			aPhase = DISCARD;
+			aTurns++;
+			return;
+		}
+
+		int lCard = pMove % KNOCK;
+		aHands[aPlayer] &= ~(1L << lCard);
+		aPile[aPileSize++] = lCard;
+		if( pMove >= KNOCK )
+		{
+			score(aPlayer);
+			return;
+		}
+		aPlayer = 1 - aPlayer;
+		aPhase = DRAW;
+		aTaken = NONE;
+		checkStock();
+	}
+
+	/**
+	 * Plays the hand to its end with a fast heuristic policy for both
+	 * players: take the top discard only if it completes a meld, discard
+	 * the unmatched card that is worth the most and is least connected to
+	 * the rest of the hand, and knock as soon as possible.
+	 * @param pRandom Breaks the ties between equivalent discards.
+	 */
+	void playOut(Random pRandom)
+	{
+		while( aPhase != OVER )
+		{
+			if( aPhase == DRAW )
+			{
+				int lMove = STOCK;
+				if( completesMeld(aHands[aPlayer], aPile[aPileSize - 1]) )
+				{
+					lMove = PILE;
+				}
+				play(lMove);
+			}
+			else
+			{
+				int lCard = chooseDiscard(aHands[aPlayer], aTaken, pRandom);
+				int lMove = lCard;
+				if( canKnock(aHands[aPlayer] & ~(1L << lCard)) )
+				{
+					lMove += KNOCK;
+				}
+				play(lMove);
+			}
+		}
+	}
+
+	/**
+	 * @param pSeat A seat.
+	 * @return The value of the final position for the player in that seat,
+	 * between 0 (a heavy loss) and 1 (a big win). A draw is worth 0.5.
+	 * @pre isOver()
+	 */
+	double getReward(int pSeat)
+	{
+		if( aWinner == NONE )
+		{
+			return 0.5;
+		}
+		double lReward = 0.75 + 0.25 * Math.min(aPoints, MAX_POINTS) / MAX_POINTS;
+		if( aWinner == pSeat )
+		{
+			return lReward;
+		}
+		return 1 - lReward;
+	}
+
+	/**
+	 * @param pHand A hand.
+	 * @param pCard A card that is not in the hand.
+	 * @return True if pCard forms a meld with cards of pHand.
+	 */
+	static boolean completesMeld(long pHand, int pCard)
+	{
+		long lHand = pHand | (1L << pCard);
+		for( int i = 0; i < MeldCatalog.countContaining(pCard); i++ )
+		{
+			if( (MeldCatalog.getContaining(pCard, i) & ~lHand) == 0 )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param pHand A hand with a card drawn.
+	 * @param pTaken A card that cannot be discarded, or NONE.
+	 * @param pRandom Breaks the ties.
+	 * @return The card to discard, according to the playout policy.
+	 */
+	static int chooseDiscard(long pHand, int pTaken, Random pRandom)
+	{
+		long lAllowed = pHand;
+		if( pTaken != NONE )
+		{
+			lAllowed &= ~(1L << pTaken);
+		}
+		long lCandidates = EVALUATOR.match(pHand).getUnmatched() & lAllowed;
+		if( lCandidates == 0 )
+		{
+			// Every card is matched: break the melds as little as possible
+			return DiscardEvaluation.evaluate(pHand).getBest(lAllowed);
+		}
+
+		int lBest = NONE;
+		int lBestValue = Integer.MIN_VALUE;
+		int lTies = 0;
+		for( long lCards = lCandidates; lCards != 0; lCards &= lCards - 1 )
+		{
+			int lCard = CardMask.first(lCards);
+			int lValue = Card.scoreOf(lCard) - CONNECTION_WEIGHT * connections(pHand, lCard);
+			if( lValue > lBestValue )
+			{
+				lBest = lCard;
+				lBestValue = lValue;
+				lTies = 1;
+			}
+			else if( lValue == lBestValue && pRandom.nextInt(++lTies) == 0 )
+			{
+				lBest = lCard;
+			}
+		}
+		return lBest;
+	}
+
+	/*
+	 * Counts how close pCard is to forming melds with the other cards of
+	 * pHand: cards of the same rank and neighbours in the same suit count
+	 * twice, cards two ranks away in the same suit once.
+	 */
+	private static int connections(long pHand, int pCard)
+	{
+		long lOthers = pHand & ~(1L << pCard);
+		int lRank = pCard % CardMask.SUIT_SIZE;
+		int lConnections = 2 * Long.bitCount(lOthers & CardMask.rank(lRank));
+		int lRanks = CardMask.ranksOf(lOthers, pCard / CardMask.SUIT_SIZE);
+		lConnections += 2 * Integer.bitCount(lRanks & ((1 << (lRank + 1)) | ((1 << lRank) >> 1)));
+		lConnections += Integer.bitCount(lRanks & ((1 << (lRank + 2)) | ((1 << lRank) >> 2)));
+		return lConnections;
+	}
+
+	private static boolean canKnock(long pHand)
+	{
+		return EVALUATOR.match(pHand).getDeadwood() <= DiscardEvaluation.MAX_KNOCK;
+	}
+
+	private void checkStock()
+	{
+		if( aStockSize <= GameEngine.MIN_STOCK || aTurns >= MAX_TURNS )
+		{
+			aPhase = OVER;
+			aWinner = NONE;
+		}
+	}
+
+	/*
+	 * Scores the hand after pKnocker knocks.
+	 */
+	private void score(int pKnocker)
+	{
+		int lPoints = knockPoints(aHands[pKnocker], aHands[1 - pKnocker]);
+		aPhase = OVER;
+		aWinner = pKnocker;
+		aPoints = lPoints;
+		if( lPoints < 0 )
+		{
+			aWinner = 1 - pKnocker;
+			aPoints = -lPoints;
+		}
+	}
+
+	/**
+	 * Scores a knock like GameEngine.
+	 * @param pKnocker The hand of the knocker, after its discard.
+	 * @param pDefender The hand of its opponent.
+	 * @return The points won by the knocker, or minus the points won by
+	 * its opponent if the opponent undercuts it.
+	 */
+	static int knockPoints(long pKnocker, long pDefender)
+	{
+		Matching lKnocker = EVALUATOR.match(pKnocker);
+		int lKnockerDeadwood = lKnocker.getDeadwood();
+		if( lKnockerDeadwood == 0 )
+		{
+			return EVALUATOR.match(pDefender).getDeadwood() + GameEngine.GIN_BONUS;
+		}
+		int lDefenderDeadwood = LayoffEngine.solve(pDefender, lKnocker).getDeadwood();
+		if( lDefenderDeadwood <= lKnockerDeadwood )
+		{
+			return -(GameEngine.UNDERCUT_BONUS + lKnockerDeadwood - lDefenderDeadwood);
+		}
+		return lDefenderDeadwood - lKnockerDeadwood;
+	}
+}
@@ -0,0 +1,274 @@
+package ca.mcgill.cs.comp303.rummy.ai;
+
+import ca.mcgill.cs.comp303.rummy.model.Card;
+import ca.mcgill.cs.comp303.rummy.model.CardMask;
+import ca.mcgill.cs.comp303.rummy.model.GameAdapter;
+import ca.mcgill.cs.comp303.rummy.model.GameEngine;
+import ca.mcgill.cs.comp303.rummy.model.MeldCatalog;
+import ca.mcgill.cs.comp303.rummy.model.Player;
+
+/**
+ * What a player knows of the cards of the current hand, kept as card
+ * masks (see CardMask) and updated in constant time from the events of
+ * the engine:
+ * <ul>
+ * <li>the cards of the player;</li>
+ * <li>the cards known to be in the hand of the opponent, because it took them from the discard pile;</li>
+ * <li>the cards the opponent does not want, because it refused them or discarded them;</li>
+ * <li>the dead cards, buried in the discard pile under its top card;</li>
+ * <li>the unseen cards, in the hand of the opponent or in the stock.</li>
+ * </ul>
+ * The engine does not reveal the cards the opponent draws from the stock
+ * to a player, and the tracker ignores them even when it is notified of
+ * them by other means. The probability estimates assume that the
+ * unseen cards are equally likely to be anywhere they could be.
+ *
+ * A tracker follows the hand once it is added as a listener to the engine
+ * of its player. Not threadsafe.
+ */
+public class KnowledgeTracker extends GameAdapter
+{
+	private static final int NUM_CARDS = CardMask.DECK_SIZE;
+	private static final int INITIAL_STOCK = NUM_CARDS - 2 * GameEngine.HAND_SIZE - 1;
+	private static final int MIN_MELD = 3;
+
+	private final Player aPlayer;
+	private int aSeat = -1;
+	private long aOwn;
+	private long aOpponent;
+	private long aNotWanted;
+	private final int[] aPile = new int[NUM_CARDS];
+	private int aPileSize;
+	private long aPileCards;
+	private int aStockSize;
+
+	/**
+	 * Creates a tracker for the knowledge of pPlayer.
+	 * @param pPlayer The player whose knowledge is tracked.
+	 * @pre pPlayer != null
+	 */
+	public KnowledgeTracker(Player pPlayer)
+	{
+		aPlayer = pPlayer;
+	}
+
+	@Override
+	public void handStarted(int pDealer, Card pUpcard)
+	{
+		aSeat = aPlayer.getSeat();
+		aOwn = aPlayer.getHand().getCardMask();
+		aOpponent = 0;
+		aNotWanted = 0;
+		aPile[0] = pUpcard.index();
+		aPileSize = 1;
+		aPileCards = CardMask.of(pUpcard);
+		aStockSize = INITIAL_STOCK;
+	}
+
+	@Override
+	public void upcardRefused(int pPlayer)
+	{
+		if( pPlayer != aSeat )
+		{
+			aNotWanted |= 1L << aPile[aPileSize - 1];
+		}
+	}
+
+	@Override
+	public void cardDrawn(int pPlayer, Card pCard, boolean pFromDiscard)
+	{
+		if( pFromDiscard )
+		{
+			long lCard = 1L << aPile[--aPileSize];
+			aPileCards &= ~lCard;
+			if( pPlayer == aSeat )
+			{
+				aOwn |= lCard;
+			}
+			else
+			{
+				aOpponent |= lCard;
+			}
+		}
+		else
+		{
+			aStockSize--;
+			if( pPlayer == aSeat )
+			{
+				aOwn |= CardMask.of(pCard);
+			}
+			else if( aPileSize > 0 )
+			{
+				// The opponent passed the top of the discard pile
+				aNotWanted |= 1L << aPile[aPileSize - 1];
+			}
+		}
+	}
+
+	@Override
+	public void cardDiscarded(int pPlayer, Card pCard)
+	{
+		long lCard = CardMask.of(pCard);
+		aPile[aPileSize++] = pCard.index();
+		aPileCards |= lCard;
+		if( pPlayer == aSeat )
+		{
+			aOwn &= ~lCard;
+		}
+		else
+		{
+			aOpponent &= ~lCard;
+			aNotWanted |= lCard;
+		}
+	}
+
+	/**
+	 * @return The mask of the cards of the player.
+	 */
+	public long getOwn()
+	{
+		return aOwn;
+	}
+
+	/**
+	 * @return The mask of the cards known to be in the hand of the opponent.
+	 */
+	public long getOpponentKnown()
+	{
+		return aOpponent;
+	}
+
+	/**
+	 * @return The mask of the cards the opponent refused or discarded during this hand.
+	 */
+	public long getNotWanted()
+	{
+		return aNotWanted;
+	}
+
+	/**
+	 * @return The mask of the cards of the discard pile, including its top card.
+	 */
+	public long getPile()
+	{
+		return aPileCards;
+	}
+
+	/**
+	 * @return The number of cards of the discard pile.
+	 */
+	public int getPileSize()
+	{
+		return aPileSize;
+	}
+
+	/**
+	 * Copies the discard pile, in the order in which the cards were discarded.
+	 * @param pPile The array that receives the indices of the cards of the
+	 * pile, bottom first. Must hold at least getPileSize() cards.
+	 * @return The number of cards copied, that is, getPileSize().
+	 */
+	public int copyPile(int[] pPile)
+	{
+		System.arraycopy(aPile, 0, pPile, 0, aPileSize);
+		return aPileSize;
+	}
+
+	/**
+	 * @return The mask of the cards of the discard pile that cannot be drawn any more.
+	 */
+	public long getDead()
+	{
+		if( aPileSize == 0 )
+		{
+			return 0;
+		}
+		return aPileCards & ~(1L << aPile[aPileSize - 1]);
+	}
+
+	/**
+	 * @return The mask of the cards that are either in the hand of the opponent or in the stock.
+	 */
+	public long getUnseen()
+	{
+		return CardMask.ALL & ~(aOwn | aOpponent | aPileCards);
+	}
+
+	/**
+	 * @return The number of cards in the stock.
+	 */
+	public int getStockSize()
+	{
+		return aStockSize;
+	}
+
+	/**
+	 * @return The number of cards in the hand of the opponent that the player has not seen.
+	 */
+	public int getOpponentHidden()
+	{
+		return Math.max(0, GameEngine.HAND_SIZE - Long.bitCount(aOpponent));
+	}
+
+	/**
+	 * @param pCard A card.
+	 * @return The probability that pCard is in the hand of the opponent.
+	 */
+	public double getHoldProbability(Card pCard)
+	{
+		return holdProbability(1L << pCard.index(), Long.bitCount(getUnseen()));
+	}
+
+	/**
+	 * Estimates the probability that the opponent needs pCard, that is,
+	 * that it holds two cards forming a meld with it. A card the opponent
+	 * refused or discarded is assumed to be still unwanted.
+	 * @param pCard A card.
+	 * @return The probability that pCard would complete a meld of the opponent.
+	 */
+	public double getNeedProbability(Card pCard)
+	{
+		int lCard = pCard.index();
+		if( (aNotWanted & (1L << lCard)) != 0 )
+		{
+			return 0;
+		}
+		// Cards the opponent cannot hold
+		long lOut = aOwn | aPileCards;
+		int lUnseen = Long.bitCount(getUnseen());
+		double lNone = 1;
+		for( int i = 0; i < MeldCatalog.countContaining(lCard); i++ )
+		{
+			long lMeld = MeldCatalog.getContaining(lCard, i);
+			long lOthers = lMeld & ~(1L << lCard);
+			if( Long.bitCount(lMeld) != MIN_MELD || (lOthers & lOut) != 0 )
+			{
+				continue;
+			}
+			double lBoth = 1;
+			for( long lCards = lOthers; lCards != 0; lCards &= lCards - 1 )
+			{
+				lBoth *= holdProbability(Long.lowestOneBit(lCards), lUnseen);
+			}
+			lNone *= 1 - lBoth;
+		}
+		return 1 - lNone;
+	}
+
+	/*
+	 * Returns the probability that the opponent holds the card pCard, given
+	 * the number of unseen cards.
+	 */
+	private double holdProbability(long pCard, int pUnseen)
+	{
+		if( (aOpponent & pCard) != 0 )
+		{
+			return 1;
+		}
+		if( (aOwn & pCard) != 0 || (aPileCards & pCard) != 0 || pUnseen == 0 )
+		{
+			return 0;
+		}
+		return Math.min(1, (double) getOpponentHidden() / pUnseen);
+	}
+}
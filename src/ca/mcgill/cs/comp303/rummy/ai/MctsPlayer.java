@@ -0,0 +1,576 @@
+package ca.mcgill.cs.comp303.rummy.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import ca.mcgill.cs.comp303.rummy.model.Card;
+import ca.mcgill.cs.comp303.rummy.model.CardMask;
+import ca.mcgill.cs.comp303.rummy.model.FastRandom;
+import ca.mcgill.cs.comp303.rummy.model.GameEngine;
+import ca.mcgill.cs.comp303.rummy.model.HandResult;
+import ca.mcgill.cs.comp303.rummy.model.IGameListener;
+import ca.mcgill.cs.comp303.rummy.model.Player;
+
+/**
+ * A computer player that chooses its draws, discards and knocks with
+ * determinized Monte Carlo tree search. Before each decision, every search
+ * thread repeatedly deals the cards it cannot see (the hand of the opponent
+ * and the stock) in a way that is consistent with what it has seen, walks
+ * its tree of moves as seen by this player, and plays the hand out with a
+ * fast heuristic policy. The move most visited over all the threads is
+ * played.
+ *
+ * Each decision takes about the time budget of the player, whatever the
+ * number of threads: more threads play out more deals in the same time.
+ * Trees are kept from one decision to the next: the subtree of
+ * the moves actually played, including the moves of the opponent, becomes
+ * the root of the next search.
+ *
+ * When only a few draws are left in the stock, the player switches to
+ * exact play: each search thread deals the unseen cards again and again,
+ * solves every deal with an EndgameSolver, and the move with the best
+ * average value over all the deals is played.
+ *
+ * The player follows the hand as an IGameListener, which a GameEngine
+ * arranges automatically, and keeps what it knows of the unseen cards in
+ * a KnowledgeTracker. A player that does not receive the events of
+ * the hand falls back to the playout policy.
+ */
+public class MctsPlayer extends Player implements IGameListener
+{
+	/**
+	 * The default time budget of a decision, in milliseconds.
+	 */
+	public static final long DEFAULT_BUDGET = 5;
+
+	/**
+	 * The default number of draws left in the stock from which the endgame is solved.
+	 */
+	public static final int DEFAULT_ENDGAME_DRAWS = 1;
+
+	private static final int NUM_CARDS = CardMask.DECK_SIZE;
+	private static final int MAX_DEPTH = 256;
+	// The turns searched beyond the draws left in the stock, for the draws from the pile
+	private static final int ENDGAME_SLACK = 1;
+
+	private final long aBudget;
+	private final Worker[] aWorkers;
+	private int aEndgameDraws = DEFAULT_ENDGAME_DRAWS;
+	private ThreadPoolExecutor aPool;
+
+	// What this player has seen of the current hand
+	private boolean aFollowing;
+	private final KnowledgeTracker aKnowledge = new KnowledgeTracker(this);
+	private int[] aMoves = new int[GameState.MAX_MOVES];
+	private int aMoveCount;
+
+	private boolean aTookPile;
+	private boolean aKnock = true;
+
+	/**
+	 * Creates a player with the default budget, that searches on all the available processors.
+	 */
+	public MctsPlayer()
+	{
+		this(DEFAULT_BUDGET, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a player.
+	 * @param pBudget The time budget of a decision, in milliseconds.
+	 * @param pThreads The number of search threads, including the thread of the game.
+	 * @pre pBudget >= 0 && pThreads > 0
+	 */
+	public MctsPlayer(long pBudget, int pThreads)
+	{
+		aBudget = TimeUnit.MILLISECONDS.toNanos(pBudget);
+		aWorkers = new Worker[pThreads];
+		FastRandom lRandom = new FastRandom();
+		for( int i = 0; i < pThreads; i++ )
+		{
+			aWorkers[i] = new Worker(lRandom.split());
+		}
+	}
+
+	/**
+	 * Sets when the player starts solving the endgame.
+	 * @param pDraws The number of draws left in the stock from which the
+	 * endgame is solved, or a negative number to never solve it.
+	 */
+	public void setEndgameDraws(int pDraws)
+	{
+		aEndgameDraws = pDraws;
+	}
+
+	@Override
+	protected boolean takeFirstCard(Card pTopStock, Card pTopDiscard)
+	{
+		aTookPile = GameState.completesMeld(getHand().getCardMask(), pTopDiscard.index());
+		return aTookPile;
+	}
+
+	@Override
+	protected boolean draw(Card pTopStock, Card pTopDiscard)
+	{
+		// The top of the stock is hidden information: it is ignored
+		int lMove = search(getHand().getCardMask(), GameState.DRAW, GameState.NONE);
+		if( lMove == GameState.NONE )
+		{
+			aTookPile = GameState.completesMeld(getHand().getCardMask(), pTopDiscard.index());
+		}
+		else
+		{
+			aTookPile = lMove == GameState.PILE;
+		}
+		return aTookPile;
+	}
+
+	@Override
+	protected Card discard()
+	{
+		Card lDrawn = getDrawnCard();
+		long lHand = getHand().getCardMask() | CardMask.of(lDrawn);
+		int lTaken = GameState.NONE;
+		if( aTookPile )
+		{
+			lTaken = lDrawn.index();
+		}
+		int lMove = search(lHand, GameState.DISCARD, lTaken);
+		if( lMove == GameState.NONE )
+		{
+			aKnock = true;
+			return Card.ofIndex(GameState.chooseDiscard(lHand, lTaken, aWorkers[0].aRandom));
+		}
+		aKnock = lMove >= GameState.KNOCK;
+		return Card.ofIndex(lMove % GameState.KNOCK);
+	}
+
+	@Override
+	protected boolean knock()
+	{
+		return aKnock;
+	}
+
+	@Override
+	public void handStarted(int pDealer, Card pUpcard)
+	{
+		aFollowing = getSeat() >= 0;
+		aKnowledge.handStarted(pDealer, pUpcard);
+		aMoveCount = 0;
+		aTookPile = false;
+		aKnock = true;
+		for( Worker lWorker : aWorkers )
+		{
+			lWorker.aRoot = null;
+		}
+	}
+
+	@Override
+	public void upcardRefused(int pPlayer)
+	{
+		aKnowledge.upcardRefused(pPlayer);
+	}
+
+	@Override
+	public void turnStarted(int pPlayer)
+	{}
+
+	@Override
+	public void cardDrawn(int pPlayer, Card pCard, boolean pFromDiscard)
+	{
+		aKnowledge.cardDrawn(pPlayer, pCard, pFromDiscard);
+		if( pFromDiscard )
+		{
+			played(GameState.PILE);
+		}
+		else
+		{
+			played(GameState.STOCK);
+		}
+	}
+
+	@Override
+	public void cardDiscarded(int pPlayer, Card pCard)
+	{
+		aKnowledge.cardDiscarded(pPlayer, pCard);
+		played(pCard.index());
+	}
+
+	@Override
+	public void knocked(int pPlayer, int pDeadwood)
+	{
+		aFollowing = false;
+	}
+
+	@Override
+	public void cardsLaidOff(int pPlayer, long pCards)
+	{}
+
+	@Override
+	public void handEnded(HandResult pResult)
+	{
+		aFollowing = false;
+	}
+
+	private void played(int pMove)
+	{
+		if( aMoveCount == aMoves.length )
+		{
+			aMoves = Arrays.copyOf(aMoves, aMoveCount * 2);
+		}
+		aMoves[aMoveCount++] = pMove;
+	}
+
+	/*
+	 * Searches the best move of this player, whose cards are pHand, in the
+	 * given phase. Returns GameState.NONE if the player does not follow the
+	 * hand or if no search could be completed.
+	 */
+	private int search(long pHand, int pPhase, int pTaken)
+	{
+		if( !aFollowing )
+		{
+			return GameState.NONE;
+		}
+		long lDeadline = System.nanoTime() + aBudget;
+		int lDraws = aKnowledge.getStockSize() - GameEngine.MIN_STOCK;
+		int lEndgameTurns = GameState.NONE;
+		if( lDraws <= aEndgameDraws )
+		{
+			lEndgameTurns = lDraws + ENDGAME_SLACK;
+		}
+		for( Worker lWorker : aWorkers )
+		{
+			lWorker.prepare(pHand, pPhase, pTaken, lDeadline, lEndgameTurns);
+		}
+		aMoveCount = 0;
+
+		List<Future<Void>> lFutures = new ArrayList<Future<Void>>();
+		for( int i = 1; i < aWorkers.length; i++ )
+		{
+			lFutures.add(getPool().submit(aWorkers[i]));
+		}
+		aWorkers[0].call();
+		// The trees are read below, so wait for every thread: they stop at the deadline anyway
+		boolean lInterrupted = false;
+		for( Future<Void> lFuture : lFutures )
+		{
+			while( true )
+			{
+				try
+				{
+					lFuture.get();
+					break;
+				}
+				catch( InterruptedException lException )
+				{
+					lInterrupted = true;
+				}
+				catch( ExecutionException lException )
+				{
+					throw new IllegalStateException(lException.getCause());
+				}
+			}
+		}
+		if( lInterrupted )
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		// A reused root may have children for cards drawn in other determinizations
+		long lAllowed = CardMask.ALL;
+		if( pPhase == GameState.DISCARD )
+		{
+			lAllowed = pHand;
+			if( pTaken != GameState.NONE )
+			{
+				lAllowed &= ~(1L << pTaken);
+			}
+		}
+		if( lEndgameTurns != GameState.NONE )
+		{
+			return bestSolved(lAllowed);
+		}
+		int[] lVisits = new int[2 * GameState.KNOCK];
+		int lBest = GameState.NONE;
+		for( Worker lWorker : aWorkers )
+		{
+			SearchNode lRoot = lWorker.aRoot;
+			for( int i = 0; i < lRoot.getChildCount(); i++ )
+			{
+				SearchNode lChild = lRoot.getChild(i);
+				if( (lAllowed & (1L << (lChild.getMove() % GameState.KNOCK))) == 0 )
+				{
+					continue;
+				}
+				lVisits[lChild.getMove()] += lChild.getVisits();
+				if( lBest == GameState.NONE || lVisits[lChild.getMove()] > lVisits[lBest] )
+				{
+					lBest = lChild.getMove();
+				}
+			}
+		}
+		return lBest;
+	}
+
+	/*
+	 * Returns the move among pAllowed with the best average value over the
+	 * deals solved by all the threads, or GameState.NONE if none was solved.
+	 */
+	private int bestSolved(long pAllowed)
+	{
+		long[] lTotals = new long[2 * GameState.KNOCK];
+		int lSolved = 0;
+		for( Worker lWorker : aWorkers )
+		{
+			for( int i = 0; i < lTotals.length; i++ )
+			{
+				lTotals[i] += lWorker.aTotals[i];
+			}
+			lSolved += lWorker.aSolved;
+		}
+		int lBest = GameState.NONE;
+		if( lSolved == 0 )
+		{
+			return lBest;
+		}
+		// Every deal has the same legal moves, so totals compare like averages
+		for( int lMove = 0; lMove < lTotals.length; lMove++ )
+		{
+			boolean lLegal = false;
+			for( Worker lWorker : aWorkers )
+			{
+				lLegal |= lWorker.aSolvedMoves[lMove];
+			}
+			if( lLegal && (pAllowed & (1L << (lMove % GameState.KNOCK))) != 0
+					&& (lBest == GameState.NONE || lTotals[lMove] > lTotals[lBest]) )
+			{
+				lBest = lMove;
+			}
+		}
+		return lBest;
+	}
+
+	private synchronized ThreadPoolExecutor getPool()
+	{
+		if( aPool == null )
+		{
+			int lThreads = aWorkers.length - 1;
+			aPool = new ThreadPoolExecutor(lThreads, lThreads, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactory()
+					{
+						@Override
+						public Thread newThread(Runnable pTask)
+						{
+							Thread lThread = new Thread(pTask, "mcts-search");
+							lThread.setDaemon(true);
+							return lThread;
+						}
+					});
+			// Idle players do not keep threads
+			aPool.allowCoreThreadTimeOut(true);
+		}
+		return aPool;
+	}
+
+	/**
+	 * A search thread, with its own tree, generator and scratch state.
+	 */
+	private final class Worker implements Callable<Void>
+	{
+		private final FastRandom aRandom;
+		private final GameState aState = new GameState();
+		private final int[] aLegal = new int[GameState.MAX_MOVES];
+		private final int[] aUnseen = new int[NUM_CARDS];
+		private final int[] aPile = new int[NUM_CARDS];
+		private final SearchNode[] aPath = new SearchNode[MAX_DEPTH];
+		private SearchNode aRoot;
+		private EndgameSolver aSolver;
+		private final long[] aTotals = new long[2 * GameState.KNOCK];
+		private final boolean[] aSolvedMoves = new boolean[2 * GameState.KNOCK];
+		private int aSolved;
+		private int aEndgameTurns;
+		private long aHand;
+		private int aPhase;
+		private int aTaken;
+		private long aDeadline;
+
+		Worker(FastRandom pRandom)
+		{
+			aRandom = pRandom;
+		}
+
+		/*
+		 * Moves the root to the subtree of the moves played since the last
+		 * search, and sets the position to search. The endgame is solved
+		 * pEndgameTurns deep, unless it is GameState.NONE.
+		 */
+		void prepare(long pHand, int pPhase, int pTaken, long pDeadline, int pEndgameTurns)
+		{
+			for( int i = 0; i < aMoveCount && aRoot != null; i++ )
+			{
+				aRoot = aRoot.findChild(aMoves[i]);
+			}
+			if( aRoot == null )
+			{
+				aRoot = new SearchNode();
+			}
+			aHand = pHand;
+			aPhase = pPhase;
+			aTaken = pTaken;
+			aDeadline = pDeadline;
+			aEndgameTurns = pEndgameTurns;
+			Arrays.fill(aTotals, 0);
+			Arrays.fill(aSolvedMoves, false);
+			aSolved = 0;
+		}
+
+		@Override
+		public Void call()
+		{
+			do
+			{
+				if( aEndgameTurns == GameState.NONE )
+				{
+					iterate();
+				}
+				else
+				{
+					solve();
+				}
+			}
+			while( System.nanoTime() < aDeadline );
+			return null;
+		}
+
+		/*
+		 * Solves a deal of the unseen cards, and adds the values of the
+		 * moves to their totals if the solve completed.
+		 */
+		private void solve()
+		{
+			determinize();
+			if( aState.isOver() )
+			{
+				return;
+			}
+			if( aSolver == null )
+			{
+				aSolver = new EndgameSolver();
+			}
+			if( !aSolver.solve(aState, aEndgameTurns, aDeadline) )
+			{
+				return;
+			}
+			if( !aSolver.isExact() && aSolver.getDepth() < aEndgameTurns )
+			{
+				return;
+			}
+			for( int i = 0; i < aSolver.getMoveCount(); i++ )
+			{
+				aTotals[aSolver.getMove(i)] += aSolver.getValue(i);
+				aSolvedMoves[aSolver.getMove(i)] = true;
+			}
+			aSolved++;
+		}
+
+		private void iterate()
+		{
+			determinize();
+			int lDepth = 0;
+			SearchNode lNode = aRoot;
+			while( !aState.isOver() && lDepth < MAX_DEPTH )
+			{
+				int lCount = aState.legalMoves(aLegal);
+				int lUntried = 0;
+				SearchNode lBest = null;
+				double lBestBound = Double.NEGATIVE_INFINITY;
+				for( int i = 0; i < lCount; i++ )
+				{
+					SearchNode lChild = lNode.findChild(aLegal[i]);
+					if( lChild == null )
+					{
+						aLegal[lUntried++] = aLegal[i];
+					}
+					else
+					{
+						lChild.markAvailable();
+						double lBound = lChild.getUpperBound();
+						if( lBound > lBestBound )
+						{
+							lBest = lChild;
+							lBestBound = lBound;
+						}
+					}
+				}
+				if( lUntried > 0 )
+				{
+					int lMove = aLegal[aRandom.nextInt(lUntried)];
+					lNode = lNode.addChild(lMove, aState.getPlayer());
+					lNode.markAvailable();
+					aState.play(lMove);
+					aPath[lDepth++] = lNode;
+					break;
+				}
+				lNode = lBest;
+				aState.play(lNode.getMove());
+				aPath[lDepth++] = lNode;
+			}
+
+			aState.playOut(aRandom);
+			for( int i = 0; i < lDepth; i++ )
+			{
+				aPath[i].update(aState.getReward(aPath[i].getMover()));
+			}
+		}
+
+		/*
+		 * Deals the cards this player has not seen: the opponent gets the
+		 * cards it is known to hold, completed at random, and the rest
+		 * makes up the stock.
+		 */
+		private void determinize()
+		{
+			long lKnown = aKnowledge.getOpponentKnown();
+			long lSeen = aHand | lKnown | aKnowledge.getPile();
+			int lCount = 0;
+			for( long lCards = CardMask.ALL & ~lSeen; lCards != 0; lCards &= lCards - 1 )
+			{
+				aUnseen[lCount++] = CardMask.first(lCards);
+			}
+			for( int i = lCount - 1; i > 0; i-- )
+			{
+				int lOther = aRandom.nextInt(i + 1);
+				int lCard = aUnseen[i];
+				aUnseen[i] = aUnseen[lOther];
+				aUnseen[lOther] = lCard;
+			}
+
+			int lHidden = Math.min(lCount, aKnowledge.getOpponentHidden());
+			long lOpponent = lKnown;
+			for( int i = 0; i < lHidden; i++ )
+			{
+				lOpponent |= 1L << aUnseen[i];
+			}
+			int lPileSize = aKnowledge.copyPile(aPile);
+			int lSeat = getSeat();
+			if( lSeat == 0 )
+			{
+				aState.set(aHand, lOpponent, aPile, lPileSize, lSeat, aPhase, aTaken);
+			}
+			else
+			{
+				aState.set(lOpponent, aHand, aPile, lPileSize, lSeat, aPhase, aTaken);
+			}
+			aState.setStock(aUnseen, lHidden, Math.min(lCount - lHidden, aKnowledge.getStockSize()));
+		}
+	}
+}
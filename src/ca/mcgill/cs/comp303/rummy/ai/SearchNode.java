@@ -0,0 +1,125 @@
+package ca.mcgill.cs.comp303.rummy.ai;
+
+import java.util.Arrays;
+
+/**
+ * A node of an information set search tree. A node stands for the moves
+ * played from the root, as seen by the searching player, so the same node
+ * is shared by every determinization in which these moves are legal.
+ * Statistics are kept from the point of view of the player who made the
+ * move leading to the node. Nodes do not point to their parent, so any
+ * node can become the root of a later search. Not threadsafe: each search
+ * thread has its own tree.
+ */
+final class SearchNode
+{
+	private static final double EXPLORATION = 0.7;
+	private static final SearchNode[] NO_CHILDREN = new SearchNode[0];
+
+	private final int aMove;
+	private final int aMover;
+	private SearchNode[] aChildren = NO_CHILDREN;
+	private int aChildCount;
+	private double aReward;
+	private int aVisits;
+	private int aAvailability;
+
+	/**
+	 * Creates a root.
+	 */
+	SearchNode()
+	{
+		this(GameState.NONE, GameState.NONE);
+	}
+
+	private SearchNode(int pMove, int pMover)
+	{
+		aMove = pMove;
+		aMover = pMover;
+	}
+
+	int getMove()
+	{
+		return aMove;
+	}
+
+	int getMover()
+	{
+		return aMover;
+	}
+
+	int getVisits()
+	{
+		return aVisits;
+	}
+
+	int getChildCount()
+	{
+		return aChildCount;
+	}
+
+	SearchNode getChild(int pIndex)
+	{
+		return aChildren[pIndex];
+	}
+
+	/**
+	 * @param pMove A move.
+	 * @return The child reached by pMove, or null if it was never expanded.
+	 */
+	SearchNode findChild(int pMove)
+	{
+		for( int i = 0; i < aChildCount; i++ )
+		{
+			if( aChildren[i].aMove == pMove )
+			{
+				return aChildren[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param pMove A move that has no child yet.
+	 * @param pMover The player who makes the move.
+	 * @return The new child.
+	 */
+	SearchNode addChild(int pMove, int pMover)
+	{
+		if( aChildCount == aChildren.length )
+		{
+			aChildren = Arrays.copyOf(aChildren, Math.max(2, aChildCount * 2));
+		}
+		SearchNode lChild = new SearchNode(pMove, pMover);
+		aChildren[aChildCount++] = lChild;
+		return lChild;
+	}
+
+	/**
+	 * Records that the move of this node was legal in a determinization.
+	 */
+	void markAvailable()
+	{
+		aAvailability++;
+	}
+
+	/**
+	 * @return The upper confidence bound of the value of the node, with
+	 * availability counts in place of the visits of the parent, since the
+	 * move was not legal in every determinization.
+	 */
+	double getUpperBound()
+	{
+		return aReward / aVisits + EXPLORATION * Math.sqrt(Math.log(aAvailability) / aVisits);
+	}
+
+	/**
+	 * Adds the result of a playout through this node.
+	 * @param pReward The reward of the playout for the mover of this node.
+	 */
+	void update(double pReward)
+	{
+		aVisits++;
+		aReward += pReward;
+	}
+}
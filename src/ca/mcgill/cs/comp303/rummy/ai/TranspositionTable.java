@@ -0,0 +1,162 @@
+package ca.mcgill.cs.comp303.rummy.ai;
+
+import java.util.Arrays;
+
+/**
+ * A hash table of the values of searched positions, indexed by their
+ * Zobrist keys, in a fixed amount of memory. Entries are stored in two
+ * parallel arrays of longs, a key and its packed data, so the table
+ * allocates nothing once created. Not threadsafe.
+ *
+ * Each key maps to a bucket of two entries. The first entry keeps the
+ * deepest search of the current generation; the second is replaced by
+ * every search that cannot go in the first. Entries of older generations
+ * are replaced first, so a table can be kept from one solve to the next.
+ */
+final class TranspositionTable
+{
+	/**
+	 * The value is exact.
+	 */
+	static final int EXACT = 0;
+
+	/**
+	 * The value is a lower bound.
+	 */
+	static final int LOWER = 1;
+
+	/**
+	 * The value is an upper bound.
+	 */
+	static final int UPPER = 2;
+
+	/**
+	 * The size of an entry, in bytes.
+	 */
+	static final int ENTRY_SIZE = 2 * Long.SIZE / Byte.SIZE;
+
+	/**
+	 * The largest depth that can be stored.
+	 */
+	static final int MAX_DEPTH = 0xFF;
+
+	// Layout of the data: value, depth, bound, move + 1, generation, and a bit set in every entry
+	private static final int VALUE_OFFSET = 1 << 15;
+	private static final int DEPTH_SHIFT = 16;
+	private static final int BOUND_SHIFT = 24;
+	private static final int MOVE_SHIFT = 26;
+	private static final int GENERATION_SHIFT = 34;
+	private static final long FIELD = 0xFF;
+	private static final long VALUE_MASK = 0xFFFF;
+	private static final long BOUND_MASK = 0x3;
+	private static final long USED = 1L << 63;
+
+	private final long[] aKeys;
+	private final long[] aData;
+	private final int aMask;
+	private int aGeneration;
+
+	/**
+	 * Creates an empty table.
+	 * @param pBytes The memory budget of the table. The table has the
+	 * largest power of 2 of entries that fits, and at least one bucket.
+	 */
+	TranspositionTable(long pBytes)
+	{
+		long lEntries = Math.max(2, Math.min(1 << (Integer.SIZE - 2), pBytes / ENTRY_SIZE));
+		int lSize = Integer.highestOneBit((int) lEntries);
+		aKeys = new long[lSize];
+		aData = new long[lSize];
+		aMask = lSize - 1;
+	}
+
+	/**
+	 * @return The number of entries of the table.
+	 */
+	int capacity()
+	{
+		return aKeys.length;
+	}
+
+	/**
+	 * Starts a new generation: the entries stored so far are kept, but
+	 * replaced before the entries of the new generation.
+	 */
+	void newGeneration()
+	{
+		aGeneration = (int) ((aGeneration + 1) & FIELD);
+	}
+
+	/**
+	 * Removes every entry.
+	 */
+	void clear()
+	{
+		Arrays.fill(aKeys, 0);
+		Arrays.fill(aData, 0);
+	}
+
+	/**
+	 * @param pKey The key of a position.
+	 * @return The data of the entry of the position, or 0 if there is none.
+	 */
+	long probe(long pKey)
+	{
+		int lSlot = (int) pKey & aMask & ~1;
+		if( aKeys[lSlot] == pKey && aData[lSlot] != 0 )
+		{
+			return aData[lSlot];
+		}
+		if( aKeys[lSlot + 1] == pKey && aData[lSlot + 1] != 0 )
+		{
+			return aData[lSlot + 1];
+		}
+		return 0;
+	}
+
+	/**
+	 * Stores the result of a search.
+	 * @param pKey The key of the position.
+	 * @param pDepth The depth of the search, at most MAX_DEPTH.
+	 * @param pBound EXACT, LOWER or UPPER.
+	 * @param pValue The value of the position, between Short.MIN_VALUE and Short.MAX_VALUE.
+	 * @param pMove The best move found, or GameState.NONE.
+	 */
+	void store(long pKey, int pDepth, int pBound, int pValue, int pMove)
+	{
+		int lSlot = (int) pKey & aMask & ~1;
+		long lOld = aData[lSlot];
+		if( aKeys[lSlot] != pKey && lOld != 0 && generation(lOld) == aGeneration && depth(lOld) > pDepth )
+		{
+			lSlot++;
+		}
+		aKeys[lSlot] = pKey;
+		aData[lSlot] = USED | (long) aGeneration << GENERATION_SHIFT | (long) (pMove + 1) << MOVE_SHIFT
+				| (long) pBound << BOUND_SHIFT | (long) pDepth << DEPTH_SHIFT | (pValue + VALUE_OFFSET);
+	}
+
+	static int value(long pData)
+	{
+		return (int) (pData & VALUE_MASK) - VALUE_OFFSET;
+	}
+
+	static int depth(long pData)
+	{
+		return (int) (pData >>> DEPTH_SHIFT & FIELD);
+	}
+
+	static int bound(long pData)
+	{
+		return (int) (pData >>> BOUND_SHIFT & BOUND_MASK);
+	}
+
+	static int move(long pData)
+	{
+		return (int) (pData >>> MOVE_SHIFT & FIELD) - 1;
+	}
+
+	private static int generation(long pData)
+	{
+		return (int) (pData >>> GENERATION_SHIFT & FIELD);
+	}
+}
@@ -58,6 +58,7 @@ public class CardDemo extends JFrame implements ActionListener
 	 */
 	public static void main(String[] pArgs)
 	{
+		CardImages.preload();
 		new CardDemo();
 	}
 
@@ -1,27 +1,132 @@
 package ca.mcgill.cs.comp303.rummy.gui.swing;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
+import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 
 import ca.mcgill.cs.comp303.rummy.model.Card;
 
 /**
  * A class to store and manage images of the 52 cards.
+ * Images are loaded on first use, unless preload() is called first: it
+ * decodes every image in parallel into an array indexed by Card.index(),
+ * so that painting a card never waits for I/O. Threadsafe.
  */
-public final class CardImages 
+public final class CardImages
 {
 	private static final String IMAGE_LOCATION = "";
 	private static final String IMAGE_SUFFIX = ".gif";
 	private static final String[] RANK_CODES = {"a", "2", "3", "4", "5", "6", "7", "8", "9", "t", "j", "q", "k"};
-	private static final String[] SUIT_CODES = {"c", "d", "h", "s"};	
-	
-	private static Map<String, ImageIcon> aCards = new HashMap<String, ImageIcon>();
-	
+	private static final String[] SUIT_CODES = {"c", "d", "h", "s"};
+	private static final String BACK_CODE = "b";
+	private static final String JOKER_CODE = "j";
+	private static final int BACK = Card.NUM_CARDS;
+	private static final int JOKER = Card.NUM_CARDS + 1;
+	private static final int NUM_IMAGES = Card.NUM_CARDS + 2;
+
+	private static ConcurrentMap<String, ImageIcon> aCards = new ConcurrentHashMap<String, ImageIcon>();
+	// Published once complete, never modified afterwards
+	private static volatile ImageIcon[] aAtlas;
+	private static volatile long aLoadTime = -1;
+
 	private CardImages()
 	{}
-	
+
+	/**
+	 * Loads the images of all the cards, of their back and of the joker,
+	 * decoding them in parallel. Does nothing if the images are already
+	 * preloaded.
+	 * @return The time taken to load the images, in milliseconds.
+	 * @throws IllegalStateException if an image cannot be loaded.
+	 */
+	public static synchronized long preload()
+	{
+		if( aAtlas != null )
+		{
+			return aLoadTime;
+		}
+		long lStart = System.nanoTime();
+		int lThreads = Math.min(NUM_IMAGES, Runtime.getRuntime().availableProcessors());
+		ExecutorService lPool = Executors.newFixedThreadPool(lThreads, new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable pTask)
+			{
+				Thread lThread = new Thread(pTask, "card-images");
+				lThread.setDaemon(true);
+				return lThread;
+			}
+		});
+		try
+		{
+			List<Future<ImageIcon>> lFutures = new ArrayList<Future<ImageIcon>>();
+			for( int i = 0; i < NUM_IMAGES; i++ )
+			{
+				final String lCode = getCode( i );
+				lFutures.add(lPool.submit(new Callable<ImageIcon>()
+				{
+					@Override
+					public ImageIcon call()
+					{
+						return load( lCode );
+					}
+				}));
+			}
+			ImageIcon[] lAtlas = new ImageIcon[NUM_IMAGES];
+			for( int i = 0; i < NUM_IMAGES; i++ )
+			{
+				lAtlas[i] = lFutures.get(i).get();
+			}
+			aLoadTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lStart);
+			aAtlas = lAtlas;
+			return aLoadTime;
+		}
+		catch( InterruptedException lException )
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while loading the card images", lException);
+		}
+		catch( ExecutionException lException )
+		{
+			throw new IllegalStateException(lException.getCause());
+		}
+		finally
+		{
+			lPool.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return True if the images are preloaded.
+	 */
+	public static boolean isPreloaded()
+	{
+		return aAtlas != null;
+	}
+
+	/**
+	 * @return The time preload() took to load the images, in milliseconds,
+	 * or -1 if they are not preloaded.
+	 */
+	public static long getLoadTime()
+	{
+		return aLoadTime;
+	}
+
 	/**
 	 * Return the image of a card.
 	 * @param pCard the target card
@@ -29,40 +134,97 @@ public final class CardImages
 	 */
 	public static ImageIcon getCard( Card pCard )
 	{
-		return getCard( getCode( pCard ) );
+		ImageIcon[] lAtlas = aAtlas;
+		if( lAtlas != null )
+		{
+			return lAtlas[pCard.index()];
+		}
+		return getCard( getCode( pCard.index() ) );
 	}
-	
+
 	/**
 	 * Return an image of the back of a card.
 	 * @return An icon representing the back of a card.
 	 */
 	public static ImageIcon getBack()
 	{
-		return getCard( "b" );
+		return getImage( BACK );
 	}
-	
+
 	/**
 	 * Return an image of the joker.
 	 * @return An icon representing the joker.
 	 */
 	public static ImageIcon getJoker()
 	{
-		return getCard( "j" );
+		return getImage( JOKER );
 	}
-	
-	private static String getCode( Card pCard )
+
+	private static ImageIcon getImage( int pImage )
 	{
-		return RANK_CODES[ pCard.getRank().ordinal() ] + SUIT_CODES[ pCard.getSuit().ordinal() ];		
+		ImageIcon[] lAtlas = aAtlas;
+		if( lAtlas != null )
+		{
+			return lAtlas[pImage];
+		}
+		return getCard( getCode( pImage ) );
 	}
-	
+
+	/*
+	 * Returns the code of an image: the index of a card, BACK or JOKER.
+	 */
+	private static String getCode( int pImage )
+	{
+		if( pImage == BACK )
+		{
+			return BACK_CODE;
+		}
+		else if( pImage == JOKER )
+		{
+			return JOKER_CODE;
+		}
+		Card lCard = Card.ofIndex( pImage );
+		return RANK_CODES[ lCard.getRank().ordinal() ] + SUIT_CODES[ lCard.getSuit().ordinal() ];
+	}
+
 	private static ImageIcon getCard( String pCode )
 	{
-		ImageIcon lIcon = (ImageIcon) aCards.get( pCode );
+		ImageIcon lIcon = aCards.get( pCode );
 		if( lIcon == null )
 		{
-			lIcon = new ImageIcon(CardImages.class.getClassLoader().getResource( IMAGE_LOCATION + pCode + IMAGE_SUFFIX ));
-			aCards.put( pCode, lIcon );
+			lIcon = load( pCode );
+			ImageIcon lOther = aCards.putIfAbsent( pCode, lIcon );
+			if( lOther != null )
+			{
+				lIcon = lOther;
+			}
 		}
 		return lIcon;
 	}
+
+	/*
+	 * Decodes an image in the calling thread. ImageIcon(URL) would wait
+	 * for the image on a tracker shared by all icons, one image at a time.
+	 */
+	private static ImageIcon load( String pCode )
+	{
+		URL lLocation = CardImages.class.getClassLoader().getResource( IMAGE_LOCATION + pCode + IMAGE_SUFFIX );
+		if( lLocation == null )
+		{
+			throw new IllegalStateException("Missing image: " + pCode + IMAGE_SUFFIX);
+		}
+		try
+		{
+			BufferedImage lImage = ImageIO.read( lLocation );
+			if( lImage == null )
+			{
+				return new ImageIcon( lLocation );
+			}
+			return new ImageIcon( lImage );
+		}
+		catch( IOException lException )
+		{
+			throw new IllegalStateException("Cannot read image: " + pCode + IMAGE_SUFFIX, lException);
+		}
+	}
 }
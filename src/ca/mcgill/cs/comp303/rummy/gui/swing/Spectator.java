@@ -0,0 +1,57 @@
+package ca.mcgill.cs.comp303.rummy.gui.swing;
+
+import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+
+import ca.mcgill.cs.comp303.rummy.model.AutoPlayer;
+import ca.mcgill.cs.comp303.rummy.model.Player;
+import ca.mcgill.cs.comp303.rummy.sim.SnapshotPublisher;
+import ca.mcgill.cs.comp303.rummy.sim.Tournament;
+import ca.mcgill.cs.comp303.rummy.sim.TournamentResult;
+
+/**
+ * GUI application to watch a headless tournament between two AutoPlayers
+ * while it runs. The tournament plays at full speed on its own thread; the
+ * window shows one of its tables through a SpectatorPanel.
+ */
+public final class Spectator
+{
+	private static final int DEFAULT_GAMES = 1000000;
+
+	private Spectator()
+	{}
+
+	/**
+	 * @param pArgs Optionally, the number of games to play.
+	 */
+	public static void main(String[] pArgs)
+	{
+		final int lGames = pArgs.length > 0 ? Integer.parseInt(pArgs[0]) : DEFAULT_GAMES;
+		CardImages.preload();
+		final SnapshotPublisher lPublisher = new SnapshotPublisher();
+		SwingUtilities.invokeLater(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				JFrame lFrame = new JFrame("Spectator");
+				lFrame.add(new SpectatorPanel(lPublisher));
+				lFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+				lFrame.pack();
+				lFrame.setLocationRelativeTo(null);
+				lFrame.setVisible(true);
+			}
+		});
+		Tournament lTournament = new Tournament(new Tournament.PlayerFactory()
+		{
+			@Override
+			public Player createPlayer(int pSeat)
+			{
+				return new AutoPlayer();
+			}
+		}, lGames, System.nanoTime());
+		lTournament.setSpectator(lPublisher);
+		TournamentResult lResult = lTournament.run();
+		System.out.println(lResult);
+	}
+}
@@ -0,0 +1,218 @@
+package ca.mcgill.cs.comp303.rummy.gui.swing;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+
+import javax.swing.ImageIcon;
+import javax.swing.JPanel;
+import javax.swing.Timer;
+
+import ca.mcgill.cs.comp303.rummy.model.Card;
+import ca.mcgill.cs.comp303.rummy.model.GameSnapshot;
+import ca.mcgill.cs.comp303.rummy.sim.SnapshotPublisher;
+
+/**
+ * A view of a table, drawn from the snapshots of a SnapshotPublisher. The
+ * panel polls the publisher with a Swing timer and never reads the live
+ * state of the game, so the game does not wait for the event dispatch thread.
+ *
+ * A new snapshot is drawn once into an image the size of the panel, and
+ * painting only copies that image to the screen; the panel is therefore not
+ * double buffered by Swing. Both hands are shown face up.
+ */
+@SuppressWarnings("serial")
+public class SpectatorPanel extends JPanel implements ActionListener
+{
+	/**
+	 * The default number of times per second the panel checks for a new snapshot.
+	 */
+	public static final int DEFAULT_REFRESH_RATE = 30;
+
+	private static final int MARGIN = 10;
+	private static final int CARD_WIDTH = 73;
+	private static final int CARD_HEIGHT = 97;
+	private static final int CARD_SPACING = 24;
+	private static final int LINE_HEIGHT = 20;
+	private static final int MAX_HAND = 11;
+	private static final int WIDTH = 2 * MARGIN + (MAX_HAND - 1) * CARD_SPACING + CARD_WIDTH;
+	private static final int HEIGHT = 4 * MARGIN + 3 * CARD_HEIGHT + 2 * LINE_HEIGHT;
+	private static final int MILLIS_PER_SECOND = 1000;
+	private static final Color TABLE = new Color(0, 100, 40);
+	private static final Color TEXT = Color.WHITE;
+	private static final Font FONT = new Font(Font.SANS_SERIF, Font.BOLD, 13);
+
+	private final SnapshotPublisher aPublisher;
+	private final Timer aTimer;
+	private BufferedImage aBuffer;
+	private GameSnapshot aShown;
+
+	/**
+	 * Creates a panel that checks for new snapshots DEFAULT_REFRESH_RATE times per second.
+	 * @param pPublisher The source of the snapshots.
+	 */
+	public SpectatorPanel(SnapshotPublisher pPublisher)
+	{
+		this(pPublisher, DEFAULT_REFRESH_RATE);
+	}
+
+	/**
+	 * Creates a panel. The panel checks for snapshots while it is displayed.
+	 * @param pPublisher The source of the snapshots.
+	 * @param pRefreshRate The number of times per second to check for a new snapshot.
+	 * @pre pPublisher != null && pRefreshRate > 0
+	 */
+	public SpectatorPanel(SnapshotPublisher pPublisher, int pRefreshRate)
+	{
+		aPublisher = pPublisher;
+		aTimer = new Timer(Math.max(1, MILLIS_PER_SECOND / pRefreshRate), this);
+		aTimer.setCoalesce(true);
+		setDoubleBuffered(false);
+		setOpaque(true);
+		setBackground(TABLE);
+		setPreferredSize(new Dimension(WIDTH, HEIGHT));
+	}
+
+	@Override
+	public void addNotify()
+	{
+		super.addNotify();
+		aTimer.start();
+	}
+
+	@Override
+	public void removeNotify()
+	{
+		aTimer.stop();
+		super.removeNotify();
+	}
+
+	/**
+	 * Checks for a new snapshot and draws it. Called by the timer.
+	 * @param pEvent The timer event.
+	 */
+	@Override
+	public void actionPerformed(ActionEvent pEvent)
+	{
+		GameSnapshot lSnapshot = aPublisher.getLatest();
+		if( lSnapshot != null && lSnapshot != aShown )
+		{
+			aShown = lSnapshot;
+			render();
+			repaint();
+		}
+	}
+
+	@Override
+	protected void paintComponent(Graphics pGraphics)
+	{
+		if( aBuffer == null || aBuffer.getWidth() != getWidth() || aBuffer.getHeight() != getHeight() )
+		{
+			render();
+		}
+		if( aBuffer == null )
+		{
+			super.paintComponent(pGraphics);
+			return;
+		}
+		pGraphics.drawImage(aBuffer, 0, 0, null);
+	}
+
+	/*
+	 * Draws the snapshot shown into the buffer, creating the buffer if the
+	 * size of the panel changed.
+	 */
+	private void render()
+	{
+		if( getWidth() <= 0 || getHeight() <= 0 )
+		{
+			return;
+		}
+		if( aBuffer == null || aBuffer.getWidth() != getWidth() || aBuffer.getHeight() != getHeight() )
+		{
+			aBuffer = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
+		}
+		Graphics2D lGraphics = aBuffer.createGraphics();
+		try
+		{
+			lGraphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			lGraphics.setColor(TABLE);
+			lGraphics.fillRect(0, 0, getWidth(), getHeight());
+			lGraphics.setFont(FONT);
+			if( aShown == null )
+			{
+				lGraphics.setColor(TEXT);
+				lGraphics.drawString("Waiting for a game...", MARGIN, MARGIN + LINE_HEIGHT);
+				return;
+			}
+			int lTop = MARGIN;
+			lTop = drawPlayer(lGraphics, 1, lTop);
+			lTop = drawPiles(lGraphics, lTop + MARGIN);
+			drawPlayer(lGraphics, 0, lTop + MARGIN);
+		}
+		finally
+		{
+			lGraphics.dispose();
+		}
+	}
+
+	/*
+	 * Draws the seat, score and cards of a player from pTop down, and
+	 * returns the bottom of what was drawn.
+	 */
+	private int drawPlayer(Graphics2D pGraphics, int pPlayer, int pTop)
+	{
+		String lTurn = "";
+		if( aShown.getTurn() == pPlayer )
+		{
+			lTurn = "   (to play)";
+		}
+		pGraphics.setColor(TEXT);
+		pGraphics.drawString("Player " + pPlayer + "   score " + aShown.getScore(pPlayer) + lTurn, MARGIN,
+				pTop + LINE_HEIGHT - MARGIN / 2);
+		int lLeft = MARGIN;
+		int lTop = pTop + LINE_HEIGHT;
+		for( long lCards = aShown.getHand(pPlayer); lCards != 0; lCards &= lCards - 1 )
+		{
+			paint(pGraphics, CardImages.getCard(Card.ofIndex(Long.numberOfTrailingZeros(lCards))), lLeft, lTop);
+			lLeft += CARD_SPACING;
+		}
+		return lTop + CARD_HEIGHT;
+	}
+
+	/*
+	 * Draws the stock and the discard pile from pTop down, and returns the
+	 * bottom of what was drawn.
+	 */
+	private int drawPiles(Graphics2D pGraphics, int pTop)
+	{
+		int lLeft = MARGIN;
+		if( aShown.getStockSize() > 0 )
+		{
+			paint(pGraphics, CardImages.getBack(), lLeft, pTop);
+		}
+		lLeft += CARD_WIDTH + MARGIN;
+		if( aShown.getPileSize() > 0 )
+		{
+			Card lTop = Card.ofIndex(aShown.getPile(aShown.getPileSize() - 1));
+			paint(pGraphics, CardImages.getCard(lTop), lLeft, pTop);
+		}
+		lLeft += CARD_WIDTH + 2 * MARGIN;
+		pGraphics.setColor(TEXT);
+		pGraphics.drawString("Stock: " + aShown.getStockSize(), lLeft, pTop + LINE_HEIGHT);
+		pGraphics.drawString("Discards: " + aShown.getPileSize(), lLeft, pTop + 2 * LINE_HEIGHT);
+		pGraphics.drawString("Snapshots: " + aPublisher.getPublished(), lLeft, pTop + 3 * LINE_HEIGHT);
+		return pTop + CARD_HEIGHT;
+	}
+
+	private void paint(Graphics2D pGraphics, ImageIcon pIcon, int pLeft, int pTop)
+	{
+		pGraphics.drawImage(pIcon.getImage(), pLeft, pTop, null);
+	}
+}
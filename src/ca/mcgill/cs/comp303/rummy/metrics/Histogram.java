@@ -0,0 +1,118 @@
+package ca.mcgill.cs.comp303.rummy.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values, such as latencies in nanoseconds,
+ * with logarithmic buckets in the manner of HdrHistogram. Each power of 2
+ * is split into SUB_BUCKETS linear buckets, so a value is known within
+ * 1/SUB_BUCKETS of itself, whatever its magnitude, in a fixed array of
+ * counts. Recording a value is one atomic increment, plus a rare update of
+ * the maximum. Like a StripedCounter, the counts are split into stripes
+ * and a thread always increments the stripe of its id, so threads that
+ * record the same value do not contend; a snapshot sums the stripes.
+ * Threadsafe.
+ */
+public final class Histogram
+{
+	/**
+	 * The number of buckets per power of 2.
+	 */
+	public static final int SUB_BUCKETS = 8;
+
+	private static final int SUB_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+	static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+	// Longs between two stripes, so that they never share a cache line
+	private static final int PADDING = 8;
+	private static final int STRIPE_SIZE = BUCKETS + PADDING;
+	// Each stripe takes about 4KB
+	private static final int MAX_STRIPES = 16;
+
+	private final AtomicLongArray aCounts;
+	private final int aMask;
+	private final StripedCounter aSum = new StripedCounter();
+	private final AtomicLong aMax = new AtomicLong();
+
+	/**
+	 * Creates an empty histogram with one stripe per available processor,
+	 * rounded up to a power of 2.
+	 */
+	public Histogram()
+	{
+		int lStripes = StripedCounter.stripes(MAX_STRIPES);
+		aCounts = new AtomicLongArray(lStripes * STRIPE_SIZE);
+		aMask = lStripes - 1;
+	}
+
+	/**
+	 * Records a value.
+	 * @param pValue The value. Negative values are recorded as 0.
+	 */
+	public void record(long pValue)
+	{
+		long lValue = Math.max(0, pValue);
+		aCounts.getAndIncrement(StripedCounter.stripeOf(aMask) * STRIPE_SIZE + bucketOf(lValue));
+		aSum.add(lValue);
+		long lMax = aMax.get();
+		while( lValue > lMax && !aMax.compareAndSet(lMax, lValue) )
+		{
+			lMax = aMax.get();
+		}
+	}
+
+	/**
+	 * @return A copy of the current state of the histogram. Values recorded
+	 * while the copy is made may or may not be included.
+	 */
+	public HistogramSnapshot snapshot()
+	{
+		long[] lCounts = new long[BUCKETS];
+		for( int lStripe = 0; lStripe < aCounts.length(); lStripe += STRIPE_SIZE )
+		{
+			for( int i = 0; i < BUCKETS; i++ )
+			{
+				lCounts[i] += aCounts.get(lStripe + i);
+			}
+		}
+		return new HistogramSnapshot(lCounts, aSum.get(), aMax.get());
+	}
+
+	/**
+	 * Removes all the values. Values recorded during the reset may be lost.
+	 */
+	public void reset()
+	{
+		for( int i = 0; i < aCounts.length(); i++ )
+		{
+			aCounts.set(i, 0);
+		}
+		aSum.reset();
+		aMax.set(0);
+	}
+
+	static int bucketOf(long pValue)
+	{
+		if( pValue < SUB_BUCKETS )
+		{
+			return (int) pValue;
+		}
+		int lExponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(pValue);
+		int lSub = (int) (pValue >>> (lExponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (lExponent - SUB_BITS + 1) * SUB_BUCKETS + lSub;
+	}
+
+	/*
+	 * Returns the largest value that falls in bucket pBucket.
+	 */
+	static long highestValueOf(int pBucket)
+	{
+		if( pBucket < SUB_BUCKETS )
+		{
+			return pBucket;
+		}
+		int lExponent = pBucket / SUB_BUCKETS + SUB_BITS - 1;
+		long lLowest = (long) (SUB_BUCKETS + pBucket % SUB_BUCKETS) << (lExponent - SUB_BITS);
+		return lLowest + (1L << (lExponent - SUB_BITS)) - 1;
+	}
+}
@@ -0,0 +1,160 @@
+package ca.mcgill.cs.comp303.rummy.metrics;
+
+import java.beans.ConstructorProperties;
+import java.util.Arrays;
+
+/**
+ * An immutable copy of the state of a Histogram. Percentiles are known
+ * within 1/Histogram.SUB_BUCKETS of their value, and are reported as the
+ * highest value of their bucket, capped by the maximum.
+ *
+ * Over JMX, a snapshot is sent as its counts, sum and maximum, along
+ * with its summary values, so that a proxy of an MXBean rebuilds it whole.
+ */
+public final class HistogramSnapshot
+{
+	private static final double P50 = 50;
+	private static final double P90 = 90;
+	private static final double P99 = 99;
+	private static final double P999 = 99.9;
+	private static final double HUNDRED = 100;
+
+	private final long[] aCounts;
+	private final long aCount;
+	private final long aSum;
+	private final long aMax;
+
+	/**
+	 * Creates a snapshot from the counts of the buckets of a Histogram.
+	 * @param pCounts The number of values in each bucket, from the first.
+	 * Buckets past the end of the array are empty.
+	 * @param pSum The sum of the values.
+	 * @param pMax The largest value.
+	 * @pre pCounts != null
+	 */
+	@ConstructorProperties({"counts", "sum", "max"})
+	public HistogramSnapshot(long[] pCounts, long pSum, long pMax)
+	{
+		if( pCounts.length > Histogram.BUCKETS )
+		{
+			throw new IllegalArgumentException("Too many buckets: " + pCounts.length);
+		}
+		aCounts = pCounts.clone();
+		long lCount = 0;
+		for( long lBucket : pCounts )
+		{
+			lCount += lBucket;
+		}
+		aCount = lCount;
+		aSum = pSum;
+		aMax = pMax;
+	}
+
+	/**
+	 * @return The number of values recorded.
+	 */
+	public long getCount()
+	{
+		return aCount;
+	}
+
+	/**
+	 * @return The number of values in each bucket of the Histogram, up to the last bucket that is not empty.
+	 */
+	public long[] getCounts()
+	{
+		int lLength = aCounts.length;
+		while( lLength > 0 && aCounts[lLength - 1] == 0 )
+		{
+			lLength--;
+		}
+		return Arrays.copyOf(aCounts, lLength);
+	}
+
+	/**
+	 * @return The sum of the values.
+	 */
+	public long getSum()
+	{
+		return aSum;
+	}
+
+	/**
+	 * @return The mean of the values, or 0 if there are none.
+	 */
+	public double getMean()
+	{
+		if( aCount == 0 )
+		{
+			return 0;
+		}
+		return (double) aSum / aCount;
+	}
+
+	/**
+	 * @return The largest value recorded, or 0 if there are none.
+	 */
+	public long getMax()
+	{
+		return aMax;
+	}
+
+	/**
+	 * @return The median.
+	 */
+	public long getP50()
+	{
+		return getPercentile(P50);
+	}
+
+	/**
+	 * @return The 90th percentile.
+	 */
+	public long getP90()
+	{
+		return getPercentile(P90);
+	}
+
+	/**
+	 * @return The 99th percentile.
+	 */
+	public long getP99()
+	{
+		return getPercentile(P99);
+	}
+
+	/**
+	 * @return The 99.9th percentile.
+	 */
+	public long getP999()
+	{
+		return getPercentile(P999);
+	}
+
+	/**
+	 * @param pPercentile A percentile, between 0 and 100.
+	 * @return The value below which pPercentile percent of the values fall, or 0 if there are no values.
+	 */
+	public long getPercentile(double pPercentile)
+	{
+		long lRank = (long) Math.ceil(aCount * Math.min(HUNDRED, Math.max(0, pPercentile)) / HUNDRED);
+		lRank = Math.max(1, lRank);
+		long lSeen = 0;
+		for( int i = 0; i < aCounts.length; i++ )
+		{
+			lSeen += aCounts[i];
+			if( lSeen >= lRank )
+			{
+				return Math.min(aMax, Histogram.highestValueOf(i));
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("count=%d mean=%.1f p50=%d p90=%d p99=%d max=%d", aCount, getMean(), getP50(), getP90(),
+				getP99(), aMax);
+	}
+}
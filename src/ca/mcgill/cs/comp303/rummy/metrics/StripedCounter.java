@@ -0,0 +1,94 @@
+package ca.mcgill.cs.comp303.rummy.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that many threads can increment without contending. The count
+ * is split into stripes, each on its own cache line, and a thread always
+ * adds to the stripe of its id; reading the counter sums the stripes.
+ * Threadsafe.
+ */
+public final class StripedCounter
+{
+	// Longs per stripe, so that two stripes never share a cache line
+	private static final int PADDING = 8;
+	private static final int MAX_STRIPES = 64;
+
+	private final AtomicLongArray aCells;
+	private final int aMask;
+
+	/**
+	 * Creates a counter with one stripe per available processor, rounded up to a power of 2.
+	 */
+	public StripedCounter()
+	{
+		int lStripes = stripes(MAX_STRIPES);
+		aCells = new AtomicLongArray(lStripes * PADDING);
+		aMask = lStripes - 1;
+	}
+
+	/*
+	 * Returns the number of available processors rounded up to a power of 2, at most pMax.
+	 */
+	static int stripes(int pMax)
+	{
+		int lStripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1));
+		return Math.min(lStripes, pMax);
+	}
+
+	/*
+	 * Returns the stripe of the current thread, given the number of stripes less one.
+	 */
+	static int stripeOf(int pMask)
+	{
+		return (int) Thread.currentThread().getId() & pMask;
+	}
+
+	/**
+	 * Adds one to the counter.
+	 */
+	public void increment()
+	{
+		add(1);
+	}
+
+	/**
+	 * Adds pValue to the counter.
+	 * @param pValue The value to add.
+	 */
+	public void add(long pValue)
+	{
+		aCells.getAndAdd(stripeOf(aMask) * PADDING, pValue);
+	}
+
+	/**
+	 * @return The value of the counter. Additions made while the stripes
+	 * are summed may or may not be counted.
+	 */
+	public long get()
+	{
+		long lSum = 0;
+		for( int i = 0; i < aCells.length(); i += PADDING )
+		{
+			lSum += aCells.get(i);
+		}
+		return lSum;
+	}
+
+	/**
+	 * Sets the counter to zero. Additions made during the reset may be lost.
+	 */
+	public void reset()
+	{
+		for( int i = 0; i < aCells.length(); i += PADDING )
+		{
+			aCells.set(i, 0);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return Long.toString(get());
+	}
+}
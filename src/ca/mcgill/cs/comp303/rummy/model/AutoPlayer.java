@@ -0,0 +1,60 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+/**
+ * A simple computer player that keeps its deadwood as low as possible.
+ * It takes the top discard only if that lowers its deadwood, discards the
+ * card that leaves the least deadwood, and knocks as soon as it can.
+ * Decisions are deterministic. Hands are evaluated without the shared
+ * MatchCache, since most of them are never seen again, and all the
+ * discards are evaluated at once with a DiscardEvaluation.
+ */
+public class AutoPlayer extends Player
+{
+	private static final IMatchStrategy EVALUATOR = new OptimalMatchStrategy();
+
+	private boolean aTookDiscard;
+
+	@Override
+	protected boolean takeFirstCard(Card pTopStock, Card pTopDiscard)
+	{
+		aTookDiscard = improves(pTopDiscard);
+		return aTookDiscard;
+	}
+
+	@Override
+	protected boolean draw(Card pTopStock, Card pTopDiscard)
+	{
+		aTookDiscard = improves(pTopDiscard);
+		return aTookDiscard;
+	}
+
+	@Override
+	protected Card discard()
+	{
+		Card lDrawn = getDrawnCard();
+		long lAllowed = CardMask.ALL;
+		if( aTookDiscard )
+		{
+			lAllowed &= ~CardMask.of(lDrawn);
+		}
+		return Card.ofIndex(DiscardEvaluation.evaluate(getHand().getCardMask() | CardMask.of(lDrawn)).getBest(lAllowed));
+	}
+
+	@Override
+	protected boolean knock()
+	{
+		return true;
+	}
+
+	/*
+	 * Returns true if taking pCard and then discarding the best card
+	 * leaves less deadwood than the current hand.
+	 */
+	private boolean improves(Card pCard)
+	{
+		long lCards = getHand().getCardMask();
+		int lCurrent = EVALUATOR.match(lCards).getDeadwood();
+		DiscardEvaluation lDiscards = DiscardEvaluation.evaluate(lCards | CardMask.of(pCard));
+		return lDiscards.getDeadwood(lDiscards.getBest(~CardMask.of(pCard))) < lCurrent;
+	}
+}
@@ -1,11 +1,454 @@
 package ca.mcgill.cs.comp303.rummy.model;
 
-import java.io.Serializable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 
-public class BasicLogger
+/**
+ * Logs messages and the events of hands without blocking the threads that
+ * play them. Callers store events in pre-allocated records of a lock-free
+ * ring buffer; a background thread formats the records in batches and
+ * writes each batch to the output at once. Game events are stored as
+ * numbers and formatted by the background thread, so a logger added as a
+ * listener to a GameEngine builds no strings on the thread of the game.
+ *
+ * When the buffer is full, events are dropped, or the caller waits, as
+ * chosen by the BackPressure of the logger. A disabled logger does nothing
+ * but read one field, and starts no thread until it is enabled. The
+ * background thread is a daemon: call close() to write out the events
+ * still in the buffer before the JVM exits. Threadsafe.
+ */
+public class BasicLogger extends GameAdapter implements Closeable
 {
+	/**
+	 * What to do with an event when the buffer cannot take it.
+	 */
+	public enum BackPressure
+	{
+		/** Drop the event. */
+		DROP,
+		/** Wait until the buffer has room. */
+		BLOCK,
+		/** Keep only one event in SAMPLE_RATE once the buffer is half full, and drop events when it is full. */
+		SAMPLE
+	}
+
+	/**
+	 * The default number of records of the buffer.
+	 */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/**
+	 * One event in SAMPLE_RATE is kept when sampling.
+	 */
+	public static final int SAMPLE_RATE = 16;
+
+	private static final int BATCH_SIZE = 256;
+	private static final long IDLE_NANOS = 1000000;
+	private static final long WAIT_NANOS = 10000;
+
+	private static final int MESSAGE = 0;
+	private static final int HAND_STARTED = 1;
+	private static final int UPCARD_REFUSED = 2;
+	private static final int CARD_DRAWN = 3;
+	private static final int CARD_DISCARDED = 4;
+	private static final int KNOCKED = 5;
+	private static final int CARDS_LAID_OFF = 6;
+	private static final int HAND_ENDED = 7;
+
+	private final Record[] aRecords;
+	// A record is free for position p when its sequence is p, and ready to write out when it is p + 1
+	private final AtomicLongArray aSequences;
+	private final int aMask;
+	private final AtomicLong aTail = new AtomicLong();
+	private volatile long aHead;
+	private final AtomicLong aDropped = new AtomicLong();
+	private final Writer aOut;
+	private final BackPressure aBackPressure;
+	private final StringBuilder aBatch = new StringBuilder();
+	private volatile boolean aEnabled;
+	private volatile boolean aClosed;
+	private Thread aConsumer;
+	private Thread aShutdownHook;
+
+	/**
+	 * Creates an enabled logger that writes to the standard output. Like
+	 * a synchronous logger, it loses no event: callers wait when its
+	 * buffer is full, and it is closed when the JVM shuts down, so that
+	 * the events still in its buffer are written.
+	 */
+	public BasicLogger()
+	{
+		this(new OutputStreamWriter(System.out), DEFAULT_CAPACITY, BackPressure.BLOCK, true);
+		aShutdownHook = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				close();
+			}
+		}, "basic-logger-shutdown");
+		Runtime.getRuntime().addShutdownHook(aShutdownHook);
+	}
+
+	/**
+	 * Creates a logger.
+	 * @param pOut The output of the logger.
+	 * @param pCapacity The number of records of the buffer, a power of 2.
+	 * @param pBackPressure What to do when the buffer is full.
+	 * @param pEnabled True if the logger is enabled.
+	 * @pre pOut != null && pBackPressure != null && pCapacity > 0 && Integer.bitCount(pCapacity) == 1
+	 */
+	public BasicLogger(Writer pOut, int pCapacity, BackPressure pBackPressure, boolean pEnabled)
+	{
+		if( pCapacity <= 0 || Integer.bitCount(pCapacity) != 1 )
+		{
+			throw new IllegalArgumentException("Capacity must be a power of 2: " + pCapacity);
+		}
+		aOut = pOut;
+		aBackPressure = pBackPressure;
+		aRecords = new Record[pCapacity];
+		aSequences = new AtomicLongArray(pCapacity);
+		for( int i = 0; i < pCapacity; i++ )
+		{
+			aRecords[i] = new Record();
+			aSequences.set(i, i);
+		}
+		aMask = pCapacity - 1;
+		setEnabled(pEnabled);
+	}
+
+	/**
+	 * Logs a message.
+	 * @param pMessage The message.
+	 */
 	public void stateChanged(String pMessage)
 	{
-		System.out.println(pMessage);
+		if( aEnabled )
+		{
+			log(MESSAGE, 0, 0, 0, pMessage);
+		}
+	}
+
+	@Override
+	public void handStarted(int pDealer, Card pUpcard)
+	{
+		if( aEnabled )
+		{
+			log(HAND_STARTED, pDealer, pUpcard.index(), 0, null);
+		}
+	}
+
+	@Override
+	public void upcardRefused(int pPlayer)
+	{
+		if( aEnabled )
+		{
+			log(UPCARD_REFUSED, pPlayer, 0, 0, null);
+		}
+	}
+
+	@Override
+	public void cardDrawn(int pPlayer, Card pCard, boolean pFromDiscard)
+	{
+		if( aEnabled )
+		{
+			log(CARD_DRAWN, pPlayer, pCard.index(), pFromDiscard ? 1 : 0, null);
+		}
+	}
+
+	@Override
+	public void cardDiscarded(int pPlayer, Card pCard)
+	{
+		if( aEnabled )
+		{
+			log(CARD_DISCARDED, pPlayer, pCard.index(), 0, null);
+		}
+	}
+
+	@Override
+	public void knocked(int pPlayer, int pDeadwood)
+	{
+		if( aEnabled )
+		{
+			log(KNOCKED, pPlayer, 0, pDeadwood, null);
+		}
+	}
+
+	@Override
+	public void cardsLaidOff(int pPlayer, long pCards)
+	{
+		if( aEnabled )
+		{
+			log(CARDS_LAID_OFF, pPlayer, 0, pCards, null);
+		}
+	}
+
+	@Override
+	public void handEnded(HandResult pResult)
+	{
+		if( aEnabled )
+		{
+			log(HAND_ENDED, 0, 0, 0, pResult);
+		}
+	}
+
+	/**
+	 * @return True if the logger is enabled. Callers can test it before building a message.
+	 */
+	public boolean isEnabled()
+	{
+		return aEnabled;
+	}
+
+	/**
+	 * Enables or disables the logger. Events logged while the logger is disabled are ignored.
+	 * @param pEnabled True to enable the logger.
+	 */
+	public synchronized void setEnabled(boolean pEnabled)
+	{
+		if( pEnabled && aConsumer == null && !aClosed )
+		{
+			aConsumer = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					consume();
+				}
+			}, "basic-logger");
+			aConsumer.setDaemon(true);
+			aConsumer.start();
+		}
+		aEnabled = pEnabled && !aClosed;
+	}
+
+	/**
+	 * @return The number of events dropped since the logger was created.
+	 */
+	public long getDropped()
+	{
+		return aDropped.get();
+	}
+
+	/**
+	 * Waits until every event logged so far is written.
+	 */
+	public void flush()
+	{
+		long lTail = aTail.get();
+		while( aHead < lTail && aConsumer != null && aConsumer.isAlive() )
+		{
+			LockSupport.parkNanos(WAIT_NANOS);
+		}
+	}
+
+	/**
+	 * Writes the events logged so far, then stops the logger.
+	 */
+	@Override
+	public void close()
+	{
+		Thread lConsumer;
+		Thread lShutdownHook;
+		synchronized( this )
+		{
+			aEnabled = false;
+			aClosed = true;
+			lConsumer = aConsumer;
+			lShutdownHook = aShutdownHook;
+			aShutdownHook = null;
+		}
+		if( lShutdownHook != null && lShutdownHook != Thread.currentThread() )
+		{
+			try
+			{
+				Runtime.getRuntime().removeShutdownHook(lShutdownHook);
+			}
+			catch( IllegalStateException lException )
+			{
+				// The JVM is already shutting down
+			}
+		}
+		if( lConsumer != null )
+		{
+			LockSupport.unpark(lConsumer);
+			boolean lInterrupted = false;
+			while( lConsumer.isAlive() )
+			{
+				try
+				{
+					lConsumer.join();
+				}
+				catch( InterruptedException lException )
+				{
+					lInterrupted = true;
+				}
+			}
+			if( lInterrupted )
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void log(int pType, int pPlayer, int pCard, long pValue, Object pObject)
+	{
+		if( aBackPressure == BackPressure.SAMPLE && aTail.get() - aHead > aRecords.length / 2 &&
+				ThreadLocalRandom.current().nextInt(SAMPLE_RATE) != 0 )
+		{
+			aDropped.incrementAndGet();
+			return;
+		}
+		long lPosition = claim();
+		if( lPosition < 0 )
+		{
+			return;
+		}
+		Record lRecord = aRecords[(int) lPosition & aMask];
+		lRecord.aType = pType;
+		lRecord.aPlayer = pPlayer;
+		lRecord.aCard = pCard;
+		lRecord.aValue = pValue;
+		lRecord.aObject = pObject;
+		aSequences.lazySet((int) lPosition & aMask, lPosition + 1);
+	}
+
+	/*
+	 * Claims the record at the tail of the buffer. Returns its position,
+	 * or -1 if the event is dropped.
+	 */
+	private long claim()
+	{
+		while( true )
+		{
+			long lTail = aTail.get();
+			long lSequence = aSequences.get((int) lTail & aMask);
+			if( lSequence == lTail )
+			{
+				if( aTail.compareAndSet(lTail, lTail + 1) )
+				{
+					return lTail;
+				}
+			}
+			else if( lSequence < lTail )
+			{
+				// The buffer is full
+				if( aBackPressure != BackPressure.BLOCK || aClosed )
+				{
+					aDropped.incrementAndGet();
+					return -1;
+				}
+				LockSupport.parkNanos(WAIT_NANOS);
+			}
+		}
+	}
+
+	private void consume()
+	{
+		while( true )
+		{
+			if( drain() == 0 )
+			{
+				if( aClosed && aHead == aTail.get() )
+				{
+					break;
+				}
+				LockSupport.parkNanos(IDLE_NANOS);
+			}
+		}
+		try
+		{
+			aOut.flush();
+		}
+		catch( IOException lException )
+		{
+			// Nothing left to do with the output
+		}
+	}
+
+	/*
+	 * Formats and writes the records ready at the head of the buffer, at
+	 * most BATCH_SIZE of them. Returns the number of records written.
+	 */
+	private int drain()
+	{
+		long lHead = aHead;
+		int lCount = 0;
+		while( lCount < BATCH_SIZE && aSequences.get((int) lHead & aMask) == lHead + 1 )
+		{
+			Record lRecord = aRecords[(int) lHead & aMask];
+			format(lRecord, aBatch);
+			lRecord.aObject = null;
+			aSequences.lazySet((int) lHead & aMask, lHead + aRecords.length);
+			lHead++;
+			lCount++;
+		}
+		if( lCount > 0 )
+		{
+			try
+			{
+				aOut.write(aBatch.toString());
+				aOut.flush();
+			}
+			catch( IOException lException )
+			{
+				aDropped.addAndGet(lCount);
+			}
+			aBatch.setLength(0);
+			aHead = lHead;
+		}
+		return lCount;
+	}
+
+	private static void format(Record pRecord, StringBuilder pOut)
+	{
+		switch( pRecord.aType )
+		{
+		case HAND_STARTED:
+			pOut.append("Hand started, dealer ").append(pRecord.aPlayer).append(", upcard ").append(Card.ofIndex(pRecord.aCard));
+			break;
+		case UPCARD_REFUSED:
+			pOut.append("Player ").append(pRecord.aPlayer).append(" refused the upcard");
+			break;
+		case CARD_DRAWN:
+			pOut.append("Player ").append(pRecord.aPlayer).append(" drew ").append(Card.ofIndex(pRecord.aCard));
+			pOut.append(pRecord.aValue != 0 ? " from the discard pile" : " from the stock");
+			break;
+		case CARD_DISCARDED:
+			pOut.append("Player ").append(pRecord.aPlayer).append(" discarded ").append(Card.ofIndex(pRecord.aCard));
+			break;
+		case KNOCKED:
+			pOut.append("Player ").append(pRecord.aPlayer).append(" knocked with ").append(pRecord.aValue).append(" points");
+			break;
+		case CARDS_LAID_OFF:
+			pOut.append("Player ").append(pRecord.aPlayer).append(" laid off ").append(CardMask.asSet(pRecord.aValue));
+			break;
+		case HAND_ENDED:
+			pOut.append("Hand ended: ").append(pRecord.aObject);
+			break;
+		default:
+			pOut.append(pRecord.aObject);
+			break;
+		}
+		pOut.append(System.lineSeparator());
+	}
+
+	/**
+	 * A slot of the buffer. Its fields are published to the consumer
+	 * by the sequence of the slot.
+	 */
+	private static final class Record
+	{
+		private int aType;
+		private int aPlayer;
+		private int aCard;
+		private long aValue;
+		private Object aObject;
 	}
 }
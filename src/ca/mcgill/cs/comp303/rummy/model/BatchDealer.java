@@ -0,0 +1,121 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import java.util.Random;
+
+/**
+ * Deals the opening position of many games at once, for simulations.
+ * Cards are written as masks (see CardMask) and indices (see Card.index())
+ * into arrays supplied by the caller, so that dealing allocates nothing
+ * and the buffers can be reused from one batch to the next. Not threadsafe:
+ * use one dealer, with its own generator, per thread.
+ *
+ * Each game is dealt with a partial Fisher-Yates shuffle that only draws
+ * the cards that are needed: when the stock is not requested, the rest of
+ * the deck is never shuffled.
+ */
+public class BatchDealer
+{
+	/**
+	 * The number of cards in a hand.
+	 */
+	public static final int HAND_SIZE = GameEngine.HAND_SIZE;
+
+	/**
+	 * The largest number of hands that can be dealt in one game,
+	 * while leaving a card for the upcard.
+	 */
+	public static final int MAX_HANDS = (Card.NUM_CARDS - 1) / HAND_SIZE;
+
+	private final int[] aDeck = new int[Card.NUM_CARDS];
+	private final Random aRandom;
+
+	/**
+	 * Creates a dealer that shuffles with pRandom.
+	 * @param pRandom The source of randomness of the deals.
+	 * @pre pRandom != null
+	 */
+	public BatchDealer(Random pRandom)
+	{
+		aRandom = pRandom;
+	}
+
+	/**
+	 * @param pHands The number of hands dealt in a game.
+	 * @return The number of cards left in the stock after the hands and the upcard are dealt.
+	 * @pre pHands >= 1 && pHands <= MAX_HANDS
+	 */
+	public static int stockSize(int pHands)
+	{
+		return Card.NUM_CARDS - pHands * HAND_SIZE - 1;
+	}
+
+	/**
+	 * Deals pGames games of pHands hands each.
+	 * Hand h of game g is written in pHandMasks[g * pHands + h], the upcard
+	 * of game g in pUpcards[g], and the stock of game g in pStocks, starting
+	 * at g * stockSize(pHands), with the top of the stock first.
+	 * @param pGames The number of games to deal.
+	 * @param pHands The number of hands per game.
+	 * @param pHandMasks Receives the masks of the hands.
+	 * @param pUpcards Receives the indices of the upcards, or null if they are not needed.
+	 * @param pStocks Receives the indices of the cards of the stocks, or null if they are not needed.
+	 * @pre pGames >= 0 && pHands >= 1 && pHands <= MAX_HANDS
+	 * @pre pHandMasks.length >= pGames * pHands
+	 * @pre pUpcards == null || pUpcards.length >= pGames
+	 * @pre pStocks == null || pStocks.length >= pGames * stockSize(pHands)
+	 */
+	public void deal(int pGames, int pHands, long[] pHandMasks, int[] pUpcards, int[] pStocks)
+	{
+		assert pHands >= 1 && pHands <= MAX_HANDS;
+		int lStockSize = stockSize(pHands);
+		int lDrawn = pHands * HAND_SIZE + 1;
+		if( pStocks != null )
+		{
+			lDrawn = Card.NUM_CARDS;
+		}
+		for( int i = 0; i < Card.NUM_CARDS; i++ )
+		{
+			aDeck[i] = i;
+		}
+
+		for( int lGame = 0; lGame < pGames; lGame++ )
+		{
+			// The deck does not need to be reset: any permutation is a valid start
+			shuffle(lDrawn);
+			int lNext = 0;
+			for( int lHand = 0; lHand < pHands; lHand++ )
+			{
+				long lMask = 0;
+				for( int i = 0; i < HAND_SIZE; i++ )
+				{
+					lMask |= 1L << aDeck[lNext++];
+				}
+				pHandMasks[lGame * pHands + lHand] = lMask;
+			}
+			if( pUpcards != null )
+			{
+				pUpcards[lGame] = aDeck[lNext];
+			}
+			lNext++;
+			if( pStocks != null )
+			{
+				System.arraycopy(aDeck, lNext, pStocks, lGame * lStockSize, lStockSize);
+			}
+		}
+	}
+
+	/*
+	 * Shuffles the first pCount cards of the deck, each drawn uniformly
+	 * from the cards that are left.
+	 */
+	private void shuffle(int pCount)
+	{
+		for( int i = 0; i < pCount && i < Card.NUM_CARDS - 1; i++ )
+		{
+			int lOther = i + aRandom.nextInt(Card.NUM_CARDS - i);
+			int lCard = aDeck[i];
+			aDeck[i] = aDeck[lOther];
+			aDeck[lOther] = lCard;
+		}
+	}
+}
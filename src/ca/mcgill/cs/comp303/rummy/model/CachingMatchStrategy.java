@@ -0,0 +1,56 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+/**
+ * Memoizes the matchings computed by another strategy in a MatchCache,
+ * so that repeated hands are matched with a single lookup. Threadsafe
+ * if the wrapped strategy is.
+ */
+public class CachingMatchStrategy implements IMatchStrategy
+{
+	private final IMatchStrategy aStrategy;
+	private final MatchCache aCache;
+
+	/**
+	 * Creates a strategy that caches the matchings of pStrategy in pCache.
+	 * @param pStrategy The strategy that computes matchings missing from the cache.
+	 * @param pCache The cache in which to store the matchings.
+	 * @pre pStrategy != null && pCache != null
+	 */
+	public CachingMatchStrategy(IMatchStrategy pStrategy, MatchCache pCache)
+	{
+		aStrategy = pStrategy;
+		aCache = pCache;
+	}
+
+	@Override
+	public Matching match(long pCards)
+	{
+		Matching lMatching = aCache.get(pCards);
+		if( lMatching == null )
+		{
+			lMatching = aStrategy.match(pCards);
+			aCache.put(lMatching);
+		}
+		return lMatching;
+	}
+
+	@Override
+	public Matching update(Matching pPrevious, long pCards)
+	{
+		Matching lMatching = aCache.get(pCards);
+		if( lMatching == null )
+		{
+			lMatching = aStrategy.update(pPrevious, pCards);
+			aCache.put(lMatching);
+		}
+		return lMatching;
+	}
+
+	/**
+	 * @return The cache of this strategy.
+	 */
+	public MatchCache getCache()
+	{
+		return aCache;
+	}
+}
@@ -1,7 +1,9 @@
 package ca.mcgill.cs.comp303.rummy.model;
 
 /**
- * An immutable description of a playing card.
+ * An immutable description of a playing card. The 52 cards are interned:
+ * use of(Rank, Suit) or ofIndex(int) to obtain the shared instance of a card
+ * rather than allocating a new one.
  */
 public final class Card implements Comparable<Card>
 {
@@ -18,12 +20,41 @@ public final class Card implements Comparable<Card>
 	public enum Suit 
 	{ CLUBS, DIAMONDS, HEARTS, SPADES }
 	
+	/**
+	 * The number of distinct cards.
+	 */
+	public static final int NUM_CARDS = 52;
+	
+	private static final int NUM_RANKS = 13;
+	private static final int HIGH_CARD_SCORE = 10;
+	
+	private static final Card[] CARDS = new Card[NUM_CARDS];
+	private static final int[] SCORES = new int[NUM_CARDS];
+	private static final String[] NAMES = new String[NUM_CARDS];
+	
+	static
+	{
+		for( Suit lSuit : Suit.values() )
+		{
+			for( Rank lRank : Rank.values() )
+			{
+				Card lCard = new Card( lRank, lSuit );
+				CARDS[lCard.aIndex] = lCard;
+				SCORES[lCard.aIndex] = lRank.ordinal() < Rank.TEN.ordinal() ? lRank.ordinal() + 1 : HIGH_CARD_SCORE;
+				NAMES[lCard.aIndex] = lRank + " of " + lSuit;
+			}
+		}
+	}
+	
 	private final Rank aRank;
 	
 	private final Suit aSuit;
 	
+	private final int aIndex;
+	
 	/**
-	 * Create a new card object. 
+	 * Create a new card object. Prefer of(Rank, Suit), which
+	 * returns the shared instance of the card.
 	 * @param pRank The rank of the card.
 	 * @param pSuit The suit of the card.
 	 */
@@ -31,6 +62,40 @@ public final class Card implements Comparable<Card>
 	{
 		aRank = pRank;
 		aSuit = pSuit;
+		aIndex = pSuit.ordinal() * NUM_RANKS + pRank.ordinal();
+	}
+	
+	/**
+	 * Obtain the shared instance of a card.
+	 * @param pRank The rank of the card.
+	 * @param pSuit The suit of the card.
+	 * @return The card of rank pRank and suit pSuit.
+	 * @pre pRank != null && pSuit != null
+	 */
+	public static Card of(Rank pRank, Suit pSuit)
+	{
+		return CARDS[pSuit.ordinal() * NUM_RANKS + pRank.ordinal()];
+	}
+	
+	/**
+	 * Obtain the shared instance of a card from its index.
+	 * @param pIndex The index of the card (see index()).
+	 * @return The card with index pIndex.
+	 * @pre pIndex >= 0 && pIndex < NUM_CARDS
+	 */
+	public static Card ofIndex(int pIndex)
+	{
+		return CARDS[pIndex];
+	}
+	
+	/**
+	 * @param pIndex The index of a card (see index()).
+	 * @return The point value of the card with index pIndex.
+	 * @pre pIndex >= 0 && pIndex < NUM_CARDS
+	 */
+	public static int scoreOf(int pIndex)
+	{
+		return SCORES[pIndex];
 	}
 	
 	/**
@@ -51,13 +116,23 @@ public final class Card implements Comparable<Card>
 		return aSuit;
 	}
 	
+	/**
+	 * Obtain the index of the card, a stable identifier between 0 and 51
+	 * equal to suit*13 + rank.
+	 * @return The index of the card.
+	 */
+	public int index()
+	{
+		return aIndex;
+	}
+	
 	/**
 	 * @see java.lang.Object#toString()
 	 * @return See above.
 	 */
 	public String toString()
 	{
-		return aRank + " of " + aSuit;
+		return NAMES[aIndex];
 	}
 
 	/**
@@ -70,11 +145,8 @@ public final class Card implements Comparable<Card>
 	 */
 	public int compareTo(Card pCard)
 	{
-		return getSuit().ordinal() != pCard.getSuit().ordinal() ? 
-				getSuit().ordinal() - pCard.getSuit().ordinal() :
-				(getRank().ordinal() == pCard.getRank().ordinal()) ?
-						0 :
-						getRank().ordinal() - pCard.getRank().ordinal();
+		// The index orders cards by suit, then by rank
+		return aIndex - pCard.aIndex;
 	}
 
 	/**
@@ -89,12 +161,7 @@ public final class Card implements Comparable<Card>
 		if (pCard == null) return false;
 		else if (pCard == this) return true; //same reference
 		else if (pCard.getClass() != getClass()) return false;
-		else {
-			boolean suit = aSuit == ((Card)pCard).getSuit();
-			boolean rank = aRank == ((Card)pCard).getRank();
-			
-			return (rank && suit);
-		}
+		else return aIndex == ((Card)pCard).aIndex;
 	}
 
 	/** 
@@ -105,13 +172,14 @@ public final class Card implements Comparable<Card>
 	@Override
 	public int hashCode() 
 	{
-		final int prime = 13; //pick any prime to create code
-		return (aSuit.ordinal() * prime) + aRank.hashCode();
+		return aIndex;
 	}
 	
+	/**
+	 * @return The point value of the card in gin (ace is 1, face cards are 10).
+	 */
 	public int getScore()
 	{
-		final int HIGH_CARD_SCORE = 10;
-		return aRank.ordinal() < Rank.TEN.ordinal() ? aRank.ordinal() + 1 : HIGH_CARD_SCORE;
+		return SCORES[aIndex];
 	}
 }
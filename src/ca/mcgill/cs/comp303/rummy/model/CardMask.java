@@ -0,0 +1,221 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Utility methods to represent sets of cards as 52-bit masks.
+ * Bit i of a mask stands for the card whose index() is i
+ * (suit*13 + rank), so set operations become bitwise operations.
+ */
+public final class CardMask
+{
+	/**
+	 * The number of cards in a suit.
+	 */
+	public static final int SUIT_SIZE = 13;
+
+	/**
+	 * The number of cards in a deck.
+	 */
+	public static final int DECK_SIZE = 52;
+
+	/**
+	 * The mask containing every card of the deck.
+	 */
+	public static final long ALL = (1L << DECK_SIZE) - 1;
+
+	private static final long SUIT_BITS = (1L << SUIT_SIZE) - 1;
+
+	private static final long[] RANKS = new long[SUIT_SIZE];
+
+	static
+	{
+		for( int lIndex = 0; lIndex < DECK_SIZE; lIndex++ )
+		{
+			RANKS[lIndex % SUIT_SIZE] |= 1L << lIndex;
+		}
+	}
+
+	private CardMask()
+	{}
+
+	/**
+	 * @param pCard A card.
+	 * @return The mask containing only pCard.
+	 * @pre pCard != null
+	 */
+	public static long of(Card pCard)
+	{
+		return 1L << pCard.index();
+	}
+
+	/**
+	 * @param pCards Some cards.
+	 * @return The mask containing exactly the cards in pCards.
+	 * @pre pCards != null
+	 */
+	public static long of(Iterable<Card> pCards)
+	{
+		if( pCards instanceof Meld )
+		{
+			return ((Meld) pCards).getMask();
+		}
+		long lMask = 0;
+		for( Card lCard : pCards )
+		{
+			lMask |= of(lCard);
+		}
+		return lMask;
+	}
+
+	/**
+	 * @param pMask A card mask.
+	 * @param pCard A card.
+	 * @return True if pCard is in pMask.
+	 */
+	public static boolean contains(long pMask, Card pCard)
+	{
+		return (pMask & of(pCard)) != 0;
+	}
+
+	/**
+	 * @param pMask A card mask.
+	 * @return The number of cards in pMask.
+	 */
+	public static int size(long pMask)
+	{
+		return Long.bitCount(pMask);
+	}
+
+	/**
+	 * @param pMask A card mask.
+	 * @return The total point value of the cards in pMask.
+	 */
+	public static int score(long pMask)
+	{
+		int lScore = 0;
+		for( long lBits = pMask; lBits != 0; lBits &= lBits - 1 )
+		{
+			lScore += Card.scoreOf(Long.numberOfTrailingZeros(lBits));
+		}
+		return lScore;
+	}
+
+	/**
+	 * @param pRank The ordinal of a rank.
+	 * @return The mask of the four cards of that rank.
+	 */
+	public static long rank(int pRank)
+	{
+		return RANKS[pRank];
+	}
+
+	/**
+	 * @param pSuit The ordinal of a suit.
+	 * @return The mask of the thirteen cards of that suit.
+	 */
+	public static long suit(int pSuit)
+	{
+		return SUIT_BITS << (pSuit * SUIT_SIZE);
+	}
+
+	/**
+	 * @param pMask A card mask.
+	 * @param pSuit The ordinal of a suit.
+	 * @return The cards of pMask in that suit, as a 13-bit rank mask.
+	 */
+	public static int ranksOf(long pMask, int pSuit)
+	{
+		return (int) ((pMask >>> (pSuit * SUIT_SIZE)) & SUIT_BITS);
+	}
+
+	/**
+	 * @param pMask A non-empty card mask.
+	 * @return True if all the cards in pMask have the same rank.
+	 * @pre pMask != 0
+	 */
+	public static boolean isGroup(long pMask)
+	{
+		return (pMask & ~RANKS[first(pMask) % SUIT_SIZE]) == 0;
+	}
+
+	/**
+	 * @param pMask A non-empty card mask.
+	 * @return The index of the lowest card in pMask.
+	 * @pre pMask != 0
+	 */
+	public static int first(long pMask)
+	{
+		return Long.numberOfTrailingZeros(pMask);
+	}
+
+	/**
+	 * @param pMask A card mask.
+	 * @return An immutable set view of the cards in pMask.
+	 */
+	public static Set<Card> asSet(long pMask)
+	{
+		return new CardMaskSet(pMask);
+	}
+
+	/**
+	 * An immutable set of cards backed by a single mask.
+	 */
+	private static final class CardMaskSet extends AbstractSet<Card>
+	{
+		private final long aMask;
+
+		CardMaskSet(long pMask)
+		{
+			aMask = pMask;
+		}
+
+		@Override
+		public boolean contains(Object pObject)
+		{
+			return pObject instanceof Card && CardMask.contains(aMask, (Card) pObject);
+		}
+
+		@Override
+		public int size()
+		{
+			return Long.bitCount(aMask);
+		}
+
+		@Override
+		public Iterator<Card> iterator()
+		{
+			return new Iterator<Card>()
+			{
+				private long aRemaining = aMask;
+
+				@Override
+				public boolean hasNext()
+				{
+					return aRemaining != 0;
+				}
+
+				@Override
+				public Card next()
+				{
+					if( aRemaining == 0 )
+					{
+						throw new NoSuchElementException();
+					}
+					int lIndex = Long.numberOfTrailingZeros(aRemaining);
+					aRemaining &= aRemaining - 1;
+					return Card.ofIndex(lIndex);
+				}
+
+				@Override
+				public void remove()
+				{
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+}
@@ -5,6 +5,11 @@ import java.util.Set;
 import java.util.Iterator;
 import java.util.Collections;
 
+/**
+ * A group or run stored as a set of cards.
+ * @deprecated Use Meld, which is immutable and stores its cards as a mask.
+ */
+@Deprecated
 public class CardSet extends HashSet<Card> implements ICardSet
 {
 	private boolean isGroup;
@@ -1,50 +1,63 @@
 package ca.mcgill.cs.comp303.rummy.model;
 
-import java.util.Collections;
-import java.util.Stack;
-
-import ca.mcgill.cs.comp303.rummy.model.Card.Rank;
-import ca.mcgill.cs.comp303.rummy.model.Card.Suit;
+import java.util.Random;
 
 /**
- * Models a deck of 52 cards (no joker).
+ * Models a deck of 52 cards (no joker). The deck holds the indices of
+ * its cards (see Card.index()) in an array, so shuffling and drawing
+ * allocate nothing.
  */
-public class Deck 
+public class Deck
 {
-	private Stack<Card> aCards;
-	
+	private final int[] aCards = new int[Card.NUM_CARDS];
+	private int aSize;
+	private final Random aRandom;
+
 	/**
 	 * Creates a new deck of 52 cards, shuffled.
 	 */
 	public Deck()
 	{
-		aCards = new Stack<Card>();
-		reset();
+		this(new FastRandom());
+	}
+
+	/**
+	 * Creates a new deck of 52 cards, shuffled with pRandom. Reseeding
+	 * pRandom before calling shuffle() reproduces the same order.
+	 * @param pRandom The source of randomness of the deck.
+	 * @pre pRandom != null
+	 */
+	public Deck(Random pRandom)
+	{
+		aRandom = pRandom;
 		shuffle();
 	}
-	
+
 	private void reset()
 	{
-		aCards.clear();
-		for( Suit lSuit : Suit.values() )
+		for( int i = 0; i < Card.NUM_CARDS; i++ )
 		{
-            for( Rank lRank : Rank.values() )
-            {
-                aCards.add( new Card( lRank, lSuit ));
-            }
+			aCards[i] = i;
 		}
+		aSize = Card.NUM_CARDS;
 	}
 
 	/**
 	 * Shuffle the deck of cards by retrieving all 52 cards and randomizing
-	 * their order.
+	 * their order, in place, with the Fisher-Yates algorithm.
 	 */
 	public void shuffle()
 	{
 		reset();
-		Collections.shuffle( aCards );
+		for( int i = Card.NUM_CARDS - 1; i > 0; i-- )
+		{
+			int lOther = aRandom.nextInt(i + 1);
+			int lCard = aCards[i];
+			aCards[i] = aCards[lOther];
+			aCards[lOther] = lCard;
+		}
 	}
-	
+
 	/**
 	 * Draws a card from the deck and removes the card from the deck.
 	 * @return The card drawn.
@@ -54,15 +67,41 @@ public class Deck
 	public Card draw()
 	{
 		assert size() > 0;
-		return aCards.pop();
+		return Card.ofIndex(aCards[--aSize]);
+	}
+
+	/**
+	 * Returns the card on top of the deck without removing it.
+	 * @return The card on top of the deck.
+	 * @pre size() > 0
+	 */
+	public Card peek()
+	{
+		assert size() > 0;
+		return Card.ofIndex(aCards[aSize - 1]);
 	}
-	
+
+	/**
+	 * Copies the indices of the cards of the deck into pCards, top first.
+	 * @param pCards The array to fill.
+	 * @return The number of cards copied.
+	 * @pre pCards.length >= size()
+	 */
+	int copyTo(int[] pCards)
+	{
+		for( int i = 0; i < aSize; i++ )
+		{
+			pCards[i] = aCards[aSize - 1 - i];
+		}
+		return aSize;
+	}
+
 	/**
 	 * Returns the size of the deck.
 	 * @return The number of cards in the deck.
 	 */
 	public int size()
 	{
-		return aCards.size();
+		return aSize;
 	}
 }
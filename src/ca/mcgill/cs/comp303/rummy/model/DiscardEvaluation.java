@@ -0,0 +1,151 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import java.util.Arrays;
+
+/**
+ * The lowest deadwood left by each possible discard from a hand, usually
+ * the 11 cards of a player who just drew, computed in one pass.
+ *
+ * The hand is matched once. Discarding a card that this matching leaves
+ * unmatched lowers the deadwood by exactly the score of the card, since
+ * the deadwood of a hand can never drop by more than the score of a card
+ * removed from it. Discarding a matched card only changes the solution of
+ * the component of that card (see OptimalMatchStrategy), so only that
+ * component, minus the card, is solved again; the other components keep
+ * their solution. Immutable.
+ */
+public final class DiscardEvaluation
+{
+	/**
+	 * The highest deadwood with which a player can knock.
+	 */
+	public static final int MAX_KNOCK = 10;
+
+	private final long aHand;
+	private final int aDeadwood;
+	private final int[] aDeadwoods;
+
+	private DiscardEvaluation(long pHand, int pDeadwood, int[] pDeadwoods)
+	{
+		aHand = pHand;
+		aDeadwood = pDeadwood;
+		aDeadwoods = pDeadwoods;
+	}
+
+	/**
+	 * Evaluates every discard from pHand.
+	 * @param pHand The mask of a hand (see CardMask).
+	 * @return The evaluation of the discards.
+	 */
+	public static DiscardEvaluation evaluate(long pHand)
+	{
+		long[] lMelds = new long[OptimalMatchStrategy.MAX_MELDS];
+		int lCount = OptimalMatchStrategy.solveComponents(pHand, pHand, lMelds, 0);
+		long lMatched = 0;
+		for( int i = 0; i < lCount; i++ )
+		{
+			lMatched |= lMelds[i];
+		}
+		int lDeadwood = CardMask.score(pHand & ~lMatched);
+
+		int[] lDeadwoods = new int[CardMask.DECK_SIZE];
+		Arrays.fill(lDeadwoods, -1);
+		for( long lCards = pHand & ~lMatched; lCards != 0; lCards &= lCards - 1 )
+		{
+			int lCard = CardMask.first(lCards);
+			lDeadwoods[lCard] = lDeadwood - Card.scoreOf(lCard);
+		}
+
+		long lRemaining = lMatched;
+		while( lRemaining != 0 )
+		{
+			long lComponent = OptimalMatchStrategy.component(pHand, Long.lowestOneBit(lRemaining));
+			lRemaining &= ~lComponent;
+			int lOutside = lDeadwood - CardMask.score(lComponent & ~lMatched);
+			for( long lCards = lComponent & lMatched; lCards != 0; lCards &= lCards - 1 )
+			{
+				long lCard = Long.lowestOneBit(lCards);
+				long lRegion = lComponent & ~lCard;
+				// What is left of the component is still a union of components of the hand without the card
+				int lSolved = OptimalMatchStrategy.solveComponents(pHand & ~lCard, lRegion, lMelds, 0);
+				long lRegionMatched = 0;
+				for( int i = 0; i < lSolved; i++ )
+				{
+					lRegionMatched |= lMelds[i];
+				}
+				lDeadwoods[CardMask.first(lCard)] = lOutside + CardMask.score(lRegion & ~lRegionMatched);
+			}
+		}
+		return new DiscardEvaluation(pHand, lDeadwood, lDeadwoods);
+	}
+
+	/**
+	 * @return The mask of the evaluated hand.
+	 */
+	public long getHand()
+	{
+		return aHand;
+	}
+
+	/**
+	 * @return The lowest deadwood of the whole hand, before any discard.
+	 */
+	public int getDeadwood()
+	{
+		return aDeadwood;
+	}
+
+	/**
+	 * @param pCard The index of a card of the hand.
+	 * @return The lowest deadwood of the hand once pCard is discarded.
+	 * @pre CardMask.contains(getHand(), Card.ofIndex(pCard))
+	 */
+	public int getDeadwood(int pCard)
+	{
+		assert aDeadwoods[pCard] >= 0;
+		return aDeadwoods[pCard];
+	}
+
+	/**
+	 * @param pCard The index of a card of the hand.
+	 * @return True if the player can knock after discarding pCard: the rest
+	 * of the hand has at most MAX_KNOCK points of deadwood and at least one meld.
+	 * @pre CardMask.contains(getHand(), Card.ofIndex(pCard))
+	 */
+	public boolean canKnock(int pCard)
+	{
+		int lDeadwood = getDeadwood(pCard);
+		return lDeadwood <= MAX_KNOCK && lDeadwood < CardMask.score(aHand & ~(1L << pCard));
+	}
+
+	/**
+	 * @param pCard The index of a card of the hand.
+	 * @return True if every other card of the hand is matched once pCard is discarded.
+	 * @pre CardMask.contains(getHand(), Card.ofIndex(pCard))
+	 */
+	public boolean isGin(int pCard)
+	{
+		return getDeadwood(pCard) == 0;
+	}
+
+	/**
+	 * Finds the discard that leaves the least deadwood. Ties are broken by
+	 * discarding the card worth the most points, then the highest card.
+	 * @param pAllowed The mask of the cards that may be discarded.
+	 * @return The index of the best card of pAllowed, or -1 if no card of the hand is allowed.
+	 */
+	public int getBest(long pAllowed)
+	{
+		int lBest = -1;
+		for( long lCards = aHand & pAllowed; lCards != 0; lCards &= lCards - 1 )
+		{
+			int lCard = CardMask.first(lCards);
+			if( lBest < 0 || aDeadwoods[lCard] < aDeadwoods[lBest] ||
+					aDeadwoods[lCard] == aDeadwoods[lBest] && Card.scoreOf(lCard) >= Card.scoreOf(lBest) )
+			{
+				lBest = lCard;
+			}
+		}
+		return lBest;
+	}
+}
@@ -0,0 +1,380 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import ca.mcgill.cs.comp303.rummy.metrics.Histogram;
+import ca.mcgill.cs.comp303.rummy.metrics.HistogramSnapshot;
+import ca.mcgill.cs.comp303.rummy.metrics.StripedCounter;
+
+/**
+ * Counters and latency histograms of the engine, shared by all the engines
+ * of the JVM. The code being measured calls start() and stop(); recording
+ * takes two reads of the clock and a few atomic additions, which is cheap
+ * enough to leave on. The metrics are read through the getters of
+ * EngineMetricsMXBean, either directly or over JMX once register() is called.
+ * Reading the metrics changes nothing, so any number of clients can read
+ * them: a client that wants the recent rate of games or hands keeps its
+ * own Sample from its previous reading. Threadsafe.
+ */
+public final class EngineMetrics implements EngineMetricsMXBean
+{
+	/**
+	 * The name under which the metrics are registered with JMX.
+	 */
+	public static final String OBJECT_NAME = "ca.mcgill.cs.comp303.rummy:type=EngineMetrics";
+
+	/**
+	 * The operations whose latencies are measured.
+	 */
+	public enum Timer
+	{ AUTO_MATCH, TRY_COMPLETE, TAKE_FIRST_CARD, DRAW, DISCARD, KNOCK }
+
+	private static final EngineMetrics INSTANCE = new EngineMetrics();
+	private static final double NANOS_PER_SECOND = 1e9;
+
+	private final Histogram[] aTimers = new Histogram[Timer.values().length];
+	private final Histogram aHandsPerTable = new Histogram();
+	private final StripedCounter aHands = new StripedCounter();
+	private final StripedCounter aGames = new StripedCounter();
+	private final StripedCounter aCacheHits = new StripedCounter();
+	private final StripedCounter aCacheMisses = new StripedCounter();
+	private volatile boolean aEnabled = true;
+	private volatile Sample aReset = new Sample(System.nanoTime(), 0, 0);
+
+	private EngineMetrics()
+	{
+		for( int i = 0; i < aTimers.length; i++ )
+		{
+			aTimers[i] = new Histogram();
+		}
+	}
+
+	/**
+	 * @return The metrics of the JVM.
+	 */
+	public static EngineMetrics get()
+	{
+		return INSTANCE;
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server, if they are not already.
+	 * @throws IllegalStateException if the registration fails.
+	 */
+	public static synchronized void register()
+	{
+		try
+		{
+			MBeanServer lServer = ManagementFactory.getPlatformMBeanServer();
+			ObjectName lName = new ObjectName(OBJECT_NAME);
+			if( !lServer.isRegistered(lName) )
+			{
+				lServer.registerMBean(INSTANCE, lName);
+			}
+		}
+		catch( JMException lException )
+		{
+			throw new IllegalStateException(lException);
+		}
+	}
+
+	/**
+	 * Starts measuring an operation.
+	 * @return The start time to pass to stop(), or 0 if the metrics are disabled.
+	 */
+	public static long start()
+	{
+		if( INSTANCE.aEnabled )
+		{
+			return System.nanoTime();
+		}
+		return 0;
+	}
+
+	/**
+	 * Records the latency of an operation.
+	 * @param pTimer The operation.
+	 * @param pStart The value returned by start() when the operation started.
+	 */
+	public static void stop(Timer pTimer, long pStart)
+	{
+		if( pStart != 0 )
+		{
+			INSTANCE.aTimers[pTimer.ordinal()].record(System.nanoTime() - pStart);
+		}
+	}
+
+	/**
+	 * Counts a hand played.
+	 */
+	public static void handPlayed()
+	{
+		if( INSTANCE.aEnabled )
+		{
+			INSTANCE.aHands.increment();
+		}
+	}
+
+	/**
+	 * Counts a game played.
+	 */
+	public static void gamePlayed()
+	{
+		if( INSTANCE.aEnabled )
+		{
+			INSTANCE.aGames.increment();
+		}
+	}
+
+	/**
+	 * Counts a lookup in a MatchCache, whichever cache it is.
+	 * @param pHit True if the lookup found a matching.
+	 */
+	static void cacheLookup(boolean pHit)
+	{
+		if( INSTANCE.aEnabled )
+		{
+			if( pHit )
+			{
+				INSTANCE.aCacheHits.increment();
+			}
+			else
+			{
+				INSTANCE.aCacheMisses.increment();
+			}
+		}
+	}
+
+	/**
+	 * Records the number of hands of a game played at a table.
+	 * @param pHands The number of hands.
+	 */
+	public static void tableClosed(int pHands)
+	{
+		if( INSTANCE.aEnabled )
+		{
+			INSTANCE.aHandsPerTable.record(pHands);
+		}
+	}
+
+	/**
+	 * @param pTimer An operation.
+	 * @return The latencies of pTimer.
+	 */
+	public HistogramSnapshot getLatencies(Timer pTimer)
+	{
+		return aTimers[pTimer.ordinal()].snapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getAutoMatch()
+	{
+		return getLatencies(Timer.AUTO_MATCH);
+	}
+
+	@Override
+	public HistogramSnapshot getTryComplete()
+	{
+		return getLatencies(Timer.TRY_COMPLETE);
+	}
+
+	@Override
+	public HistogramSnapshot getTakeFirstCard()
+	{
+		return getLatencies(Timer.TAKE_FIRST_CARD);
+	}
+
+	@Override
+	public HistogramSnapshot getDraw()
+	{
+		return getLatencies(Timer.DRAW);
+	}
+
+	@Override
+	public HistogramSnapshot getDiscard()
+	{
+		return getLatencies(Timer.DISCARD);
+	}
+
+	@Override
+	public HistogramSnapshot getKnock()
+	{
+		return getLatencies(Timer.KNOCK);
+	}
+
+	@Override
+	public HistogramSnapshot getHandsPerTable()
+	{
+		return aHandsPerTable.snapshot();
+	}
+
+	@Override
+	public long getHands()
+	{
+		return aHands.get();
+	}
+
+	@Override
+	public long getGames()
+	{
+		return aGames.get();
+	}
+
+	@Override
+	public double getGamesPerSecond()
+	{
+		return sample().getGamesPerSecond(aReset);
+	}
+
+	@Override
+	public double getHandsPerSecond()
+	{
+		return sample().getHandsPerSecond(aReset);
+	}
+
+	/**
+	 * @return The current counts of hands and games, with the time at which they were read.
+	 */
+	public Sample sample()
+	{
+		long lHands = aHands.get();
+		long lGames = aGames.get();
+		return new Sample(System.nanoTime(), lHands, lGames);
+	}
+
+	@Override
+	public long getCacheHits()
+	{
+		return aCacheHits.get();
+	}
+
+	@Override
+	public long getCacheMisses()
+	{
+		return aCacheMisses.get();
+	}
+
+	@Override
+	public double getCacheHitRate()
+	{
+		long lHits = getCacheHits();
+		long lLookups = lHits + getCacheMisses();
+		if( lLookups == 0 )
+		{
+			return 0;
+		}
+		return (double) lHits / lLookups;
+	}
+
+	@Override
+	public boolean isEnabled()
+	{
+		return aEnabled;
+	}
+
+	@Override
+	public void setEnabled(boolean pEnabled)
+	{
+		aEnabled = pEnabled;
+	}
+
+	@Override
+	public void reset()
+	{
+		for( Histogram lTimer : aTimers )
+		{
+			lTimer.reset();
+		}
+		aHandsPerTable.reset();
+		aHands.reset();
+		aGames.reset();
+		aCacheHits.reset();
+		aCacheMisses.reset();
+		aReset = new Sample(System.nanoTime(), 0, 0);
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder lResult = new StringBuilder("EngineMetrics hands=").append(getHands()).append(" games=")
+				.append(getGames()).append(String.format(" cacheHitRate=%.3f", getCacheHitRate()));
+		for( Timer lTimer : Timer.values() )
+		{
+			lResult.append(System.lineSeparator()).append(lTimer).append(": ").append(getLatencies(lTimer));
+		}
+		return lResult.toString();
+	}
+
+	/**
+	 * The counts of hands and games at a point in time. The rates between
+	 * two samples are computed from the samples alone. Immutable.
+	 */
+	public static final class Sample
+	{
+		private final long aTime;
+		private final long aHands;
+		private final long aGames;
+
+		private Sample(long pTime, long pHands, long pGames)
+		{
+			aTime = pTime;
+			aHands = pHands;
+			aGames = pGames;
+		}
+
+		/**
+		 * @return The time of the sample, as given by System.nanoTime().
+		 */
+		public long getTime()
+		{
+			return aTime;
+		}
+
+		/**
+		 * @return The number of hands played when the sample was taken.
+		 */
+		public long getHands()
+		{
+			return aHands;
+		}
+
+		/**
+		 * @return The number of games played when the sample was taken.
+		 */
+		public long getGames()
+		{
+			return aGames;
+		}
+
+		/**
+		 * @param pEarlier A sample taken before this one.
+		 * @return The number of hands played per second between pEarlier and this sample.
+		 */
+		public double getHandsPerSecond(Sample pEarlier)
+		{
+			return rate(aHands - pEarlier.aHands, pEarlier);
+		}
+
+		/**
+		 * @param pEarlier A sample taken before this one.
+		 * @return The number of games played per second between pEarlier and this sample.
+		 */
+		public double getGamesPerSecond(Sample pEarlier)
+		{
+			return rate(aGames - pEarlier.aGames, pEarlier);
+		}
+
+		private double rate(long pCount, Sample pEarlier)
+		{
+			if( aTime <= pEarlier.aTime )
+			{
+				return 0;
+			}
+			return Math.max(0, pCount) * NANOS_PER_SECOND / (aTime - pEarlier.aTime);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import ca.mcgill.cs.comp303.rummy.metrics.HistogramSnapshot;
+
+/**
+ * The management interface of the EngineMetrics. Latencies are in
+ * nanoseconds. Every getter returns a snapshot of the current value.
+ */
+public interface EngineMetricsMXBean
+{
+	/**
+	 * @return The latencies of Hand.autoMatch().
+	 */
+	HistogramSnapshot getAutoMatch();
+
+	/**
+	 * @return The latencies of the layoffs computed by Hand.tryComplete() and after knocks.
+	 */
+	HistogramSnapshot getTryComplete();
+
+	/**
+	 * @return The latencies of the decisions of players to take the first upcard.
+	 */
+	HistogramSnapshot getTakeFirstCard();
+
+	/**
+	 * @return The latencies of the decisions of players to draw from the stock or the discard pile.
+	 */
+	HistogramSnapshot getDraw();
+
+	/**
+	 * @return The latencies of the decisions of players on what to discard.
+	 */
+	HistogramSnapshot getDiscard();
+
+	/**
+	 * @return The latencies of the decisions of players to knock.
+	 */
+	HistogramSnapshot getKnock();
+
+	/**
+	 * @return The number of hands played in each game of a table.
+	 */
+	HistogramSnapshot getHandsPerTable();
+
+	/**
+	 * @return The number of hands played.
+	 */
+	long getHands();
+
+	/**
+	 * @return The number of games played to GameEngine.GAME_SCORE.
+	 */
+	long getGames();
+
+	/**
+	 * @return The number of games played per second since the metrics were reset.
+	 * See EngineMetrics.sample() for the rate over another period.
+	 */
+	double getGamesPerSecond();
+
+	/**
+	 * @return The number of hands played per second since the metrics were reset.
+	 * See EngineMetrics.sample() for the rate over another period.
+	 */
+	double getHandsPerSecond();
+
+	/**
+	 * @return The number of matchings found in a MatchCache, over all the caches.
+	 */
+	long getCacheHits();
+
+	/**
+	 * @return The number of matchings not found in a MatchCache, over all the caches.
+	 */
+	long getCacheMisses();
+
+	/**
+	 * @return The proportion of lookups in a MatchCache that found a matching, over all the caches.
+	 */
+	double getCacheHitRate();
+
+	/**
+	 * @return True if the metrics are recorded.
+	 */
+	boolean isEnabled();
+
+	/**
+	 * @param pEnabled True to record the metrics.
+	 */
+	void setEnabled(boolean pEnabled);
+
+	/**
+	 * Clears every metric. The statistics kept by each MatchCache are unchanged.
+	 */
+	void reset();
+}
@@ -0,0 +1,121 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fast, seedable source of random numbers for shuffling, based on the
+ * xoroshiro128+ generator. The 128 bits of state are initialized from the
+ * seed with SplitMix64, so any seed, including 0, gives a good sequence.
+ * Unlike java.util.Random, this class is not threadsafe: give each thread
+ * its own instance, e.g., one obtained with split().
+ */
+public class FastRandom extends Random
+{
+	private static final long serialVersionUID = 1L;
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+	private static final AtomicLong SEEDER = new AtomicLong(System.nanoTime());
+
+	private long aState0;
+	private long aState1;
+
+	/**
+	 * Creates a generator with a seed that is unlikely to be used by any other generator.
+	 */
+	public FastRandom()
+	{
+		this(mix(SEEDER.addAndGet(GOLDEN_GAMMA) ^ System.nanoTime()));
+	}
+
+	/**
+	 * Creates a generator with an explicit seed.
+	 * @param pSeed The seed.
+	 */
+	public FastRandom(long pSeed)
+	{
+		super(pSeed);
+	}
+
+	/**
+	 * Restarts the sequence of the generator from pSeed.
+	 * @param pSeed The seed.
+	 */
+	@Override
+	public void setSeed(long pSeed)
+	{
+		aState0 = mix(pSeed + GOLDEN_GAMMA);
+		aState1 = mix(pSeed + 2 * GOLDEN_GAMMA);
+	}
+
+	/**
+	 * Creates a new generator whose sequence is independent from the
+	 * rest of the sequence of this one, e.g., for another thread.
+	 * @return A new generator.
+	 */
+	public FastRandom split()
+	{
+		return new FastRandom(nextLong());
+	}
+
+	@Override
+	public long nextLong()
+	{
+		long lState0 = aState0;
+		long lState1 = aState1;
+		long lResult = lState0 + lState1;
+		lState1 ^= lState0;
+		aState0 = Long.rotateLeft(lState0, 24) ^ lState1 ^ (lState1 << 16);
+		aState1 = Long.rotateLeft(lState1, 37);
+		return lResult;
+	}
+
+	@Override
+	protected int next(int pBits)
+	{
+		// The high bits of xoroshiro128+ are the best ones
+		return (int) (nextLong() >>> (Long.SIZE - pBits));
+	}
+
+	@Override
+	public int nextInt()
+	{
+		return (int) (nextLong() >>> Integer.SIZE);
+	}
+
+	/**
+	 * @param pBound The upper bound (exclusive).
+	 * @return A uniformly distributed value between 0 (inclusive) and pBound (exclusive).
+	 * @pre pBound > 0
+	 */
+	@Override
+	public int nextInt(int pBound)
+	{
+		if( pBound <= 0 )
+		{
+			throw new IllegalArgumentException("bound must be positive");
+		}
+		// Lemire's multiply-and-shift, with rejection of the biased products
+		long lProduct = (nextLong() >>> Integer.SIZE) * pBound;
+		if( (lProduct & 0xFFFFFFFFL) < pBound )
+		{
+			long lThreshold = (0x100000000L - pBound) % pBound;
+			while( (lProduct & 0xFFFFFFFFL) < lThreshold )
+			{
+				lProduct = (nextLong() >>> Integer.SIZE) * pBound;
+			}
+		}
+		return (int) (lProduct >>> Integer.SIZE);
+	}
+
+	/**
+	 * The SplitMix64 finalizer: a bijection that scrambles the bits of pValue.
+	 * @param pValue A value.
+	 * @return The mixed value.
+	 */
+	public static long mix(long pValue)
+	{
+		long lValue = (pValue ^ (pValue >>> 30)) * 0xBF58476D1CE4E5B9L;
+		lValue = (lValue ^ (lValue >>> 27)) * 0x94D049BB133111EBL;
+		return lValue ^ (lValue >>> 31);
+	}
+}
@@ -0,0 +1,40 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+/**
+ * An IGameListener that ignores every event. Extend it to observe
+ * only some of the events.
+ */
+public abstract class GameAdapter implements IGameListener
+{
+	@Override
+	public void handStarted(int pDealer, Card pUpcard)
+	{}
+
+	@Override
+	public void upcardRefused(int pPlayer)
+	{}
+
+	@Override
+	public void turnStarted(int pPlayer)
+	{}
+
+	@Override
+	public void cardDrawn(int pPlayer, Card pCard, boolean pFromDiscard)
+	{}
+
+	@Override
+	public void cardDiscarded(int pPlayer, Card pCard)
+	{}
+
+	@Override
+	public void knocked(int pPlayer, int pDeadwood)
+	{}
+
+	@Override
+	public void cardsLaidOff(int pPlayer, long pCards)
+	{}
+
+	@Override
+	public void handEnded(HandResult pResult)
+	{}
+}
@@ -0,0 +1,219 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+
+/**
+ * A compact binary encoding of hands and game states into ByteBuffers.
+ *
+ * A hand is one long holding the 52-bit mask of its cards and the number
+ * of its melds in the bits above, followed by the index of each meld in
+ * the MeldCatalog as a short: 8 bytes for a hand with no melds, and at
+ * most MAX_HAND_BYTES.
+ *
+ * A game state (see GameSnapshot) is a short holding the turn and the
+ * sizes of the stock and of the discard pile, the two scores as ints, the
+ * masks of the two hands on 7 bytes each, and the cards of the stock (top
+ * first) then of the discard pile (bottom first) on 6 bits each: about 49
+ * bytes in the middle of a hand, and at most MAX_STATE_BYTES.
+ * Encoding and decoding a game state allocate nothing.
+ *
+ * Multi-byte values follow the byte order of the buffer.
+ */
+public final class GameCodec
+{
+	/**
+	 * The most melds a hand can hold, with the card drawn during a turn.
+	 */
+	public static final int MAX_HAND_MELDS = (GameEngine.HAND_SIZE + 1) / 3;
+
+	/**
+	 * The largest number of bytes of an encoded hand.
+	 */
+	public static final int MAX_HAND_BYTES = Long.SIZE / Byte.SIZE + MAX_HAND_MELDS * Short.SIZE / Byte.SIZE;
+
+	private static final int CARD_BITS = 6;
+	private static final int CARD_MASK = (1 << CARD_BITS) - 1;
+	private static final int MASK_BYTES = 7;
+	private static final int MELD_COUNT_SHIFT = CardMask.DECK_SIZE;
+	private static final int STOCK_SHIFT = 1;
+	private static final int PILE_SHIFT = STOCK_SHIFT + CARD_BITS;
+	private static final int NUM_PLAYERS = 2;
+	private static final int BYTE_MASK = 0xFF;
+
+	/**
+	 * The largest number of bytes of an encoded game state.
+	 */
+	public static final int MAX_STATE_BYTES = Short.SIZE / Byte.SIZE + NUM_PLAYERS * (Integer.SIZE / Byte.SIZE + MASK_BYTES) +
+			(CardMask.DECK_SIZE * CARD_BITS + Byte.SIZE - 1) / Byte.SIZE;
+
+	private GameCodec()
+	{}
+
+	/**
+	 * Writes the cards and the matched sets of pHand.
+	 * @param pHand The hand to write.
+	 * @param pBuffer The buffer to write to.
+	 * @throws java.nio.BufferOverflowException if pBuffer has less than MAX_HAND_BYTES remaining.
+	 * @pre pHand != null && pBuffer != null
+	 */
+	public static void writeHand(Hand pHand, ByteBuffer pBuffer)
+	{
+		Set<ICardSet> lSets = pHand.getMatchedCards();
+		assert lSets.size() <= MAX_HAND_MELDS;
+		pBuffer.putLong(pHand.getCardMask() | (long) lSets.size() << MELD_COUNT_SHIFT);
+		for( ICardSet lSet : lSets )
+		{
+			pBuffer.putShort((short) MeldCatalog.indexOf(CardMask.of(lSet)));
+		}
+	}
+
+	/**
+	 * Reads a hand written by writeHand() into pHand, replacing its cards
+	 * and its matched sets.
+	 * @param pBuffer The buffer to read from.
+	 * @param pHand The hand to fill.
+	 * @throws HandException if the encoded hand is not valid.
+	 * @pre pBuffer != null && pHand != null
+	 */
+	public static void readHand(ByteBuffer pBuffer, Hand pHand)
+	{
+		long lWord = pBuffer.getLong();
+		long lCards = lWord & CardMask.ALL;
+		int lCount = (int) (lWord >>> MELD_COUNT_SHIFT);
+		if( lCount > MAX_HAND_MELDS )
+		{
+			throw new HandException("Invalid hand encoding");
+		}
+		long[] lMelds = new long[lCount];
+		long lMatched = 0;
+		for( int i = 0; i < lCount; i++ )
+		{
+			int lIndex = pBuffer.getShort();
+			if( lIndex < 0 || lIndex >= MeldCatalog.size() )
+			{
+				throw new HandException("Invalid meld encoding");
+			}
+			lMelds[i] = MeldCatalog.get(lIndex);
+			if( (lMelds[i] & ~lCards) != 0 || (lMelds[i] & lMatched) != 0 )
+			{
+				throw new HandException("Invalid meld encoding");
+			}
+			lMatched |= lMelds[i];
+		}
+		pHand.restore(lCards, lMelds);
+	}
+
+	/**
+	 * Writes the game state in pState.
+	 * @param pState The state to write.
+	 * @param pBuffer The buffer to write to.
+	 * @throws java.nio.BufferOverflowException if pBuffer has less than MAX_STATE_BYTES remaining.
+	 * @pre pState != null && pBuffer != null
+	 */
+	public static void writeState(GameSnapshot pState, ByteBuffer pBuffer)
+	{
+		pBuffer.putShort((short) (pState.aTurn | pState.aStockSize << STOCK_SHIFT | pState.aPileSize << PILE_SHIFT));
+		for( int i = 0; i < NUM_PLAYERS; i++ )
+		{
+			pBuffer.putInt(pState.aScores[i]);
+		}
+		for( int i = 0; i < NUM_PLAYERS; i++ )
+		{
+			long lHand = pState.aHands[i];
+			for( int j = 0; j < MASK_BYTES; j++ )
+			{
+				pBuffer.put((byte) lHand);
+				lHand >>>= Byte.SIZE;
+			}
+		}
+
+		// The cards are packed in a bit stream, flushed a byte at a time
+		long lBits = 0;
+		int lBitCount = 0;
+		int lCards = pState.aStockSize + pState.aPileSize;
+		for( int i = 0; i < lCards; i++ )
+		{
+			int lCard;
+			if( i < pState.aStockSize )
+			{
+				lCard = pState.aStock[i];
+			}
+			else
+			{
+				lCard = pState.aPile[i - pState.aStockSize];
+			}
+			lBits |= (long) lCard << lBitCount;
+			lBitCount += CARD_BITS;
+			while( lBitCount >= Byte.SIZE )
+			{
+				pBuffer.put((byte) lBits);
+				lBits >>>= Byte.SIZE;
+				lBitCount -= Byte.SIZE;
+			}
+		}
+		if( lBitCount > 0 )
+		{
+			pBuffer.put((byte) lBits);
+		}
+	}
+
+	/**
+	 * Reads a game state written by writeState() into pState.
+	 * @param pBuffer The buffer to read from.
+	 * @param pState The state to fill.
+	 * @throws HandException if the encoded state is not valid.
+	 * @pre pBuffer != null && pState != null
+	 */
+	public static void readState(ByteBuffer pBuffer, GameSnapshot pState)
+	{
+		int lHeader = pBuffer.getShort();
+		pState.aTurn = lHeader & 1;
+		pState.aStockSize = lHeader >>> STOCK_SHIFT & CARD_MASK;
+		pState.aPileSize = lHeader >>> PILE_SHIFT & CARD_MASK;
+		if( pState.aStockSize + pState.aPileSize > CardMask.DECK_SIZE )
+		{
+			throw new HandException("Invalid state encoding");
+		}
+		for( int i = 0; i < NUM_PLAYERS; i++ )
+		{
+			pState.aScores[i] = pBuffer.getInt();
+		}
+		for( int i = 0; i < NUM_PLAYERS; i++ )
+		{
+			long lHand = 0;
+			for( int j = 0; j < MASK_BYTES; j++ )
+			{
+				lHand |= (long) (pBuffer.get() & BYTE_MASK) << (j * Byte.SIZE);
+			}
+			pState.aHands[i] = lHand & CardMask.ALL;
+		}
+
+		long lBits = 0;
+		int lBitCount = 0;
+		int lCards = pState.aStockSize + pState.aPileSize;
+		for( int i = 0; i < lCards; i++ )
+		{
+			while( lBitCount < CARD_BITS )
+			{
+				lBits |= (long) (pBuffer.get() & BYTE_MASK) << lBitCount;
+				lBitCount += Byte.SIZE;
+			}
+			int lCard = (int) lBits & CARD_MASK;
+			lBits >>>= CARD_BITS;
+			lBitCount -= CARD_BITS;
+			if( lCard >= CardMask.DECK_SIZE )
+			{
+				throw new HandException("Invalid card encoding");
+			}
+			if( i < pState.aStockSize )
+			{
+				pState.aStock[i] = lCard;
+			}
+			else
+			{
+				pState.aPile[i - pState.aStockSize] = lCard;
+			}
+		}
+	}
+}
@@ -1,6 +1,448 @@
 package ca.mcgill.cs.comp303.rummy.model;
 
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Plays hands of gin rummy between two players, without any user
+ * interface. Players are identified by their seat (0 or 1). Events are
+ * reported to IGameListeners; the engine itself does no I/O. Players that
+ * implement IGameListener are registered as listeners, so they can follow
+ * the moves of their opponent, but they are not told which card their
+ * opponent draws from the stock. Not threadsafe: use one engine, with its
+ * own players, per thread.
+ */
 public class GameEngine
 {
+	/**
+	 * The number of cards dealt to each player.
+	 */
+	public static final int HAND_SIZE = 10;
+
+	/**
+	 * The bonus for going gin.
+	 */
+	public static final int GIN_BONUS = 25;
+
+	/**
+	 * The bonus for undercutting the knocker.
+	 */
+	public static final int UNDERCUT_BONUS = 25;
+
+	/**
+	 * The number of cards left in the stock when the hand is declared a draw.
+	 */
+	public static final int MIN_STOCK = 2;
+
+	/**
+	 * The score that ends a game.
+	 */
+	public static final int GAME_SCORE = 100;
+
+	private static final int NUM_PLAYERS = 2;
+
+	private final Player[] aPlayers;
+	private final int[] aScores = new int[NUM_PLAYERS];
+	private final Deck aDeck;
+	private final Card[] aDiscards = new Card[CardMask.DECK_SIZE];
+	private int aDiscardCount;
+	private int aTurn;
+	private IGameListener[] aListeners = new IGameListener[0];
+
+	/**
+	 * Creates an engine for two players.
+	 * @param pPlayer0 The player in seat 0.
+	 * @param pPlayer1 The player in seat 1.
+	 * @pre pPlayer0 != null && pPlayer1 != null && pPlayer0 != pPlayer1
+	 */
+	public GameEngine(Player pPlayer0, Player pPlayer1)
+	{
+		this(pPlayer0, pPlayer1, new FastRandom());
+	}
+
+	/**
+	 * Creates an engine for two players that shuffles with pRandom.
+	 * Reseeding pRandom before a hand reproduces the same deal.
+	 * @param pPlayer0 The player in seat 0.
+	 * @param pPlayer1 The player in seat 1.
+	 * @param pRandom The source of randomness of the deck.
+	 * @pre pPlayer0 != null && pPlayer1 != null && pPlayer0 != pPlayer1 && pRandom != null
+	 */
+	public GameEngine(Player pPlayer0, Player pPlayer1, Random pRandom)
+	{
+		aPlayers = new Player[] {pPlayer0, pPlayer1};
+		aDeck = new Deck(pRandom);
+		for( int i = 0; i < NUM_PLAYERS; i++ )
+		{
+			aPlayers[i].setSeat(i);
+			if( aPlayers[i] instanceof IGameListener )
+			{
+				addListener((IGameListener) aPlayers[i]);
+			}
+		}
+	}
+
+	/**
+	 * Registers a listener to be notified of the events of the hands.
+	 * @param pListener The listener to add.
+	 * @pre pListener != null
+	 */
+	public void addListener(IGameListener pListener)
+	{
+		aListeners = Arrays.copyOf(aListeners, aListeners.length + 1);
+		aListeners[aListeners.length - 1] = pListener;
+	}
+
+	/**
+	 * @param pPlayer A seat.
+	 * @return The player in that seat.
+	 */
+	public Player getPlayer(int pPlayer)
+	{
+		return aPlayers[pPlayer];
+	}
+
+	/**
+	 * @param pPlayer A seat.
+	 * @return The total points scored by the player in that seat in the current game.
+	 */
+	public int getScore(int pPlayer)
+	{
+		return aScores[pPlayer];
+	}
+
+	/**
+	 * Copies the state of the current hand into pSnapshot. Listeners can
+	 * call it when they are notified of an event. From the time a player
+	 * draws until it discards, the card it drew is part of its hand.
+	 * @param pSnapshot The snapshot to fill.
+	 * @pre pSnapshot != null
+	 */
+	public void capture(GameSnapshot pSnapshot)
+	{
+		pSnapshot.aStockSize = aDeck.copyTo(pSnapshot.aStock);
+		for( int i = 0; i < aDiscardCount; i++ )
+		{
+			pSnapshot.aPile[i] = aDiscards[i].index();
+		}
+		pSnapshot.aPileSize = aDiscardCount;
+		for( int i = 0; i < NUM_PLAYERS; i++ )
+		{
+			Hand lHand = aPlayers[i].getHand();
+			pSnapshot.aHands[i] = lHand.getCardMask();
+			if( aPlayers[i].getDrawnCard() != null )
+			{
+				pSnapshot.aHands[i] |= CardMask.of(aPlayers[i].getDrawnCard());
+			}
+			pSnapshot.aScores[i] = aScores[i];
+		}
+		pSnapshot.aTurn = aTurn;
+	}
+
+	/**
+	 * Sets the scores of both players to zero.
+	 */
+	public void resetScores()
+	{
+		Arrays.fill(aScores, 0);
+	}
+
+	/**
+	 * Plays hands until a player reaches GAME_SCORE. The dealer of the first
+	 * hand is pDealer; afterwards, the winner of each hand deals the next.
+	 * @param pDealer The seat of the first dealer.
+	 * @return The seat of the winner of the game.
+	 */
+	public int playGame(int pDealer)
+	{
+		resetScores();
+		int lDealer = pDealer;
+		while( aScores[0] < GAME_SCORE && aScores[1] < GAME_SCORE )
+		{
+			HandResult lResult = playHand(lDealer);
+			if( !lResult.isDraw() )
+			{
+				lDealer = lResult.getWinner();
+			}
+		}
+		EngineMetrics.gamePlayed();
+		if( aScores[0] >= GAME_SCORE )
+		{
+			return 0;
+		}
+		return 1;
+	}
+
+	/**
+	 * Deals and plays a complete hand, and adds the points of the winner to its score.
+	 * @param pDealer The seat of the dealer.
+	 * @return The result of the hand.
+	 * @throws HandException if a player makes an illegal move.
+	 */
+	public HandResult playHand(int pDealer)
+	{
+		deal(pDealer);
+
+		int lFirst = other(pDealer);
+		int lTurns = 0;
+		int lPlayer = offerFirstCard(lFirst);
+		if( lPlayer < 0 )
+		{
+			// Both players refused the upcard: the first player must draw from the stock
+			lTurns++;
+			if( playTurn(lFirst, aDeck.draw(), false) )
+			{
+				return knock(lFirst, lTurns);
+			}
+			lPlayer = pDealer;
+		}
+		else
+		{
+			lTurns++;
+			if( playTurn(lPlayer, popDiscard(), true) )
+			{
+				return knock(lPlayer, lTurns);
+			}
+			lPlayer = other(lPlayer);
+		}
+
+		while( aDeck.size() > MIN_STOCK )
+		{
+			lTurns++;
+			Player lCurrent = aPlayers[lPlayer];
+			for( IGameListener lListener : aListeners )
+			{
+				lListener.turnStarted(lPlayer);
+			}
+			long lStart = EngineMetrics.start();
+			boolean lFromDiscard = lCurrent.draw(aDeck.peek(), topDiscard());
+			EngineMetrics.stop(EngineMetrics.Timer.DRAW, lStart);
+			Card lCard;
+			if( lFromDiscard )
+			{
+				lCard = popDiscard();
+			}
+			else
+			{
+				lCard = aDeck.draw();
+			}
+			if( playTurn(lPlayer, lCard, lFromDiscard) )
+			{
+				return knock(lPlayer, lTurns);
+			}
+			lPlayer = other(lPlayer);
+		}
+
+		HandResult lResult = new HandResult(HandResult.NONE, HandResult.NONE, 0, false, false, lTurns,
+				aPlayers[0].getScore(), aPlayers[1].getScore());
+		EngineMetrics.handPlayed();
+		for( IGameListener lListener : aListeners )
+		{
+			lListener.handEnded(lResult);
+		}
+		return lResult;
+	}
+
+	private void deal(int pDealer)
+	{
+		aDeck.shuffle();
+		aDiscardCount = 0;
+		long lFirstHand = 0;
+		long lDealerHand = 0;
+		for( int i = 0; i < HAND_SIZE; i++ )
+		{
+			lFirstHand |= CardMask.of(aDeck.draw());
+			lDealerHand |= CardMask.of(aDeck.draw());
+		}
+		// The cards come straight from the deck, so they need no checks
+		aPlayers[other(pDealer)].getHand().load(lFirstHand);
+		aPlayers[pDealer].getHand().load(lDealerHand);
+		for( Player lPlayer : aPlayers )
+		{
+			lPlayer.setDrawnCard(null);
+		}
+		aDiscards[aDiscardCount++] = aDeck.draw();
+		aTurn = other(pDealer);
+		for( IGameListener lListener : aListeners )
+		{
+			lListener.handStarted(pDealer, topDiscard());
+		}
+	}
+
+	/*
+	 * Offers the upcard to the first player, then to the dealer.
+	 * Returns the seat of the player who takes it, or -1.
+	 */
+	private int offerFirstCard(int pFirst)
+	{
+		if( takeFirstCard(pFirst) )
+		{
+			return pFirst;
+		}
+		upcardRefused(pFirst);
+		if( takeFirstCard(other(pFirst)) )
+		{
+			return other(pFirst);
+		}
+		upcardRefused(other(pFirst));
+		return -1;
+	}
+
+	private boolean takeFirstCard(int pPlayer)
+	{
+		long lStart = EngineMetrics.start();
+		boolean lTake = aPlayers[pPlayer].takeFirstCard(aDeck.peek(), topDiscard());
+		EngineMetrics.stop(EngineMetrics.Timer.TAKE_FIRST_CARD, lStart);
+		return lTake;
+	}
+
+	private void upcardRefused(int pPlayer)
+	{
+		for( IGameListener lListener : aListeners )
+		{
+			lListener.upcardRefused(pPlayer);
+		}
+	}
+
+	/*
+	 * Gives pCard to the player, then has the player discard and
+	 * possibly knock. Returns true if the player knocks.
+	 */
+	private boolean playTurn(int pPlayer, Card pCard, boolean pFromDiscard)
+	{
+		Player lPlayer = aPlayers[pPlayer];
+		aTurn = pPlayer;
+		lPlayer.setDrawnCard(pCard);
+		for( IGameListener lListener : aListeners )
+		{
+			if( pFromDiscard || lListener != aPlayers[other(pPlayer)] )
+			{
+				lListener.cardDrawn(pPlayer, pCard, pFromDiscard);
+			}
+			else
+			{
+				// Only the player and the observers see a card drawn from the stock
+				lListener.cardDrawn(pPlayer, null, false);
+			}
+		}
+
+		long lStart = EngineMetrics.start();
+		Card lDiscard = lPlayer.discard();
+		EngineMetrics.stop(EngineMetrics.Timer.DISCARD, lStart);
+		if( lDiscard == null )
+		{
+			throw new HandException(lPlayer + " did not discard");
+		}
+		else if( lDiscard.equals(pCard) )
+		{
+			if( pFromDiscard )
+			{
+				throw new HandException(lPlayer + " cannot discard the card taken from the discard pile");
+			}
+		}
+		else if( !lPlayer.getHand().contains(lDiscard) )
+		{
+			throw new HandException(lPlayer + " cannot discard " + lDiscard);
+		}
+		else
+		{
+			lPlayer.getHand().remove(lDiscard);
+			lPlayer.endTurn();
+		}
+		lPlayer.setDrawnCard(null);
+		aDiscards[aDiscardCount++] = lDiscard;
+		aTurn = other(pPlayer);
+		for( IGameListener lListener : aListeners )
+		{
+			lListener.cardDiscarded(pPlayer, lDiscard);
+		}
+
+		if( !lPlayer.canKnock() )
+		{
+			return false;
+		}
+		lStart = EngineMetrics.start();
+		boolean lKnock = lPlayer.knock();
+		EngineMetrics.stop(EngineMetrics.Timer.KNOCK, lStart);
+		return lKnock;
+	}
+
+	/*
+	 * Scores the hand after pKnocker knocks. The knocker's hand was
+	 * matched by canKnock().
+	 */
+	private HandResult knock(int pKnocker, int pTurns)
+	{
+		int lDefender = other(pKnocker);
+		Hand lKnockerHand = aPlayers[pKnocker].getHand();
+		Hand lDefenderHand = aPlayers[lDefender].getHand();
+		int lKnockerDeadwood = lKnockerHand.score();
+		for( IGameListener lListener : aListeners )
+		{
+			lListener.knocked(pKnocker, lKnockerDeadwood);
+		}
+
+		lDefenderHand.autoMatch();
+		boolean lGin = lKnockerDeadwood == 0;
+		int lDefenderDeadwood = lDefenderHand.score();
+		if( !lGin )
+		{
+			long[] lMelds = new long[lKnockerHand.getMatchedCards().size()];
+			int lCount = 0;
+			for( ICardSet lSet : lKnockerHand.getMatchedCards() )
+			{
+				lMelds[lCount++] = CardMask.of(lSet);
+			}
+			// The defender may break up its own melds if laying off the cards leaves less deadwood
+			long lStart = EngineMetrics.start();
+			LayoffEngine.Result lLayoffs = LayoffEngine.solve(lDefenderHand.getCardMask(), lMelds, lCount);
+			EngineMetrics.stop(EngineMetrics.Timer.TRY_COMPLETE, lStart);
+			lDefenderDeadwood = lLayoffs.getDeadwood();
+			for( IGameListener lListener : aListeners )
+			{
+				lListener.cardsLaidOff(lDefender, lLayoffs.getLaidOff());
+			}
+		}
+
+		int lWinner = pKnocker;
+		int lPoints = lDefenderDeadwood - lKnockerDeadwood;
+		boolean lUndercut = false;
+		if( lGin )
+		{
+			lPoints += GIN_BONUS;
+		}
+		else if( lDefenderDeadwood <= lKnockerDeadwood )
+		{
+			lWinner = lDefender;
+			lPoints = UNDERCUT_BONUS + lKnockerDeadwood - lDefenderDeadwood;
+			lUndercut = true;
+		}
+		aScores[lWinner] += lPoints;
+
+		int[] lDeadwood = new int[NUM_PLAYERS];
+		lDeadwood[pKnocker] = lKnockerDeadwood;
+		lDeadwood[lDefender] = lDefenderDeadwood;
+		HandResult lResult = new HandResult(lWinner, pKnocker, lPoints, lGin, lUndercut, pTurns, lDeadwood[0], lDeadwood[1]);
+		EngineMetrics.handPlayed();
+		for( IGameListener lListener : aListeners )
+		{
+			lListener.handEnded(lResult);
+		}
+		return lResult;
+	}
+
+	private Card topDiscard()
+	{
+		return aDiscards[aDiscardCount - 1];
+	}
+
+	private Card popDiscard()
+	{
+		return aDiscards[--aDiscardCount];
+	}
 
+	private static int other(int pPlayer)
+	{
+		return 1 - pPlayer;
+	}
 }
@@ -0,0 +1,88 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+/**
+ * A copy of the state of a hand in progress: the order of the stock, the
+ * discard pile, the cards of both players, the seat of the player whose
+ * turn it is, and the scores of the game. Cards are identified by their
+ * index (see Card.index()) and hands by their mask (see CardMask).
+ *
+ * Snapshots are mutable so that they can be filled again and again by
+ * GameEngine.capture() or GameCodec.readState() without allocating.
+ * Not threadsafe.
+ */
+public final class GameSnapshot
+{
+	private static final int NUM_PLAYERS = 2;
+
+	final int[] aStock = new int[CardMask.DECK_SIZE];
+	int aStockSize;
+	final int[] aPile = new int[CardMask.DECK_SIZE];
+	int aPileSize;
+	final long[] aHands = new long[NUM_PLAYERS];
+	int aTurn;
+	final int[] aScores = new int[NUM_PLAYERS];
+
+	/**
+	 * @return The number of cards in the stock.
+	 */
+	public int getStockSize()
+	{
+		return aStockSize;
+	}
+
+	/**
+	 * @param pPosition A position in the stock, 0 being the top.
+	 * @return The index of the card at pPosition.
+	 * @pre pPosition >= 0 && pPosition < getStockSize()
+	 */
+	public int getStock(int pPosition)
+	{
+		assert pPosition < aStockSize;
+		return aStock[pPosition];
+	}
+
+	/**
+	 * @return The number of cards in the discard pile.
+	 */
+	public int getPileSize()
+	{
+		return aPileSize;
+	}
+
+	/**
+	 * @param pPosition A position in the discard pile, 0 being the bottom.
+	 * @return The index of the card at pPosition.
+	 * @pre pPosition >= 0 && pPosition < getPileSize()
+	 */
+	public int getPile(int pPosition)
+	{
+		assert pPosition < aPileSize;
+		return aPile[pPosition];
+	}
+
+	/**
+	 * @param pPlayer The seat of a player.
+	 * @return The mask of the cards of the player.
+	 */
+	public long getHand(int pPlayer)
+	{
+		return aHands[pPlayer];
+	}
+
+	/**
+	 * @return The seat of the player whose turn it is.
+	 */
+	public int getTurn()
+	{
+		return aTurn;
+	}
+
+	/**
+	 * @param pPlayer The seat of a player.
+	 * @return The score of the player in the current game.
+	 */
+	public int getScore(int pPlayer)
+	{
+		return aScores[pPlayer];
+	}
+}
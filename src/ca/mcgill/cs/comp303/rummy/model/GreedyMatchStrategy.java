@@ -0,0 +1,106 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import java.util.Arrays;
+
+/**
+ * Fast, approximate matching. Only the maximal groups and runs of the
+ * hand are considered, and they are taken greedily from the highest to
+ * the lowest score as long as they do not overlap with a meld already
+ * taken. This does not always find the lowest deadwood, e.g., when a
+ * card could be part of either a group or a run. Threadsafe.
+ */
+public class GreedyMatchStrategy implements IMatchStrategy
+{
+	// At most one group per rank and three maximal runs per suit
+	private static final int MAX_CANDIDATES = CardMask.SUIT_SIZE * 2;
+
+	@Override
+	public Matching match(long pCards)
+	{
+		long[] lCandidates = new long[MAX_CANDIDATES];
+		int lCount = calculateGroups(pCards, lCandidates, 0);
+		lCount = calculateRuns(pCards, lCandidates, lCount);
+		return getBestMatch(pCards, lCandidates, lCount);
+	}
+
+	@Override
+	public Matching update(Matching pPrevious, long pCards)
+	{
+		return match(pCards);
+	}
+
+	private static int calculateGroups(long pCards, long[] pCandidates, int pCount)
+	{
+		int lCount = pCount;
+		for( int lRank = 0; lRank < CardMask.SUIT_SIZE; lRank++ )
+		{
+			long lGroup = pCards & CardMask.rank(lRank);
+			if( Long.bitCount(lGroup) >= 3 )
+			{
+				pCandidates[lCount++] = lGroup;
+			}
+		}
+		return lCount;
+	}
+
+	private static int calculateRuns(long pCards, long[] pCandidates, int pCount)
+	{
+		int lCount = pCount;
+		for( int lSuit = 0; lSuit < Card.Suit.values().length; lSuit++ )
+		{
+			int lRanks = CardMask.ranksOf(pCards, lSuit);
+			int lStart = -1;
+
+			for( int lRank = 0; lRank <= CardMask.SUIT_SIZE; lRank++ )
+			{
+				boolean lPresent = lRank < CardMask.SUIT_SIZE && (lRanks & (1 << lRank)) != 0;
+
+				if( lPresent && lStart < 0 )
+				{
+					lStart = lRank;
+				}
+				else if( !lPresent && lStart >= 0 )
+				{
+					if( lRank - lStart >= 3 )
+					{
+						pCandidates[lCount++] = ((long) ((1 << lRank) - (1 << lStart))) << (lSuit * CardMask.SUIT_SIZE);
+					}
+					lStart = -1;
+				}
+			}
+		}
+		return lCount;
+	}
+
+	private static Matching getBestMatch(long pCards, long[] pCandidates, int pCount)
+	{
+		// Sort candidates by decreasing score
+		long[] lSorted = Arrays.copyOf(pCandidates, pCount);
+		for( int i = 1; i < pCount; i++ )
+		{
+			long lCandidate = lSorted[i];
+			int lScore = CardMask.score(lCandidate);
+			int j = i - 1;
+			while( j >= 0 && CardMask.score(lSorted[j]) < lScore )
+			{
+				lSorted[j + 1] = lSorted[j];
+				j--;
+			}
+			lSorted[j + 1] = lCandidate;
+		}
+
+		long[] lMelds = new long[pCount];
+		int lMeldCount = 0;
+		long lMatched = 0;
+		for( long lCandidate : lSorted )
+		{
+			// If no card has an overlap, take the meld
+			if( (lCandidate & lMatched) == 0 )
+			{
+				lMelds[lMeldCount++] = lCandidate;
+				lMatched |= lCandidate;
+			}
+		}
+		return new Matching(pCards, lMelds, lMeldCount);
+	}
+}
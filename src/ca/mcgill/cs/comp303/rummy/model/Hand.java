@@ -1,48 +1,67 @@
 package ca.mcgill.cs.comp303.rummy.model;
 
-import java.util.ArrayList;
 import java.util.Set;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Iterator;
 import java.util.HashSet;
-import java.util.Random;
-import java.util.List;
-import java.util.LinkedList;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
-
-import ca.mcgill.cs.comp303.rummy.model.Card.Rank;
-import ca.mcgill.cs.comp303.rummy.model.Card.Suit;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
- * Models a hand of 10 cards. The hand is not sorted. Not threadsafe.
+ * Models a hand of 10 cards. The hand is not sorted.
  * The hand is a set: adding the same card twice will not add duplicates
- * of the card.
+ * of the card. Cards are stored as bit masks (see CardMask), so membership,
+ * size and score are constant-time operations. The hand remembers its last
+ * matching, so that autoMatch() only re-evaluates the melds affected by the
+ * cards added or removed since. Hands are serialized in the compact form
+ * of GameCodec; the match strategy is not serialized, and a deserialized
+ * hand uses the default strategy. Not threadsafe, except getSnapshot():
+ * after each change, the hand publishes an immutable HandSnapshot that
+ * any thread can read.
  * @inv size() > 0
  * @inv size() <= HAND_SIZE
  */
 public class Hand implements Serializable
 {
-	
-	private final int NUM_SUIT_CARDS = 13;
-	private final int HAND_SIZE = 10;
-	
-	private Set<Card> unmatched;
-	private Set<ICardSet> matched;
-	
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int HAND_SIZE = 10;
+
+	private static final Meld[] NO_MELDS = new Meld[0];
+
+	// Publishes snapshots with a release store, which is enough for readers of a single field
+	private static final AtomicReferenceFieldUpdater<Hand, HandSnapshot> SNAPSHOT =
+			AtomicReferenceFieldUpdater.newUpdater(Hand.class, HandSnapshot.class, "aSnapshot");
+
+	private static final IMatchStrategy DEFAULT_STRATEGY =
+			new CachingMatchStrategy(new OptimalMatchStrategy(), MatchCache.getShared());
+
+	private transient long aUnmatched;
+	private transient long aMatched;
+	private transient Set<ICardSet> aMatchedSets;
+	private transient IMatchStrategy aStrategy = DEFAULT_STRATEGY;
+	private transient Matching aMatching;
+
 	//buffer variable to remember players picked up card
-	private Card pickedCard;
-	
-	
+	private transient Card aDrawnCard;
+
+	private transient volatile HandSnapshot aSnapshot = HandSnapshot.EMPTY;
+
+
 	/**
 	 * Creates a new, empty hand.
 	 */
 	public Hand()
 	{
-		matched = new HashSet<ICardSet>();
-		unmatched = new HashSet<Card>();
+		aMatchedSets = new HashSet<ICardSet>();
 	}
-	
+
 	/**
 	 * Adds pCard to the list of unmatched cards.
 	 * If the card is already in the hand, it is not added.
@@ -52,7 +71,7 @@ public class Hand implements Serializable
 	 * @pre pCard != null
 	 */
 	public void add( Card pCard )
-	{	
+	{
 		if (isComplete())
 		{
 			throw new HandException("Hand is full .. sorry!");
@@ -61,10 +80,50 @@ public class Hand implements Serializable
 		{
 			throw new HandException("Card already exists ?");
 		}
-		
-		else unmatched.add(pCard);
+
+		else aUnmatched |= CardMask.of(pCard);
+		publish();
 	}
-	
+
+	/**
+	 * Adds all the cards of pCards to the list of unmatched cards,
+	 * checking the whole batch at once.
+	 * @param pCards The mask of the cards to add (see CardMask).
+	 * @throws HandException if the hand would have more than HAND_SIZE cards.
+	 * @throws HandException if one of the cards is already in the hand.
+	 */
+	public void addAll( long pCards )
+	{
+		long lCards = aMatched | aUnmatched;
+		if ((lCards & pCards) != 0)
+		{
+			throw new HandException("Card already exists ?");
+		}
+		else if (Long.bitCount(lCards | pCards) > HAND_SIZE)
+		{
+			throw new HandException("Hand is full .. sorry!");
+		}
+
+		aUnmatched |= pCards;
+		publish();
+	}
+
+	/**
+	 * Replaces the cards of the hand with pCards, all unmatched. Unlike
+	 * add(), nothing is checked: use it only when the cards come from a
+	 * trusted source, such as a freshly shuffled deck.
+	 * @param pCards The mask of the cards of the hand (see CardMask).
+	 * @pre Long.bitCount(pCards) <= HAND_SIZE
+	 */
+	public void load( long pCards )
+	{
+		assert Long.bitCount(pCards) <= HAND_SIZE;
+		aMatchedSets.clear();
+		aMatched = 0;
+		aUnmatched = pCards;
+		publish(NO_MELDS);
+	}
+
 	/**
 	 * Remove pCard from the hand and break any matched set
 	 * that the card is part of. Does nothing if
@@ -74,29 +133,45 @@ public class Hand implements Serializable
 	 */
 	public void remove( Card pCard )
 	{
-		for (Iterator<ICardSet> it = matched.iterator(); it.hasNext();)
+		long lCard = CardMask.of(pCard);
+		boolean lBroken = (aMatched & lCard) != 0;
+
+		if (lBroken)
 		{
-			ICardSet cur = it.next();
-			if (cur.contains(pCard))
+			for (Iterator<ICardSet> it = aMatchedSets.iterator(); it.hasNext();)
 			{
-				//add cards from cardSet to unmatched
-				for (Card c : cur)
-					unmatched.add(c);
-				
-				it.remove(); //remove cardSet
+				ICardSet cur = it.next();
+				if (cur.contains(pCard))
+				{
+					//move cards from cardSet to unmatched
+					long lSet = CardMask.of(cur);
+					aMatched &= ~lSet;
+					aUnmatched |= lSet;
+
+					it.remove(); //remove cardSet
+				}
 			}
 		}
-		
+
 		//now remove from unmatched
-		unmatched.remove(pCard);
+		aUnmatched &= ~lCard;
+		if (lBroken)
+			publish(aMatchedSets.toArray(new Meld[aMatchedSets.size()]));
+		else
+			publish();
 	}
-	
+
+	/**
+	 * Removes every card of pSet from the hand.
+	 * @param pSet The cards to remove.
+	 * @pre pSet != null
+	 */
 	public void remove(Set<Card> pSet)
 	{
 		for (Card c: pSet)
 			remove(c);
 	}
-	
+
 	/**
 	 * @return True if the hand is complete.
 	 */
@@ -104,49 +179,68 @@ public class Hand implements Serializable
 	{
 		return HAND_SIZE == size();
 	}
-	
+
 	/**
 	 * Removes all the cards from the hand.
 	 */
 	public void clear()
 	{
-		matched.clear();
-		unmatched.clear();
+		aMatchedSets.clear();
+		aMatched = 0;
+		aUnmatched = 0;
+		publish(NO_MELDS);
 	}
-	
+
 	/**
 	 * @return A copy of the set of matched sets
 	 */
 	public Set<ICardSet> getMatchedCards()
 	{
-		return Collections.unmodifiableSet(matched);
+		return Collections.unmodifiableSet(aMatchedSets);
 	}
-	
+
+	/**
+	 * Returns the state of the hand after its last change. Unlike the other
+	 * methods, it can be called from any thread, while the hand is changed.
+	 * @return An immutable snapshot of the hand.
+	 */
+	public HandSnapshot getSnapshot()
+	{
+		return aSnapshot;
+	}
+
 	/**
 	 * @return A copy of the set of unmatched cards.
 	 */
 	public Set<Card> getUnmatchedCards()
 	{
-		return Collections.unmodifiableSet(unmatched);
+		return CardMask.asSet(aUnmatched);
 	}
-	
+
 	/**
-	 * @return The number of cards in the hand.
+	 * @return The mask of all the cards in the hand (see CardMask).
 	 */
-	public int size()
+	public long getCardMask()
 	{
-		return getNumberOfMatchedCards() + unmatched.size();
+		return aMatched | aUnmatched;
 	}
-	
-	private int getNumberOfMatchedCards()
+
+	/**
+	 * @return The mask of the unmatched cards in the hand (see CardMask).
+	 */
+	public long getUnmatchedMask()
 	{
-		int num = 0;
-		for (ICardSet s: matched)
-			num += s.size();
-		
-		return num;
+		return aUnmatched;
 	}
-	
+
+	/**
+	 * @return The number of cards in the hand.
+	 */
+	public int size()
+	{
+		return Long.bitCount(aMatched | aUnmatched);
+	}
+
 	/**
 	 * Determines if pCard is already in the hand, either as an
 	 * unmatched card or as part of a set.
@@ -156,300 +250,241 @@ public class Hand implements Serializable
 	 */
 	public boolean contains( Card pCard )
 	{
-		for (ICardSet c : matched)
-		{
-			if (c.contains(pCard)) return true;
-		}
-		
-		return unmatched.contains(pCard);
+		return CardMask.contains(aMatched | aUnmatched, pCard);
 	}
-	
+
 	/**
 	 * @return The total point value of the unmatched cards in this hand.
 	 */
 	public int score()
 	{
-		int score = 0;
-		
-		for (Card c : unmatched)
-			score += c.getScore();
-		
-		return score;
+		return CardMask.score(aUnmatched);
 	}
-	
+
 	/**
 	 * Creates a group of cards of the same rank.
 	 * @param pCards The cards to groups
+	 * @return The new group, an interned Meld.
 	 * @pre pCards != null
 	 * @throws HandException If the cards in pCard are not all unmatched
 	 * cards of the hand or if the group is not a valid group.
 	 */
-	public CardSet createGroup( Set<Card> pCards )
+	public ICardSet createGroup( Set<Card> pCards )
 	{
 		if (pCards.size() < 3) throw new HandException("Group does not have at least 3 cards");
-		
+
 		int rank = -1;
 		for (Card c : pCards)
 		{
-			if (rank == -1) 
+			if (rank == -1)
 				rank = c.getRank().ordinal();
-			
-			else if (rank != c.getRank().ordinal()) 
+
+			else if (rank != c.getRank().ordinal())
 				throw new HandException("Ranks are not the same");
-			
-			if (!unmatched.contains(c))
-				throw new HandException("Cards are not all unmatched");
 		}
-		
-		CardSet cardSet = new CardSet(true, pCards);
-		
-		return cardSet;
+
+		long lGroup = CardMask.of(pCards);
+		if ((lGroup & ~aUnmatched) != 0)
+			throw new HandException("Cards are not all unmatched");
+
+		return Meld.of(lGroup);
 	}
-	
+
 	/**
 	 * Creates a run of cards of the same suit.
 	 * @param pCards The cards to group in a run
+	 * @return The new run, an interned Meld.
 	 * @pre pCards != null
 	 * @throws HandException If the cards in pCard are not all unmatched
 	 * cards of the hand or if the group is not a valid group.
 	 */
-	public CardSet createRun( Set<Card> pCards )
+	public ICardSet createRun( Set<Card> pCards )
 	{
 		if (pCards.size() < 3) throw new HandException("Run does not contain at least 3 cards");
-		
+
 		int suit = -1;
 		for (Card c : pCards)
 		{
 			if (suit == -1) suit = c.getSuit().ordinal();
 			else if (suit != c.getSuit().ordinal())
 				throw new HandException("Suits are not similar");
-			if (!unmatched.contains(c))
-				throw new HandException("Cards are not unmatched");
 		}
-		
-		CardSet cardSet = new CardSet(false, pCards);
-		return cardSet;
+
+		long lRun = CardMask.of(pCards);
+		if (!MeldCatalog.isMeld(lRun))
+			throw new HandException("Cards are not consecutive");
+		if ((lRun & ~aUnmatched) != 0)
+			throw new HandException("Cards are not unmatched");
+
+		return Meld.of(lRun);
 	}
-	
+
 	/**
 	 * Calculates the matching of cards into groups and runs that
-	 * results in the lowest amount of points for unmatched cards.
+	 * results in the lowest amount of points for unmatched cards,
+	 * as determined by the match strategy of the hand.
 	 */
 	public void autoMatch()
 	{
-		/* Put the matched cards back into the unmatched set */
-		for (ICardSet set : matched)
-			for (Card card : set)
-				unmatched.add(card);
-		
-		/* First compute the groups */
-		LinkedList<CardSet> groups = calculateGroups();
-		
-		/* Second, compute the runs */
-		LinkedList<CardSet> runs = calculateRuns();
-		
-		/* Select the best groups/runs, without conflict */
-		/* So you have two lists, groups and runs containing
-		 * the possible groups and runs.
-		 */
-		matched = getBestMatch(groups, runs);
-	}
-	
-	private LinkedList<CardSet> calculateGroups()
-	{
-		int[] map = new int[NUM_SUIT_CARDS];
-		
-		//get the number of each rank and place into map
-		for (Card c : unmatched)
-			map[c.getRank().ordinal()] += 1;
-		
-		LinkedList<CardSet> groups = new LinkedList<CardSet>();
-		
-		for (int i = 0; i < NUM_SUIT_CARDS; i++)
+		long lStart = EngineMetrics.start();
+		long lCards = aMatched | aUnmatched;
+		Matching lMatching = aMatching == null ? aStrategy.match(lCards) : aStrategy.update(aMatching, lCards);
+		aMatching = lMatching;
+
+		// The last snapshot always has the current melds: if they did not change, neither did the hand
+		if (!aSnapshot.hasMelds(lMatching))
 		{
-			if (map[i] >= 3)
+			aMatchedSets.clear();
+			Meld[] lMelds = new Meld[lMatching.getMeldCount()];
+			for (int i = 0; i < lMelds.length; i++)
 			{
-				//must be a group
-				Set<Card> set = new HashSet<Card>();
-				
-				for (Card c : unmatched)
-					if (c.getRank().ordinal() == i) set.add(c);
-				
-				groups.add(createGroup(set));
+				lMelds[i] = Meld.of(lMatching.getMeld(i));
+				aMatchedSets.add(lMelds[i]);
 			}
+			aMatched = lMatching.getMatched();
+			aUnmatched = lMatching.getUnmatched();
+			publish(lMelds);
 		}
-		
-		return groups;
+		EngineMetrics.stop(EngineMetrics.Timer.AUTO_MATCH, lStart);
 	}
-	
-	private LinkedList<CardSet> calculateRuns()
+
+	/**
+	 * Replaces the cards and the matched sets of the hand, as decoded by GameCodec.
+	 * @param pCards The mask of the cards of the hand.
+	 * @param pMelds The masks of the matched sets, disjoint subsets of pCards.
+	 */
+	void restore(long pCards, long[] pMelds)
 	{
-		LinkedList<Card> spades = new LinkedList<Card>();
-		LinkedList<Card> hearts = new LinkedList<Card>();
-		LinkedList<Card> diamonds = new LinkedList<Card>();
-		LinkedList<Card> clubs = new LinkedList<Card>();
-		
-		LinkedList<CardSet> runs = new LinkedList<CardSet>();
-		
-		for (Card c: unmatched)
+		aMatchedSets.clear();
+		aMatched = 0;
+		Meld[] lMelds = new Meld[pMelds.length];
+		for (int i = 0; i < pMelds.length; i++)
 		{
-			Suit suit = c.getSuit();
-			
-			if (suit == Suit.CLUBS) clubs.add(c);
-			else if (suit == Suit.DIAMONDS) diamonds.add(c);
-			else if (suit == Suit.HEARTS) hearts.add(c);
-			else spades.add(c);
+			lMelds[i] = Meld.of(pMelds[i]);
+			aMatchedSets.add(lMelds[i]);
+			aMatched |= pMelds[i];
 		}
-		
-		Collections.sort(spades);
-		Collections.sort(hearts);
-		Collections.sort(diamonds);
-		Collections.sort(clubs);
-		
-		LinkedList<LinkedList<Card>> lists = new LinkedList<LinkedList<Card>>();
-		lists.add(clubs);
-		lists.add(spades);
-		lists.add(diamonds);
-		lists.add(hearts);
-		
-		//get runs
-		for (LinkedList<Card> lc : lists)
-		{
-			Set<Card> cur = new HashSet<Card>();
-			Rank rank = null;
-			int runsCounter = 0;
-			
-			
-			for (Card c : lc)
-			{
-				if (rank == null) 
-				{
-					rank = c.getRank();
-					runsCounter = 1;
-				}
-				
-				else if (rank.ordinal() + runsCounter == c.getRank().ordinal())
-				{
-					if (runsCounter == 1) cur.add(new Card(rank, c.getSuit()));
-					cur.add(c);
-					runsCounter++;
-				}
-				else
-				{
-					if (runsCounter > 2) runs.add(createRun(cur));
-					
-					cur.clear();
-					rank = null;
-					runsCounter = 0;
-				}
-			}
-			
-			if (runsCounter > 2) runs.add(createRun(cur));
-		}
-		return runs;
+		aUnmatched = pCards & ~aMatched;
+		aMatching = null;
+		publish(lMelds);
 	}
-	
-	private Set<ICardSet> getBestMatch(LinkedList<CardSet> groups, LinkedList<CardSet> runs)
+
+	/**
+	 * Sets the strategy used by autoMatch(). By default, hands use
+	 * an OptimalMatchStrategy cached in the shared MatchCache.
+	 * @param pStrategy The strategy to use.
+	 * @pre pStrategy != null
+	 */
+	public void setMatchStrategy(IMatchStrategy pStrategy)
 	{
-		List<CardSet> merge = new LinkedList<CardSet>();
-		Set<ICardSet> ret = new HashSet<ICardSet>();
-		
-		// Sort groups and runs
-		merge.addAll(groups);
-		merge.addAll(runs);
-		Collections.sort(merge, new Comparator<CardSet>() {
-			public int compare(CardSet pCardSet1, CardSet pCardSet2)
-			{
-				return pCardSet2.getScore() - pCardSet1.getScore();
-			} 
-		});
-		
-		for (CardSet cardSet : merge)
-		{
-			boolean hasOverlap = false;
-			
-			for (Card card : cardSet)
-			{
-				for (ICardSet matchedCardSet : ret)
-				{
-					if (matchedCardSet.contains(card))
-					{
-						hasOverlap = true;
-					}
-				}
-			}
-			
-			// If no card has an overlap, add the card set
-			if (!hasOverlap) ret.add(cardSet);
-			
-			// and then remove the cards from the unmatched set
-			for (Card c : cardSet)
-			{
-				unmatched.remove(c);
-			}
-		}
-		
-		return ret;	
+		aStrategy = pStrategy;
+		aMatching = null;
 	}
-	
+
+	/**
+	 * @return The strategy used by autoMatch().
+	 */
+	public IMatchStrategy getMatchStrategy()
+	{
+		return aStrategy;
+	}
+
+	/**
+	 * Finds the cards of this hand that can be laid off on the sets in pSet,
+	 * including chains of cards at either end of a run and the fourth card
+	 * of a group. The layoffs are chosen together with the arrangement of
+	 * the rest of the hand, so as to leave the least deadwood: a matched
+	 * card is laid off if that is better (see LayoffEngine).
+	 * @param pSet The matched sets of the opponent.
+	 * @return The cards that can be laid off.
+	 * @pre pSet != null
+	 */
 	public Set<Card> tryComplete(Set<ICardSet> pSet)
 	{
-		Set<Card> ret = new HashSet<Card>();
-		
-		for (Card c : unmatched)
+		long lStart = EngineMetrics.start();
+		long[] lMelds = new long[pSet.size()];
+		int lCount = 0;
+		for (ICardSet set : pSet)
 		{
-			for (ICardSet set : pSet)
-			{
-				if (set.isGroup())
-				{
-					// Group elements have the same rank
-					if (c.getRank().ordinal() == set.iterator().next().getRank().ordinal())
-						ret.add(c);
-				}
-				else
-				{
-					// Run elements have the same suit
-					if (c.getSuit().ordinal() == set.iterator().next().getSuit().ordinal())
-					{
-						List<Card> l = new ArrayList<Card>();
-						
-						// Transforms ICardSet into a list
-						for (Card card : set) l.add(card);
-						
-						Collections.sort(l);
-						
-						if (c.getRank().ordinal() == l.get(0).getRank().ordinal() - 1
-						 || c.getRank().ordinal() == l.get(l.size()-1).getRank().ordinal() - 1)
-							ret.add(c);
-					}
-				}
-			}
+			lMelds[lCount++] = CardMask.of(set);
 		}
-		
-		return ret;
+
+		long lLayoffs = LayoffEngine.solve(aMatched | aUnmatched, lMelds, lCount).getLaidOff();
+		EngineMetrics.stop(EngineMetrics.Timer.TRY_COMPLETE, lStart);
+		return CardMask.asSet(lLayoffs);
+	}
+
+	/**
+	 * @return The card drawn by the player this turn, if any.
+	 */
+	public Card getDrawnCard()
+	{
+		return aDrawnCard;
+	}
+
+	/**
+	 * @param pCard The card drawn by the player this turn.
+	 */
+	public void setDrawnCard(Card pCard)
+	{
+		aDrawnCard = pCard;
+		publish();
 	}
-	
-		private int numberOfMatchedCards()
+
+	private void writeObject(ObjectOutputStream pOut) throws IOException
+	{
+		pOut.defaultWriteObject();
+		ByteBuffer lBuffer = ByteBuffer.allocate(GameCodec.MAX_HAND_BYTES);
+		GameCodec.writeHand(this, lBuffer);
+		pOut.writeByte(lBuffer.position());
+		pOut.write(lBuffer.array(), 0, lBuffer.position());
+		pOut.writeByte(aDrawnCard == null ? -1 : aDrawnCard.index());
+	}
+
+	private void readObject(ObjectInputStream pIn) throws IOException, ClassNotFoundException
+	{
+		pIn.defaultReadObject();
+		aMatchedSets = new HashSet<ICardSet>();
+		aStrategy = DEFAULT_STRATEGY;
+		aSnapshot = HandSnapshot.EMPTY;
+		byte[] lBytes = new byte[pIn.readUnsignedByte()];
+		pIn.readFully(lBytes);
+		try
 		{
-			int size = 0;
-			
-			for (ICardSet s : matched)
-			{
-				size += s.size();
-			}
-			
-			return size;
+			GameCodec.readHand(ByteBuffer.wrap(lBytes), this);
 		}
-		
-		public Card getDrawnCard()
+		catch (HandException lException)
 		{
-			return pickedCard;
+			throw new InvalidObjectException(lException.getMessage());
 		}
-		
-		public void setDrawnCard(Card pCard)
+		int lDrawn = pIn.readByte();
+		if (lDrawn >= Card.NUM_CARDS)
 		{
-			pickedCard = pCard;
+			throw new InvalidObjectException("Invalid drawn card");
 		}
-}
+		aDrawnCard = lDrawn < 0 ? null : Card.ofIndex(lDrawn);
+		publish();
+	}
 
+	/*
+	 * Publishes the state of the hand, whose melds have not changed since
+	 * the last snapshot, unless it is the state of the last snapshot.
+	 */
+	private void publish()
+	{
+		HandSnapshot lLast = aSnapshot;
+		long lCards = aMatched | aUnmatched;
+		if (lLast.getCardMask() != lCards || lLast.getDrawnCard() != aDrawnCard)
+		{
+			SNAPSHOT.lazySet(this, lLast.next(lCards, aDrawnCard));
+		}
+	}
 
+	/*
+	 * Publishes the state of the hand, whose melds are now pMelds.
+	 */
+	private void publish(Meld[] pMelds)
+	{
+		SNAPSHOT.lazySet(this, aSnapshot.next(aMatched | aUnmatched, aMatched, pMelds, aDrawnCard));
+	}
+}
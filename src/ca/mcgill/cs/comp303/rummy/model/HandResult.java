@@ -0,0 +1,127 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+/**
+ * The immutable outcome of a hand of gin rummy played by a GameEngine.
+ */
+public final class HandResult
+{
+	/**
+	 * The seat returned by getWinner() and getKnocker() when there is none.
+	 */
+	public static final int NONE = -1;
+
+	private final int aWinner;
+	private final int aKnocker;
+	private final int aPoints;
+	private final boolean aGin;
+	private final boolean aUndercut;
+	private final int aTurns;
+	private final int[] aDeadwood;
+
+	/**
+	 * Creates a new result.
+	 * @param pWinner The seat of the winner, or NONE if the hand is a draw.
+	 * @param pKnocker The seat of the knocker, or NONE if the hand is a draw.
+	 * @param pPoints The points scored by the winner.
+	 * @param pGin True if the knocker went gin.
+	 * @param pUndercut True if the opponent of the knocker undercut the knocker.
+	 * @param pTurns The number of turns played.
+	 * @param pDeadwood0 The final deadwood of the player in seat 0.
+	 * @param pDeadwood1 The final deadwood of the player in seat 1.
+	 */
+	public HandResult(int pWinner, int pKnocker, int pPoints, boolean pGin, boolean pUndercut,
+			int pTurns, int pDeadwood0, int pDeadwood1)
+	{
+		aWinner = pWinner;
+		aKnocker = pKnocker;
+		aPoints = pPoints;
+		aGin = pGin;
+		aUndercut = pUndercut;
+		aTurns = pTurns;
+		aDeadwood = new int[] {pDeadwood0, pDeadwood1};
+	}
+
+	/**
+	 * @return The seat of the winner, or NONE if the hand is a draw.
+	 */
+	public int getWinner()
+	{
+		return aWinner;
+	}
+
+	/**
+	 * @return The seat of the knocker, or NONE if the hand is a draw.
+	 */
+	public int getKnocker()
+	{
+		return aKnocker;
+	}
+
+	/**
+	 * @return The points scored by the winner.
+	 */
+	public int getPoints()
+	{
+		return aPoints;
+	}
+
+	/**
+	 * @return True if nobody knocked before the stock ran out.
+	 */
+	public boolean isDraw()
+	{
+		return aWinner == NONE;
+	}
+
+	/**
+	 * @return True if the knocker went gin.
+	 */
+	public boolean isGin()
+	{
+		return aGin;
+	}
+
+	/**
+	 * @return True if the opponent of the knocker had as little deadwood as the knocker.
+	 */
+	public boolean isUndercut()
+	{
+		return aUndercut;
+	}
+
+	/**
+	 * @return The number of turns played.
+	 */
+	public int getTurns()
+	{
+		return aTurns;
+	}
+
+	/**
+	 * @param pPlayer The seat of a player.
+	 * @return The deadwood of the player at the end of the hand, after layoffs.
+	 */
+	public int getDeadwood(int pPlayer)
+	{
+		return aDeadwood[pPlayer];
+	}
+
+	@Override
+	public String toString()
+	{
+		if( isDraw() )
+		{
+			return "Draw after " + aTurns + " turns";
+		}
+		String lHow = "knock";
+		if( aGin )
+		{
+			lHow = "gin";
+		}
+		else if( aUndercut )
+		{
+			lHow = "undercut";
+		}
+		return "Player " + aWinner + " wins " + aPoints + " points by " + lHow + " after " + aTurns + " turns";
+	}
+}
@@ -0,0 +1,187 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable copy of the state of a Hand: its cards and matched cards as
+ * masks (see CardMask), its melds and its drawn card. A hand publishes a new
+ * snapshot after each change (see Hand.getSnapshot()), so any thread can read
+ * a consistent state of the hand without locking it.
+ *
+ * Snapshots are cheap: the melds are the shared instances of Meld, and a
+ * snapshot taken after a change that did not touch the melds shares the
+ * meld array of the previous one. Threadsafe.
+ */
+public final class HandSnapshot
+{
+	/**
+	 * The snapshot of a new, empty hand.
+	 */
+	public static final HandSnapshot EMPTY = new HandSnapshot(0, 0, new Meld[0], null, 0);
+
+	private final long aCards;
+	private final long aMatched;
+	private final Meld[] aMelds;
+	private final Card aDrawnCard;
+	private final long aVersion;
+
+	private HandSnapshot(long pCards, long pMatched, Meld[] pMelds, Card pDrawnCard, long pVersion)
+	{
+		aCards = pCards;
+		aMatched = pMatched;
+		aMelds = pMelds;
+		aDrawnCard = pDrawnCard;
+		aVersion = pVersion;
+	}
+
+	/**
+	 * Creates the snapshot that follows this one, with the same melds.
+	 * @param pCards The mask of the cards of the hand.
+	 * @param pDrawnCard The drawn card, or null.
+	 * @return The new snapshot.
+	 * @pre The melds of this snapshot are still the melds of the hand.
+	 */
+	HandSnapshot next(long pCards, Card pDrawnCard)
+	{
+		return new HandSnapshot(pCards, aMatched, aMelds, pDrawnCard, aVersion + 1);
+	}
+
+	/**
+	 * Creates the snapshot that follows this one, with new melds.
+	 * @param pCards The mask of the cards of the hand.
+	 * @param pMatched The mask of the cards in pMelds.
+	 * @param pMelds The melds of the hand. Must not be modified afterwards.
+	 * @param pDrawnCard The drawn card, or null.
+	 * @return The new snapshot.
+	 */
+	HandSnapshot next(long pCards, long pMatched, Meld[] pMelds, Card pDrawnCard)
+	{
+		Meld[] lMelds = pMelds;
+		if( Arrays.equals(pMelds, aMelds) )
+		{
+			lMelds = aMelds;
+		}
+		return new HandSnapshot(pCards, pMatched, lMelds, pDrawnCard, aVersion + 1);
+	}
+
+	/**
+	 * @param pMatching A matching.
+	 * @return True if the melds of this snapshot are those of pMatching, in the same order.
+	 */
+	boolean hasMelds(Matching pMatching)
+	{
+		if( pMatching.getMeldCount() != aMelds.length || pMatching.getMatched() != aMatched )
+		{
+			return false;
+		}
+		for( int i = 0; i < aMelds.length; i++ )
+		{
+			if( pMatching.getMeld(i) != aMelds[i].getMask() )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return The number of changes made to the hand before this snapshot.
+	 */
+	public long getVersion()
+	{
+		return aVersion;
+	}
+
+	/**
+	 * @return The mask of all the cards in the hand.
+	 */
+	public long getCardMask()
+	{
+		return aCards;
+	}
+
+	/**
+	 * @return The mask of the cards in the melds of the hand.
+	 */
+	public long getMatchedMask()
+	{
+		return aMatched;
+	}
+
+	/**
+	 * @return The mask of the unmatched cards in the hand.
+	 */
+	public long getUnmatchedMask()
+	{
+		return aCards & ~aMatched;
+	}
+
+	/**
+	 * @return The number of cards in the hand.
+	 */
+	public int size()
+	{
+		return Long.bitCount(aCards);
+	}
+
+	/**
+	 * @param pCard A card.
+	 * @return True if pCard is in the hand.
+	 * @pre pCard != null
+	 */
+	public boolean contains(Card pCard)
+	{
+		return CardMask.contains(aCards, pCard);
+	}
+
+	/**
+	 * @return The total point value of the unmatched cards in the hand.
+	 */
+	public int score()
+	{
+		return CardMask.score(getUnmatchedMask());
+	}
+
+	/**
+	 * @return The number of melds of the hand.
+	 */
+	public int getMeldCount()
+	{
+		return aMelds.length;
+	}
+
+	/**
+	 * @param pIndex The position of a meld.
+	 * @return The meld at pIndex.
+	 * @pre pIndex >= 0 && pIndex < getMeldCount()
+	 */
+	public Meld getMeld(int pIndex)
+	{
+		return aMelds[pIndex];
+	}
+
+	/**
+	 * @return An unmodifiable list of the melds of the hand.
+	 */
+	public List<Meld> getMelds()
+	{
+		return Collections.unmodifiableList(Arrays.asList(aMelds));
+	}
+
+	/**
+	 * @return The card drawn by the player this turn, if any.
+	 */
+	public Card getDrawnCard()
+	{
+		return aDrawnCard;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "HandSnapshot v" + aVersion + " melds=" + getMelds() + " unmatched="
+				+ CardMask.asSet(getUnmatchedMask()) + " drawn=" + aDrawnCard;
+	}
+}
@@ -0,0 +1,67 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+/**
+ * Observes the events of the hands played by a GameEngine. Players are
+ * identified by their seat in the engine (0 or 1). Listeners are notified
+ * on the thread that plays the hand and should return quickly.
+ */
+public interface IGameListener
+{
+	/**
+	 * Called after the cards are dealt and the upcard is turned.
+	 * @param pDealer The seat of the dealer.
+	 * @param pUpcard The first card of the discard pile.
+	 */
+	void handStarted(int pDealer, Card pUpcard);
+
+	/**
+	 * Called when a player is offered the upcard at the start of a hand and refuses it.
+	 * @param pPlayer The seat of the player.
+	 */
+	void upcardRefused(int pPlayer);
+
+	/**
+	 * Called when a player starts a turn by choosing where to draw from.
+	 * Not called for the first turn of a hand, which follows the offer of
+	 * the upcard.
+	 * @param pPlayer The seat of the player.
+	 */
+	void turnStarted(int pPlayer);
+
+	/**
+	 * Called when a player draws a card. A card drawn from the stock is
+	 * hidden from the opponent of the player, if the opponent is a listener.
+	 * @param pPlayer The seat of the player.
+	 * @param pCard The card drawn, or null if the listener is the opponent
+	 * of the player and the card was drawn from the stock.
+	 * @param pFromDiscard True if the card was taken from the discard pile.
+	 */
+	void cardDrawn(int pPlayer, Card pCard, boolean pFromDiscard);
+
+	/**
+	 * Called when a player discards a card.
+	 * @param pPlayer The seat of the player.
+	 * @param pCard The card discarded.
+	 */
+	void cardDiscarded(int pPlayer, Card pCard);
+
+	/**
+	 * Called when a player knocks.
+	 * @param pPlayer The seat of the player.
+	 * @param pDeadwood The deadwood of the player.
+	 */
+	void knocked(int pPlayer, int pDeadwood);
+
+	/**
+	 * Called when the opponent of the knocker lays off cards on the knocker's melds.
+	 * @param pPlayer The seat of the player laying off.
+	 * @param pCards The mask of the cards laid off (see CardMask).
+	 */
+	void cardsLaidOff(int pPlayer, long pCards);
+
+	/**
+	 * Called when a hand is over.
+	 * @param pResult The result of the hand.
+	 */
+	void handEnded(HandResult pResult);
+}
@@ -0,0 +1,28 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+/**
+ * A way of arranging the cards of a hand into groups and runs.
+ * Implementors should be stateless or threadsafe, so that a single
+ * strategy can be shared by many hands.
+ */
+public interface IMatchStrategy
+{
+	/**
+	 * Arranges the cards of pCards into non-overlapping melds.
+	 * @param pCards The mask of the cards to match (see CardMask).
+	 * @return The arrangement of pCards chosen by this strategy.
+	 */
+	Matching match(long pCards);
+
+	/**
+	 * Arranges the cards of pCards, reusing as much as possible of a
+	 * previous matching of a similar set of cards, e.g., the same hand
+	 * before a card was drawn or discarded. The result must be equal to
+	 * match(pCards).
+	 * @param pPrevious A matching previously returned by this strategy.
+	 * @param pCards The mask of the cards to match (see CardMask).
+	 * @return The arrangement of pCards chosen by this strategy.
+	 * @pre pPrevious != null
+	 */
+	Matching update(Matching pPrevious, long pCards);
+}
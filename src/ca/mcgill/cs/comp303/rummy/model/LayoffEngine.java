@@ -0,0 +1,224 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+/**
+ * Computes the layoffs that leave the defending player with the least
+ * deadwood after the knock. A run can be extended at both ends by chains
+ * of consecutive cards, and a group of three by its fourth card. The
+ * layoffs are chosen jointly with the arrangement of the defender's own
+ * melds: a card is laid off only if that lowers the final deadwood, even
+ * if it could also complete a meld of the defender.
+ *
+ * The search tries every combination of extensions of the knocker's
+ * melds with the cards of the defender, and matches the remaining cards
+ * of the defender for each. A knocker has few melds, and each has few
+ * possible extensions, so there are rarely more than a dozen combinations.
+ * Threadsafe.
+ */
+public final class LayoffEngine
+{
+	private static final IMatchStrategy EVALUATOR = new OptimalMatchStrategy();
+	private static final int GROUP_SIZE = 4;
+
+	private LayoffEngine()
+	{}
+
+	/**
+	 * The best layoffs found by the LayoffEngine. Immutable.
+	 */
+	public static final class Result
+	{
+		private final long aLaidOff;
+		private final Matching aMatching;
+
+		private Result(long pLaidOff, Matching pMatching)
+		{
+			aLaidOff = pLaidOff;
+			aMatching = pMatching;
+		}
+
+		/**
+		 * @return The mask of the cards of the defender laid off on the melds of the knocker.
+		 */
+		public long getLaidOff()
+		{
+			return aLaidOff;
+		}
+
+		/**
+		 * @return The arrangement of the cards of the defender that were not laid off.
+		 */
+		public Matching getMatching()
+		{
+			return aMatching;
+		}
+
+		/**
+		 * @return The deadwood of the defender after the layoffs.
+		 */
+		public int getDeadwood()
+		{
+			return aMatching.getDeadwood();
+		}
+	}
+
+	/**
+	 * Finds the best layoffs of pDefender on the melds of pKnocker.
+	 * @param pDefender The mask of the cards of the defender (see CardMask).
+	 * @param pKnocker The arrangement of the cards of the knocker.
+	 * @return The layoffs that leave the least deadwood.
+	 * @pre (pDefender & pKnocker.getCards()) == 0
+	 */
+	public static Result solve(long pDefender, Matching pKnocker)
+	{
+		long[] lMelds = new long[pKnocker.getMeldCount()];
+		for( int i = 0; i < lMelds.length; i++ )
+		{
+			lMelds[i] = pKnocker.getMeld(i);
+		}
+		return solve(pDefender, lMelds, lMelds.length);
+	}
+
+	/**
+	 * Finds the best layoffs of pDefender on the melds in pMelds.
+	 * @param pDefender The mask of the cards of the defender (see CardMask).
+	 * @param pMelds The masks of the melds of the knocker.
+	 * @param pCount The number of melds to read from pMelds.
+	 * @return The layoffs that leave the least deadwood.
+	 * @pre pCount <= pMelds.length
+	 */
+	public static Result solve(long pDefender, long[] pMelds, int pCount)
+	{
+		Search lSearch = new Search(pDefender, pMelds, pCount);
+		lSearch.search(0, 0);
+		return new Result(lSearch.aBestLaidOff, lSearch.aBest);
+	}
+
+	/**
+	 * @param pMeld The mask of a meld.
+	 * @param pCards The mask of the cards available to extend it.
+	 * @return The mask of all the cards of pCards that can be laid off on
+	 * pMeld, alone or in a chain.
+	 */
+	public static long extensions(long pMeld, long pCards)
+	{
+		if( CardMask.isGroup(pMeld) )
+		{
+			if( Long.bitCount(pMeld) < GROUP_SIZE )
+			{
+				return CardMask.rank(CardMask.first(pMeld) % CardMask.SUIT_SIZE) & ~pMeld & pCards;
+			}
+			return 0;
+		}
+		return lowChain(pMeld, pCards) | highChain(pMeld, pCards);
+	}
+
+	/*
+	 * Returns the cards of pCards that extend the run pMeld downwards without gaps.
+	 */
+	private static long lowChain(long pRun, long pCards)
+	{
+		long lChain = 0;
+		long lNext = Long.lowestOneBit(pRun) >>> 1;
+		int lRank = CardMask.first(pRun) % CardMask.SUIT_SIZE - 1;
+		while( lRank >= 0 && (lNext & pCards) != 0 )
+		{
+			lChain |= lNext;
+			lNext >>>= 1;
+			lRank--;
+		}
+		return lChain;
+	}
+
+	/*
+	 * Returns the cards of pCards that extend the run pMeld upwards without gaps.
+	 */
+	private static long highChain(long pRun, long pCards)
+	{
+		long lChain = 0;
+		long lNext = Long.highestOneBit(pRun) << 1;
+		int lRank = (Long.SIZE - 1 - Long.numberOfLeadingZeros(pRun)) % CardMask.SUIT_SIZE + 1;
+		while( lRank < CardMask.SUIT_SIZE && (lNext & pCards) != 0 )
+		{
+			lChain |= lNext;
+			lNext <<= 1;
+			lRank++;
+		}
+		return lChain;
+	}
+
+	/**
+	 * Tries the extensions of each meld in turn, depth first.
+	 */
+	private static final class Search
+	{
+		private final long aDefender;
+		private final long[] aMelds;
+		private final int aCount;
+		private Matching aBest;
+		private long aBestLaidOff;
+
+		Search(long pDefender, long[] pMelds, int pCount)
+		{
+			aDefender = pDefender;
+			aMelds = pMelds;
+			aCount = pCount;
+			aBest = EVALUATOR.match(pDefender);
+		}
+
+		void search(int pMeld, long pLaidOff)
+		{
+			if( aBest.getDeadwood() == 0 )
+			{
+				return;
+			}
+			if( pMeld == aCount )
+			{
+				if( pLaidOff != 0 )
+				{
+					Matching lMatching = EVALUATOR.match(aDefender & ~pLaidOff);
+					if( lMatching.getDeadwood() < aBest.getDeadwood() )
+					{
+						aBest = lMatching;
+						aBestLaidOff = pLaidOff;
+					}
+				}
+				return;
+			}
+
+			long lMeld = aMelds[pMeld];
+			long lAvailable = aDefender & ~pLaidOff;
+			search(pMeld + 1, pLaidOff);
+			if( CardMask.isGroup(lMeld) )
+			{
+				long lFourth = extensions(lMeld, lAvailable);
+				if( lFourth != 0 )
+				{
+					search(pMeld + 1, pLaidOff | lFourth);
+				}
+				return;
+			}
+
+			// Every chain below the run, combined with every chain above it
+			long lLow = lowChain(lMeld, lAvailable);
+			long lHigh = highChain(lMeld, lAvailable);
+			for( long lDown = lLow; ; lDown &= lDown - 1 )
+			{
+				for( long lUp = lHigh; ; lUp = lUp & ~Long.highestOneBit(lUp) )
+				{
+					if( lDown != 0 || lUp != 0 )
+					{
+						search(pMeld + 1, pLaidOff | lDown | lUp);
+					}
+					if( lUp == 0 )
+					{
+						break;
+					}
+				}
+				if( lDown == 0 )
+				{
+					break;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,495 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import java.util.Arrays;
+
+/**
+ * A bounded, threadsafe cache of matchings keyed by the mask of the
+ * matched cards. The cache is split into independently locked segments
+ * so that threads working on different hands rarely contend. When a
+ * segment is full, its least recently used (LRU) or oldest (FIFO) entry
+ * is evicted.
+ *
+ * Each segment is an open-addressed table of primitive keys with linear
+ * probing, whose entries are also linked in eviction order through arrays
+ * of slot indices, so lookups and insertions do not allocate. Each cache
+ * keeps its own statistics, and also counts its lookups in EngineMetrics.
+ */
+public class MatchCache
+{
+	/**
+	 * Determines which entry is evicted when the cache is full.
+	 */
+	public enum EvictionPolicy
+	{ LRU, FIFO }
+
+	/**
+	 * The default maximum number of entries of a cache.
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	private static final int SEGMENT_BITS = 4;
+	private static final int NUM_SEGMENTS = 1 << SEGMENT_BITS;
+	private static final int INITIAL_TABLE_BITS = 4;
+	private static final int MAX_TABLE_BITS = 30;
+	private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+	private static final int NONE = -1;
+
+	private static final MatchCache SHARED = new MatchCache(DEFAULT_CAPACITY, EvictionPolicy.LRU);
+
+	private final Segment[] aSegments = new Segment[NUM_SEGMENTS];
+	private final EvictionPolicy aPolicy;
+	private volatile int aCapacity;
+
+	/**
+	 * Creates a new, empty cache.
+	 * @param pCapacity The maximum number of entries of the cache.
+	 * @param pPolicy The eviction policy of the cache.
+	 * @pre pCapacity > 0 && pPolicy != null
+	 */
+	public MatchCache(int pCapacity, EvictionPolicy pPolicy)
+	{
+		aPolicy = pPolicy;
+		aCapacity = pCapacity;
+		for( int i = 0; i < NUM_SEGMENTS; i++ )
+		{
+			aSegments[i] = new Segment(pPolicy == EvictionPolicy.LRU, boundOf(pCapacity, i));
+		}
+	}
+
+	/**
+	 * @return The cache shared by all the hands of the JVM that use the default match strategy.
+	 */
+	public static MatchCache getShared()
+	{
+		return SHARED;
+	}
+
+	/**
+	 * @param pCards A card mask.
+	 * @return The matching cached for pCards, or null if there is none.
+	 */
+	public Matching get(long pCards)
+	{
+		long lHash = hash(pCards);
+		Segment lSegment = aSegments[segmentOf(lHash)];
+		Matching lMatching;
+		synchronized( lSegment )
+		{
+			lMatching = lSegment.get(pCards, lHash);
+			if( lMatching == null )
+			{
+				lSegment.aMisses++;
+			}
+			else
+			{
+				lSegment.aHits++;
+			}
+		}
+		EngineMetrics.cacheLookup(lMatching != null);
+		return lMatching;
+	}
+
+	/**
+	 * Caches pMatching, evicting an entry if the cache is full.
+	 * @param pMatching The matching to cache, keyed by its cards.
+	 * @pre pMatching != null
+	 */
+	public void put(Matching pMatching)
+	{
+		long lHash = hash(pMatching.getCards());
+		Segment lSegment = aSegments[segmentOf(lHash)];
+		synchronized( lSegment )
+		{
+			lSegment.put(pMatching.getCards(), lHash, pMatching);
+		}
+	}
+
+	/**
+	 * Removes all the entries of the cache and resets its counters.
+	 */
+	public void clear()
+	{
+		for( Segment lSegment : aSegments )
+		{
+			synchronized( lSegment )
+			{
+				lSegment.clear();
+				lSegment.aHits = 0;
+				lSegment.aMisses = 0;
+				lSegment.aEvictions = 0;
+			}
+		}
+	}
+
+	/**
+	 * Changes the maximum number of entries. If the cache holds more
+	 * entries than the new capacity, the entries that would be evicted
+	 * first are evicted immediately.
+	 * @param pCapacity The new maximum number of entries of the cache.
+	 * @pre pCapacity > 0
+	 */
+	public void setCapacity(int pCapacity)
+	{
+		aCapacity = pCapacity;
+		for( int i = 0; i < NUM_SEGMENTS; i++ )
+		{
+			synchronized( aSegments[i] )
+			{
+				aSegments[i].setBound(boundOf(pCapacity, i));
+			}
+		}
+	}
+
+	/**
+	 * @return The maximum number of entries of the cache.
+	 */
+	public int getCapacity()
+	{
+		return aCapacity;
+	}
+
+	/**
+	 * @return The eviction policy of the cache.
+	 */
+	public EvictionPolicy getPolicy()
+	{
+		return aPolicy;
+	}
+
+	/**
+	 * @return The number of entries in the cache.
+	 */
+	public int size()
+	{
+		int lSize = 0;
+		for( Segment lSegment : aSegments )
+		{
+			synchronized( lSegment )
+			{
+				lSize += lSegment.size();
+			}
+		}
+		return lSize;
+	}
+
+	/**
+	 * @return The number of calls to get() that found a matching.
+	 */
+	public long getHits()
+	{
+		long lHits = 0;
+		for( Segment lSegment : aSegments )
+		{
+			synchronized( lSegment )
+			{
+				lHits += lSegment.aHits;
+			}
+		}
+		return lHits;
+	}
+
+	/**
+	 * @return The number of calls to get() that did not find a matching.
+	 */
+	public long getMisses()
+	{
+		long lMisses = 0;
+		for( Segment lSegment : aSegments )
+		{
+			synchronized( lSegment )
+			{
+				lMisses += lSegment.aMisses;
+			}
+		}
+		return lMisses;
+	}
+
+	/**
+	 * @return The number of entries evicted to respect the capacity.
+	 */
+	public long getEvictions()
+	{
+		long lEvictions = 0;
+		for( Segment lSegment : aSegments )
+		{
+			synchronized( lSegment )
+			{
+				lEvictions += lSegment.aEvictions;
+			}
+		}
+		return lEvictions;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "MatchCache (" + size() + "/" + aCapacity + ", " + aPolicy + ") hits=" + getHits() + " misses=" + getMisses();
+	}
+
+	/*
+	 * Mixes the bits of a mask so that similar hands spread over segments
+	 * and slots. The segment is taken from the highest bits of the hash,
+	 * and the slot from the bits that follow.
+	 */
+	private static long hash(long pCards)
+	{
+		return pCards * GOLDEN_RATIO;
+	}
+
+	private static int segmentOf(long pHash)
+	{
+		return (int) (pHash >>> (Long.SIZE - SEGMENT_BITS));
+	}
+
+	/*
+	 * Splits pCapacity over the segments, so that the cache never holds
+	 * more than pCapacity entries in total.
+	 */
+	private static int boundOf(int pCapacity, int pSegment)
+	{
+		int lBound = pCapacity / NUM_SEGMENTS;
+		if( pSegment < pCapacity % NUM_SEGMENTS )
+		{
+			lBound++;
+		}
+		return lBound;
+	}
+
+	/**
+	 * A part of the cache, guarded by its own lock. Its entries are also
+	 * linked from the next to be evicted (the head) to the last to be
+	 * evicted (the tail).
+	 */
+	private static final class Segment
+	{
+		private final boolean aAccessOrder;
+		private int aBound;
+		private int aBits;
+		private long[] aKeys;
+		private Matching[] aValues;
+		private int[] aPrevious;
+		private int[] aNext;
+		private int aHead = NONE;
+		private int aTail = NONE;
+		private int aSize;
+		private long aHits;
+		private long aMisses;
+		private long aEvictions;
+
+		Segment(boolean pAccessOrder, int pBound)
+		{
+			aAccessOrder = pAccessOrder;
+			aBound = pBound;
+			allocate(INITIAL_TABLE_BITS);
+		}
+
+		int size()
+		{
+			return aSize;
+		}
+
+		Matching get(long pKey, long pHash)
+		{
+			int lSlot = find(pKey, pHash);
+			if( lSlot == NONE )
+			{
+				return null;
+			}
+			if( aAccessOrder )
+			{
+				unlink(lSlot);
+				linkLast(lSlot);
+			}
+			return aValues[lSlot];
+		}
+
+		void put(long pKey, long pHash, Matching pValue)
+		{
+			int lSlot = find(pKey, pHash);
+			if( lSlot != NONE )
+			{
+				aValues[lSlot] = pValue;
+				if( aAccessOrder )
+				{
+					unlink(lSlot);
+					linkLast(lSlot);
+				}
+				return;
+			}
+			if( aBound == 0 )
+			{
+				aEvictions++;
+				return;
+			}
+			if( aSize == aBound )
+			{
+				aEvictions++;
+				remove(aHead);
+			}
+			// Keep the load factor at most 3/4
+			if( 4 * (aSize + 1) > 3 * aKeys.length && aBits < MAX_TABLE_BITS )
+			{
+				resize(aBits + 1);
+			}
+			lSlot = slotOf(pHash);
+			while( aValues[lSlot] != null )
+			{
+				lSlot = (lSlot + 1) & (aKeys.length - 1);
+			}
+			aKeys[lSlot] = pKey;
+			aValues[lSlot] = pValue;
+			aSize++;
+			linkLast(lSlot);
+		}
+
+		void setBound(int pBound)
+		{
+			aBound = pBound;
+			while( aSize > aBound )
+			{
+				aEvictions++;
+				remove(aHead);
+			}
+		}
+
+		void clear()
+		{
+			Arrays.fill(aValues, null);
+			aHead = NONE;
+			aTail = NONE;
+			aSize = 0;
+		}
+
+		private void allocate(int pBits)
+		{
+			aBits = pBits;
+			aKeys = new long[1 << pBits];
+			aValues = new Matching[1 << pBits];
+			aPrevious = new int[1 << pBits];
+			aNext = new int[1 << pBits];
+		}
+
+		private int slotOf(long pHash)
+		{
+			return (int) (pHash >>> (Long.SIZE - SEGMENT_BITS - aBits)) & (aKeys.length - 1);
+		}
+
+		private int find(long pKey, long pHash)
+		{
+			for( int lSlot = slotOf(pHash); aValues[lSlot] != null; lSlot = (lSlot + 1) & (aKeys.length - 1) )
+			{
+				if( aKeys[lSlot] == pKey )
+				{
+					return lSlot;
+				}
+			}
+			return NONE;
+		}
+
+		/*
+		 * Re-inserts the entries in a table of 2^pBits slots, in eviction order.
+		 */
+		private void resize(int pBits)
+		{
+			long[] lKeys = aKeys;
+			Matching[] lValues = aValues;
+			int[] lNext = aNext;
+			int lEntry = aHead;
+			allocate(pBits);
+			aHead = NONE;
+			aTail = NONE;
+			for( ; lEntry != NONE; lEntry = lNext[lEntry] )
+			{
+				int lSlot = slotOf(hash(lKeys[lEntry]));
+				while( aValues[lSlot] != null )
+				{
+					lSlot = (lSlot + 1) & (aKeys.length - 1);
+				}
+				aKeys[lSlot] = lKeys[lEntry];
+				aValues[lSlot] = lValues[lEntry];
+				linkLast(lSlot);
+			}
+		}
+
+		/*
+		 * Removes the entry at pSlot, then moves back the entries that follow
+		 * it in the same probe sequence so that no tombstone is needed.
+		 */
+		private void remove(int pSlot)
+		{
+			unlink(pSlot);
+			aSize--;
+			int lMask = aKeys.length - 1;
+			int lFree = pSlot;
+			for( int lSlot = (pSlot + 1) & lMask; aValues[lSlot] != null; lSlot = (lSlot + 1) & lMask )
+			{
+				int lHome = slotOf(hash(aKeys[lSlot]));
+				if( ((lSlot - lHome) & lMask) >= ((lSlot - lFree) & lMask) )
+				{
+					move(lSlot, lFree);
+					lFree = lSlot;
+				}
+			}
+			aValues[lFree] = null;
+		}
+
+		private void move(int pFrom, int pTo)
+		{
+			aKeys[pTo] = aKeys[pFrom];
+			aValues[pTo] = aValues[pFrom];
+			aPrevious[pTo] = aPrevious[pFrom];
+			aNext[pTo] = aNext[pFrom];
+			if( aPrevious[pTo] == NONE )
+			{
+				aHead = pTo;
+			}
+			else
+			{
+				aNext[aPrevious[pTo]] = pTo;
+			}
+			if( aNext[pTo] == NONE )
+			{
+				aTail = pTo;
+			}
+			else
+			{
+				aPrevious[aNext[pTo]] = pTo;
+			}
+		}
+
+		private void linkLast(int pSlot)
+		{
+			aPrevious[pSlot] = aTail;
+			aNext[pSlot] = NONE;
+			if( aTail == NONE )
+			{
+				aHead = pSlot;
+			}
+			else
+			{
+				aNext[aTail] = pSlot;
+			}
+			aTail = pSlot;
+		}
+
+		private void unlink(int pSlot)
+		{
+			if( aPrevious[pSlot] == NONE )
+			{
+				aHead = aNext[pSlot];
+			}
+			else
+			{
+				aNext[aPrevious[pSlot]] = aNext[pSlot];
+			}
+			if( aNext[pSlot] == NONE )
+			{
+				aTail = aPrevious[pSlot];
+			}
+			else
+			{
+				aPrevious[aNext[pSlot]] = aPrevious[pSlot];
+			}
+		}
+	}
+}
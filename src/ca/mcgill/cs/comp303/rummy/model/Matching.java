@@ -0,0 +1,120 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import java.util.Arrays;
+
+/**
+ * An immutable arrangement of a set of cards into melds, as computed
+ * by an IMatchStrategy. Cards and melds are represented as masks
+ * (see CardMask). Melds are kept in increasing order of mask, so two
+ * matchings with the same melds are equal.
+ */
+public final class Matching
+{
+	private final long aCards;
+	private final long aMatched;
+	private final long[] aMelds;
+	private final int aDeadwood;
+
+	/**
+	 * Creates a new matching.
+	 * @param pCards The mask of all the matched and unmatched cards.
+	 * @param pMelds The masks of the melds. They must be disjoint subsets of pCards.
+	 * @param pCount The number of melds to read from pMelds.
+	 * @pre pCount <= pMelds.length
+	 */
+	public Matching(long pCards, long[] pMelds, int pCount)
+	{
+		aCards = pCards;
+		aMelds = Arrays.copyOf(pMelds, pCount);
+		Arrays.sort(aMelds);
+		long lMatched = 0;
+		for( long lMeld : aMelds )
+		{
+			lMatched |= lMeld;
+		}
+		aMatched = lMatched;
+		aDeadwood = CardMask.score(pCards & ~lMatched);
+	}
+
+	/**
+	 * @return The mask of all the cards in the arrangement.
+	 */
+	public long getCards()
+	{
+		return aCards;
+	}
+
+	/**
+	 * @return The mask of the cards that are part of a meld.
+	 */
+	public long getMatched()
+	{
+		return aMatched;
+	}
+
+	/**
+	 * @return The mask of the cards that are not part of any meld.
+	 */
+	public long getUnmatched()
+	{
+		return aCards & ~aMatched;
+	}
+
+	/**
+	 * @return The total point value of the unmatched cards.
+	 */
+	public int getDeadwood()
+	{
+		return aDeadwood;
+	}
+
+	/**
+	 * @return The number of melds in the arrangement.
+	 */
+	public int getMeldCount()
+	{
+		return aMelds.length;
+	}
+
+	/**
+	 * @param pIndex The index of a meld.
+	 * @return The mask of the meld at pIndex.
+	 * @pre pIndex >= 0 && pIndex < getMeldCount()
+	 */
+	public long getMeld(int pIndex)
+	{
+		return aMelds[pIndex];
+	}
+
+	@Override
+	public boolean equals(Object pObject)
+	{
+		if( pObject == this )
+		{
+			return true;
+		}
+		if( pObject == null || pObject.getClass() != getClass() )
+		{
+			return false;
+		}
+		Matching lOther = (Matching) pObject;
+		return aCards == lOther.aCards && Arrays.equals(aMelds, lOther.aMelds);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Long.valueOf(aCards).hashCode() * 31 + Arrays.hashCode(aMelds);
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder lBuilder = new StringBuilder("Matching (").append(aDeadwood).append(") : ");
+		for( long lMeld : aMelds )
+		{
+			lBuilder.append(CardMask.asSet(lMeld)).append(' ');
+		}
+		return lBuilder.append(CardMask.asSet(getUnmatched())).toString();
+	}
+}
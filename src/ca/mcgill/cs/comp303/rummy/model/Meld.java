@@ -0,0 +1,177 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable group or run, stored as a card mask (see CardMask) with its
+ * type, size and score computed once. Membership, equality and hashing are
+ * constant-time. There is exactly one instance of each legal meld of the
+ * MeldCatalog, created when the class is loaded: of() never allocates, and
+ * two melds are equal if and only if they are the same object.
+ */
+public final class Meld implements ICardSet
+{
+	private static final Meld[] MELDS = new Meld[MeldCatalog.size()];
+
+	static
+	{
+		for( int i = 0; i < MELDS.length; i++ )
+		{
+			MELDS[i] = new Meld(MeldCatalog.get(i), i);
+		}
+	}
+
+	private final long aMask;
+	private final short aIndex;
+	private final byte aSize;
+	private final boolean aGroup;
+	private final short aScore;
+
+	private Meld(long pMask, int pIndex)
+	{
+		aMask = pMask;
+		aIndex = (short) pIndex;
+		aSize = (byte) Long.bitCount(pMask);
+		aGroup = CardMask.isGroup(pMask);
+		aScore = (short) CardMask.score(pMask);
+	}
+
+	/**
+	 * @param pMask A card mask.
+	 * @return The meld made of the cards in pMask.
+	 * @throws HandException if the cards in pMask do not form a legal group or run.
+	 */
+	public static Meld of(long pMask)
+	{
+		int lIndex = MeldCatalog.indexOf(pMask);
+		if( lIndex < 0 )
+		{
+			throw new HandException("Not a group or a run: " + CardMask.asSet(pMask));
+		}
+		return MELDS[lIndex];
+	}
+
+	/**
+	 * @param pIndex The index of a meld in the MeldCatalog.
+	 * @return The meld at pIndex.
+	 * @pre pIndex >= 0 && pIndex < MeldCatalog.size()
+	 */
+	public static Meld get(int pIndex)
+	{
+		return MELDS[pIndex];
+	}
+
+	/**
+	 * @return The mask of the cards of the meld.
+	 */
+	public long getMask()
+	{
+		return aMask;
+	}
+
+	/**
+	 * @return The index of the meld in the MeldCatalog.
+	 */
+	public int getIndex()
+	{
+		return aIndex;
+	}
+
+	/**
+	 * @return The total point value of the cards of the meld.
+	 */
+	public int getScore()
+	{
+		return aScore;
+	}
+
+	@Override
+	public boolean contains(Card pCard)
+	{
+		return CardMask.contains(aMask, pCard);
+	}
+
+	@Override
+	public int size()
+	{
+		return aSize;
+	}
+
+	@Override
+	public boolean isGroup()
+	{
+		return aGroup;
+	}
+
+	@Override
+	public boolean isRun()
+	{
+		return !aGroup;
+	}
+
+	/**
+	 * Iterates over the cards of the meld in increasing order of index.
+	 * @return An iterator over the cards of the meld.
+	 */
+	@Override
+	public Iterator<Card> iterator()
+	{
+		return new Iterator<Card>()
+		{
+			private long aRemaining = aMask;
+
+			@Override
+			public boolean hasNext()
+			{
+				return aRemaining != 0;
+			}
+
+			@Override
+			public Card next()
+			{
+				if( aRemaining == 0 )
+				{
+					throw new NoSuchElementException();
+				}
+				Card lCard = Card.ofIndex(Long.numberOfTrailingZeros(aRemaining));
+				aRemaining &= aRemaining - 1;
+				return lCard;
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public boolean equals(Object pObject)
+	{
+		return pObject instanceof Meld && ((Meld) pObject).aMask == aMask;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return aIndex;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder lResult = new StringBuilder(aGroup ? "Group " : "Run ");
+		lResult.append('(').append(aSize).append(") : [");
+		for( long lCards = aMask; lCards != 0; lCards &= lCards - 1 )
+		{
+			lResult.append(Card.ofIndex(Long.numberOfTrailingZeros(lCards)));
+			if( (lCards & (lCards - 1)) != 0 )
+			{
+				lResult.append(", ");
+			}
+		}
+		return lResult.append(']').toString();
+	}
+}
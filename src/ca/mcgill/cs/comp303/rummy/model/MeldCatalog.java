@@ -0,0 +1,213 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import java.util.Arrays;
+
+/**
+ * The catalog of every legal meld of gin rummy, represented as card
+ * masks (see CardMask): the runs of length 3 to 13 of each suit and the
+ * 3- and 4-card groups of each rank. The melds that can be formed from
+ * a hand are the melds m of the catalog such that (m & ~hand) == 0.
+ */
+public final class MeldCatalog
+{
+	private static final int NUM_SUITS = 4;
+	private static final int MIN_MELD = 3;
+
+	// All the melds, in increasing order of mask
+	private static final long[] MELDS;
+
+	// For each card, the melds that contain it
+	private static final long[][] CONTAINING = new long[CardMask.DECK_SIZE][];
+
+	// For each card, the melds whose lowest card it is: runs longest first, then groups
+	private static final long[][] STARTING_AT = new long[CardMask.DECK_SIZE][];
+
+	static
+	{
+		long[] lAll = new long[CardMask.DECK_SIZE * CardMask.SUIT_SIZE];
+		int lCount = 0;
+		for( int lCard = 0; lCard < CardMask.DECK_SIZE; lCard++ )
+		{
+			long[] lStarting = new long[CardMask.SUIT_SIZE + NUM_SUITS];
+			int lStartingCount = 0;
+			int lRank = lCard % CardMask.SUIT_SIZE;
+
+			for( int lLength = CardMask.SUIT_SIZE - lRank; lLength >= MIN_MELD; lLength-- )
+			{
+				lStarting[lStartingCount++] = ((1L << lLength) - 1) << lCard;
+			}
+
+			long lOthers = CardMask.rank(lRank) & ~((2L << lCard) - 1);
+			if( Long.bitCount(lOthers) == NUM_SUITS - 1 )
+			{
+				lStarting[lStartingCount++] = lOthers | 1L << lCard;
+			}
+			for( long lFirst = lOthers; lFirst != 0; lFirst &= lFirst - 1 )
+			{
+				for( long lSecond = lFirst & (lFirst - 1); lSecond != 0; lSecond &= lSecond - 1 )
+				{
+					lStarting[lStartingCount++] = 1L << lCard | Long.lowestOneBit(lFirst) | Long.lowestOneBit(lSecond);
+				}
+			}
+
+			STARTING_AT[lCard] = Arrays.copyOf(lStarting, lStartingCount);
+			System.arraycopy(lStarting, 0, lAll, lCount, lStartingCount);
+			lCount += lStartingCount;
+		}
+		MELDS = Arrays.copyOf(lAll, lCount);
+		Arrays.sort(MELDS);
+
+		for( int lCard = 0; lCard < CardMask.DECK_SIZE; lCard++ )
+		{
+			long[] lContaining = new long[MELDS.length];
+			int lContainingCount = 0;
+			for( long lMeld : MELDS )
+			{
+				if( (lMeld & 1L << lCard) != 0 )
+				{
+					lContaining[lContainingCount++] = lMeld;
+				}
+			}
+			CONTAINING[lCard] = Arrays.copyOf(lContaining, lContainingCount);
+		}
+	}
+
+	private MeldCatalog()
+	{}
+
+	/**
+	 * @return The number of legal melds.
+	 */
+	public static int size()
+	{
+		return MELDS.length;
+	}
+
+	/**
+	 * @param pIndex The index of a meld in the catalog.
+	 * @return The mask of the meld at pIndex.
+	 * @pre pIndex >= 0 && pIndex < size()
+	 */
+	public static long get(int pIndex)
+	{
+		return MELDS[pIndex];
+	}
+
+	/**
+	 * @param pMeld A card mask.
+	 * @return The index of pMeld in the catalog, or a negative value if
+	 * pMeld is not a legal meld.
+	 */
+	public static int indexOf(long pMeld)
+	{
+		return Arrays.binarySearch(MELDS, pMeld);
+	}
+
+	/**
+	 * @param pMask A card mask.
+	 * @return True if the cards in pMask form a legal group or run.
+	 */
+	public static boolean isMeld(long pMask)
+	{
+		return indexOf(pMask) >= 0;
+	}
+
+	/**
+	 * @param pCard The index of a card.
+	 * @return The number of melds that contain the card.
+	 */
+	public static int countContaining(int pCard)
+	{
+		return CONTAINING[pCard].length;
+	}
+
+	/**
+	 * @param pCard The index of a card.
+	 * @param pIndex The index of a meld among those that contain the card.
+	 * @return The mask of that meld.
+	 * @pre pIndex >= 0 && pIndex < countContaining(pCard)
+	 */
+	public static long getContaining(int pCard, int pIndex)
+	{
+		return CONTAINING[pCard][pIndex];
+	}
+
+	/**
+	 * @param pCard The index of a card.
+	 * @return The number of melds whose lowest card is pCard.
+	 */
+	public static int countStartingAt(int pCard)
+	{
+		return STARTING_AT[pCard].length;
+	}
+
+	/**
+	 * Melds whose lowest card is pCard are ordered with the runs first,
+	 * from the longest to the shortest, then the groups.
+	 * @param pCard The index of a card.
+	 * @param pIndex The index of a meld among those whose lowest card is pCard.
+	 * @return The mask of that meld.
+	 * @pre pIndex >= 0 && pIndex < countStartingAt(pCard)
+	 */
+	public static long getStartingAt(int pCard, int pIndex)
+	{
+		return STARTING_AT[pCard][pIndex];
+	}
+
+	/**
+	 * Computes the union of all the melds that contain pCard and can be
+	 * formed with the cards of pCards: the cards of the same rank if there
+	 * are at least three, and the longest sequence of the suit through pCard
+	 * if it has at least three cards.
+	 * @param pCards A card mask.
+	 * @param pCard The index of a card of pCards.
+	 * @return The mask of the cards that share a meld with pCard, including
+	 * pCard, or 0 if pCard cannot be part of a meld.
+	 */
+	public static long reach(long pCards, int pCard)
+	{
+		long lReach = 0;
+		long lRank = pCards & CardMask.rank(pCard % CardMask.SUIT_SIZE);
+		if( Long.bitCount(lRank) >= MIN_MELD )
+		{
+			lReach = lRank;
+		}
+
+		int lSuitStart = pCard - pCard % CardMask.SUIT_SIZE;
+		int lLow = pCard;
+		while( lLow > lSuitStart && (pCards & 1L << (lLow - 1)) != 0 )
+		{
+			lLow--;
+		}
+		int lHigh = pCard;
+		while( lHigh < lSuitStart + CardMask.SUIT_SIZE - 1 && (pCards & 1L << (lHigh + 1)) != 0 )
+		{
+			lHigh++;
+		}
+		if( lHigh - lLow + 1 >= MIN_MELD )
+		{
+			lReach |= ((2L << lHigh) - 1) & ~((1L << lLow) - 1);
+		}
+		return lReach;
+	}
+
+	/**
+	 * Finds all the melds that can be formed with the cards of pCards.
+	 * @param pCards A card mask.
+	 * @param pMelds The array in which to store the masks of the melds.
+	 * @return The number of melds stored in pMelds.
+	 * @pre pMelds.length >= size()
+	 */
+	public static int candidates(long pCards, long[] pMelds)
+	{
+		int lCount = 0;
+		for( long lMeld : MELDS )
+		{
+			if( (lMeld & ~pCards) == 0 )
+			{
+				pMelds[lCount++] = lMeld;
+			}
+		}
+		return lCount;
+	}
+}
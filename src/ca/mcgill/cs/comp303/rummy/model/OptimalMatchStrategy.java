@@ -0,0 +1,151 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+/**
+ * Computes the arrangement of cards with the lowest possible deadwood.
+ * The search considers every sub-run and every 3- and 4-card sub-group,
+ * so cards that could belong to either a group or a run are always
+ * resolved correctly. Threadsafe.
+ *
+ * Cards are first split into components: two cards are in the same
+ * component if they can be part of a same meld, directly or through
+ * other cards. Components are solved independently, which also lets
+ * update() re-solve only the components touched by a change of the hand.
+ * Within a component, the search repeatedly takes the lowest remaining
+ * card and either covers it with a meld of the MeldCatalog whose lowest
+ * card it is, or leaves it unmatched. Branches whose deadwood already
+ * reaches the best known arrangement are pruned.
+ */
+public class OptimalMatchStrategy implements IMatchStrategy
+{
+	static final int MAX_MELDS = CardMask.DECK_SIZE / 3;
+
+	@Override
+	public Matching match(long pCards)
+	{
+		long[] lMelds = new long[MAX_MELDS];
+		int lCount = solveComponents(pCards, pCards, lMelds, 0);
+		return new Matching(pCards, lMelds, lCount);
+	}
+
+	@Override
+	public Matching update(Matching pPrevious, long pCards)
+	{
+		long lPrevious = pPrevious.getCards();
+		long lAdded = pCards & ~lPrevious;
+		long lRemoved = lPrevious & ~pCards;
+		if( lAdded == 0 && lRemoved == 0 )
+		{
+			return pPrevious;
+		}
+
+		// The components that may have changed are those of the added cards and
+		// of the cards that shared a component with a removed card.
+		long lSeeds = lAdded;
+		for( long lCards = lRemoved; lCards != 0; lCards &= lCards - 1 )
+		{
+			lSeeds |= component(lPrevious, Long.lowestOneBit(lCards)) & pCards;
+		}
+		long lChanged = component(pCards, lSeeds);
+
+		// Every other component is unchanged, and so is its solution
+		long[] lMelds = new long[MAX_MELDS];
+		int lCount = 0;
+		for( int i = 0; i < pPrevious.getMeldCount(); i++ )
+		{
+			long lMeld = pPrevious.getMeld(i);
+			if( (lMeld & (lChanged | lRemoved)) == 0 )
+			{
+				lMelds[lCount++] = lMeld;
+			}
+		}
+		lCount = solveComponents(pCards, lChanged, lMelds, lCount);
+		return new Matching(pCards, lMelds, lCount);
+	}
+
+	/*
+	 * Solves each component of pCards included in pRegion, a union of
+	 * components, and appends the melds of the solutions to pMelds.
+	 */
+	static int solveComponents(long pCards, long pRegion, long[] pMelds, int pCount)
+	{
+		int lCount = pCount;
+		long lRemaining = pRegion;
+		while( lRemaining != 0 )
+		{
+			long lComponent = component(pCards, Long.lowestOneBit(lRemaining));
+			lRemaining &= ~lComponent;
+			if( Long.bitCount(lComponent) >= 3 )
+			{
+				Search lSearch = new Search(CardMask.score(lComponent), pMelds, lCount);
+				lSearch.search(lComponent, 0, lCount);
+				lCount += lSearch.aBestCount;
+			}
+		}
+		return lCount;
+	}
+
+	/*
+	 * Returns the union of the components of pCards that contain a card of pSeeds.
+	 */
+	static long component(long pCards, long pSeeds)
+	{
+		long lComponent = pSeeds & pCards;
+		long lFrontier = lComponent;
+		while( lFrontier != 0 )
+		{
+			long lNew = MeldCatalog.reach(pCards, CardMask.first(lFrontier)) & ~lComponent;
+			lComponent |= lNew;
+			lFrontier = (lFrontier & (lFrontier - 1)) | lNew;
+		}
+		return lComponent;
+	}
+
+	/**
+	 * The mutable state of the search of a single component. The best
+	 * arrangement is written to the output array from a given offset.
+	 */
+	private static final class Search
+	{
+		private final long[] aPath = new long[MAX_MELDS];
+		private final long[] aBest;
+		private final int aOffset;
+		private int aBestCount;
+		private int aBestDeadwood;
+
+		Search(int pInitialDeadwood, long[] pBest, int pOffset)
+		{
+			aBestDeadwood = pInitialDeadwood;
+			aBest = pBest;
+			aOffset = pOffset;
+		}
+
+		void search(long pRemaining, int pDeadwood, int pDepth)
+		{
+			if( pDeadwood >= aBestDeadwood )
+			{
+				return;
+			}
+			if( pRemaining == 0 )
+			{
+				aBestDeadwood = pDeadwood;
+				aBestCount = pDepth - aOffset;
+				System.arraycopy(aPath, aOffset, aBest, aOffset, aBestCount);
+				return;
+			}
+
+			int lCard = CardMask.first(pRemaining);
+			for( int i = 0; i < MeldCatalog.countStartingAt(lCard); i++ )
+			{
+				long lMeld = MeldCatalog.getStartingAt(lCard, i);
+				if( (lMeld & ~pRemaining) == 0 )
+				{
+					aPath[pDepth] = lMeld;
+					search(pRemaining & ~lMeld, pDeadwood, pDepth + 1);
+				}
+			}
+
+			// Leave lCard unmatched
+			search(pRemaining & ~(1L << lCard), pDeadwood + Card.scoreOf(lCard), pDepth);
+		}
+	}
+}
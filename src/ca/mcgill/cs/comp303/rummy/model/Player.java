@@ -6,6 +6,7 @@ public abstract class Player
 {
 	private Hand aHand;
 	private String aName;
+	private int aSeat = -1;
 	
 	public Player()
 	{
@@ -14,14 +15,17 @@ public abstract class Player
 	//ABSTRACT METHODS
 	
 	//draws card from stock or discard pile
+	//returns true to take the top of the discard pile, false to draw from the stock
 	protected abstract boolean draw(Card pTopStock, Card pTopDiscard);
 	
 	//true if player wants to knock
 	protected abstract boolean knock();
 	
 	//player discards
+	//returns either the drawn card (see getDrawnCard()) or a card of the hand
 	protected abstract Card discard();
 	
+	//true if player takes the upcard at the start of the hand
 	protected abstract boolean takeFirstCard(Card pTopStock, Card pTopDiscard);
 	
 	//determines if player can knock
@@ -46,7 +50,21 @@ public abstract class Player
 	
 	public void setHand(List<Card> pCards)
 	{
-		for (Card c : pCards) aHand.add(c);
+		long lCards = CardMask.of(pCards);
+		if (Long.bitCount(lCards) != pCards.size())
+			throw new HandException("Card already exists ?");
+		aHand.addAll(lCards);
+	}
+	
+	//seat of the player in its GameEngine (0 or 1), or -1 if it is not seated
+	public int getSeat()
+	{
+		return aSeat;
+	}
+	
+	void setSeat(int pSeat)
+	{
+		aSeat = pSeat;
 	}
 	
 	public Card getDrawnCard()
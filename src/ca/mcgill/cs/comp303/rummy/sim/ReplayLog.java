@@ -0,0 +1,360 @@
+package ca.mcgill.cs.comp303.rummy.sim;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Locale;
+
+import ca.mcgill.cs.comp303.rummy.model.Card;
+import ca.mcgill.cs.comp303.rummy.model.GameAdapter;
+import ca.mcgill.cs.comp303.rummy.model.GameEngine;
+import ca.mcgill.cs.comp303.rummy.model.GameSnapshot;
+import ca.mcgill.cs.comp303.rummy.model.HandResult;
+
+/**
+ * An append-only log of the events of the hands played by a GameEngine,
+ * read back by a ReplayReader. Each hand is logged as one game, with a
+ * sequential game id.
+ *
+ * Events are written as fixed-width records of RECORD_SIZE bytes into
+ * segment files of a fixed size, mapped in memory; a new segment is started
+ * when one is full. The first record of each segment holds the id of the
+ * next game to start in it. The deal is logged as the two hands dealt, so
+ * a game can be replayed without the generator of the engine. Every
+ * INDEX_INTERVAL games, the position of the game is appended to a sparse
+ * index file, so that a reader can find a game without scanning the log.
+ *
+ * Opening an existing log appends to it. A game cut short, e.g., by a crash,
+ * is replayed without its end. Not threadsafe: use one log per engine.
+ */
+public class ReplayLog extends GameAdapter implements Closeable
+{
+	/**
+	 * The default size of a segment file, in bytes.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+	/**
+	 * The number of games between two entries of the index.
+	 */
+	public static final int INDEX_INTERVAL = 1024;
+
+	/**
+	 * The size of a record, in bytes.
+	 */
+	public static final int RECORD_SIZE = 16;
+
+	// Record types; a zero byte marks the end of the written part of a segment
+	static final byte END = 0;
+	static final byte SEGMENT = 1;
+	static final byte GAME = 2;
+	static final byte DEAL = 3;
+	static final byte REFUSE = 4;
+	static final byte DRAW = 5;
+	static final byte DISCARD = 6;
+	static final byte KNOCK = 7;
+	static final byte LAYOFF = 8;
+	static final byte RESULT = 9;
+
+	// Offsets of the fields of a record
+	static final int TYPE = 0;
+	static final int PLAYER = 1;
+	static final int CARD = 2;
+	static final int FLAGS = 3;
+	static final int VALUE = 4;
+	static final int PAYLOAD = 8;
+
+	static final int FROM_DISCARD = 1;
+	static final int GIN = 1;
+	static final int UNDERCUT = 2;
+	static final int SHORT_BITS = 16;
+	static final int SHORT_MASK = 0xFFFF;
+	static final int INDEX_ENTRY_SIZE = 16;
+	static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	private static final int NUM_PLAYERS = 2;
+	private static final int POSITION_BITS = 32;
+
+	private final File aDirectory;
+	private final String aName;
+	private final int aSegmentSize;
+	private final FileChannel aIndex;
+	private final ByteBuffer aIndexEntry = ByteBuffer.allocate(INDEX_ENTRY_SIZE).order(ORDER);
+	private final GameSnapshot aSnapshot = new GameSnapshot();
+	private RandomAccessFile aSegmentFile;
+	private MappedByteBuffer aSegment;
+	private int aSegmentNumber;
+	private long aNextGame;
+	private GameEngine aEngine;
+
+	/**
+	 * Opens the log pName in pDirectory with segments of the default size.
+	 * @param pDirectory The directory of the files of the log.
+	 * @param pName The name of the log.
+	 * @throws IOException if the log cannot be opened.
+	 * @pre pDirectory != null && pName != null
+	 */
+	public ReplayLog(File pDirectory, String pName) throws IOException
+	{
+		this(pDirectory, pName, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Opens the log pName in pDirectory, creating it if it does not exist.
+	 * @param pDirectory The directory of the files of the log.
+	 * @param pName The name of the log.
+	 * @param pSegmentSize The size of the segment files, in bytes.
+	 * @throws IOException if the log cannot be opened.
+	 * @pre pDirectory != null && pName != null
+	 * @pre pSegmentSize % RECORD_SIZE == 0 && pSegmentSize >= 2 * RECORD_SIZE
+	 */
+	public ReplayLog(File pDirectory, String pName, int pSegmentSize) throws IOException
+	{
+		if( pSegmentSize % RECORD_SIZE != 0 || pSegmentSize < 2 * RECORD_SIZE )
+		{
+			throw new IllegalArgumentException("Invalid segment size: " + pSegmentSize);
+		}
+		aDirectory = pDirectory;
+		aName = pName;
+		aSegmentSize = pSegmentSize;
+		if( !pDirectory.isDirectory() && !pDirectory.mkdirs() )
+		{
+			throw new IOException("Cannot create " + pDirectory);
+		}
+
+		int lLast = segmentCount(pDirectory, pName) - 1;
+		if( lLast < 0 )
+		{
+			openSegment(0);
+		}
+		else
+		{
+			reopenSegment(lLast);
+		}
+		aIndex = new RandomAccessFile(indexFile(pDirectory, pName), "rw").getChannel();
+		aIndex.position(aIndex.size());
+	}
+
+	/**
+	 * Logs the hands played by pEngine. The log must be attached this way
+	 * rather than added as a listener, as the deal is read from the engine.
+	 * @param pEngine The engine to follow.
+	 * @pre pEngine != null
+	 */
+	public void attach(GameEngine pEngine)
+	{
+		aEngine = pEngine;
+		pEngine.addListener(this);
+	}
+
+	/**
+	 * @return The id of the next game to be logged.
+	 */
+	public long getNextGame()
+	{
+		return aNextGame;
+	}
+
+	/**
+	 * @throws IllegalStateException if the log is not attached to an engine.
+	 * @see ca.mcgill.cs.comp303.rummy.model.IGameListener#handStarted(int, Card)
+	 */
+	@Override
+	public void handStarted(int pDealer, Card pUpcard)
+	{
+		if( aEngine == null )
+		{
+			throw new IllegalStateException("Log not attached to an engine");
+		}
+		if( aNextGame % INDEX_INTERVAL == 0 )
+		{
+			if( aSegment.remaining() < RECORD_SIZE )
+			{
+				rollOver();
+			}
+			index(aNextGame, (long) aSegmentNumber << POSITION_BITS | aSegment.position());
+		}
+		write(GAME, pDealer, pUpcard.index(), 0, 0, aNextGame);
+		aNextGame++;
+		aEngine.capture(aSnapshot);
+		for( int i = 0; i < NUM_PLAYERS; i++ )
+		{
+			write(DEAL, i, -1, 0, 0, aSnapshot.getHand(i));
+		}
+	}
+
+	@Override
+	public void upcardRefused(int pPlayer)
+	{
+		write(REFUSE, pPlayer, -1, 0, 0, 0);
+	}
+
+	@Override
+	public void cardDrawn(int pPlayer, Card pCard, boolean pFromDiscard)
+	{
+		write(DRAW, pPlayer, pCard.index(), pFromDiscard ? FROM_DISCARD : 0, 0, 0);
+	}
+
+	@Override
+	public void cardDiscarded(int pPlayer, Card pCard)
+	{
+		write(DISCARD, pPlayer, pCard.index(), 0, 0, 0);
+	}
+
+	@Override
+	public void knocked(int pPlayer, int pDeadwood)
+	{
+		write(KNOCK, pPlayer, -1, 0, pDeadwood, 0);
+	}
+
+	@Override
+	public void cardsLaidOff(int pPlayer, long pCards)
+	{
+		write(LAYOFF, pPlayer, -1, 0, 0, pCards);
+	}
+
+	@Override
+	public void handEnded(HandResult pResult)
+	{
+		int lFlags = 0;
+		if( pResult.isGin() )
+		{
+			lFlags |= GIN;
+		}
+		if( pResult.isUndercut() )
+		{
+			lFlags |= UNDERCUT;
+		}
+		long lDetails = pResult.getTurns() & SHORT_MASK |
+				(long) (pResult.getDeadwood(0) & SHORT_MASK) << SHORT_BITS |
+				(long) (pResult.getDeadwood(1) & SHORT_MASK) << (2 * SHORT_BITS);
+		write(RESULT, pResult.getWinner(), pResult.getKnocker(), lFlags, pResult.getPoints(), lDetails);
+	}
+
+	/**
+	 * Writes the log to the storage device.
+	 */
+	public void flush()
+	{
+		aSegment.force();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		flush();
+		aSegmentFile.close();
+		aIndex.close();
+	}
+
+	static File segmentFile(File pDirectory, String pName, int pSegment)
+	{
+		return new File(pDirectory, String.format(Locale.ROOT, "%s-%06d.seg", pName, pSegment));
+	}
+
+	static File indexFile(File pDirectory, String pName)
+	{
+		return new File(pDirectory, pName + ".idx");
+	}
+
+	static int segmentCount(File pDirectory, String pName)
+	{
+		int lCount = 0;
+		while( segmentFile(pDirectory, pName, lCount).exists() )
+		{
+			lCount++;
+		}
+		return lCount;
+	}
+
+	private void write(byte pType, int pPlayer, int pCard, int pFlags, int pValue, long pPayload)
+	{
+		if( aSegment.remaining() < RECORD_SIZE )
+		{
+			rollOver();
+		}
+		int lPosition = aSegment.position();
+		aSegment.put(lPosition + TYPE, pType);
+		aSegment.put(lPosition + PLAYER, (byte) pPlayer);
+		aSegment.put(lPosition + CARD, (byte) pCard);
+		aSegment.put(lPosition + FLAGS, (byte) pFlags);
+		aSegment.putInt(lPosition + VALUE, pValue);
+		aSegment.putLong(lPosition + PAYLOAD, pPayload);
+		aSegment.position(lPosition + RECORD_SIZE);
+	}
+
+	private void index(long pGame, long pPosition)
+	{
+		aIndexEntry.clear();
+		aIndexEntry.putLong(pGame).putLong(pPosition).flip();
+		try
+		{
+			while( aIndexEntry.hasRemaining() )
+			{
+				aIndex.write(aIndexEntry);
+			}
+		}
+		catch( IOException lException )
+		{
+			throw new IllegalStateException(lException);
+		}
+	}
+
+	private void rollOver()
+	{
+		try
+		{
+			aSegment.force();
+			aSegmentFile.close();
+			openSegment(aSegmentNumber + 1);
+		}
+		catch( IOException lException )
+		{
+			throw new IllegalStateException(lException);
+		}
+	}
+
+	private void map(int pSegment) throws IOException
+	{
+		aSegmentNumber = pSegment;
+		aSegmentFile = new RandomAccessFile(segmentFile(aDirectory, aName, pSegment), "rw");
+		aSegment = aSegmentFile.getChannel().map(MapMode.READ_WRITE, 0, aSegmentSize);
+		aSegment.order(ORDER);
+	}
+
+	private void openSegment(int pSegment) throws IOException
+	{
+		map(pSegment);
+		write(SEGMENT, 0, -1, 0, pSegment, aNextGame);
+	}
+
+	/*
+	 * Maps the last segment of an existing log and moves to the end of its
+	 * records, counting the games started in it.
+	 */
+	private void reopenSegment(int pSegment) throws IOException
+	{
+		map(pSegment);
+		if( aSegment.get(TYPE) != SEGMENT )
+		{
+			throw new IOException("Corrupt segment: " + segmentFile(aDirectory, aName, pSegment));
+		}
+		aNextGame = aSegment.getLong(PAYLOAD);
+		int lPosition = RECORD_SIZE;
+		while( lPosition <= aSegmentSize - RECORD_SIZE && aSegment.get(lPosition + TYPE) != END )
+		{
+			if( aSegment.get(lPosition + TYPE) == GAME )
+			{
+				aNextGame++;
+			}
+			lPosition += RECORD_SIZE;
+		}
+		aSegment.position(lPosition);
+	}
+}
@@ -0,0 +1,290 @@
+package ca.mcgill.cs.comp303.rummy.sim;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+
+import ca.mcgill.cs.comp303.rummy.model.Card;
+import ca.mcgill.cs.comp303.rummy.model.HandResult;
+import ca.mcgill.cs.comp303.rummy.model.IGameListener;
+
+/**
+ * Reads a log written by a ReplayLog and replays its events to an
+ * IGameListener, in the order they were logged. Reading starts at the
+ * beginning of the log, at a position returned by getPosition(), or at a
+ * game found through the sparse index of the log. Segments are mapped in
+ * memory one at a time, read-only.
+ *
+ * The hands dealt in the current game are available from getDealtHand()
+ * once the listener is notified that the hand started. Not threadsafe:
+ * use one reader per thread.
+ */
+public class ReplayReader implements Closeable
+{
+	private static final int POSITION_BITS = 32;
+	private static final long OFFSET_MASK = (1L << POSITION_BITS) - 1;
+	private static final int NUM_PLAYERS = 2;
+
+	private final File aDirectory;
+	private final String aName;
+	private final long[] aIndexGames;
+	private final long[] aIndexPositions;
+	private MappedByteBuffer aSegment;
+	private int aSegmentNumber = -1;
+	private int aOffset;
+	private long aGame = -1;
+	private final long[] aHands = new long[NUM_PLAYERS];
+	private int aDealer;
+	private int aUpcard;
+
+	/**
+	 * Opens the log pName in pDirectory, positioned at its beginning.
+	 * @param pDirectory The directory of the files of the log.
+	 * @param pName The name of the log.
+	 * @throws IOException if the log does not exist or cannot be read.
+	 * @pre pDirectory != null && pName != null
+	 */
+	public ReplayReader(File pDirectory, String pName) throws IOException
+	{
+		aDirectory = pDirectory;
+		aName = pName;
+		if( ReplayLog.segmentCount(pDirectory, pName) == 0 )
+		{
+			throw new IOException("No log " + pName + " in " + pDirectory);
+		}
+
+		File lIndexFile = ReplayLog.indexFile(pDirectory, pName);
+		int lEntries = 0;
+		ByteBuffer lIndex = ByteBuffer.allocate(0);
+		if( lIndexFile.exists() )
+		{
+			RandomAccessFile lFile = new RandomAccessFile(lIndexFile, "r");
+			try
+			{
+				lEntries = (int) (lFile.length() / ReplayLog.INDEX_ENTRY_SIZE);
+				lIndex = lFile.getChannel().map(MapMode.READ_ONLY, 0, (long) lEntries * ReplayLog.INDEX_ENTRY_SIZE);
+			}
+			finally
+			{
+				lFile.close();
+			}
+		}
+		lIndex.order(ReplayLog.ORDER);
+		aIndexGames = new long[lEntries];
+		aIndexPositions = new long[lEntries];
+		for( int i = 0; i < lEntries; i++ )
+		{
+			aIndexGames[i] = lIndex.getLong();
+			aIndexPositions[i] = lIndex.getLong();
+		}
+		seek(0);
+	}
+
+	/**
+	 * @return The position of the next record to read, for seek().
+	 */
+	public long getPosition()
+	{
+		return (long) aSegmentNumber << POSITION_BITS | aOffset;
+	}
+
+	/**
+	 * Moves to a position returned by getPosition(), or to 0 for the beginning of the log.
+	 * @param pPosition The position of the next record to read.
+	 * @throws IOException if the segment of the position cannot be read.
+	 */
+	public void seek(long pPosition) throws IOException
+	{
+		int lSegment = (int) (pPosition >>> POSITION_BITS);
+		if( lSegment != aSegmentNumber && !map(lSegment) )
+		{
+			throw new IOException("No segment " + lSegment);
+		}
+		aOffset = (int) (pPosition & OFFSET_MASK);
+	}
+
+	/**
+	 * Moves to the start of game pGame, using the index to skip most of the log.
+	 * @param pGame The id of a game.
+	 * @return True if the game was found. Otherwise the position is unspecified.
+	 * @throws IOException if the log cannot be read.
+	 */
+	public boolean seekGame(long pGame) throws IOException
+	{
+		int lEntry = Arrays.binarySearch(aIndexGames, pGame);
+		if( lEntry < 0 )
+		{
+			lEntry = -lEntry - 2;
+		}
+		if( lEntry >= 0 )
+		{
+			seek(aIndexPositions[lEntry]);
+		}
+		else
+		{
+			seek(0);
+		}
+
+		while( nextRecord() )
+		{
+			if( aSegment.get(aOffset + ReplayLog.TYPE) == ReplayLog.GAME )
+			{
+				long lGame = aSegment.getLong(aOffset + ReplayLog.PAYLOAD);
+				if( lGame == pGame )
+				{
+					return true;
+				}
+				else if( lGame > pGame )
+				{
+					return false;
+				}
+			}
+			aOffset += ReplayLog.RECORD_SIZE;
+		}
+		return false;
+	}
+
+	/**
+	 * Replays the events of the log to pListener, from the current position
+	 * until the end of the log or until pMaxGames games have ended.
+	 * @param pListener The listener to notify.
+	 * @param pMaxGames The largest number of games to replay to their end.
+	 * @return The number of games that ended.
+	 * @throws IOException if the log cannot be read.
+	 * @pre pListener != null
+	 */
+	public long replay(IGameListener pListener, long pMaxGames) throws IOException
+	{
+		long lEnded = 0;
+		while( lEnded < pMaxGames && nextRecord() )
+		{
+			MappedByteBuffer lSegment = aSegment;
+			int lOffset = aOffset;
+			aOffset += ReplayLog.RECORD_SIZE;
+			int lPlayer = lSegment.get(lOffset + ReplayLog.PLAYER);
+			int lCard = lSegment.get(lOffset + ReplayLog.CARD);
+			switch( lSegment.get(lOffset + ReplayLog.TYPE) )
+			{
+			case ReplayLog.GAME:
+				aGame = lSegment.getLong(lOffset + ReplayLog.PAYLOAD);
+				aDealer = lPlayer;
+				aUpcard = lCard;
+				break;
+			case ReplayLog.DEAL:
+				aHands[lPlayer] = lSegment.getLong(lOffset + ReplayLog.PAYLOAD);
+				if( lPlayer == NUM_PLAYERS - 1 )
+				{
+					pListener.handStarted(aDealer, Card.ofIndex(aUpcard));
+				}
+				break;
+			case ReplayLog.REFUSE:
+				pListener.upcardRefused(lPlayer);
+				break;
+			case ReplayLog.DRAW:
+				boolean lFromDiscard = (lSegment.get(lOffset + ReplayLog.FLAGS) & ReplayLog.FROM_DISCARD) != 0;
+				pListener.cardDrawn(lPlayer, Card.ofIndex(lCard), lFromDiscard);
+				break;
+			case ReplayLog.DISCARD:
+				pListener.cardDiscarded(lPlayer, Card.ofIndex(lCard));
+				break;
+			case ReplayLog.KNOCK:
+				pListener.knocked(lPlayer, lSegment.getInt(lOffset + ReplayLog.VALUE));
+				break;
+			case ReplayLog.LAYOFF:
+				pListener.cardsLaidOff(lPlayer, lSegment.getLong(lOffset + ReplayLog.PAYLOAD));
+				break;
+			case ReplayLog.RESULT:
+				pListener.handEnded(result(lSegment, lOffset));
+				lEnded++;
+				break;
+			default:
+				// Segment headers
+				break;
+			}
+		}
+		return lEnded;
+	}
+
+	/**
+	 * @return The id of the current game, or -1 if no game was read yet.
+	 */
+	public long getGame()
+	{
+		return aGame;
+	}
+
+	/**
+	 * @param pPlayer The seat of a player.
+	 * @return The mask of the cards dealt to the player in the current game (see CardMask).
+	 */
+	public long getDealtHand(int pPlayer)
+	{
+		return aHands[pPlayer];
+	}
+
+	@Override
+	public void close()
+	{
+		// Mapped segments are released when they are no longer referenced
+		aSegment = null;
+		aSegmentNumber = -1;
+	}
+
+	private static HandResult result(ByteBuffer pSegment, int pOffset)
+	{
+		int lFlags = pSegment.get(pOffset + ReplayLog.FLAGS);
+		long lDetails = pSegment.getLong(pOffset + ReplayLog.PAYLOAD);
+		return new HandResult(pSegment.get(pOffset + ReplayLog.PLAYER), pSegment.get(pOffset + ReplayLog.CARD),
+				pSegment.getInt(pOffset + ReplayLog.VALUE), (lFlags & ReplayLog.GIN) != 0,
+				(lFlags & ReplayLog.UNDERCUT) != 0, (int) (lDetails & ReplayLog.SHORT_MASK),
+				(short) (lDetails >>> ReplayLog.SHORT_BITS), (short) (lDetails >>> (2 * ReplayLog.SHORT_BITS)));
+	}
+
+	/*
+	 * Moves to the next segment as needed. Returns false at the end of the log.
+	 */
+	private boolean nextRecord() throws IOException
+	{
+		while( aOffset > aSegment.limit() - ReplayLog.RECORD_SIZE ||
+				aSegment.get(aOffset + ReplayLog.TYPE) == ReplayLog.END )
+		{
+			if( !map(aSegmentNumber + 1) )
+			{
+				return false;
+			}
+			aOffset = 0;
+		}
+		return true;
+	}
+
+	/*
+	 * Maps segment pSegment. Returns false if it does not exist.
+	 */
+	private boolean map(int pSegment) throws IOException
+	{
+		File lFile = ReplayLog.segmentFile(aDirectory, aName, pSegment);
+		if( !lFile.exists() )
+		{
+			return false;
+		}
+		RandomAccessFile lSegmentFile = new RandomAccessFile(lFile, "r");
+		try
+		{
+			FileChannel lChannel = lSegmentFile.getChannel();
+			aSegment = lChannel.map(MapMode.READ_ONLY, 0, lChannel.size());
+			aSegment.order(ReplayLog.ORDER);
+			aSegmentNumber = pSegment;
+		}
+		finally
+		{
+			lSegmentFile.close();
+		}
+		return true;
+	}
+}
@@ -0,0 +1,130 @@
+package ca.mcgill.cs.comp303.rummy.sim;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ca.mcgill.cs.comp303.rummy.model.Card;
+import ca.mcgill.cs.comp303.rummy.model.GameAdapter;
+import ca.mcgill.cs.comp303.rummy.model.GameEngine;
+import ca.mcgill.cs.comp303.rummy.model.GameSnapshot;
+import ca.mcgill.cs.comp303.rummy.model.HandResult;
+
+/**
+ * Publishes the state of the hands played by a GameEngine, at most a fixed
+ * number of times per second, so that a viewer on another thread, e.g., a
+ * SpectatorPanel, can follow a game without reading the live hands.
+ *
+ * On each event of the engine, the publisher captures a new GameSnapshot if
+ * the previous one was captured long enough ago; events in between are not
+ * published, so a headless game runs at full speed whatever the viewer does.
+ * The snapshot is then swapped into an atomic reference, and is never
+ * modified afterwards: readers can hold on to it without copying.
+ * The snapshots can be read from any thread.
+ */
+public class SnapshotPublisher extends GameAdapter
+{
+	/**
+	 * The default maximum number of snapshots per second.
+	 */
+	public static final int DEFAULT_RATE = 30;
+
+	private final long aIntervalNanos;
+	private long aNextPublish = System.nanoTime();
+	private final AtomicReference<GameSnapshot> aLatest = new AtomicReference<GameSnapshot>();
+	private final AtomicLong aPublished = new AtomicLong();
+	private GameEngine aEngine;
+
+	/**
+	 * Creates a publisher of at most DEFAULT_RATE snapshots per second.
+	 */
+	public SnapshotPublisher()
+	{
+		this(DEFAULT_RATE);
+	}
+
+	/**
+	 * Creates a publisher.
+	 * @param pMaxRate The maximum number of snapshots per second.
+	 * @pre pMaxRate > 0
+	 */
+	public SnapshotPublisher(int pMaxRate)
+	{
+		aIntervalNanos = TimeUnit.SECONDS.toNanos(1) / pMaxRate;
+	}
+
+	/**
+	 * Follows the hands played by an engine. The publisher must not follow
+	 * two engines that play at the same time, or their states will be mixed.
+	 * @param pEngine The engine to follow.
+	 * @pre pEngine != null
+	 */
+	public void attach(GameEngine pEngine)
+	{
+		aEngine = pEngine;
+		pEngine.addListener(this);
+	}
+
+	/**
+	 * @return The last snapshot published, or null if none was.
+	 */
+	public GameSnapshot getLatest()
+	{
+		return aLatest.get();
+	}
+
+	/**
+	 * @return The number of snapshots published.
+	 */
+	public long getPublished()
+	{
+		return aPublished.get();
+	}
+
+	@Override
+	public void handStarted(int pDealer, Card pUpcard)
+	{
+		publish();
+	}
+
+	@Override
+	public void upcardRefused(int pPlayer)
+	{
+		publish();
+	}
+
+	@Override
+	public void cardDrawn(int pPlayer, Card pCard, boolean pFromDiscard)
+	{
+		publish();
+	}
+
+	@Override
+	public void cardDiscarded(int pPlayer, Card pCard)
+	{
+		publish();
+	}
+
+	@Override
+	public void handEnded(HandResult pResult)
+	{
+		publish();
+	}
+
+	/*
+	 * Captures a snapshot if one is due. Called on the thread of the engine.
+	 */
+	private void publish()
+	{
+		long lNow = System.nanoTime();
+		if( lNow - aNextPublish < 0 )
+		{
+			return;
+		}
+		aNextPublish = lNow + aIntervalNanos;
+		GameSnapshot lSnapshot = new GameSnapshot();
+		aEngine.capture(lSnapshot);
+		aLatest.set(lSnapshot);
+		aPublished.incrementAndGet();
+	}
+}
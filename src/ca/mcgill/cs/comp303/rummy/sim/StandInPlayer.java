@@ -0,0 +1,65 @@
+package ca.mcgill.cs.comp303.rummy.sim;
+
+import java.util.concurrent.CancellationException;
+
+import ca.mcgill.cs.comp303.rummy.model.AutoPlayer;
+import ca.mcgill.cs.comp303.rummy.model.Card;
+
+/**
+ * An in-process stand-in for a human or remote player, for testing a
+ * TableHost. It blocks for a fixed think time before each decision, then
+ * plays like an AutoPlayer. If its thread is interrupted while it thinks,
+ * e.g., because the table timed out, it abandons the game by throwing a
+ * CancellationException.
+ */
+public class StandInPlayer extends AutoPlayer
+{
+	private final long aThinkMillis;
+
+	/**
+	 * @param pThinkMillis The time the player blocks before each decision, in milliseconds.
+	 * @pre pThinkMillis >= 0
+	 */
+	public StandInPlayer(long pThinkMillis)
+	{
+		aThinkMillis = pThinkMillis;
+	}
+
+	@Override
+	protected boolean takeFirstCard(Card pTopStock, Card pTopDiscard)
+	{
+		think();
+		return super.takeFirstCard(pTopStock, pTopDiscard);
+	}
+
+	@Override
+	protected boolean draw(Card pTopStock, Card pTopDiscard)
+	{
+		think();
+		return super.draw(pTopStock, pTopDiscard);
+	}
+
+	@Override
+	protected Card discard()
+	{
+		think();
+		return super.discard();
+	}
+
+	private void think()
+	{
+		if( aThinkMillis == 0 )
+		{
+			return;
+		}
+		try
+		{
+			Thread.sleep(aThinkMillis);
+		}
+		catch( InterruptedException lException )
+		{
+			Thread.currentThread().interrupt();
+			throw new CancellationException(this + " was interrupted while deciding");
+		}
+	}
+}
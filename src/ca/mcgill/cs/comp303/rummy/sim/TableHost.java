@@ -0,0 +1,316 @@
+package ca.mcgill.cs.comp303.rummy.sim;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ca.mcgill.cs.comp303.rummy.model.Card;
+import ca.mcgill.cs.comp303.rummy.model.EngineMetrics;
+import ca.mcgill.cs.comp303.rummy.model.FastRandom;
+import ca.mcgill.cs.comp303.rummy.model.GameAdapter;
+import ca.mcgill.cs.comp303.rummy.model.GameEngine;
+import ca.mcgill.cs.comp303.rummy.model.Player;
+
+/**
+ * Hosts many concurrent two-player tables. Each table plays a complete game
+ * on its own thread, so players may block while they decide, e.g., while
+ * waiting for a remote client. When the JVM supports virtual threads, tables
+ * run on virtual threads, which makes thousands of mostly blocked tables
+ * cheap; otherwise they run on daemon platform threads.
+ *
+ * At most a fixed number of tables are open at once: open() blocks until a
+ * table is free. A watchdog interrupts any table where a player has been
+ * deciding for longer than the decision timeout; the game is then abandoned
+ * and that player is reported as slow. A player decides from the start of
+ * its turn until it draws, then until it discards, then until it knocks or
+ * its opponent starts a turn. Players that block must therefore give up,
+ * e.g., by throwing a CancellationException, when their thread is
+ * interrupted (see StandInPlayer). A game whose players ignore the
+ * interrupt is still reported as timed out once it ends.
+ */
+public class TableHost
+{
+	private static final int CHECKS_PER_TIMEOUT = 4;
+
+	private final ThreadFactory aThreadFactory;
+	private final boolean aVirtual;
+	private final Semaphore aFreeTables;
+	private final long aTimeoutNanos;
+	private final Set<Table> aOpenTables = Collections.newSetFromMap(new ConcurrentHashMap<Table, Boolean>());
+	private final ScheduledExecutorService aWatchdog;
+
+	/**
+	 * Creates a host.
+	 * @param pMaxTables The maximum number of tables that play at once.
+	 * @param pDecisionTimeout The time a player may take to draw or discard, in milliseconds.
+	 * @pre pMaxTables > 0 && pDecisionTimeout > 0
+	 */
+	public TableHost(int pMaxTables, long pDecisionTimeout)
+	{
+		ThreadFactory lFactory = virtualThreadFactory();
+		aVirtual = lFactory != null;
+		if( lFactory == null )
+		{
+			lFactory = new PlatformThreadFactory("table-");
+		}
+		aThreadFactory = lFactory;
+		aFreeTables = new Semaphore(pMaxTables);
+		aTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(pDecisionTimeout);
+		aWatchdog = Executors.newSingleThreadScheduledExecutor(new PlatformThreadFactory("table-watchdog-"));
+		long lPeriod = Math.max(1, aTimeoutNanos / CHECKS_PER_TIMEOUT);
+		aWatchdog.scheduleAtFixedRate(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				checkTimeouts();
+			}
+		}, lPeriod, lPeriod, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Opens a table and starts a game between two players on it. Blocks while
+	 * the maximum number of tables are already playing.
+	 * @param pPlayer0 The player in seat 0, who deals first.
+	 * @param pPlayer1 The player in seat 1.
+	 * @param pSeed The seed of the deck of the table.
+	 * @return The result of the game, once it is over. Cancelling the future
+	 * interrupts the table.
+	 * @throws InterruptedException if the calling thread is interrupted while waiting for a table.
+	 * @pre pPlayer0 != null && pPlayer1 != null && pPlayer0 != pPlayer1
+	 */
+	public Future<TableResult> open(Player pPlayer0, Player pPlayer1, long pSeed) throws InterruptedException
+	{
+		aFreeTables.acquire();
+		Table lTable = new Table(new GameEngine(pPlayer0, pPlayer1, new FastRandom(pSeed)));
+		final FutureTask<TableResult> lFuture = new FutureTask<TableResult>(lTable);
+		try
+		{
+			aThreadFactory.newThread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						lFuture.run();
+					}
+					finally
+					{
+						aFreeTables.release();
+					}
+				}
+			}).start();
+		}
+		catch( RuntimeException lException )
+		{
+			aFreeTables.release();
+			throw lException;
+		}
+		return lFuture;
+	}
+
+	/**
+	 * @return The number of tables currently playing.
+	 */
+	public int getOpenTables()
+	{
+		return aOpenTables.size();
+	}
+
+	/**
+	 * @return True if tables run on virtual threads.
+	 */
+	public boolean isUsingVirtualThreads()
+	{
+		return aVirtual;
+	}
+
+	/**
+	 * Stops the watchdog and interrupts the tables that are still playing.
+	 * The host must not be used afterwards.
+	 */
+	public void shutdown()
+	{
+		aWatchdog.shutdownNow();
+		for( Table lTable : aOpenTables )
+		{
+			lTable.interrupt();
+		}
+	}
+
+	private void checkTimeouts()
+	{
+		long lNow = System.nanoTime();
+		for( Table lTable : aOpenTables )
+		{
+			if( lNow - lTable.aLastMove > aTimeoutNanos )
+			{
+				lTable.timeOut();
+			}
+		}
+	}
+
+	/*
+	 * Returns a factory of virtual threads, or null if the JVM does not
+	 * have them. Reflection keeps the code compatible with older JVMs.
+	 */
+	private static ThreadFactory virtualThreadFactory()
+	{
+		try
+		{
+			Class<?> lBuilder = Class.forName("java.lang.Thread$Builder");
+			Object lVirtual = Thread.class.getMethod("ofVirtual").invoke(null);
+			lVirtual = lBuilder.getMethod("name", String.class, long.class).invoke(lVirtual, "table-", 0L);
+			Method lFactory = lBuilder.getMethod("factory");
+			return (ThreadFactory) lFactory.invoke(lVirtual);
+		}
+		catch( ReflectiveOperationException lException )
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Creates named daemon threads, so that tables do not keep the JVM alive.
+	 */
+	private static final class PlatformThreadFactory implements ThreadFactory
+	{
+		private final String aPrefix;
+		private final AtomicInteger aCount = new AtomicInteger();
+
+		PlatformThreadFactory(String pPrefix)
+		{
+			aPrefix = pPrefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable pTask)
+		{
+			Thread lThread = new Thread(pTask, aPrefix + aCount.getAndIncrement());
+			lThread.setDaemon(true);
+			return lThread;
+		}
+	}
+
+	/**
+	 * Plays a game, and follows it to know when the last move was made and
+	 * whose turn it is.
+	 */
+	private final class Table extends GameAdapter implements Callable<TableResult>
+	{
+		private final GameEngine aEngine;
+		private volatile long aLastMove;
+		private volatile int aTurn;
+		private volatile boolean aTimedOut;
+		private volatile int aSlowPlayer = TableResult.NONE;
+		private volatile Thread aThread;
+		private int aHands;
+
+		Table(GameEngine pEngine)
+		{
+			aEngine = pEngine;
+			aEngine.addListener(this);
+		}
+
+		@Override
+		public TableResult call()
+		{
+			aThread = Thread.currentThread();
+			aLastMove = System.nanoTime();
+			aOpenTables.add(this);
+			try
+			{
+				int lWinner = aEngine.playGame(0);
+				if( aTimedOut )
+				{
+					// A player ignored the interrupt
+					lWinner = TableResult.NONE;
+				}
+				return new TableResult(lWinner, aSlowPlayer, aEngine.getScore(0), aEngine.getScore(1), aHands);
+			}
+			catch( CancellationException lException )
+			{
+				if( !aTimedOut )
+				{
+					throw lException;
+				}
+				return new TableResult(TableResult.NONE, aSlowPlayer, aEngine.getScore(0), aEngine.getScore(1), aHands);
+			}
+			finally
+			{
+				aThread = null;
+				aOpenTables.remove(this);
+				EngineMetrics.tableClosed(aHands);
+			}
+		}
+
+		void timeOut()
+		{
+			if( !aTimedOut )
+			{
+				aSlowPlayer = aTurn;
+				aTimedOut = true;
+			}
+			interrupt();
+		}
+
+		void interrupt()
+		{
+			Thread lThread = aThread;
+			if( lThread != null )
+			{
+				lThread.interrupt();
+			}
+		}
+
+		@Override
+		public void handStarted(int pDealer, Card pUpcard)
+		{
+			aHands++;
+			moved(1 - pDealer);
+		}
+
+		@Override
+		public void upcardRefused(int pPlayer)
+		{
+			moved(1 - pPlayer);
+		}
+
+		@Override
+		public void turnStarted(int pPlayer)
+		{
+			moved(pPlayer);
+		}
+
+		@Override
+		public void cardDrawn(int pPlayer, Card pCard, boolean pFromDiscard)
+		{
+			moved(pPlayer);
+		}
+
+		@Override
+		public void cardDiscarded(int pPlayer, Card pCard)
+		{
+			// The player may still knock
+			moved(pPlayer);
+		}
+
+		private void moved(int pNext)
+		{
+			aTurn = pNext;
+			aLastMove = System.nanoTime();
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package ca.mcgill.cs.comp303.rummy.sim;
+
+/**
+ * The immutable outcome of a game played at a table of a TableHost.
+ */
+public final class TableResult
+{
+	/**
+	 * The seat returned by getWinner() and getSlowPlayer() when there is none.
+	 */
+	public static final int NONE = -1;
+
+	private final int aWinner;
+	private final int aSlowPlayer;
+	private final int aScore0;
+	private final int aScore1;
+	private final int aHands;
+
+	/**
+	 * Creates a new result.
+	 * @param pWinner The seat of the winner, or NONE if the game was aborted.
+	 * @param pSlowPlayer The seat of the player who timed out, or NONE.
+	 * @param pScore0 The score of the player in seat 0.
+	 * @param pScore1 The score of the player in seat 1.
+	 * @param pHands The number of hands played.
+	 */
+	public TableResult(int pWinner, int pSlowPlayer, int pScore0, int pScore1, int pHands)
+	{
+		aWinner = pWinner;
+		aSlowPlayer = pSlowPlayer;
+		aScore0 = pScore0;
+		aScore1 = pScore1;
+		aHands = pHands;
+	}
+
+	/**
+	 * @return The seat of the winner, or NONE if the game was aborted.
+	 */
+	public int getWinner()
+	{
+		return aWinner;
+	}
+
+	/**
+	 * @return True if the game was aborted because a player took too long to decide.
+	 */
+	public boolean isTimedOut()
+	{
+		return aSlowPlayer != NONE;
+	}
+
+	/**
+	 * @return The seat of the player who took too long to decide, or NONE.
+	 */
+	public int getSlowPlayer()
+	{
+		return aSlowPlayer;
+	}
+
+	/**
+	 * @param pPlayer A seat.
+	 * @return The score of the player in that seat when the game ended.
+	 */
+	public int getScore(int pPlayer)
+	{
+		if( pPlayer == 0 )
+		{
+			return aScore0;
+		}
+		return aScore1;
+	}
+
+	/**
+	 * @return The number of hands played, including an interrupted one.
+	 */
+	public int getHands()
+	{
+		return aHands;
+	}
+
+	@Override
+	public String toString()
+	{
+		if( isTimedOut() )
+		{
+			return "Player " + aSlowPlayer + " timed out after " + aHands + " hands (" + aScore0 + "-" + aScore1 + ")";
+		}
+		return "Player " + aWinner + " wins " + aScore0 + "-" + aScore1 + " after " + aHands + " hands";
+	}
+}
@@ -0,0 +1,192 @@
+package ca.mcgill.cs.comp303.rummy.sim;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import ca.mcgill.cs.comp303.rummy.model.CachingMatchStrategy;
+import ca.mcgill.cs.comp303.rummy.model.FastRandom;
+import ca.mcgill.cs.comp303.rummy.model.GameEngine;
+import ca.mcgill.cs.comp303.rummy.model.IMatchStrategy;
+import ca.mcgill.cs.comp303.rummy.model.MatchCache;
+import ca.mcgill.cs.comp303.rummy.model.OptimalMatchStrategy;
+import ca.mcgill.cs.comp303.rummy.model.Player;
+
+/**
+ * Plays a series of headless games (single hands) between two kinds of
+ * players, split over all the available cores with fork/join. Each task
+ * creates its own engine, deck and players, since hands are not threadsafe,
+ * and accumulates its own TournamentResult; partial results are merged
+ * when tasks are joined. Players whose hands match their cards with the
+ * JVM-wide MatchCache are given a cache of their task instead, so that
+ * workers do not contend for its locks.
+ *
+ * The deal of game i depends only on the seed of the tournament and on i,
+ * and the dealer alternates between seats, so a parallel run gives the
+ * same result as a sequential one as long as players are deterministic.
+ */
+public class Tournament
+{
+	/**
+	 * Creates the players of a tournament.
+	 * Must be threadsafe: workers create their players concurrently.
+	 */
+	public interface PlayerFactory
+	{
+		/**
+		 * @param pSeat The seat of the new player (0 or 1).
+		 * @return A new player for that seat.
+		 */
+		Player createPlayer(int pSeat);
+	}
+
+	private static final int MIN_GAMES_PER_TASK = 64;
+	private static final int TASKS_PER_THREAD = 8;
+	private static final int TASK_CACHE_CAPACITY = 1 << 12;
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	private final PlayerFactory aFactory;
+	private final int aGames;
+	private final long aSeed;
+	private SnapshotPublisher aSpectator;
+
+	/**
+	 * Creates a tournament.
+	 * @param pFactory Creates the players of each worker.
+	 * @param pGames The number of games to play.
+	 * @param pSeed The seed from which the deal of every game is derived.
+	 * @pre pFactory != null && pGames >= 0
+	 */
+	public Tournament(PlayerFactory pFactory, int pGames, long pSeed)
+	{
+		aFactory = pFactory;
+		aGames = pGames;
+		aSeed = pSeed;
+	}
+
+	/**
+	 * Publishes the hands played by the worker that starts with the first
+	 * game, so that the tournament can be watched while it runs.
+	 * @param pSpectator The publisher, or null to publish nothing.
+	 */
+	public void setSpectator(SnapshotPublisher pSpectator)
+	{
+		aSpectator = pSpectator;
+	}
+
+	/**
+	 * Plays the games on all the available processors.
+	 * @return The statistics of the games.
+	 */
+	public TournamentResult run()
+	{
+		return run(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Plays the games on pParallelism threads.
+	 * @param pParallelism The number of threads to use.
+	 * @return The statistics of the games.
+	 * @pre pParallelism > 0
+	 */
+	public TournamentResult run(int pParallelism)
+	{
+		int lThreshold = Math.max(MIN_GAMES_PER_TASK, aGames / (pParallelism * TASKS_PER_THREAD));
+		ForkJoinPool lPool = new ForkJoinPool(pParallelism);
+		try
+		{
+			return lPool.invoke(new GamesTask(0, aGames, lThreshold));
+		}
+		finally
+		{
+			lPool.shutdown();
+		}
+	}
+
+	/**
+	 * Plays the games one after the other on the calling thread.
+	 * @return The statistics of the games.
+	 */
+	public TournamentResult runSequential()
+	{
+		return play(0, aGames);
+	}
+
+	/**
+	 * @param pSeed The seed of a tournament.
+	 * @param pGame The number of a game.
+	 * @return The seed of the deck for that game.
+	 */
+	public static long gameSeed(long pSeed, long pGame)
+	{
+		// Mixed, so that consecutive games get unrelated seeds
+		return FastRandom.mix(pSeed + (pGame + 1) * GOLDEN_GAMMA);
+	}
+
+	private TournamentResult play(int pFrom, int pTo)
+	{
+		FastRandom lRandom = new FastRandom();
+		IMatchStrategy lStrategy = new CachingMatchStrategy(new OptimalMatchStrategy(),
+				new MatchCache(TASK_CACHE_CAPACITY, MatchCache.EvictionPolicy.LRU));
+		GameEngine lEngine = new GameEngine(createPlayer(0, lStrategy), createPlayer(1, lStrategy), lRandom);
+		if( pFrom == 0 && aSpectator != null )
+		{
+			aSpectator.attach(lEngine);
+		}
+		TournamentResult lResult = new TournamentResult();
+		for( int lGame = pFrom; lGame < pTo; lGame++ )
+		{
+			// Each game is a single hand, scored from zero
+			lRandom.setSeed(gameSeed(aSeed, lGame));
+			lEngine.resetScores();
+			lResult.add(lEngine.playHand(lGame % 2));
+		}
+		return lResult;
+	}
+
+	/*
+	 * Creates a player, moving it off the shared cache if it uses it.
+	 */
+	private Player createPlayer(int pSeat, IMatchStrategy pStrategy)
+	{
+		Player lPlayer = aFactory.createPlayer(pSeat);
+		IMatchStrategy lStrategy = lPlayer.getHand().getMatchStrategy();
+		if( lStrategy instanceof CachingMatchStrategy && ((CachingMatchStrategy) lStrategy).getCache() == MatchCache.getShared() )
+		{
+			lPlayer.getHand().setMatchStrategy(pStrategy);
+		}
+		return lPlayer;
+	}
+
+	/**
+	 * Plays the games of a range, splitting it in halves while it is large.
+	 */
+	@SuppressWarnings("serial")
+	private final class GamesTask extends RecursiveTask<TournamentResult>
+	{
+		private final int aFrom;
+		private final int aTo;
+		private final int aThreshold;
+
+		GamesTask(int pFrom, int pTo, int pThreshold)
+		{
+			aFrom = pFrom;
+			aTo = pTo;
+			aThreshold = pThreshold;
+		}
+
+		@Override
+		protected TournamentResult compute()
+		{
+			if( aTo - aFrom <= aThreshold )
+			{
+				return play(aFrom, aTo);
+			}
+			int lMiddle = (aFrom + aTo) >>> 1;
+			GamesTask lLeft = new GamesTask(aFrom, lMiddle, aThreshold);
+			lLeft.fork();
+			TournamentResult lResult = new GamesTask(lMiddle, aTo, aThreshold).compute();
+			lResult.merge(lLeft.join());
+			return lResult;
+		}
+	}
+}
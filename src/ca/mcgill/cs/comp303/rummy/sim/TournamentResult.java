@@ -0,0 +1,185 @@
+package ca.mcgill.cs.comp303.rummy.sim;
+
+import java.util.Arrays;
+
+import ca.mcgill.cs.comp303.rummy.model.HandResult;
+
+/**
+ * Aggregated statistics of the games of a Tournament. Each partial result
+ * is accumulated by a single thread and then merged, so the class is not
+ * threadsafe.
+ */
+public class TournamentResult
+{
+	private static final int NUM_PLAYERS = 2;
+
+	private long aGames;
+	private long aDraws;
+	private long aTurns;
+	private final long[] aWins = new long[NUM_PLAYERS];
+	private final long[] aGins = new long[NUM_PLAYERS];
+	private final long[] aUndercuts = new long[NUM_PLAYERS];
+	private final long[] aPoints = new long[NUM_PLAYERS];
+	private final long[] aDeadwood = new long[NUM_PLAYERS];
+
+	/**
+	 * Adds the result of one game to the statistics.
+	 * @param pResult The result of the game.
+	 * @pre pResult != null
+	 */
+	public void add(HandResult pResult)
+	{
+		aGames++;
+		aTurns += pResult.getTurns();
+		for( int i = 0; i < NUM_PLAYERS; i++ )
+		{
+			aDeadwood[i] += pResult.getDeadwood(i);
+		}
+		if( pResult.isDraw() )
+		{
+			aDraws++;
+			return;
+		}
+		int lWinner = pResult.getWinner();
+		aWins[lWinner]++;
+		aPoints[lWinner] += pResult.getPoints();
+		if( pResult.isGin() )
+		{
+			aGins[lWinner]++;
+		}
+		if( pResult.isUndercut() )
+		{
+			aUndercuts[lWinner]++;
+		}
+	}
+
+	/**
+	 * Adds the statistics of pResult to this result.
+	 * @param pResult The statistics of other games.
+	 * @pre pResult != null
+	 */
+	public void merge(TournamentResult pResult)
+	{
+		aGames += pResult.aGames;
+		aDraws += pResult.aDraws;
+		aTurns += pResult.aTurns;
+		for( int i = 0; i < NUM_PLAYERS; i++ )
+		{
+			aWins[i] += pResult.aWins[i];
+			aGins[i] += pResult.aGins[i];
+			aUndercuts[i] += pResult.aUndercuts[i];
+			aPoints[i] += pResult.aPoints[i];
+			aDeadwood[i] += pResult.aDeadwood[i];
+		}
+	}
+
+	/**
+	 * @return The number of games played.
+	 */
+	public long getGames()
+	{
+		return aGames;
+	}
+
+	/**
+	 * @return The number of games that ended without a knock.
+	 */
+	public long getDraws()
+	{
+		return aDraws;
+	}
+
+	/**
+	 * @param pPlayer A seat.
+	 * @return The number of games won by the player in that seat.
+	 */
+	public long getWins(int pPlayer)
+	{
+		return aWins[pPlayer];
+	}
+
+	/**
+	 * @param pPlayer A seat.
+	 * @return The number of games won by gin by the player in that seat.
+	 */
+	public long getGins(int pPlayer)
+	{
+		return aGins[pPlayer];
+	}
+
+	/**
+	 * @param pPlayer A seat.
+	 * @return The number of games won by undercut by the player in that seat.
+	 */
+	public long getUndercuts(int pPlayer)
+	{
+		return aUndercuts[pPlayer];
+	}
+
+	/**
+	 * @param pPlayer A seat.
+	 * @return The total points scored by the player in that seat.
+	 */
+	public long getPoints(int pPlayer)
+	{
+		return aPoints[pPlayer];
+	}
+
+	/**
+	 * @param pPlayer A seat.
+	 * @return The average deadwood of the player in that seat at the end of a game.
+	 */
+	public double getAverageDeadwood(int pPlayer)
+	{
+		return average(aDeadwood[pPlayer]);
+	}
+
+	/**
+	 * @return The average number of turns of a game.
+	 */
+	public double getAverageTurns()
+	{
+		return average(aTurns);
+	}
+
+	private double average(long pTotal)
+	{
+		if( aGames == 0 )
+		{
+			return 0;
+		}
+		return (double) pTotal / aGames;
+	}
+
+	@Override
+	public boolean equals(Object pObject)
+	{
+		if( pObject == this )
+		{
+			return true;
+		}
+		if( pObject == null || pObject.getClass() != getClass() )
+		{
+			return false;
+		}
+		TournamentResult lOther = (TournamentResult) pObject;
+		return aGames == lOther.aGames && aDraws == lOther.aDraws && aTurns == lOther.aTurns &&
+				Arrays.equals(aWins, lOther.aWins) && Arrays.equals(aGins, lOther.aGins) &&
+				Arrays.equals(aUndercuts, lOther.aUndercuts) && Arrays.equals(aPoints, lOther.aPoints) &&
+				Arrays.equals(aDeadwood, lOther.aDeadwood);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return (int) (aGames * 31 + aTurns);
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%d games, %d draws, wins %d/%d, gins %d/%d, undercuts %d/%d, " +
+				"avg deadwood %.2f/%.2f, avg turns %.2f", aGames, aDraws, aWins[0], aWins[1], aGins[0], aGins[1],
+				aUndercuts[0], aUndercuts[1], getAverageDeadwood(0), getAverageDeadwood(1), getAverageTurns());
+	}
+}
@@ -0,0 +1,255 @@
+package ca.mcgill.cs.comp303.rummy.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import ca.mcgill.cs.comp303.rummy.model.CardMask;
+import ca.mcgill.cs.comp303.rummy.model.GameEngine;
+
+/**
+ * Compares the values of the root moves of an EndgameSolver with a plain
+ * minimax search, which replays every position from the deal and uses no
+ * transposition table.
+ */
+public class TestEndgameSolver
+{
+	private static final int TRIALS = 100;
+	private static final int TURNS = 3;
+	private static final int MAX_PATH = 2 * TURNS + 2;
+	private static final int MIN_STOCK = GameEngine.MIN_STOCK + 1;
+	private static final int STOCK_SPREAD = 3;
+	private static final int MAX_PILE = 15;
+	
+	@Test
+	public void testRandomDeals()
+	{
+		Random lRandom = new Random(1);
+		EndgameSolver lSolver = new EndgameSolver();
+		for( int i = 0; i < TRIALS; i++ )
+		{
+			Deal lDeal = new Deal(lRandom);
+			assertSolved(lSolver, lDeal, new int[MAX_PATH], 0);
+		}
+	}
+	
+	@Test
+	public void testSharedTable()
+	{
+		// A small table, shared by two solvers, so that the positions of a deal
+		// meet the entries of earlier deals and of earlier positions of the deal
+		Random lRandom = new Random(2);
+		TranspositionTable lTable = new TranspositionTable(1 << 14);
+		EndgameSolver[] lSolvers = { new EndgameSolver(lTable), new EndgameSolver(lTable) };
+		Deal lPrevious = null;
+		for( int i = 0; i < TRIALS; i++ )
+		{
+			// Deals that differ from the previous one only in the order of the stock, or in the hands
+			Deal lDeal;
+			if( i % 3 == 0 )
+			{
+				lDeal = new Deal(lRandom);
+			}
+			else
+			{
+				lDeal = new Deal(lPrevious, lRandom, i % 3 == 1, i % 3 == 2);
+			}
+			lPrevious = lDeal;
+			int[] lPath = new int[MAX_PATH];
+			int lLength = 0;
+			// Follow the best moves, as a player would, solving again after each move
+			for( int lMove = 0; lMove < TURNS; lMove++ )
+			{
+				EndgameSolver lSolver = lSolvers[(i + lMove) % lSolvers.length];
+				assertSolved(lSolver, lDeal, lPath, lLength);
+				int lBest = lSolver.getMove(lSolver.getBest());
+				lPath[lLength++] = lBest;
+				if( lBest >= GameState.KNOCK || lDeal.replay(lPath, lLength).isOver() )
+				{
+					break;
+				}
+			}
+		}
+	}
+	
+	/*
+	 * Solves the position after the first pLength moves of pPath and checks
+	 * each of its root moves against minimax.
+	 */
+	private static void assertSolved(EndgameSolver pSolver, Deal pDeal, int[] pPath, int pLength)
+	{
+		GameState lState = pDeal.replay(pPath, pLength);
+		assertTrue(pSolver.solve(lState, TURNS, Long.MAX_VALUE));
+		int[] lMoves = new int[GameState.MAX_MOVES];
+		assertEquals(lState.legalMoves(lMoves), pSolver.getMoveCount());
+		int[] lPath = new int[pLength + 2 * TURNS + 2];
+		System.arraycopy(pPath, 0, lPath, 0, pLength);
+		for( int i = 0; i < pSolver.getMoveCount(); i++ )
+		{
+			assertEquals(minimax(pDeal, lPath, pLength, pSolver.getMove(i), TURNS), pSolver.getValue(i));
+		}
+	}
+	
+	/*
+	 * Returns the value for the player to move after the first pLength
+	 * moves of pPath of its move pMove, with pTurns turns left to search.
+	 */
+	private static int minimax(Deal pDeal, int[] pPath, int pLength, int pMove, int pTurns)
+	{
+		GameState lState = pDeal.replay(pPath, pLength);
+		int lPlayer = lState.getPlayer();
+		if( pMove >= GameState.KNOCK )
+		{
+			long lHand = lState.getHand(lPlayer) & ~(1L << (pMove - GameState.KNOCK));
+			return GameState.knockPoints(lHand, lState.getHand(1 - lPlayer));
+		}
+		int lTurns = pTurns;
+		if( lState.getPhase() == GameState.DRAW )
+		{
+			lTurns--;
+		}
+		pPath[pLength] = pMove;
+		lState.play(pMove);
+		if( lState.isOver() || lState.getPhase() == GameState.DRAW && lTurns == 0 )
+		{
+			return 0;
+		}
+		int[] lMoves = new int[GameState.MAX_MOVES];
+		int lBest = Integer.MIN_VALUE;
+		for( int i = 0; i < lState.legalMoves(lMoves); i++ )
+		{
+			lBest = Math.max(lBest, minimax(pDeal, pPath, pLength + 1, lMoves[i], lTurns));
+		}
+		if( lState.getPlayer() == lPlayer )
+		{
+			return lBest;
+		}
+		return -lBest;
+	}
+	
+	private static void shuffle(int[] pCards, int pSize, Random pRandom)
+	{
+		for( int i = pSize - 1; i > 0; i-- )
+		{
+			int j = pRandom.nextInt(i + 1);
+			int lCard = pCards[i];
+			pCards[i] = pCards[j];
+			pCards[j] = lCard;
+		}
+	}
+	
+	/*
+	 * Returns the mask of a random card of pCards.
+	 */
+	private static long pick(long pCards, Random pRandom)
+	{
+		long lCards = pCards;
+		for( int i = pRandom.nextInt(Long.bitCount(pCards)); i > 0; i-- )
+		{
+			lCards &= lCards - 1;
+		}
+		return Long.lowestOneBit(lCards);
+	}
+	
+	/*
+	 * A random position of a hand, near the end of the stock.
+	 */
+	private static final class Deal
+	{
+		private final long[] aHands = new long[2];
+		private final int[] aPile = new int[CardMask.DECK_SIZE];
+		private final int aPileSize;
+		private final int[] aStock = new int[CardMask.DECK_SIZE];
+		private final int aStockSize;
+		private final int aPlayer;
+		private final int aPhase;
+		private int aTaken = GameState.NONE;
+		
+		Deal(Random pRandom)
+		{
+			int[] lDeck = new int[CardMask.DECK_SIZE];
+			for( int i = 0; i < lDeck.length; i++ )
+			{
+				lDeck[i] = i;
+			}
+			shuffle(lDeck, lDeck.length, pRandom);
+			int lNext = 0;
+			for( int lSeat = 0; lSeat < 2; lSeat++ )
+			{
+				for( int i = 0; i < GameEngine.HAND_SIZE; i++ )
+				{
+					aHands[lSeat] |= 1L << lDeck[lNext++];
+				}
+			}
+			aPileSize = 1 + pRandom.nextInt(MAX_PILE);
+			for( int i = 0; i < aPileSize; i++ )
+			{
+				aPile[i] = lDeck[lNext++];
+			}
+			aStockSize = MIN_STOCK + pRandom.nextInt(STOCK_SPREAD);
+			for( int i = 0; i < aStockSize; i++ )
+			{
+				aStock[i] = lDeck[lNext++];
+			}
+			aPlayer = pRandom.nextInt(2);
+			aPhase = pRandom.nextInt(2);
+			if( aPhase == GameState.DISCARD )
+			{
+				// The player has drawn, from the pile half of the time
+				int lCard = lDeck[lNext];
+				aHands[aPlayer] |= 1L << lCard;
+				if( pRandom.nextBoolean() )
+				{
+					aTaken = lCard;
+				}
+			}
+		}
+		
+		/*
+		 * Copies pDeal, with the stock in another order if pStock, and with
+		 * a card of each hand exchanged if pHands.
+		 */
+		Deal(Deal pDeal, Random pRandom, boolean pStock, boolean pHands)
+		{
+			aPlayer = pDeal.aPlayer;
+			aPhase = pDeal.aPhase;
+			aTaken = pDeal.aTaken;
+			aPileSize = pDeal.aPileSize;
+			System.arraycopy(pDeal.aPile, 0, aPile, 0, aPileSize);
+			aStockSize = pDeal.aStockSize;
+			System.arraycopy(pDeal.aStock, 0, aStock, 0, aStockSize);
+			if( pStock )
+			{
+				shuffle(aStock, aStockSize, pRandom);
+			}
+			aHands[0] = pDeal.aHands[0];
+			aHands[1] = pDeal.aHands[1];
+			if( pHands )
+			{
+				// The card taken from the pile stays in the hand of the player
+				long lCard0 = pick(aHands[0] & ~(1L << aTaken), pRandom);
+				long lCard1 = pick(aHands[1] & ~(1L << aTaken), pRandom);
+				aHands[0] ^= lCard0 | lCard1;
+				aHands[1] ^= lCard0 | lCard1;
+			}
+		}
+		
+		/*
+		 * Returns the position after the first pLength moves of pPath.
+		 */
+		GameState replay(int[] pPath, int pLength)
+		{
+			GameState lState = new GameState();
+			lState.set(aHands[0], aHands[1], aPile, aPileSize, aPlayer, aPhase, aTaken);
+			lState.setStock(aStock, 0, aStockSize);
+			for( int i = 0; i < pLength; i++ )
+			{
+				lState.play(pPath[i]);
+			}
+			return lState;
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package ca.mcgill.cs.comp303.rummy.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import ca.mcgill.cs.comp303.rummy.model.AutoPlayer;
+import ca.mcgill.cs.comp303.rummy.model.Card;
+import ca.mcgill.cs.comp303.rummy.model.CardMask;
+import ca.mcgill.cs.comp303.rummy.model.DiscardEvaluation;
+import ca.mcgill.cs.comp303.rummy.model.FastRandom;
+import ca.mcgill.cs.comp303.rummy.model.GameAdapter;
+import ca.mcgill.cs.comp303.rummy.model.GameEngine;
+import ca.mcgill.cs.comp303.rummy.model.GameSnapshot;
+import ca.mcgill.cs.comp303.rummy.model.HandResult;
+import ca.mcgill.cs.comp303.rummy.model.Player;
+
+/**
+ * Replays hands played by a GameEngine in a GameState, and checks that
+ * every move is legal in both and that both score the end of the hand
+ * the same way.
+ */
+public class TestGameState
+{
+	private static final int HANDS = 2000;
+	
+	@Test
+	public void testAutoPlayers()
+	{
+		check(new AutoPlayer(), new AutoPlayer(), 1300);
+	}
+	
+	@Test
+	public void testRandomPlayers()
+	{
+		// Random moves reach knocks, undercuts and draws that AutoPlayers avoid
+		check(new RandomPlayer(1301), new RandomPlayer(1302), 1303);
+	}
+	
+	/*
+	 * Plays HANDS hands between two players, and replays each of them.
+	 */
+	private static void check(Player pPlayer0, Player pPlayer1, long pSeed)
+	{
+		GameEngine lEngine = new GameEngine(pPlayer0, pPlayer1, new FastRandom(pSeed));
+		Recorder lRecorder = new Recorder(lEngine);
+		lEngine.addListener(lRecorder);
+		int lKnocks = 0;
+		int lUndercuts = 0;
+		for( int i = 0; i < HANDS; i++ )
+		{
+			HandResult lResult = lEngine.playHand(i % 2);
+			if( lResult.getTurns() >= GameState.MAX_TURNS )
+			{
+				// A GameState declares such a hand a draw
+				continue;
+			}
+			GameState lState = lRecorder.replay();
+			assertTrue(lState.isOver());
+			if( lResult.isDraw() )
+			{
+				assertEquals(0.5, lState.getReward(0), 0);
+				continue;
+			}
+			int lKnocker = lResult.getKnocker();
+			int lPoints = GameState.knockPoints(lState.getHand(lKnocker), lState.getHand(1 - lKnocker));
+			if( lResult.isUndercut() )
+			{
+				assertEquals(-lResult.getPoints(), lPoints);
+				lUndercuts++;
+			}
+			else
+			{
+				assertEquals(lResult.getPoints(), lPoints);
+			}
+			assertTrue(lState.getReward(lResult.getWinner()) > 0.5);
+			lKnocks++;
+		}
+		assertTrue(lKnocks > HANDS / 4);
+		assertTrue(lUndercuts > 0);
+	}
+	
+	/*
+	 * Draws from either pile at random, discards the card that leaves the
+	 * least deadwood two times out of three and any card it may otherwise,
+	 * and knocks half of the times it can.
+	 */
+	private static final class RandomPlayer extends Player
+	{
+		private final FastRandom aRandom;
+		private boolean aTookDiscard;
+		
+		RandomPlayer(long pSeed)
+		{
+			aRandom = new FastRandom(pSeed);
+		}
+		
+		@Override
+		protected boolean takeFirstCard(Card pTopStock, Card pTopDiscard)
+		{
+			aTookDiscard = aRandom.nextBoolean();
+			return aTookDiscard;
+		}
+		
+		@Override
+		protected boolean draw(Card pTopStock, Card pTopDiscard)
+		{
+			aTookDiscard = aRandom.nextBoolean();
+			return aTookDiscard;
+		}
+		
+		@Override
+		protected Card discard()
+		{
+			long lCards = getHand().getCardMask() | CardMask.of(getDrawnCard());
+			long lAllowed = lCards;
+			if( aTookDiscard )
+			{
+				lAllowed &= ~CardMask.of(getDrawnCard());
+			}
+			if( aRandom.nextInt(3) > 0 )
+			{
+				return Card.ofIndex(DiscardEvaluation.evaluate(lCards).getBest(lAllowed));
+			}
+			for( int i = aRandom.nextInt(Long.bitCount(lAllowed)); i > 0; i-- )
+			{
+				lAllowed &= lAllowed - 1;
+			}
+			return Card.ofIndex(CardMask.first(lAllowed));
+		}
+		
+		@Override
+		protected boolean knock()
+		{
+			return aRandom.nextBoolean();
+		}
+	}
+	
+	/*
+	 * Records the deal and the moves of each hand, as GameState moves.
+	 */
+	private static final class Recorder extends GameAdapter
+	{
+		private final GameEngine aEngine;
+		private final GameSnapshot aDeal = new GameSnapshot();
+		private final List<Integer> aMoves = new ArrayList<Integer>();
+		private int aFirst;
+		
+		Recorder(GameEngine pEngine)
+		{
+			aEngine = pEngine;
+		}
+		
+		@Override
+		public void handStarted(int pDealer, Card pUpcard)
+		{
+			aEngine.capture(aDeal);
+			aMoves.clear();
+		}
+		
+		@Override
+		public void cardDrawn(int pPlayer, Card pCard, boolean pFromDiscard)
+		{
+			if( aMoves.isEmpty() )
+			{
+				aFirst = pPlayer;
+			}
+			aMoves.add(pFromDiscard ? GameState.PILE : GameState.STOCK);
+		}
+		
+		@Override
+		public void cardDiscarded(int pPlayer, Card pCard)
+		{
+			aMoves.add(pCard.index());
+		}
+		
+		@Override
+		public void knocked(int pPlayer, int pDeadwood)
+		{
+			aMoves.set(aMoves.size() - 1, aMoves.get(aMoves.size() - 1) + GameState.KNOCK);
+		}
+		
+		/*
+		 * Plays the last hand in a GameState, checking that each move is legal.
+		 */
+		GameState replay()
+		{
+			int[] lPile = { aDeal.getPile(0) };
+			int[] lStock = new int[aDeal.getStockSize()];
+			for( int i = 0; i < lStock.length; i++ )
+			{
+				lStock[i] = aDeal.getStock(lStock.length - 1 - i);
+			}
+			GameState lState = new GameState();
+			lState.set(aDeal.getHand(0), aDeal.getHand(1), lPile, 1, aFirst, GameState.DRAW, GameState.NONE);
+			lState.setStock(lStock, 0, lStock.length);
+			int[] lLegal = new int[GameState.MAX_MOVES];
+			for( int lMove : aMoves )
+			{
+				assertFalse(lState.isOver());
+				int lCount = lState.legalMoves(lLegal);
+				boolean lFound = false;
+				for( int i = 0; i < lCount; i++ )
+				{
+					lFound |= lLegal[i] == lMove;
+				}
+				assertTrue(lFound);
+				lState.play(lMove);
+			}
+			return lState;
+		}
+	}
+}
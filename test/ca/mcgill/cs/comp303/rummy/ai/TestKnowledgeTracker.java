@@ -0,0 +1,143 @@
+package ca.mcgill.cs.comp303.rummy.ai;
+
+import static ca.mcgill.cs.comp303.rummy.testutils.AllCards.*;
+import static ca.mcgill.cs.comp303.rummy.testutils.CardMasks.*;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.mcgill.cs.comp303.rummy.model.AutoPlayer;
+import ca.mcgill.cs.comp303.rummy.model.CardMask;
+import ca.mcgill.cs.comp303.rummy.model.GameEngine;
+import ca.mcgill.cs.comp303.rummy.model.Player;
+
+/**
+ * Feeds sequences of events to a KnowledgeTracker of the player in seat 0,
+ * and checks what it knows after each of them.
+ */
+public class TestKnowledgeTracker
+{
+	private static final double DELTA = 1e-9;
+	private static final int UNSEEN = CardMask.DECK_SIZE - GameEngine.HAND_SIZE - 1;
+	
+	// Three kings, so that the king of spades can only complete a run
+	private static final long HAND = mask(CKC, CKD, CKH, C2C, C3D, C4H, C5S, C6C, C7D, C8H);
+	
+	private KnowledgeTracker aTracker;
+	
+	@Before
+	public void setUp()
+	{
+		Player lPlayer = new AutoPlayer();
+		// The engine seats the player in seat 0; the events are fed by hand
+		new GameEngine(lPlayer, new AutoPlayer());
+		lPlayer.getHand().load(HAND);
+		aTracker = new KnowledgeTracker(lPlayer);
+		aTracker.handStarted(1, C9S);
+	}
+	
+	@Test
+	public void testStart()
+	{
+		assertEquals(HAND, aTracker.getOwn());
+		assertEquals(mask(C9S), aTracker.getPile());
+		assertEquals(0, aTracker.getDead());
+		assertEquals(CardMask.ALL & ~HAND & ~mask(C9S), aTracker.getUnseen());
+		assertEquals(CardMask.DECK_SIZE - 2 * GameEngine.HAND_SIZE - 1, aTracker.getStockSize());
+		assertEquals(GameEngine.HAND_SIZE, aTracker.getOpponentHidden());
+		assertEquals((double) GameEngine.HAND_SIZE / UNSEEN, aTracker.getHoldProbability(CAS), DELTA);
+		assertEquals(0, aTracker.getHoldProbability(CKC), DELTA);
+		assertEquals(0, aTracker.getHoldProbability(C9S), DELTA);
+		
+		// The king of spades needs the jack and the queen of spades
+		double lHold = (double) GameEngine.HAND_SIZE / UNSEEN;
+		assertEquals(lHold * lHold, aTracker.getNeedProbability(CKS), DELTA);
+	}
+	
+	@Test
+	public void testPickup()
+	{
+		// The opponent takes the upcard and discards the queen of spades
+		aTracker.upcardRefused(0);
+		aTracker.cardDrawn(1, C9S, true);
+		assertEquals(mask(C9S), aTracker.getOpponentKnown());
+		assertEquals(1, aTracker.getHoldProbability(C9S), DELTA);
+		assertEquals(0, aTracker.getPileSize());
+		assertEquals(0, aTracker.getPile());
+		assertEquals(GameEngine.HAND_SIZE - 1, aTracker.getOpponentHidden());
+		
+		aTracker.cardDiscarded(1, CQS);
+		assertEquals(mask(CQS), aTracker.getNotWanted());
+		assertEquals(0, aTracker.getNeedProbability(CQS), DELTA);
+		// The queen is out, so nothing can complete the run of the king of spades
+		assertEquals(0, aTracker.getNeedProbability(CKS), DELTA);
+		
+		// The player takes the queen back; the opponent keeps the nine
+		aTracker.cardDrawn(0, CQS, true);
+		assertEquals(HAND | mask(CQS), aTracker.getOwn());
+		aTracker.cardDiscarded(0, C2C);
+		aTracker.cardDrawn(1, C2C, true);
+		assertEquals(mask(C9S, C2C), aTracker.getOpponentKnown());
+		aTracker.cardDiscarded(1, C9S);
+		assertEquals(mask(C2C), aTracker.getOpponentKnown());
+		assertEquals(mask(CQS, C9S), aTracker.getNotWanted());
+	}
+	
+	@Test
+	public void testPassed()
+	{
+		// Both players refuse the upcard, then each draws from the stock
+		aTracker.upcardRefused(0);
+		assertEquals(0, aTracker.getNotWanted());
+		aTracker.upcardRefused(1);
+		assertEquals(mask(C9S), aTracker.getNotWanted());
+		int lStock = aTracker.getStockSize();
+		aTracker.cardDrawn(0, CJS, false);
+		assertEquals(HAND | mask(CJS), aTracker.getOwn());
+		assertEquals(lStock - 1, aTracker.getStockSize());
+		aTracker.cardDiscarded(0, C6C);
+		assertEquals(HAND & ~mask(C6C) | mask(CJS), aTracker.getOwn());
+		
+		// The opponent passes the six of clubs
+		aTracker.cardDrawn(1, null, false);
+		assertEquals(lStock - 2, aTracker.getStockSize());
+		assertEquals(mask(C9S, C6C), aTracker.getNotWanted());
+		assertEquals(0, aTracker.getNeedProbability(C6C), DELTA);
+		aTracker.cardDiscarded(1, CAS);
+		assertEquals(mask(C9S, C6C, CAS), aTracker.getNotWanted());
+		
+		// A card the opponent draws from the stock stays unseen, even if the tracker is told
+		aTracker.cardDrawn(0, CTS, false);
+		aTracker.cardDiscarded(0, CTS);
+		aTracker.cardDrawn(1, C3S, false);
+		assertEquals(0, aTracker.getOpponentKnown());
+		assertEquals(mask(C3S), aTracker.getUnseen() & mask(C3S));
+		assertEquals(GameEngine.HAND_SIZE, aTracker.getOpponentHidden());
+	}
+	
+	@Test
+	public void testDead()
+	{
+		aTracker.upcardRefused(0);
+		aTracker.upcardRefused(1);
+		aTracker.cardDrawn(0, CAS, false);
+		aTracker.cardDiscarded(0, CAS);
+		assertEquals(mask(C9S), aTracker.getDead());
+		aTracker.cardDrawn(1, null, false);
+		aTracker.cardDiscarded(1, CAH);
+		assertEquals(mask(C9S, CAS), aTracker.getDead());
+		assertEquals(0, aTracker.getHoldProbability(CAS), DELTA);
+		
+		// Taking the top card uncovers the card under it
+		aTracker.cardDrawn(0, CAH, true);
+		assertEquals(mask(C9S), aTracker.getDead());
+		assertEquals(mask(C9S, CAS), aTracker.getPile());
+		int[] lPile = new int[CardMask.DECK_SIZE];
+		assertEquals(2, aTracker.copyPile(lPile));
+		assertArrayEquals(new int[] { C9S.index(), CAS.index() }, Arrays.copyOf(lPile, 2));
+	}
+}
@@ -0,0 +1,118 @@
+package ca.mcgill.cs.comp303.rummy.metrics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the buckets of Histogram against their bounds, and the
+ * percentiles of snapshots against the exact percentiles.
+ */
+public class TestHistogram
+{
+	private static final int TRIALS = 100000;
+	private static final double[] PERCENTILES = {0, 1, 25, 50, 90, 99, 99.9, 100};
+	
+	@Test
+	public void testSmallValues()
+	{
+		for( int i = 0; i < Histogram.SUB_BUCKETS; i++ )
+		{
+			assertEquals(i, Histogram.bucketOf(i));
+			assertEquals(i, Histogram.highestValueOf(i));
+		}
+	}
+	
+	@Test
+	public void testBuckets()
+	{
+		// Each bucket starts right after the previous one
+		assertEquals(0, Histogram.bucketOf(0));
+		for( int i = 0; i < Histogram.BUCKETS - 1; i++ )
+		{
+			long lHighest = Histogram.highestValueOf(i);
+			assertEquals(i, Histogram.bucketOf(lHighest));
+			assertEquals(i + 1, Histogram.bucketOf(lHighest + 1));
+		}
+		assertEquals(Histogram.BUCKETS - 1, Histogram.bucketOf(Long.MAX_VALUE));
+		assertEquals(Long.MAX_VALUE, Histogram.highestValueOf(Histogram.BUCKETS - 1));
+	}
+	
+	@Test
+	public void testPrecision()
+	{
+		Random lRandom = new Random(2000);
+		for( int i = 0; i < TRIALS; i++ )
+		{
+			// Non-negative values of every magnitude
+			long lValue = lRandom.nextLong() >>> 1 + lRandom.nextInt(Long.SIZE - 1);
+			long lHighest = Histogram.highestValueOf(Histogram.bucketOf(lValue));
+			assertTrue(lValue <= lHighest);
+			assertTrue(lHighest - lValue <= lValue / Histogram.SUB_BUCKETS);
+		}
+	}
+	
+	@Test
+	public void testPercentiles()
+	{
+		Random lRandom = new Random(2001);
+		Histogram lHistogram = new Histogram();
+		long[] lValues = new long[TRIALS];
+		long lSum = 0;
+		for( int i = 0; i < TRIALS; i++ )
+		{
+			// Latencies of about a microsecond, with a long tail
+			lValues[i] = (long) (1000 * Math.exp(2 * lRandom.nextGaussian()));
+			lHistogram.record(lValues[i]);
+			lSum += lValues[i];
+		}
+		Arrays.sort(lValues);
+		HistogramSnapshot lSnapshot = lHistogram.snapshot();
+		assertEquals(TRIALS, lSnapshot.getCount());
+		assertEquals(lSum, lSnapshot.getSum());
+		assertEquals(lValues[TRIALS - 1], lSnapshot.getMax());
+		for( double lPercentile : PERCENTILES )
+		{
+			int lRank = Math.max(1, (int) Math.ceil(TRIALS * lPercentile / 100));
+			long lExact = lValues[lRank - 1];
+			long lValue = lSnapshot.getPercentile(lPercentile);
+			assertTrue(lPercentile + ": " + lValue + " " + lExact, lExact <= lValue);
+			assertTrue(lPercentile + ": " + lValue + " " + lExact, lValue - lExact <= lExact / Histogram.SUB_BUCKETS);
+		}
+		assertEquals(lSnapshot.getPercentile(50), lSnapshot.getP50());
+		assertEquals(lSnapshot.getPercentile(99.9), lSnapshot.getP999());
+		assertEquals(lSnapshot.getMax(), lSnapshot.getPercentile(100));
+	}
+	
+	@Test
+	public void testSnapshot()
+	{
+		Histogram lHistogram = new Histogram();
+		assertEquals(0, lHistogram.snapshot().getP50());
+		assertEquals(0, lHistogram.snapshot().getMean(), 0);
+		lHistogram.record(-5);
+		lHistogram.record(3);
+		lHistogram.record(1000);
+		HistogramSnapshot lSnapshot = lHistogram.snapshot();
+		assertEquals(3, lSnapshot.getCount());
+		assertEquals(1003, lSnapshot.getSum());
+		assertEquals(3, lSnapshot.getP50());
+		assertEquals(1000, lSnapshot.getP99());
+		
+		// The counts stop at the last bucket that is not empty, and rebuild the same snapshot
+		long[] lCounts = lSnapshot.getCounts();
+		assertEquals(Histogram.bucketOf(1000) + 1, lCounts.length);
+		HistogramSnapshot lCopy = new HistogramSnapshot(lCounts, lSnapshot.getSum(), lSnapshot.getMax());
+		assertArrayEquals(lCounts, lCopy.getCounts());
+		assertEquals(lSnapshot.toString(), lCopy.toString());
+		
+		lHistogram.reset();
+		assertEquals(0, lHistogram.snapshot().getCount());
+		assertEquals(0, lHistogram.snapshot().getCounts().length);
+	}
+}
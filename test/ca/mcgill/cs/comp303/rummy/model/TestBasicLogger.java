@@ -0,0 +1,183 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.Test;
+
+import ca.mcgill.cs.comp303.rummy.model.BasicLogger.BackPressure;
+
+/**
+ * Logs messages from concurrent producers into a small buffer, written
+ * out slowly, and checks what reaches the output under each BackPressure.
+ */
+public class TestBasicLogger
+{
+	private static final int PRODUCERS = 4;
+	private static final int MESSAGES = 20000;
+	private static final int CAPACITY = 64;
+	private static final long WRITE_NANOS = 50000;
+	
+	@Test
+	public void testBlock() throws InterruptedException
+	{
+		int[] lWritten = produce(BackPressure.BLOCK);
+		for( int lCount : lWritten )
+		{
+			assertEquals(MESSAGES, lCount);
+		}
+	}
+	
+	@Test
+	public void testDrop() throws InterruptedException
+	{
+		produce(BackPressure.DROP);
+	}
+	
+	@Test
+	public void testSample() throws InterruptedException
+	{
+		produce(BackPressure.SAMPLE);
+	}
+	
+	@Test
+	public void testClose()
+	{
+		// The output is much slower than the producer: most messages are still buffered at close()
+		Output lOutput = new Output(TimeUnit.MILLISECONDS.toNanos(20));
+		BasicLogger lLogger = new BasicLogger(lOutput, BasicLogger.DEFAULT_CAPACITY, BackPressure.BLOCK, true);
+		for( int i = 0; i < BasicLogger.DEFAULT_CAPACITY; i++ )
+		{
+			lLogger.stateChanged("0 " + i);
+		}
+		lLogger.close();
+		assertFalse(lLogger.isEnabled());
+		lLogger.stateChanged("0 " + BasicLogger.DEFAULT_CAPACITY);
+		assertEquals(BasicLogger.DEFAULT_CAPACITY, check(lOutput.toString(), 1)[0]);
+		assertEquals(0, lLogger.getDropped());
+	}
+	
+	/*
+	 * Logs MESSAGES messages from each of PRODUCERS threads, closes the
+	 * logger, and checks that every message was written or dropped, in
+	 * the order of each thread. Returns the number written for each thread.
+	 */
+	private static int[] produce(BackPressure pBackPressure) throws InterruptedException
+	{
+		Output lOutput = new Output(WRITE_NANOS);
+		final BasicLogger lLogger = new BasicLogger(lOutput, CAPACITY, pBackPressure, true);
+		final CountDownLatch lStart = new CountDownLatch(1);
+		Thread[] lProducers = new Thread[PRODUCERS];
+		for( int i = 0; i < PRODUCERS; i++ )
+		{
+			final int lProducer = i;
+			lProducers[i] = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						lStart.await();
+					}
+					catch( InterruptedException lException )
+					{
+						return;
+					}
+					for( int j = 0; j < MESSAGES; j++ )
+					{
+						lLogger.stateChanged(lProducer + " " + j);
+					}
+				}
+			});
+			lProducers[i].start();
+		}
+		lStart.countDown();
+		for( Thread lProducer : lProducers )
+		{
+			lProducer.join();
+		}
+		lLogger.close();
+		
+		int[] lWritten = check(lOutput.toString(), PRODUCERS);
+		int lTotal = 0;
+		for( int lCount : lWritten )
+		{
+			lTotal += lCount;
+		}
+		assertEquals(PRODUCERS * MESSAGES, lTotal + lLogger.getDropped());
+		assertEquals(pBackPressure != BackPressure.BLOCK, lLogger.getDropped() > 0);
+		return lWritten;
+	}
+	
+	/*
+	 * Checks that the messages "producer index" of each producer are in
+	 * increasing order, and returns their number for each producer.
+	 */
+	private static int[] check(String pOutput, int pProducers)
+	{
+		int[] lCounts = new int[pProducers];
+		int[] lLast = new int[pProducers];
+		Arrays.fill(lLast, -1);
+		for( String lLine : pOutput.split(System.lineSeparator()) )
+		{
+			if( lLine.isEmpty() )
+			{
+				continue;
+			}
+			String[] lFields = lLine.split(" ");
+			int lProducer = Integer.parseInt(lFields[0]);
+			int lIndex = Integer.parseInt(lFields[1]);
+			assertTrue(lLine, lIndex > lLast[lProducer]);
+			lLast[lProducer] = lIndex;
+			lCounts[lProducer]++;
+		}
+		return lCounts;
+	}
+	
+	/*
+	 * An output that takes some time for each write.
+	 */
+	private static class Output extends Writer
+	{
+		private final StringBuilder aText = new StringBuilder();
+		private final long aWriteNanos;
+		
+		Output(long pWriteNanos)
+		{
+			aWriteNanos = pWriteNanos;
+		}
+		
+		@Override
+		public synchronized void write(char[] pChars, int pOffset, int pLength)
+		{
+			long lEnd = System.nanoTime() + aWriteNanos;
+			while( System.nanoTime() < lEnd )
+			{
+				LockSupport.parkNanos(lEnd - System.nanoTime());
+			}
+			aText.append(pChars, pOffset, pLength);
+		}
+		
+		@Override
+		public void flush()
+		{}
+		
+		@Override
+		public void close()
+		{}
+		
+		@Override
+		public synchronized String toString()
+		{
+			return aText.toString();
+		}
+	}
+}
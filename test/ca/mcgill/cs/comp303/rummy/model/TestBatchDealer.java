@@ -0,0 +1,79 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Checks that the hands, upcard and stock of each game dealt by a
+ * BatchDealer are disjoint and make up the deck.
+ */
+public class TestBatchDealer
+{
+	private static final int GAMES = 200;
+	
+	@Test
+	public void testDeal()
+	{
+		for( int lHands = 1; lHands <= BatchDealer.MAX_HANDS; lHands++ )
+		{
+			int lStockSize = BatchDealer.stockSize(lHands);
+			long[] lMasks = new long[GAMES * lHands];
+			int[] lUpcards = new int[GAMES];
+			int[] lStocks = new int[GAMES * lStockSize];
+			new BatchDealer(new FastRandom(lHands)).deal(GAMES, lHands, lMasks, lUpcards, lStocks);
+			for( int lGame = 0; lGame < GAMES; lGame++ )
+			{
+				long lCards = 0;
+				for( int lHand = 0; lHand < lHands; lHand++ )
+				{
+					long lMask = lMasks[lGame * lHands + lHand];
+					assertEquals(BatchDealer.HAND_SIZE, Long.bitCount(lMask));
+					assertEquals(0, lCards & lMask);
+					lCards |= lMask;
+					
+					// A dealt hand can be loaded in bulk
+					Hand lLoaded = new Hand();
+					lLoaded.addAll(lMask);
+					assertEquals(lMask, lLoaded.getCardMask());
+				}
+				lCards = add(lCards, lUpcards[lGame]);
+				for( int i = 0; i < lStockSize; i++ )
+				{
+					lCards = add(lCards, lStocks[lGame * lStockSize + i]);
+				}
+				assertEquals(CardMask.ALL, lCards);
+			}
+		}
+	}
+	
+	@Test
+	public void testWithoutStock()
+	{
+		// Without the stock, only the cards of the hands and the upcard are shuffled
+		int lHands = 2;
+		long[] lMasks = new long[GAMES * lHands];
+		int[] lUpcards = new int[GAMES];
+		new BatchDealer(new FastRandom(1)).deal(GAMES, lHands, lMasks, lUpcards, null);
+		long[] lOnlyHands = new long[GAMES * lHands];
+		new BatchDealer(new FastRandom(1)).deal(GAMES, lHands, lOnlyHands, null, null);
+		assertArrayEquals(lMasks, lOnlyHands);
+		for( int lGame = 0; lGame < GAMES; lGame++ )
+		{
+			long lCards = lMasks[2 * lGame];
+			assertEquals(0, lCards & lMasks[2 * lGame + 1]);
+			lCards |= lMasks[2 * lGame + 1];
+			add(lCards, lUpcards[lGame]);
+		}
+	}
+	
+	/*
+	 * Adds the card of index pCard to pCards, checking that it was not there.
+	 */
+	private static long add(long pCards, int pCard)
+	{
+		assertEquals(0, pCards & 1L << pCard);
+		return pCards | 1L << pCard;
+	}
+}
@@ -1,6 +1,94 @@
 package ca.mcgill.cs.comp303.rummy.model;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Checks that a Deck deals each card once, in an order that depends only
+ * on the seed of its FastRandom.
+ */
 public class TestDeck
 {
+	private static final int SHUFFLES = 100;
+	
+	@Test
+	public void testPermutation()
+	{
+		Deck lDeck = new Deck(new FastRandom(1));
+		for( int i = 0; i < SHUFFLES; i++ )
+		{
+			lDeck.shuffle();
+			assertEquals(Card.NUM_CARDS, lDeck.size());
+			long lCards = 0;
+			while( lDeck.size() > 0 )
+			{
+				Card lCard = lDeck.peek();
+				assertEquals(lCard, lDeck.draw());
+				assertFalse(CardMask.contains(lCards, lCard));
+				lCards |= CardMask.of(lCard);
+			}
+			assertEquals(CardMask.ALL, lCards);
+		}
+	}
+	
+	@Test
+	public void testSeed()
+	{
+		FastRandom lRandom = new FastRandom(2);
+		Deck lDeck = new Deck(lRandom);
+		int[] lFirst = order(lDeck);
+		lDeck.shuffle();
+		assertFalse(Arrays.equals(lFirst, order(lDeck)));
+		
+		// Reseeding replays the order, and so does another deck with the same seed
+		lRandom.setSeed(2);
+		lDeck.shuffle();
+		assertTrue(Arrays.equals(lFirst, order(lDeck)));
+		assertTrue(Arrays.equals(lFirst, order(new Deck(new FastRandom(2)))));
+		assertFalse(Arrays.equals(lFirst, order(new Deck(new FastRandom(3)))));
+	}
+	
+	@Test
+	public void testSplit()
+	{
+		FastRandom lRandom = new FastRandom(4);
+		FastRandom lSplit = lRandom.split();
+		FastRandom lOther = lRandom.split();
+		int[] lOrder = order(new Deck(lRandom));
+		assertFalse(Arrays.equals(lOrder, order(new Deck(lSplit))));
+		assertFalse(Arrays.equals(lOrder, order(new Deck(lOther))));
+		
+		// The streams do not overlap either
+		long[] lValues = new long[SHUFFLES];
+		for( int i = 0; i < SHUFFLES; i++ )
+		{
+			lValues[i] = lSplit.nextLong();
+		}
+		for( int i = 0; i < SHUFFLES; i++ )
+		{
+			long lValue = lOther.nextLong();
+			for( long lSplitValue : lValues )
+			{
+				assertTrue(lValue != lSplitValue);
+			}
+		}
+		
+		// Splitting is deterministic
+		assertEquals(new FastRandom(5).split().nextLong(), new FastRandom(5).split().nextLong());
+	}
+	
+	/*
+	 * Returns the indices of the cards of pDeck in the order they are drawn, without drawing them.
+	 */
+	private static int[] order(Deck pDeck)
+	{
+		int[] lCards = new int[Card.NUM_CARDS];
+		assertEquals(Card.NUM_CARDS, pDeck.copyTo(lCards));
+		return lCards;
+	}
 }
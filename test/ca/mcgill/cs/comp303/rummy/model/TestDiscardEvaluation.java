@@ -0,0 +1,113 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import static ca.mcgill.cs.comp303.rummy.testutils.AllCards.*;
+import static ca.mcgill.cs.comp303.rummy.testutils.CardMasks.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares each discard of a DiscardEvaluation with a fresh match of the
+ * hand without the discarded card.
+ */
+public class TestDiscardEvaluation
+{
+	private static final int TRIALS = 2000;
+	
+	private final OptimalMatchStrategy aStrategy = new OptimalMatchStrategy();
+	
+	@Test
+	public void testGin()
+	{
+		// Discarding the king leaves two runs and a group
+		long lHand = mask(CAC, C2C, C3C, C4H, C5H, C6H, C7H, C9C, C9D, C9S, CKD);
+		DiscardEvaluation lEvaluation = DiscardEvaluation.evaluate(lHand);
+		assertEquals(10, lEvaluation.getDeadwood());
+		assertTrue(lEvaluation.isGin(CKD.index()));
+		assertTrue(lEvaluation.canKnock(CKD.index()));
+		assertFalse(lEvaluation.isGin(C9D.index()));
+		assertEquals(CKD.index(), lEvaluation.getBest(lHand));
+		// Without the king, breaking the run of hearts from its end is best
+		assertEquals(C7H.index(), lEvaluation.getBest(lHand & ~mask(CKD)));
+		assertEquals(-1, lEvaluation.getBest(0));
+	}
+	
+	@Test
+	public void testNoMeld()
+	{
+		// Low cards but no meld: the player cannot knock
+		long lHand = mask(CAC, C2D, C3H, C4S, CAD, C2H, C3S, C4C, C6C, C6D, C8H);
+		DiscardEvaluation lEvaluation = DiscardEvaluation.evaluate(lHand);
+		for( long lCards = lHand; lCards != 0; lCards &= lCards - 1 )
+		{
+			assertFalse(lEvaluation.canKnock(CardMask.first(lCards)));
+		}
+	}
+	
+	@Test
+	public void testRandomHands()
+	{
+		Random lRandom = new Random(1400);
+		for( int i = 0; i < TRIALS; i++ )
+		{
+			check(deal(lRandom, CardMask.ALL, GameEngine.HAND_SIZE + 1), lRandom);
+		}
+	}
+	
+	@Test
+	public void testCrowdedHands()
+	{
+		long lFrom = ranks(4, 9);
+		Random lRandom = new Random(1401);
+		for( int i = 0; i < TRIALS; i++ )
+		{
+			check(deal(lRandom, lFrom, GameEngine.HAND_SIZE + 1), lRandom);
+		}
+	}
+	
+	private void check(long pHand, Random pRandom)
+	{
+		DiscardEvaluation lEvaluation = DiscardEvaluation.evaluate(pHand);
+		assertEquals(pHand, lEvaluation.getHand());
+		assertEquals(aStrategy.match(pHand).getDeadwood(), lEvaluation.getDeadwood());
+		int[] lDeadwoods = new int[CardMask.DECK_SIZE];
+		for( long lCards = pHand; lCards != 0; lCards &= lCards - 1 )
+		{
+			int lCard = CardMask.first(lCards);
+			Matching lMatching = aStrategy.match(pHand & ~(1L << lCard));
+			lDeadwoods[lCard] = lMatching.getDeadwood();
+			String lMessage = CardMask.asSet(pHand) + " - " + Card.ofIndex(lCard);
+			assertEquals(lMessage, lMatching.getDeadwood(), lEvaluation.getDeadwood(lCard));
+			assertEquals(lMessage, lMatching.getDeadwood() <= DiscardEvaluation.MAX_KNOCK && lMatching.getMeldCount() > 0,
+					lEvaluation.canKnock(lCard));
+			assertEquals(lMessage, lMatching.getDeadwood() == 0, lEvaluation.isGin(lCard));
+		}
+		long lAllowed = pRandom.nextLong() & pHand;
+		assertEquals(best(pHand & lAllowed, lDeadwoods), lEvaluation.getBest(lAllowed));
+	}
+	
+	/*
+	 * The card of pCards with the lowest deadwood, then the highest score, then the highest index.
+	 */
+	private static int best(long pCards, int[] pDeadwoods)
+	{
+		int lBest = -1;
+		for( int lCard = 0; lCard < CardMask.DECK_SIZE; lCard++ )
+		{
+			if( (pCards & 1L << lCard) == 0 )
+			{
+				continue;
+			}
+			if( lBest < 0 || pDeadwoods[lCard] < pDeadwoods[lBest] || pDeadwoods[lCard] == pDeadwoods[lBest]
+					&& Card.scoreOf(lCard) >= Card.scoreOf(lBest) )
+			{
+				lBest = lCard;
+			}
+		}
+		return lBest;
+	}
+}
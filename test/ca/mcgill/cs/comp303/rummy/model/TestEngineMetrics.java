@@ -0,0 +1,81 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.JMX;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.mcgill.cs.comp303.rummy.metrics.HistogramSnapshot;
+
+/**
+ * Reads the EngineMetrics directly and through a JMX proxy, and checks
+ * that lookups in every MatchCache are counted.
+ */
+public class TestEngineMetrics
+{
+	private final EngineMetrics aMetrics = EngineMetrics.get();
+	
+	@Before
+	public void setUp()
+	{
+		aMetrics.reset();
+	}
+	
+	@After
+	public void tearDown()
+	{
+		aMetrics.setEnabled(true);
+	}
+	
+	@Test
+	public void testProxy() throws JMException
+	{
+		EngineMetrics.register();
+		EngineMetricsMXBean lProxy = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(),
+				new ObjectName(EngineMetrics.OBJECT_NAME), EngineMetricsMXBean.class);
+		for( int i = 1; i <= 100; i++ )
+		{
+			EngineMetrics.tableClosed(i * i);
+		}
+		HistogramSnapshot lExpected = aMetrics.getHandsPerTable();
+		HistogramSnapshot lActual = lProxy.getHandsPerTable();
+		assertEquals(100, lActual.getCount());
+		assertArrayEquals(lExpected.getCounts(), lActual.getCounts());
+		assertEquals(lExpected.getSum(), lActual.getSum());
+		assertEquals(lExpected.getMax(), lActual.getMax());
+		assertEquals(lExpected.getP90(), lActual.getP90());
+		assertEquals(lExpected.getPercentile(75), lActual.getPercentile(75));
+		assertEquals(0, lProxy.getDraw().getCount());
+	}
+	
+	@Test
+	public void testCacheLookups()
+	{
+		// A cache of its own, as a Tournament gives its tasks
+		MatchCache lCache = new MatchCache(MatchCache.DEFAULT_CAPACITY, MatchCache.EvictionPolicy.LRU);
+		long lCards = CardMask.rank(0) & ~CardMask.suit(0);
+		lCache.get(lCards);
+		lCache.put(new OptimalMatchStrategy().match(lCards));
+		lCache.get(lCards);
+		lCache.get(lCards);
+		assertEquals(2, aMetrics.getCacheHits());
+		assertEquals(1, aMetrics.getCacheMisses());
+		assertEquals(2.0 / 3, aMetrics.getCacheHitRate(), 1e-9);
+		
+		aMetrics.setEnabled(false);
+		lCache.get(lCards);
+		assertEquals(2, aMetrics.getCacheHits());
+		aMetrics.reset();
+		assertEquals(0, aMetrics.getCacheHits());
+		assertEquals(0, aMetrics.getCacheHitRate(), 0);
+		assertEquals(3, lCache.getHits());
+	}
+}
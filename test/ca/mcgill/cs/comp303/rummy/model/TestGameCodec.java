@@ -0,0 +1,233 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import static ca.mcgill.cs.comp303.rummy.testutils.CardMasks.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Checks that hands and game states decode to what was encoded, in both
+ * byte orders, and that invalid hand encodings are rejected.
+ */
+public class TestGameCodec
+{
+	private static final int TRIALS = 2000;
+	private static final int GAMES = 200;
+	
+	@Test
+	public void testHands()
+	{
+		long lFrom = ranks(3, 10);
+		Random lRandom = new Random(1700);
+		long[] lCandidates = new long[MeldCatalog.size()];
+		long[] lMelds = new long[GameCodec.MAX_HAND_MELDS];
+		for( int i = 0; i < TRIALS; i++ )
+		{
+			// Hands of 10 or 11 cards from seven ranks, with any disjoint melds
+			long lCards = deal(lRandom, lFrom, GameEngine.HAND_SIZE + i % 2);
+			int lCount = 0;
+			long lMatched = 0;
+			int lFound = MeldCatalog.candidates(lCards, lCandidates);
+			for( int j = 0; j < lFound; j++ )
+			{
+				if( (lCandidates[j] & lMatched) == 0 && lRandom.nextBoolean() )
+				{
+					lMelds[lCount++] = lCandidates[j];
+					lMatched |= lCandidates[j];
+				}
+			}
+			Hand lHand = new Hand();
+			lHand.restore(lCards, Arrays.copyOf(lMelds, lCount));
+			for( ByteOrder lOrder : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN} )
+			{
+				ByteBuffer lBuffer = ByteBuffer.allocate(GameCodec.MAX_HAND_BYTES).order(lOrder);
+				GameCodec.writeHand(lHand, lBuffer);
+				assertEquals(Long.SIZE / Byte.SIZE + lCount * Short.SIZE / Byte.SIZE, lBuffer.position());
+				lBuffer.flip();
+				Hand lRead = new Hand();
+				GameCodec.readHand(lBuffer, lRead);
+				assertEquals(0, lBuffer.remaining());
+				assertEquals(lCards, lRead.getCardMask());
+				assertEquals(masks(lHand.getMatchedCards()), masks(lRead.getMatchedCards()));
+				assertEquals(lHand.score(), lRead.score());
+			}
+		}
+	}
+	
+	@Test
+	public void testInvalidHands()
+	{
+		long lRun = MeldCatalog.get(0);
+		// Too many melds
+		assertInvalid(ByteBuffer.allocate(8).putLong(lRun | (long) (GameCodec.MAX_HAND_MELDS + 1) << CardMask.DECK_SIZE));
+		// A meld that does not exist
+		assertInvalid(ByteBuffer.allocate(10).putLong(lRun | 1L << CardMask.DECK_SIZE).putShort((short) MeldCatalog.size()));
+		// A meld that is not in the hand
+		assertInvalid(ByteBuffer.allocate(10).putLong(1L << CardMask.DECK_SIZE).putShort((short) 0));
+		// Two melds that overlap
+		int lOther = 0;
+		while( (MeldCatalog.get(lOther) & lRun) == 0 || lOther == 0 )
+		{
+			lOther++;
+		}
+		assertInvalid(ByteBuffer.allocate(12).putLong(lRun | MeldCatalog.get(lOther) | 2L << CardMask.DECK_SIZE)
+				.putShort((short) 0).putShort((short) lOther));
+	}
+	
+	@Test
+	public void testStates()
+	{
+		final GameSnapshot lState = new GameSnapshot();
+		final GameSnapshot lRead = new GameSnapshot();
+		final ByteBuffer[] lBuffers = {ByteBuffer.allocate(GameCodec.MAX_STATE_BYTES).order(ByteOrder.BIG_ENDIAN),
+				ByteBuffer.allocate(GameCodec.MAX_STATE_BYTES).order(ByteOrder.LITTLE_ENDIAN)};
+		final int[] lChecks = {0};
+		final GameEngine lEngine = new GameEngine(new AutoPlayer(), new AutoPlayer(), new FastRandom(1701));
+		lEngine.addListener(new GameAdapter()
+		{
+			@Override
+			public void handStarted(int pDealer, Card pUpcard)
+			{
+				check();
+			}
+			
+			@Override
+			public void cardDrawn(int pPlayer, Card pCard, boolean pFromDiscard)
+			{
+				check();
+			}
+			
+			@Override
+			public void cardDiscarded(int pPlayer, Card pCard)
+			{
+				check();
+			}
+			
+			private void check()
+			{
+				lEngine.capture(lState);
+				for( ByteBuffer lBuffer : lBuffers )
+				{
+					lBuffer.clear();
+					GameCodec.writeState(lState, lBuffer);
+					lBuffer.flip();
+					GameCodec.readState(lBuffer, lRead);
+					assertEquals(0, lBuffer.remaining());
+					assertStatesEqual(lState, lRead);
+				}
+				lChecks[0]++;
+			}
+		});
+		for( int i = 0; i < GAMES; i++ )
+		{
+			lEngine.playGame(i % 2);
+		}
+		assertTrue(lChecks[0] > GAMES);
+	}
+	
+	@Test
+	public void testFullState()
+	{
+		// Every card in the stock or the pile: the largest encoding
+		GameSnapshot lState = new GameSnapshot();
+		lState.aStockSize = 30;
+		lState.aPileSize = CardMask.DECK_SIZE - lState.aStockSize;
+		for( int i = 0; i < CardMask.DECK_SIZE; i++ )
+		{
+			if( i < lState.aStockSize )
+			{
+				lState.aStock[i] = CardMask.DECK_SIZE - 1 - i;
+			}
+			else
+			{
+				lState.aPile[i - lState.aStockSize] = CardMask.DECK_SIZE - 1 - i;
+			}
+		}
+		lState.aTurn = 1;
+		lState.aScores[0] = 250;
+		lState.aScores[1] = 99;
+		ByteBuffer lBuffer = ByteBuffer.allocate(GameCodec.MAX_STATE_BYTES);
+		GameCodec.writeState(lState, lBuffer);
+		assertEquals(GameCodec.MAX_STATE_BYTES, lBuffer.position());
+		lBuffer.flip();
+		GameSnapshot lRead = new GameSnapshot();
+		GameCodec.readState(lBuffer, lRead);
+		assertStatesEqual(lState, lRead);
+	}
+	
+	@Test
+	public void testLargeScores()
+	{
+		// Scores accumulated over a long tournament do not fit in a short
+		GameSnapshot lState = new GameSnapshot();
+		lState.aScores[0] = Short.MAX_VALUE + 8013;
+		lState.aScores[1] = 1 << 20;
+		for( ByteOrder lOrder : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN} )
+		{
+			ByteBuffer lBuffer = ByteBuffer.allocate(GameCodec.MAX_STATE_BYTES).order(lOrder);
+			GameCodec.writeState(lState, lBuffer);
+			lBuffer.flip();
+			GameSnapshot lRead = new GameSnapshot();
+			GameCodec.readState(lBuffer, lRead);
+			assertEquals(0, lBuffer.remaining());
+			assertStatesEqual(lState, lRead);
+		}
+	}
+	
+	private static void assertStatesEqual(GameSnapshot pExpected, GameSnapshot pActual)
+	{
+		assertEquals(pExpected.getTurn(), pActual.getTurn());
+		assertEquals(pExpected.getStockSize(), pActual.getStockSize());
+		assertEquals(pExpected.getPileSize(), pActual.getPileSize());
+		for( int i = 0; i < 2; i++ )
+		{
+			assertEquals(pExpected.getHand(i), pActual.getHand(i));
+			assertEquals(pExpected.getScore(i), pActual.getScore(i));
+		}
+		for( int i = 0; i < pExpected.getStockSize(); i++ )
+		{
+			assertEquals(pExpected.getStock(i), pActual.getStock(i));
+		}
+		for( int i = 0; i < pExpected.getPileSize(); i++ )
+		{
+			assertEquals(pExpected.getPile(i), pActual.getPile(i));
+		}
+	}
+	
+	private static void assertInvalid(ByteBuffer pBuffer)
+	{
+		pBuffer.flip();
+		try
+		{
+			GameCodec.readHand(pBuffer, new Hand());
+			fail("Invalid hand decoded");
+		}
+		catch( HandException lException )
+		{
+			// Expected
+		}
+	}
+	
+	/*
+	 * The masks of a set of melds, sorted, so that sets of melds are compared by their cards.
+	 */
+	private static String masks(Set<ICardSet> pMelds)
+	{
+		long[] lMasks = new long[pMelds.size()];
+		int lCount = 0;
+		for( ICardSet lMeld : pMelds )
+		{
+			lMasks[lCount++] = CardMask.of(lMeld);
+		}
+		Arrays.sort(lMasks);
+		return Arrays.toString(lMasks);
+	}
+}
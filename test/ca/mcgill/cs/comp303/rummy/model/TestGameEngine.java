@@ -0,0 +1,358 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import static ca.mcgill.cs.comp303.rummy.testutils.AllCards.*;
+import static ca.mcgill.cs.comp303.rummy.testutils.CardMasks.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Plays scripted hands on stacked decks through each way a hand can end,
+ * and checks the HandResult, the scores and what each player sees.
+ */
+public class TestGameEngine
+{
+	// The hands below are dealt with seat 1 as the dealer, so seat 0 plays first
+	private static final int DEALER = 1;
+	
+	// Two runs and a group, and a king
+	private static final Card[] KNOCKER = { CAC, C2C, C3C, C5H, C6H, C7H, C9D, C9S, C9H, CKD };
+	
+	@Test
+	public void testGin()
+	{
+		// Seat 0 takes the nine of clubs and discards the king: four melds, no deadwood
+		Card[] lDefender = { C2D, C4D, C6D, C8D, CTD, C3S, C5S, C7S, CJS, CQH };
+		ScriptedPlayer lKnocker = new ScriptedPlayer(mask(C9C), true, CKD);
+		ScriptedPlayer lDefenderPlayer = new ScriptedPlayer(0, false);
+		GameEngine lEngine = new GameEngine(lKnocker, lDefenderPlayer, stack(KNOCKER, lDefender, C9C));
+		LayoffRecorder lLayoffs = new LayoffRecorder();
+		lEngine.addListener(lLayoffs);
+		HandResult lResult = lEngine.playHand(DEALER);
+		
+		assertEquals(0, lResult.getWinner());
+		assertEquals(0, lResult.getKnocker());
+		assertTrue(lResult.isGin());
+		assertFalse(lResult.isUndercut());
+		assertEquals(1, lResult.getTurns());
+		assertEquals(0, lResult.getDeadwood(0));
+		assertEquals(65, lResult.getDeadwood(1));
+		assertEquals(65 + GameEngine.GIN_BONUS, lResult.getPoints());
+		assertEquals(65 + GameEngine.GIN_BONUS, lEngine.getScore(0));
+		assertEquals(0, lEngine.getScore(1));
+		// Nothing can be laid off on a gin hand
+		assertEquals(0, lLayoffs.aCount);
+		// The card taken from the pile is seen by the opponent
+		assertEquals(1, lDefenderPlayer.aOpponentDraws.size());
+		assertEquals(C9C, lDefenderPlayer.aOpponentDraws.get(0));
+	}
+	
+	@Test
+	public void testUndercut()
+	{
+		// Seat 0 knocks with the four of spades, 4 points, which seat 1 cannot
+		// lay off and matches with 4 points of deadwood
+		Card[] lDefender = { CJS, CJC, CJD, CJH, C5D, C6D, C7D, C8D, CAS, C3D };
+		GameEngine lEngine = new GameEngine(new ScriptedPlayer(mask(C4S), true, CKD), new ScriptedPlayer(0, false),
+				stack(KNOCKER, lDefender, C4S));
+		HandResult lResult = lEngine.playHand(DEALER);
+		
+		assertEquals(1, lResult.getWinner());
+		assertEquals(0, lResult.getKnocker());
+		assertFalse(lResult.isGin());
+		assertTrue(lResult.isUndercut());
+		assertEquals(4, lResult.getDeadwood(0));
+		assertEquals(4, lResult.getDeadwood(1));
+		assertEquals(GameEngine.UNDERCUT_BONUS, lResult.getPoints());
+		assertEquals(0, lEngine.getScore(0));
+		assertEquals(GameEngine.UNDERCUT_BONUS, lEngine.getScore(1));
+	}
+	
+	@Test
+	public void testLayoffs()
+	{
+		// Seat 1 lays off a card on each meld of seat 0, and keeps the king of hearts
+		Card[] lDefender = { C4C, C8H, C9C, CJS, CJC, CJD, CQS, CQC, CQD, CKH };
+		GameEngine lEngine = new GameEngine(new ScriptedPlayer(mask(C4S), true, CKD), new ScriptedPlayer(0, false),
+				stack(KNOCKER, lDefender, C4S));
+		LayoffRecorder lLayoffs = new LayoffRecorder();
+		lEngine.addListener(lLayoffs);
+		HandResult lResult = lEngine.playHand(DEALER);
+		
+		assertEquals(0, lResult.getWinner());
+		assertFalse(lResult.isGin());
+		assertFalse(lResult.isUndercut());
+		assertEquals(4, lResult.getDeadwood(0));
+		assertEquals(10, lResult.getDeadwood(1));
+		assertEquals(6, lResult.getPoints());
+		assertEquals(6, lEngine.getScore(0));
+		assertEquals(1, lLayoffs.aCount);
+		assertEquals(1, lLayoffs.aPlayer);
+		assertEquals(mask(C4C, C8H, C9C), lLayoffs.aCards);
+		
+		// Scores add up over hands until they are reset
+		lEngine.playHand(DEALER);
+		assertEquals(12, lEngine.getScore(0));
+		lEngine.resetScores();
+		assertEquals(0, lEngine.getScore(0));
+	}
+	
+	@Test
+	public void testDraw()
+	{
+		// Both players refuse the upcard, then draw from the stock and
+		// discard what they drew until only MIN_STOCK cards are left
+		ScriptedPlayer lPlayer0 = new ScriptedPlayer(0, false);
+		ScriptedPlayer lPlayer1 = new ScriptedPlayer(0, false);
+		GameEngine lEngine = new GameEngine(lPlayer0, lPlayer1, new FastRandom(7));
+		DrawRecorder lObserver = new DrawRecorder();
+		lEngine.addListener(lObserver);
+		HandResult lResult = lEngine.playHand(DEALER);
+		
+		int lTurns = CardMask.DECK_SIZE - 2 * GameEngine.HAND_SIZE - 1 - GameEngine.MIN_STOCK;
+		assertTrue(lResult.isDraw());
+		assertEquals(HandResult.NONE, lResult.getWinner());
+		assertEquals(HandResult.NONE, lResult.getKnocker());
+		assertEquals(0, lResult.getPoints());
+		assertEquals(lTurns, lResult.getTurns());
+		assertEquals(lPlayer0.getHand().score(), lResult.getDeadwood(0));
+		assertEquals(lPlayer1.getHand().score(), lResult.getDeadwood(1));
+		assertEquals(0, lEngine.getScore(0));
+		assertEquals(0, lEngine.getScore(1));
+		
+		// Each player sees its own stock draws, but not those of its opponent
+		assertEquals(lTurns, lPlayer0.aOwnDraws.size() + lPlayer1.aOwnDraws.size());
+		for( ScriptedPlayer lPlayer : new ScriptedPlayer[] { lPlayer0, lPlayer1 } )
+		{
+			for( Card lCard : lPlayer.aOwnDraws )
+			{
+				assertNotNull(lCard);
+			}
+			for( Card lCard : lPlayer.aOpponentDraws )
+			{
+				assertNull(lCard);
+			}
+		}
+		assertEquals(lPlayer1.aOwnDraws, lPlayer0.aObserved);
+		assertEquals(lTurns, lObserver.aDraws.size());
+		assertFalse(lObserver.aDraws.contains(null));
+	}
+	
+	@Test(expected = HandException.class)
+	public void testDiscardMissingCard()
+	{
+		// The queen of hearts is in the hand of seat 1
+		Card[] lDefender = { C2D, C4D, C6D, C8D, CTD, C3S, C5S, C7S, CJS, CQH };
+		new GameEngine(new ScriptedPlayer(mask(C9C), true, CQH), new ScriptedPlayer(0, false),
+				stack(KNOCKER, lDefender, C9C)).playHand(DEALER);
+	}
+	
+	@Test(expected = HandException.class)
+	public void testDiscardTakenCard()
+	{
+		Card[] lDefender = { C2D, C4D, C6D, C8D, CTD, C3S, C5S, C7S, CJS, CQH };
+		new GameEngine(new ScriptedPlayer(mask(C9C), true, C9C), new ScriptedPlayer(0, false),
+				stack(KNOCKER, lDefender, C9C)).playHand(DEALER);
+	}
+	
+	/*
+	 * Returns a source of randomness that makes a Deck deal pFirst to the
+	 * player after the dealer, pDealer to the dealer, then turn up pUpcard.
+	 */
+	private static Random stack(Card[] pFirst, Card[] pDealer, Card pUpcard)
+	{
+		List<Card> lOrder = new ArrayList<Card>();
+		for( int i = 0; i < GameEngine.HAND_SIZE; i++ )
+		{
+			lOrder.add(pFirst[i]);
+			lOrder.add(pDealer[i]);
+		}
+		lOrder.add(pUpcard);
+		return new StackedRandom(lOrder);
+	}
+	
+	/*
+	 * Answers the calls of the Fisher-Yates shuffle of a Deck so that the
+	 * deck draws the cards of a list in order, then the other cards in
+	 * decreasing order of index.
+	 */
+	private static final class StackedRandom extends Random
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private final int[] aOrder = new int[CardMask.DECK_SIZE];
+		private final int[] aCards = new int[CardMask.DECK_SIZE];
+		
+		StackedRandom(List<Card> pCards)
+		{
+			// The deck draws from the end of its array
+			long lRest = CardMask.ALL;
+			for( int i = 0; i < pCards.size(); i++ )
+			{
+				aOrder[CardMask.DECK_SIZE - 1 - i] = pCards.get(i).index();
+				lRest &= ~CardMask.of(pCards.get(i));
+			}
+			for( int i = 0; lRest != 0; i++ )
+			{
+				aOrder[i] = CardMask.first(lRest);
+				lRest &= lRest - 1;
+			}
+		}
+		
+		@Override
+		public int nextInt(int pBound)
+		{
+			int lPosition = pBound - 1;
+			if( lPosition == CardMask.DECK_SIZE - 1 )
+			{
+				// A new shuffle
+				for( int i = 0; i < aCards.length; i++ )
+				{
+					aCards[i] = i;
+				}
+			}
+			int lOther = 0;
+			while( aCards[lOther] != aOrder[lPosition] )
+			{
+				lOther++;
+			}
+			aCards[lOther] = aCards[lPosition];
+			aCards[lPosition] = aOrder[lPosition];
+			return lOther;
+		}
+	}
+	
+	/*
+	 * Takes the upcard or the top discard if it is in a mask, discards the
+	 * cards of a script in order in each hand, then the card it drew, and
+	 * knocks when it can if told to. Records the draws it is told about.
+	 */
+	private static final class ScriptedPlayer extends Player implements IGameListener
+	{
+		private final long aWanted;
+		private final boolean aKnock;
+		private final Card[] aDiscards;
+		private int aTurn;
+		private final List<Card> aOwnDraws = new ArrayList<Card>();
+		private final List<Card> aOpponentDraws = new ArrayList<Card>();
+		private final List<Card> aObserved = new ArrayList<Card>();
+		
+		ScriptedPlayer(long pWanted, boolean pKnock, Card... pDiscards)
+		{
+			aWanted = pWanted;
+			aKnock = pKnock;
+			aDiscards = pDiscards;
+		}
+		
+		@Override
+		protected boolean takeFirstCard(Card pTopStock, Card pTopDiscard)
+		{
+			return CardMask.contains(aWanted, pTopDiscard);
+		}
+		
+		@Override
+		protected boolean draw(Card pTopStock, Card pTopDiscard)
+		{
+			return CardMask.contains(aWanted, pTopDiscard);
+		}
+		
+		@Override
+		protected Card discard()
+		{
+			if( aTurn < aDiscards.length )
+			{
+				return aDiscards[aTurn++];
+			}
+			return getDrawnCard();
+		}
+		
+		@Override
+		protected boolean knock()
+		{
+			return aKnock;
+		}
+		
+		@Override
+		public void handStarted(int pDealer, Card pUpcard)
+		{
+			aTurn = 0;
+		}
+		
+		@Override
+		public void upcardRefused(int pPlayer)
+		{}
+		
+		@Override
+		public void turnStarted(int pPlayer)
+		{}
+		
+		@Override
+		public void cardDrawn(int pPlayer, Card pCard, boolean pFromDiscard)
+		{
+			if( pPlayer == getSeat() )
+			{
+				aOwnDraws.add(pCard);
+			}
+			else
+			{
+				aOpponentDraws.add(pCard);
+			}
+		}
+		
+		@Override
+		public void cardDiscarded(int pPlayer, Card pCard)
+		{
+			// The opponent discards what it drew, so its discards are its draws
+			if( pPlayer != getSeat() )
+			{
+				aObserved.add(pCard);
+			}
+		}
+		
+		@Override
+		public void knocked(int pPlayer, int pDeadwood)
+		{}
+		
+		@Override
+		public void cardsLaidOff(int pPlayer, long pCards)
+		{}
+		
+		@Override
+		public void handEnded(HandResult pResult)
+		{}
+	}
+	
+	private static final class LayoffRecorder extends GameAdapter
+	{
+		private int aCount;
+		private int aPlayer;
+		private long aCards;
+		
+		@Override
+		public void cardsLaidOff(int pPlayer, long pCards)
+		{
+			aCount++;
+			aPlayer = pPlayer;
+			aCards = pCards;
+		}
+	}
+	
+	private static final class DrawRecorder extends GameAdapter
+	{
+		private final List<Card> aDraws = new ArrayList<Card>();
+		
+		@Override
+		public void cardDrawn(int pPlayer, Card pCard, boolean pFromDiscard)
+		{
+			aDraws.add(pCard);
+		}
+	}
+}
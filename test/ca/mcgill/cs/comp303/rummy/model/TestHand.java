@@ -1,6 +1,67 @@
 package ca.mcgill.cs.comp303.rummy.model;
 
+import static ca.mcgill.cs.comp303.rummy.testutils.AllCards.*;
+import static ca.mcgill.cs.comp303.rummy.testutils.CardMasks.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
 
 public class TestHand
 {
+	@Test
+	public void testAddAll()
+	{
+		Hand lHand = new Hand();
+		lHand.add(CAC);
+		lHand.addAll(mask(C2C, C3C, CKH));
+		assertEquals(4, lHand.size());
+		assertEquals(mask(CAC, C2C, C3C, CKH), lHand.getCardMask());
+		lHand.addAll(0);
+		assertEquals(4, lHand.size());
+	}
+	
+	@Test
+	public void testAddAllDuplicate()
+	{
+		Hand lHand = new Hand();
+		lHand.addAll(mask(CAC, C2C));
+		assertRejected(lHand, mask(C2C, C3C));
+		
+		// Matched cards are in the hand too
+		lHand.addAll(mask(C3C, C4C, C5C));
+		lHand.autoMatch();
+		assertTrue(lHand.getMatchedCards().size() > 0);
+		assertRejected(lHand, mask(C4C, C9H));
+	}
+	
+	@Test
+	public void testAddAllFull()
+	{
+		Hand lHand = new Hand();
+		assertRejected(lHand, CardMask.suit(0));
+		lHand.addAll(mask(CAC, C2C, C3C, C4C, C5C, C6C, C7C, C8C, C9C));
+		assertRejected(lHand, mask(CTC, CJC));
+		lHand.addAll(mask(CTC));
+		assertTrue(lHand.isComplete());
+		assertRejected(lHand, mask(CJC));
+	}
+	
+	/*
+	 * Checks that adding pCards to pHand throws and leaves the hand unchanged.
+	 */
+	private static void assertRejected(Hand pHand, long pCards)
+	{
+		long lCards = pHand.getCardMask();
+		try
+		{
+			pHand.addAll(pCards);
+			fail("Added " + CardMask.asSet(pCards));
+		}
+		catch( HandException lException )
+		{
+			assertEquals(lCards, pHand.getCardMask());
+		}
+	}
 }
@@ -0,0 +1,143 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import static ca.mcgill.cs.comp303.rummy.testutils.AllCards.*;
+import static ca.mcgill.cs.comp303.rummy.testutils.CardMasks.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares the LayoffEngine with a brute-force search over every subset
+ * of the cards of the defender that can be laid off.
+ */
+public class TestLayoffEngine
+{
+	private static final int TRIALS = 1000;
+	
+	private final OptimalMatchStrategy aStrategy = new OptimalMatchStrategy();
+	
+	@Test
+	public void testChains()
+	{
+		// The 3 of spades extends the run of spades only together with the 4
+		Matching lKnocker = aStrategy.match(mask(C5S, C6S, C7S, C9C, C9D, C9H));
+		LayoffEngine.Result lResult = LayoffEngine.solve(mask(C3S, C4S, C9S, CKH), lKnocker);
+		assertEquals(mask(C3S, C4S, C9S), lResult.getLaidOff());
+		assertEquals(10, lResult.getDeadwood());
+		assertEquals(mask(C4S, C3S, C2S, C8S), LayoffEngine.extensions(mask(C5S, C6S, C7S), mask(C2S, C3S, C4S, C8S, CTS)));
+	}
+	
+	@Test
+	public void testKeepOwnMeld()
+	{
+		// The 8 of spades extends the run of the knocker, but also completes
+		// a group of the defender: laying it off would leave more deadwood.
+		Matching lKnocker = aStrategy.match(mask(C5S, C6S, C7S));
+		LayoffEngine.Result lResult = LayoffEngine.solve(mask(C8S, C8C, C8D, CAH), lKnocker);
+		assertEquals(0, lResult.getLaidOff());
+		assertEquals(1, lResult.getDeadwood());
+	}
+	
+	@Test
+	public void testRandomDeals()
+	{
+		Random lRandom = new Random(1500);
+		for( int i = 0; i < TRIALS; i++ )
+		{
+			long lKnocker = deal(lRandom, CardMask.ALL, GameEngine.HAND_SIZE);
+			check(lKnocker, deal(lRandom, CardMask.ALL & ~lKnocker, GameEngine.HAND_SIZE));
+		}
+	}
+	
+	@Test
+	public void testCrowdedDeals()
+	{
+		// Both hands drawn from seven ranks share many ranks and sequences
+		long lFrom = ranks(3, 10);
+		Random lRandom = new Random(1501);
+		for( int i = 0; i < TRIALS; i++ )
+		{
+			long lKnocker = deal(lRandom, lFrom, GameEngine.HAND_SIZE);
+			check(lKnocker, deal(lRandom, lFrom & ~lKnocker, GameEngine.HAND_SIZE));
+		}
+	}
+	
+	private void check(long pKnocker, long pDefender)
+	{
+		Matching lKnocker = aStrategy.match(pKnocker);
+		long[] lMelds = new long[lKnocker.getMeldCount()];
+		for( int i = 0; i < lMelds.length; i++ )
+		{
+			lMelds[i] = lKnocker.getMeld(i);
+		}
+		LayoffEngine.Result lResult = LayoffEngine.solve(pDefender, lKnocker);
+		String lMessage = CardMask.asSet(pKnocker) + " / " + CardMask.asSet(pDefender);
+		
+		assertEquals(lMessage, pDefender & ~lResult.getLaidOff(), lResult.getMatching().getCards());
+		assertTrue(lMessage, canLayOff(lMelds, lResult.getLaidOff()));
+		assertEquals(lMessage, aStrategy.match(pDefender & ~lResult.getLaidOff()).getDeadwood(), lResult.getDeadwood());
+		
+		int lBest = aStrategy.match(pDefender).getDeadwood();
+		for( long lSubset = pDefender; lSubset != 0; lSubset = (lSubset - 1) & pDefender )
+		{
+			if( canLayOff(lMelds, lSubset) )
+			{
+				lBest = Math.min(lBest, aStrategy.match(pDefender & ~lSubset).getDeadwood());
+			}
+		}
+		assertEquals(lMessage, lBest, lResult.getDeadwood());
+	}
+	
+	/*
+	 * True if every card of pCards can be added, one at a time and in some
+	 * order, to one of pMelds so that it remains a group or a run.
+	 */
+	private static boolean canLayOff(long[] pMelds, long pCards)
+	{
+		if( pCards == 0 )
+		{
+			return true;
+		}
+		for( long lCards = pCards; lCards != 0; lCards &= lCards - 1 )
+		{
+			long lCard = Long.lowestOneBit(lCards);
+			for( int i = 0; i < pMelds.length; i++ )
+			{
+				long lMeld = pMelds[i];
+				if( isMeld(lMeld | lCard) )
+				{
+					pMelds[i] = lMeld | lCard;
+					boolean lLaidOff = canLayOff(pMelds, pCards & ~lCard);
+					pMelds[i] = lMeld;
+					if( lLaidOff )
+					{
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+	
+	/*
+	 * True if pCards is a group or a run, checked from the rules.
+	 */
+	private static boolean isMeld(long pCards)
+	{
+		if( Long.bitCount(pCards) < 3 )
+		{
+			return false;
+		}
+		int lRank = CardMask.first(pCards) % CardMask.SUIT_SIZE;
+		if( (pCards & ~CardMask.rank(lRank)) == 0 )
+		{
+			return true;
+		}
+		int lSuit = CardMask.first(pCards) / CardMask.SUIT_SIZE;
+		long lRun = pCards >>> Long.numberOfTrailingZeros(pCards);
+		return (pCards & ~CardMask.suit(lSuit)) == 0 && (lRun & (lRun + 1)) == 0;
+	}
+}
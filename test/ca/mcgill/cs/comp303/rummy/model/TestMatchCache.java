@@ -0,0 +1,177 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares MatchCache with a single LinkedHashMap of the same capacity
+ * per segment, and checks that the capacity is a strict bound.
+ */
+public class TestMatchCache
+{
+	private static final long[] NO_MELDS = new long[0];
+	
+	@Test
+	public void testSmallCapacity()
+	{
+		MatchCache lCache = new MatchCache(3, MatchCache.EvictionPolicy.LRU);
+		Random lRandom = new Random(3);
+		for( int i = 0; i < 100; i++ )
+		{
+			lCache.put(matching(lRandom.nextLong() & CardMask.ALL));
+			assertTrue(lCache.size() <= 3);
+		}
+		assertEquals(100 - lCache.size(), lCache.getEvictions());
+	}
+	
+	@Test
+	public void testShrink()
+	{
+		MatchCache lCache = new MatchCache(1000, MatchCache.EvictionPolicy.FIFO);
+		Random lRandom = new Random(5);
+		for( int i = 0; i < 1000; i++ )
+		{
+			lCache.put(matching(lRandom.nextLong() & CardMask.ALL));
+		}
+		lCache.setCapacity(10);
+		assertTrue(lCache.size() <= 10);
+		assertEquals(1000 - lCache.size(), lCache.getEvictions());
+		lCache.setCapacity(1000);
+		lCache.clear();
+		assertEquals(0, lCache.size());
+		assertNull(lCache.get(0));
+	}
+	
+	@Test
+	public void testLru()
+	{
+		compare(MatchCache.EvictionPolicy.LRU);
+	}
+	
+	@Test
+	public void testFifo()
+	{
+		compare(MatchCache.EvictionPolicy.FIFO);
+	}
+	
+	/*
+	 * With a capacity of 16, every segment holds a single entry; with a
+	 * capacity of 16 * n, n entries. Keys are drawn from a small set so
+	 * that hits, replacements and evictions all happen.
+	 */
+	private static void compare(MatchCache.EvictionPolicy pPolicy)
+	{
+		Random lRandom = new Random(pPolicy.ordinal());
+		long[] lKeys = new long[400];
+		for( int i = 0; i < lKeys.length; i++ )
+		{
+			lKeys[i] = lRandom.nextLong() & CardMask.ALL;
+		}
+		MatchCache lCache = new MatchCache(16 * 8, pPolicy);
+		Model lModel = new Model(lCache, pPolicy == MatchCache.EvictionPolicy.LRU);
+		for( int i = 0; i < 50000; i++ )
+		{
+			long lKey = lKeys[lRandom.nextInt(lKeys.length)];
+			if( lRandom.nextBoolean() )
+			{
+				Matching lMatching = matching(lKey);
+				lCache.put(lMatching);
+				lModel.put(lKey, lMatching);
+			}
+			else
+			{
+				assertSame(lModel.get(lKey), lCache.get(lKey));
+			}
+			if( i % 10000 == 9999 )
+			{
+				// Shrink, then grow back
+				int lCapacity = i % 20000 == 9999 ? 16 * 2 : 16 * 8;
+				lCache.setCapacity(lCapacity);
+				lModel.setBound(lCapacity / 16);
+			}
+			assertEquals(lModel.size(), lCache.size());
+		}
+		for( long lKey : lKeys )
+		{
+			assertSame(lModel.get(lKey), lCache.get(lKey));
+		}
+	}
+	
+	private static Matching matching(long pCards)
+	{
+		return new Matching(pCards, NO_MELDS, 0);
+	}
+	
+	/*
+	 * A LinkedHashMap per segment of the cache, found by probing the cache.
+	 */
+	private static final class Model
+	{
+		private final Map<Integer, LinkedHashMap<Long, Matching>> aSegments = new LinkedHashMap<Integer, LinkedHashMap<Long, Matching>>();
+		private final boolean aAccessOrder;
+		private int aBound;
+		
+		Model(MatchCache pCache, boolean pAccessOrder)
+		{
+			aAccessOrder = pAccessOrder;
+			aBound = pCache.getCapacity() / 16;
+		}
+		
+		private LinkedHashMap<Long, Matching> segment(long pKey)
+		{
+			int lSegment = (int) ((pKey * 0x9E3779B97F4A7C15L) >>> 60);
+			if( !aSegments.containsKey(lSegment) )
+			{
+				aSegments.put(lSegment, new LinkedHashMap<Long, Matching>(16, 0.75f, aAccessOrder));
+			}
+			return aSegments.get(lSegment);
+		}
+		
+		Matching get(long pKey)
+		{
+			return segment(pKey).get(pKey);
+		}
+		
+		void put(long pKey, Matching pMatching)
+		{
+			LinkedHashMap<Long, Matching> lSegment = segment(pKey);
+			lSegment.put(pKey, pMatching);
+			trim(lSegment);
+		}
+		
+		void setBound(int pBound)
+		{
+			aBound = pBound;
+			for( LinkedHashMap<Long, Matching> lSegment : aSegments.values() )
+			{
+				trim(lSegment);
+			}
+		}
+		
+		int size()
+		{
+			int lSize = 0;
+			for( LinkedHashMap<Long, Matching> lSegment : aSegments.values() )
+			{
+				lSize += lSegment.size();
+			}
+			return lSize;
+		}
+		
+		private void trim(LinkedHashMap<Long, Matching> pSegment)
+		{
+			while( pSegment.size() > aBound )
+			{
+				pSegment.remove(pSegment.keySet().iterator().next());
+			}
+		}
+	}
+}
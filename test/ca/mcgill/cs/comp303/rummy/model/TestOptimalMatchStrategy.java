@@ -0,0 +1,182 @@
+package ca.mcgill.cs.comp303.rummy.model;
+
+import static ca.mcgill.cs.comp303.rummy.testutils.AllCards.*;
+import static ca.mcgill.cs.comp303.rummy.testutils.CardMasks.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares the OptimalMatchStrategy with an exhaustive search over every
+ * set of disjoint melds of a hand, and update() with match().
+ */
+public class TestOptimalMatchStrategy
+{
+	private static final int TRIALS = 2000;
+	
+	// The cards of five ranks: hands drawn from them have many overlapping groups and runs
+	private static final long CROWDED = ranks(4, 9);
+	
+	private final OptimalMatchStrategy aStrategy = new OptimalMatchStrategy();
+	
+	@Test
+	public void testEmpty()
+	{
+		Matching lMatching = aStrategy.match(0);
+		assertEquals(0, lMatching.getMeldCount());
+		assertEquals(0, lMatching.getDeadwood());
+	}
+	
+	@Test
+	public void testGroupOrRun()
+	{
+		// The seven of hearts is needed by both the group of sevens and the
+		// run of hearts, and the run leaves the lower deadwood.
+		long lCards = mask(C7C, C7D, C7H, C5H, C6H, C8H);
+		Matching lMatching = aStrategy.match(lCards);
+		assertEquals(14, lMatching.getDeadwood());
+		assertEquals(mask(C7C, C7D), lMatching.getUnmatched());
+	}
+	
+	@Test
+	public void testGroupAndRun()
+	{
+		// The nine of spades can go in the group of nines or the run of spades.
+		long lCards = mask(C9C, C9D, C9H, C9S, CTS, CJS, CQS, C2C, C2D, C2H);
+		Matching lMatching = aStrategy.match(lCards);
+		assertEquals(0, lMatching.getDeadwood());
+		assertEquals(3, lMatching.getMeldCount());
+	}
+	
+	@Test
+	public void testRandomHands()
+	{
+		Random lRandom = new Random(303);
+		for( int i = 0; i < TRIALS; i++ )
+		{
+			long lCards = deal(lRandom, CardMask.ALL, 10 + i % 2);
+			check(lCards);
+		}
+	}
+	
+	@Test
+	public void testCrowdedHands()
+	{
+		Random lRandom = new Random(304);
+		for( int i = 0; i < TRIALS; i++ )
+		{
+			long lCards = deal(lRandom, CROWDED, 10 + i % 2);
+			check(lCards);
+		}
+	}
+	
+	@Test
+	public void testUpdate()
+	{
+		// Play random draws and discards, updating the matching of each hand
+		// from the matching of the previous one. Every other game is played
+		// with the cards of five ranks only, so that melds are made and broken.
+		Random lRandom = new Random(305);
+		for( int lGame = 0; lGame < TRIALS / 10; lGame++ )
+		{
+			long lFrom = lGame % 2 == 0 ? CardMask.ALL : CROWDED;
+			long lCards = deal(lRandom, lFrom, 10);
+			Matching lMatching = aStrategy.match(lCards);
+			for( int lTurn = 0; lTurn < 20; lTurn++ )
+			{
+				long lCard = deal(lRandom, lFrom & ~lCards, 1);
+				if( Long.bitCount(lCards) == 11 )
+				{
+					lCard = deal(lRandom, lCards, 1);
+				}
+				lCards ^= lCard;
+				lMatching = aStrategy.update(lMatching, lCards);
+				assertEquals(aStrategy.match(lCards), lMatching);
+			}
+			// Replace several cards at once
+			long lNew = deal(lRandom, CardMask.ALL, 10);
+			assertEquals(aStrategy.match(lNew), aStrategy.update(lMatching, lNew));
+			assertEquals(lMatching, aStrategy.update(lMatching, lCards));
+		}
+	}
+	
+	private void check(long pCards)
+	{
+		Matching lMatching = aStrategy.match(pCards);
+		assertEquals(pCards, lMatching.getCards());
+		long lMatched = 0;
+		for( int i = 0; i < lMatching.getMeldCount(); i++ )
+		{
+			long lMeld = lMatching.getMeld(i);
+			assertTrue(Arrays.asList(allMelds(pCards)).contains(lMeld));
+			assertEquals(0, lMatched & lMeld);
+			lMatched |= lMeld;
+		}
+		assertEquals(lMatched, lMatching.getMatched());
+		assertEquals(CardMask.asSet(pCards).toString(), exhaustive(allMelds(pCards), 0, pCards), lMatching.getDeadwood());
+	}
+	
+	/*
+	 * The lowest deadwood of pCards using the melds from pIndex on, trying every subset.
+	 */
+	private static int exhaustive(Long[] pMelds, int pIndex, long pCards)
+	{
+		if( pIndex == pMelds.length )
+		{
+			return CardMask.score(pCards);
+		}
+		int lBest = exhaustive(pMelds, pIndex + 1, pCards);
+		if( (pMelds[pIndex] & ~pCards) == 0 )
+		{
+			lBest = Math.min(lBest, exhaustive(pMelds, pIndex + 1, pCards & ~pMelds[pIndex]));
+		}
+		return lBest;
+	}
+	
+	/*
+	 * Every group and run made of cards of pCards, built from the rules
+	 * rather than from the MeldCatalog.
+	 */
+	private static Long[] allMelds(long pCards)
+	{
+		List<Long> lMelds = new ArrayList<Long>();
+		for( int lRank = 0; lRank < CardMask.SUIT_SIZE; lRank++ )
+		{
+			long lGroup = pCards & CardMask.rank(lRank);
+			for( long lSubset = lGroup; lSubset != 0; lSubset = (lSubset - 1) & lGroup )
+			{
+				if( Long.bitCount(lSubset) >= 3 )
+				{
+					lMelds.add(lSubset);
+				}
+			}
+		}
+		for( Card.Suit lSuit : Card.Suit.values() )
+		{
+			for( int lStart = 0; lStart < CardMask.SUIT_SIZE; lStart++ )
+			{
+				long lRun = 0;
+				for( int lRank = lStart; lRank < CardMask.SUIT_SIZE; lRank++ )
+				{
+					long lCard = CardMask.of(Card.of(Card.Rank.values()[lRank], lSuit));
+					if( (pCards & lCard) == 0 )
+					{
+						break;
+					}
+					lRun |= lCard;
+					if( lRank - lStart >= 2 )
+					{
+						lMelds.add(lRun);
+					}
+				}
+			}
+		}
+		return lMelds.toArray(new Long[lMelds.size()]);
+	}
+}
@@ -0,0 +1,241 @@
+package ca.mcgill.cs.comp303.rummy.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.mcgill.cs.comp303.rummy.model.AutoPlayer;
+import ca.mcgill.cs.comp303.rummy.model.Card;
+import ca.mcgill.cs.comp303.rummy.model.FastRandom;
+import ca.mcgill.cs.comp303.rummy.model.GameAdapter;
+import ca.mcgill.cs.comp303.rummy.model.GameEngine;
+import ca.mcgill.cs.comp303.rummy.model.GameSnapshot;
+import ca.mcgill.cs.comp303.rummy.model.HandResult;
+
+/**
+ * Logs hands played by an engine into segments of 16 records, and checks
+ * that a ReplayReader replays the same events, from the beginning of the
+ * log or from a game found through the index.
+ */
+public class TestReplayLog
+{
+	private static final String NAME = "test";
+	private static final int SEGMENT_SIZE = 16 * ReplayLog.RECORD_SIZE;
+	private static final int GAMES = 40;
+	
+	private File aDirectory;
+	
+	@Before
+	public void setUp() throws IOException
+	{
+		aDirectory = Files.createTempDirectory("replay").toFile();
+	}
+	
+	@After
+	public void tearDown()
+	{
+		for( File lFile : aDirectory.listFiles() )
+		{
+			lFile.delete();
+		}
+		aDirectory.delete();
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testNotAttached() throws IOException
+	{
+		GameEngine lEngine = new GameEngine(new AutoPlayer(), new AutoPlayer(), new FastRandom(1800));
+		ReplayLog lLog = new ReplayLog(aDirectory, NAME, SEGMENT_SIZE);
+		try
+		{
+			lEngine.addListener(lLog);
+			lEngine.playHand(0);
+		}
+		finally
+		{
+			lLog.close();
+		}
+	}
+	
+	@Test
+	public void testRollOver() throws IOException
+	{
+		List<List<String>> lPlayed = play(0, GAMES, 1801);
+		assertTrue(ReplayLog.segmentCount(aDirectory, NAME) > GAMES);
+		assertEquals(lPlayed, replay());
+	}
+	
+	@Test
+	public void testAppend() throws IOException
+	{
+		// Sessions of different lengths, so that logs end at different points of a segment
+		List<List<String>> lPlayed = new ArrayList<List<String>>();
+		for( int i = 1; i <= 8; i++ )
+		{
+			lPlayed.addAll(play(lPlayed.size(), i, 1802 + i));
+		}
+		assertEquals(lPlayed, replay());
+	}
+	
+	@Test
+	public void testSeekGame() throws IOException
+	{
+		int lGames = 2 * ReplayLog.INDEX_INTERVAL + 1;
+		List<List<String>> lPlayed = play(0, lGames, 1804);
+		assertEquals(3 * ReplayLog.INDEX_ENTRY_SIZE, ReplayLog.indexFile(aDirectory, NAME).length());
+		
+		ReplayReader lReader = new ReplayReader(aDirectory, NAME);
+		try
+		{
+			int[] lGameIds = {ReplayLog.INDEX_INTERVAL + 1, 0, ReplayLog.INDEX_INTERVAL - 1, ReplayLog.INDEX_INTERVAL,
+					lGames - 1, 1, 2 * ReplayLog.INDEX_INTERVAL};
+			for( int lGame : lGameIds )
+			{
+				assertTrue(lReader.seekGame(lGame));
+				Recorder lRecorder = new Recorder(lReader);
+				assertEquals(1, lReader.replay(lRecorder, 1));
+				assertEquals(lGame, lReader.getGame());
+				assertEquals(lPlayed.get(lGame), lRecorder.aGames.get(0));
+			}
+			assertFalse(lReader.seekGame(lGames));
+		}
+		finally
+		{
+			lReader.close();
+		}
+	}
+	
+	/*
+	 * Plays pGames hands, appending them to the log where pFirst games were
+	 * logged, and returns the events of each hand.
+	 */
+	private List<List<String>> play(long pFirst, int pGames, long pSeed) throws IOException
+	{
+		final GameEngine lEngine = new GameEngine(new AutoPlayer(), new AutoPlayer(), new FastRandom(pSeed));
+		final GameSnapshot lSnapshot = new GameSnapshot();
+		Recorder lRecorder = new Recorder(null)
+		{
+			@Override
+			long dealtHand(int pPlayer)
+			{
+				lEngine.capture(lSnapshot);
+				return lSnapshot.getHand(pPlayer);
+			}
+		};
+		lEngine.addListener(lRecorder);
+		ReplayLog lLog = new ReplayLog(aDirectory, NAME, SEGMENT_SIZE);
+		try
+		{
+			assertEquals(pFirst, lLog.getNextGame());
+			lLog.attach(lEngine);
+			for( int i = 0; i < pGames; i++ )
+			{
+				lEngine.playHand(i % 2);
+			}
+			assertEquals(pFirst + pGames, lLog.getNextGame());
+		}
+		finally
+		{
+			lLog.close();
+		}
+		return lRecorder.aGames;
+	}
+	
+	/*
+	 * Replays the whole log and returns the events of each hand.
+	 */
+	private List<List<String>> replay() throws IOException
+	{
+		ReplayReader lReader = new ReplayReader(aDirectory, NAME);
+		try
+		{
+			Recorder lRecorder = new Recorder(lReader);
+			long lGames = lReader.replay(lRecorder, Long.MAX_VALUE);
+			assertEquals(lRecorder.aGames.size(), lGames);
+			assertEquals(lGames - 1, lReader.getGame());
+			return lRecorder.aGames;
+		}
+		finally
+		{
+			lReader.close();
+		}
+	}
+	
+	/*
+	 * Records the events of each hand as strings, with the hands dealt.
+	 */
+	private static class Recorder extends GameAdapter
+	{
+		private final ReplayReader aReader;
+		private final List<List<String>> aGames = new ArrayList<List<String>>();
+		
+		Recorder(ReplayReader pReader)
+		{
+			aReader = pReader;
+		}
+		
+		long dealtHand(int pPlayer)
+		{
+			return aReader.getDealtHand(pPlayer);
+		}
+		
+		private void record(String pEvent)
+		{
+			aGames.get(aGames.size() - 1).add(pEvent);
+		}
+		
+		@Override
+		public void handStarted(int pDealer, Card pUpcard)
+		{
+			aGames.add(new ArrayList<String>());
+			record("start " + pDealer + " " + pUpcard + " " + dealtHand(0) + " " + dealtHand(1));
+		}
+		
+		@Override
+		public void upcardRefused(int pPlayer)
+		{
+			record("refuse " + pPlayer);
+		}
+		
+		@Override
+		public void cardDrawn(int pPlayer, Card pCard, boolean pFromDiscard)
+		{
+			record("draw " + pPlayer + " " + pCard + " " + pFromDiscard);
+		}
+		
+		@Override
+		public void cardDiscarded(int pPlayer, Card pCard)
+		{
+			record("discard " + pPlayer + " " + pCard);
+		}
+		
+		@Override
+		public void knocked(int pPlayer, int pDeadwood)
+		{
+			record("knock " + pPlayer + " " + pDeadwood);
+		}
+		
+		@Override
+		public void cardsLaidOff(int pPlayer, long pCards)
+		{
+			record("layoff " + pPlayer + " " + pCards);
+		}
+		
+		@Override
+		public void handEnded(HandResult pResult)
+		{
+			record(pResult + ", knocker " + pResult.getKnocker() + ", deadwood " + pResult.getDeadwood(0) + " " +
+					pResult.getDeadwood(1));
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package ca.mcgill.cs.comp303.rummy.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import ca.mcgill.cs.comp303.rummy.model.GameEngine;
+
+/**
+ * Plays games at a TableHost of one table between StandInPlayers, one of
+ * which may think for longer than the decision timeout.
+ */
+public class TestTableHost
+{
+	private static final long TIMEOUT = 200;
+	private static final long SLOW = 60000;
+	private static final long SEED = 909;
+	
+	private final TableHost aHost = new TableHost(1, TIMEOUT);
+	private final ExecutorService aExecutor = Executors.newSingleThreadExecutor();
+	
+	@After
+	public void tearDown()
+	{
+		aExecutor.shutdownNow();
+		aHost.shutdown();
+	}
+	
+	@Test
+	public void testGame() throws InterruptedException
+	{
+		TableResult lResult = get(aHost.open(new StandInPlayer(0), new StandInPlayer(0), SEED));
+		assertFalse(lResult.isTimedOut());
+		assertEquals(TableResult.NONE, lResult.getSlowPlayer());
+		int lWinner = lResult.getWinner();
+		assertTrue(lResult.getScore(lWinner) >= GameEngine.GAME_SCORE);
+		assertTrue(lResult.getScore(1 - lWinner) < GameEngine.GAME_SCORE);
+		assertTrue(lResult.getHands() > 0);
+		assertEquals(0, aHost.getOpenTables());
+	}
+	
+	@Test
+	public void testTimeout() throws Exception
+	{
+		// Seat 0 deals, so seat 1 decides first on the upcard, and never in time
+		long lStart = System.nanoTime();
+		Future<TableResult> lSlow = aHost.open(new StandInPlayer(0), new StandInPlayer(SLOW), SEED);
+		
+		// The only table is taken until the slow player is interrupted
+		Future<TableResult> lNext = aExecutor.submit(new Callable<TableResult>()
+		{
+			@Override
+			public TableResult call() throws Exception
+			{
+				return aHost.open(new StandInPlayer(0), new StandInPlayer(0), SEED).get();
+			}
+		});
+		Thread.sleep(TIMEOUT / 4);
+		assertFalse(lNext.isDone());
+		assertEquals(1, aHost.getOpenTables());
+		
+		TableResult lResult = get(lSlow);
+		assertTrue(System.nanoTime() - lStart >= TimeUnit.MILLISECONDS.toNanos(TIMEOUT));
+		assertTrue(lResult.isTimedOut());
+		assertEquals(TableResult.NONE, lResult.getWinner());
+		assertEquals(1, lResult.getSlowPlayer());
+		assertEquals(1, lResult.getHands());
+		
+		// The table was given back
+		TableResult lNextResult = get(lNext);
+		assertFalse(lNextResult.isTimedOut());
+		assertTrue(lNextResult.getWinner() != TableResult.NONE);
+		assertEquals(0, aHost.getOpenTables());
+	}
+	
+	@Test
+	public void testThreads()
+	{
+		boolean lVirtual = true;
+		try
+		{
+			Thread.class.getMethod("ofVirtual");
+		}
+		catch( NoSuchMethodException lException )
+		{
+			lVirtual = false;
+		}
+		assertEquals(lVirtual, aHost.isUsingVirtualThreads());
+	}
+	
+	/*
+	 * Waits for a result, without letting a broken host hang the test.
+	 */
+	private static TableResult get(Future<TableResult> pFuture)
+	{
+		try
+		{
+			return pFuture.get(SLOW / 4, TimeUnit.MILLISECONDS);
+		}
+		catch( Exception lException )
+		{
+			throw new AssertionError(lException);
+		}
+	}
+}
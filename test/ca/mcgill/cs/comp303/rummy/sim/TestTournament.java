@@ -0,0 +1,83 @@
+package ca.mcgill.cs.comp303.rummy.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import ca.mcgill.cs.comp303.rummy.model.AutoPlayer;
+import ca.mcgill.cs.comp303.rummy.model.GameSnapshot;
+import ca.mcgill.cs.comp303.rummy.model.HandResult;
+import ca.mcgill.cs.comp303.rummy.model.Player;
+
+/**
+ * Checks that a Tournament gives the same result whatever the number of
+ * threads, and that each of its games is scored on its own.
+ */
+public class TestTournament
+{
+	private static final int GAMES = 2000;
+	private static final long SEED = 303;
+	
+	private static final Tournament.PlayerFactory AUTO_PLAYERS = new Tournament.PlayerFactory()
+	{
+		@Override
+		public Player createPlayer(int pSeat)
+		{
+			return new AutoPlayer();
+		}
+	};
+	
+	@Test
+	public void testParallel()
+	{
+		TournamentResult lExpected = new Tournament(AUTO_PLAYERS, GAMES, SEED).runSequential();
+		assertEquals(GAMES, lExpected.getGames());
+		for( int lThreads = 1; lThreads <= 4; lThreads *= 2 )
+		{
+			assertEquals(lExpected, new Tournament(AUTO_PLAYERS, GAMES, SEED).run(lThreads));
+		}
+		assertFalse(lExpected.equals(new Tournament(AUTO_PLAYERS, GAMES, SEED + 1).runSequential()));
+	}
+	
+	@Test
+	public void testScores()
+	{
+		ScoreChecker lChecker = new ScoreChecker();
+		Tournament lTournament = new Tournament(AUTO_PLAYERS, GAMES / 10, SEED);
+		lTournament.setSpectator(lChecker);
+		lTournament.runSequential();
+		assertEquals(GAMES / 10, lChecker.aHands);
+	}
+	
+	/*
+	 * Publishes every event, and checks at the end of each hand that only
+	 * the points of the hand were scored.
+	 */
+	private static final class ScoreChecker extends SnapshotPublisher
+	{
+		private int aHands;
+		
+		ScoreChecker()
+		{
+			super(Integer.MAX_VALUE);
+		}
+		
+		@Override
+		public void handEnded(HandResult pResult)
+		{
+			super.handEnded(pResult);
+			GameSnapshot lSnapshot = getLatest();
+			for( int lSeat = 0; lSeat < 2; lSeat++ )
+			{
+				int lPoints = 0;
+				if( pResult.getWinner() == lSeat )
+				{
+					lPoints = pResult.getPoints();
+				}
+				assertEquals(lPoints, lSnapshot.getScore(lSeat));
+			}
+			aHands++;
+		}
+	}
+}
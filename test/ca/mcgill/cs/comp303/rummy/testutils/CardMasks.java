@@ -0,0 +1,56 @@
+package ca.mcgill.cs.comp303.rummy.testutils;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import ca.mcgill.cs.comp303.rummy.model.Card;
+import ca.mcgill.cs.comp303.rummy.model.CardMask;
+
+/**
+ * Builds card masks (see CardMask) for tests.
+ */
+public final class CardMasks
+{
+	private CardMasks(){}
+	
+	/**
+	 * @param pCards Some cards.
+	 * @return The mask of pCards.
+	 */
+	public static long mask(Card... pCards)
+	{
+		return CardMask.of(Arrays.asList(pCards));
+	}
+	
+	/**
+	 * @param pFrom The first rank, as an index.
+	 * @param pTo The rank after the last one.
+	 * @return The mask of the cards of the ranks from pFrom to pTo, excluded.
+	 * Hands drawn from a few ranks have many overlapping groups and runs.
+	 */
+	public static long ranks(int pFrom, int pTo)
+	{
+		long lCards = 0;
+		for( int lRank = pFrom; lRank < pTo; lRank++ )
+		{
+			lCards |= CardMask.rank(lRank);
+		}
+		return lCards;
+	}
+	
+	/**
+	 * @param pRandom The source of the cards.
+	 * @param pFrom The mask of the cards to draw from.
+	 * @param pSize The number of cards to draw, at most the size of pFrom.
+	 * @return The mask of pSize random cards of pFrom.
+	 */
+	public static long deal(Random pRandom, long pFrom, int pSize)
+	{
+		long lCards = 0;
+		while( Long.bitCount(lCards) < pSize )
+		{
+			lCards |= 1L << pRandom.nextInt(CardMask.DECK_SIZE) & pFrom;
+		}
+		return lCards;
+	}
+}